@@ -5,21 +5,23 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintStream;
 import java.math.BigDecimal;
-import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.regex.Pattern;
 
-import javax.net.ssl.SSLSocket;
-import javax.net.ssl.SSLSocketFactory;
-
 import org.apache.log4j.Logger;
 
+import de.tivsource.lib.jcyradm.audit.AuditAction;
+import de.tivsource.lib.jcyradm.audit.AuditRecord;
+import de.tivsource.lib.jcyradm.audit.AuditSink;
 import de.tivsource.lib.jcyradm.exception.AuthenticationFailure;
 import de.tivsource.lib.jcyradm.exception.MailboxExists;
 import de.tivsource.lib.jcyradm.exception.NoLogMessagesFile;
@@ -30,9 +32,36 @@ import de.tivsource.lib.jcyradm.exception.NoServerAnswerFile;
 import de.tivsource.lib.jcyradm.exception.NoServerResponse;
 import de.tivsource.lib.jcyradm.exception.NoServerStream;
 import de.tivsource.lib.jcyradm.exception.NoValidMailboxName;
+import de.tivsource.lib.jcyradm.exception.NoValidOperation;
 import de.tivsource.lib.jcyradm.exception.QuotaNotInitialized;
 import de.tivsource.lib.jcyradm.exception.UnexpectedExtraArguments;
 import de.tivsource.lib.jcyradm.exception.UnexpectedServerAnswer;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.mailbox.MailboxTree;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.metadata.MetadataListener;
+import de.tivsource.lib.jcyradm.metadata.MetadataScan;
+import de.tivsource.lib.jcyradm.net.CircuitBreaker;
+import de.tivsource.lib.jcyradm.net.Connection;
+import de.tivsource.lib.jcyradm.net.HostHealth;
+import de.tivsource.lib.jcyradm.net.MultiHostConnector;
+import de.tivsource.lib.jcyradm.placement.PartitionPlacement;
+import de.tivsource.lib.jcyradm.provision.ProvisionRequest;
+import de.tivsource.lib.jcyradm.provision.ProvisionResult;
+import de.tivsource.lib.jcyradm.provision.Provisioner;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.report.ReportWriter;
+import de.tivsource.lib.jcyradm.report.Reports;
+import de.tivsource.lib.jcyradm.stream.Publisher;
+import de.tivsource.lib.jcyradm.stream.Publishers;
+import de.tivsource.lib.jcyradm.transport.TcpTransport;
+import de.tivsource.lib.jcyradm.transport.TlsTransport;
+import de.tivsource.lib.jcyradm.transport.Transport;
+import de.tivsource.lib.jcyradm.wire.RecordingTransport;
+import de.tivsource.lib.jcyradm.wire.WireRecorder;
 
 /**
  * JCyrAdm ist eine Libary die dazu dient eine Verbindung mit einem
@@ -66,9 +95,45 @@ public class JCyrAdm {
     private static final String DEFAULT_PROPERTIES_FILE = "jcyradm.properties";
 
     /**
-     * Cyrus Imap-Host zu dem die Verbindung aufgebaut werden soll.
+     * Tag der synchronen Kommandos.
+     */
+    private static final String TAG = ".";
+
+    /**
+     * Präfix der Benutzer-Mailboxen ohne Trennzeichen.
+     */
+    private static final String USER_PREFIX = "user";
+
+    /**
+     * Anzahl der Mailboxen je GETMETADATA Kommando.
      */
-    private String host = "localhost";
+    private static final int METADATA_BATCH = 64;
+
+    /**
+     * Cyrus Imap-Hosts des logischen Servers zu denen die Verbindung
+     * aufgebaut werden soll.
+     */
+    private List<String> hosts = Arrays.asList("localhost");
+
+    /**
+     * Host zu dem die aktuelle Verbindung besteht.
+     */
+    private String connectedHost;
+
+    /**
+     * Baut die Verbindung zu einem der Hosts auf.
+     */
+    private final MultiHostConnector connector = new MultiHostConnector();
+
+    /**
+     * Prüft die übergebenen Mailbox-Namen.
+     */
+    private MailboxNameValidator validator = new MailboxNameValidator();
+
+    /**
+     * Präfix der Benutzer-Mailboxen mit Trennzeichen (i.e. "user.").
+     */
+    private String userPrefix = USER_PREFIX + validator.getSeparator();
 
     /**
      * Port auf dem der Cyrus Server lauscht.
@@ -112,19 +177,24 @@ public class JCyrAdm {
     private String welcomeMsg;
 
     /**
-     * SSL-Socket-Verbindungs-Objekt.
+     * Die aktuelle Verbindung zum Server.
+     */
+    private Connection connection;
+
+    /**
+     * Transport der Verbindungen, null für TCP oder TLS je nach connect().
      */
-    private SSLSocket sslRequestSocket;
+    private Transport transport;
 
     /**
-     * Socket-Verbindungs-Objekt.
+     * Zeichnet den Datenverkehr auf, null wenn nicht aufgezeichnet wird.
      */
-    private Socket requestSocket;
+    private WireRecorder wireRecorder;
 
     /**
-     * Der Stream mit dem zu Server geschrieben wird.
+     * Encoder der die Kommandos in einen wiederverwendbaren Puffer schreibt.
      */
-    private PrintStream out;
+    private CommandEncoder encoder;
 
     /**
      * Der Stream mit dem vom Server gelesen wird.
@@ -136,6 +206,31 @@ public class JCyrAdm {
      */
     private Map<String, String> acls;
 
+    /**
+     * Mailbox zu der die ACLs in acls gehören.
+     */
+    private String aclsMailbox;
+
+    /**
+     * Mailbox zu der die Werte in used und quota gehören.
+     */
+    private String quotaMailbox;
+
+    /**
+     * Empfänger der Audit-Einträge, null wenn keine geschrieben werden.
+     */
+    private AuditSink auditSink;
+
+    /**
+     * Lokales Abbild der Mailbox-Namen, null wenn keines geführt wird.
+     */
+    private MailboxTree mailboxTree;
+
+    /**
+     * Wählt die Partition neuer Mailboxen, null für die Standard-Partition.
+     */
+    private PartitionPlacement placement;
+
     /**
      * Map mit den Rückgabewerten des ID Kommandos.
      */
@@ -254,26 +349,33 @@ public class JCyrAdm {
             if (isNull(port)) {
                 port = DEFAULT_IMAP_SSL_PORT;
             }
-            SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory
-                    .getDefault();
-            sslRequestSocket = (SSLSocket) factory.createSocket(host, port);
-            out = new PrintStream(sslRequestSocket.getOutputStream());
-            out.flush();
-            in = new BufferedReader(new InputStreamReader(
-                    sslRequestSocket.getInputStream()));
         } else {
         	LOGGER.trace("öffne Ungesicherte Verbindung");
             if (isNull(port)) {
                 port = DEFAULT_IMAP_PORT;
             }
-            requestSocket = new Socket(host, port);
-            out = new PrintStream(requestSocket.getOutputStream());
-            out.flush();
-            in = new BufferedReader(new InputStreamReader(
-                    requestSocket.getInputStream()));
+        }
 
+        /*
+         * Verbindung zum ersten erreichbaren Host aufbauen, die
+         * Willkommens-Nachricht wurde dabei schon gelesen.
+         */
+        Transport selected = transport;
+        if (wireRecorder != null) {
+            if (selected == null) {
+                selected = ssl ? new TlsTransport() : new TcpTransport();
+            }
+            selected = new RecordingTransport(selected, wireRecorder);
         }
-        welcomeMsg = in.readLine();
+        if (selected == null) {
+            connection = connector.connect(hosts, port, ssl);
+        } else {
+            connection = connector.connect(hosts, port, selected);
+        }
+        connectedHost = connection.getHost();
+        encoder = new CommandEncoder(connection.getLink().getChannel());
+        in = connection.getReader();
+        welcomeMsg = connection.getWelcomeMsg();
         LOGGER.debug("Server >| " + welcomeMsg);
     } // Ende connect()
 
@@ -285,13 +387,8 @@ public class JCyrAdm {
 	 */
     public final void disconnect() throws IOException {
         LOGGER.trace(logMessages.getString("logger.trace.disconnect"));
-        if (sslRequestSocket != null) {
-        	LOGGER.trace("schließe Verschlüsselte Verbindung");
-            sslRequestSocket.close();
-        } else {
-        	LOGGER.trace("öffne Ungesicherte Verbindung");
-            requestSocket.close();
-        }
+        LOGGER.trace("schließe Verbindung zu " + connectedHost);
+        connection.close();
     } // disconnect()
 
     /**
@@ -303,11 +400,12 @@ public class JCyrAdm {
      */
     public final void capability() throws IOException {
         LOGGER.trace("capability() aufgerufen.");
-        sendCommand(". capability");
-        String line = in.readLine();
+        encoder.tag(TAG).atom("capability");
+        sendCommand();
+        String line = Pipeline.readLine(in);
         LOGGER.debug("Server >| " + line);
         //System.out.println("Server >| " + line);
-        line = in.readLine();
+        line = Pipeline.readLine(in);
         LOGGER.debug("Server >| " + line);
         //System.out.println("Server >| " + line);
 
@@ -325,10 +423,14 @@ public class JCyrAdm {
      */
     public final void login() throws NoServerResponse, UnexpectedServerAnswer, AuthenticationFailure {
         LOGGER.trace("login() aufgerufen.");
-        sendCommand(". login \"" + administrator + "\" \"" + password + "\"");
         try {
+            encoder.tag(TAG).atom("login").astring(administrator)
+                    .astring(password).end();
+            LOGGER.debug("Client >| . login " + administrator + " ****");
+            encoder.flush();
+
             // Lese Antwort vom Server
-            String line = in.readLine();
+            String line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
 
             // Wenn User oder Passwort falsch
@@ -364,12 +466,13 @@ public class JCyrAdm {
     public final void logout() throws NoServerResponse, NoServerStream, UnexpectedServerAnswer {
         LOGGER.trace("logout() aufgerufen.");
 
-        // Sende Logout Nachricht
-        sendCommand(". logout");
-
         try {
+            // Sende Logout Nachricht
+            encoder.tag(TAG).atom("logout");
+            sendCommand();
+
             // Werte erste Server Antwort aus
-            String line = in.readLine();
+            String line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
             if(!serverAnswers.getString("server.answer.logout")
                     .contentEquals(new StringBuffer(line))) {
@@ -383,7 +486,7 @@ public class JCyrAdm {
 
         try {
             // Werte zweite Server Antwort aus
-            String line = in.readLine();
+            String line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
             if(!serverAnswers.getString("server.answer.ok")
                     .contentEquals(new StringBuffer(line))) {
@@ -398,12 +501,12 @@ public class JCyrAdm {
         try {
             // Schließe InputStream
             in.close();
+            // Schließe die Verbindung
+            connection.close();
         } catch (IOException e) {
             LOGGER.error("Fehler >| Keine Stream vom Server vorhanden");
             throw new NoServerStream();
         }
-        // Schließe OutputStream
-        out.close();
     }// Ende logout()
 
     /**
@@ -426,15 +529,13 @@ public class JCyrAdm {
         }
 
         /*
-         * Kommando absetzen.
-         */
-        sendCommand(". getacl \"user." + mailbox + "\"");
-
-        /*
-         * Erste Antwortzeile einlesen.
+         * Kommando absetzen und erste Antwortzeile einlesen.
          */
         try {
-            String line = in.readLine();
+            encoder.tag(TAG).atom("getacl").mailbox(userPrefix, mailbox);
+            sendCommand();
+
+            String line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
 
             if(!Pattern.matches(serverAnswers.getString("server.answer.acl"), line)) {
@@ -443,6 +544,7 @@ public class JCyrAdm {
             }
 
             acls = new HashMap<String, String>();
+            aclsMailbox = mailbox;
             String keys[] = line.split(" ");
             for(int i=0; i < keys.length; i++) {
                 if(i > 2) {
@@ -461,7 +563,7 @@ public class JCyrAdm {
          * Zweite Antwortzeile einlesen.
          */
         try {
-            String line = in.readLine();
+            String line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
             if(!serverAnswers.getString("server.answer.ok")
                     .contentEquals(new StringBuffer(line))) {
@@ -496,15 +598,16 @@ public class JCyrAdm {
         }
 
         /*
-         * Kommando absetzen.
-         */
-        sendCommand(". setacl \"user." + mailbox + "\" \"" + user + "\" " + acl);
-
-        /*
-         * Einlesen der Antwortzeile.
+         * Kommando absetzen und Antwortzeile einlesen.
          */
+        long start = System.nanoTime();
+        String line = null;
         try {
-            String line = in.readLine();
+            encoder.tag(TAG).atom("setacl").mailbox(userPrefix, mailbox)
+                    .string(user).astring(acl);
+            sendCommand();
+
+            line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
             if(!serverAnswers.getString("server.answer.ok")
                     .contentEquals(new StringBuffer(line))) {
@@ -514,6 +617,9 @@ public class JCyrAdm {
         } catch (IOException e) {
             LOGGER.error("Fehler >| Keine Antwort von Server erhalten");
             throw new NoServerResponse();
+        } finally {
+            audit(AuditAction.SETACL, mailbox, knownAcl(mailbox, user),
+                    user + " " + acl, line, start);
         }
     }// Ende setAcl(String, String, String)
 
@@ -539,15 +645,16 @@ public class JCyrAdm {
         }
 
         /*
-         * Kommando absetzen.
-         */
-        sendCommand(". deleteacl \"user." + mailbox + "\" \"" + user + "\"");
-
-        /*
-         * Antwortzeile auswerten.
+         * Kommando absetzen und Antwortzeile auswerten.
          */
+        long start = System.nanoTime();
+        String line = null;
         try {
-            String line = in.readLine();
+            encoder.tag(TAG).atom("deleteacl").mailbox(userPrefix, mailbox)
+                    .string(user);
+            sendCommand();
+
+            line = Pipeline.readLine(in);
             LOGGER.debug("Server >| " + line);
             if(!serverAnswers.getString("server.answer.ok")
                     .contentEquals(new StringBuffer(line))) {
@@ -557,6 +664,9 @@ public class JCyrAdm {
         } catch (IOException e) {
             LOGGER.error("Fehler >| Keine Antwort von Server erhalten");
             throw new NoServerResponse();
+        } finally {
+            audit(AuditAction.DELETEACL, mailbox, knownAcl(mailbox, user),
+                    null, line, start);
         }
 
     }// Ende deleteAcl(String, String)
@@ -589,8 +699,9 @@ public class JCyrAdm {
         /*
          * Absenden des Befehls und auslesen der ersten Ergebniszeile.
          */
-        sendCommand(". getquota \"user." + mailbox + "\"");
-        String line = in.readLine();
+        encoder.tag(TAG).atom("getquota").mailbox(userPrefix, mailbox);
+        sendCommand();
+        String line = Pipeline.readLine(in);
         LOGGER.debug("Server >| " + line);
 
         /*
@@ -648,6 +759,7 @@ public class JCyrAdm {
         String[] storage = line.substring(start + 1, end).split(" ");
         used = new BigDecimal(storage[1]);
         quota = new BigDecimal(storage[2]);
+        quotaMailbox = mailbox;
         LOGGER.debug(line.substring(start + 1, end));
 
 
@@ -660,7 +772,7 @@ public class JCyrAdm {
         /*
          * Auslesen der zweiten Antwortzeile
          */
-        line = in.readLine();
+        line = Pipeline.readLine(in);
         LOGGER.debug("Server >| " + line);
 
         /*
@@ -690,10 +802,12 @@ public class JCyrAdm {
      * @param quotaToSet - Hier. // TODO Doku hier
      * @throws IOException - TODO doku
      * @throws NoValidMailboxName -
+     * @throws NoValidOperation - Wenn die Quota negativ, keine ganze Zahl
+     *             oder größer als Long.MAX_VALUE ist.
      */
     public final void setQuota(final String mailbox,
             final BigDecimal quotaToSet)
-            throws IOException, NoValidMailboxName {
+            throws IOException, NoValidMailboxName, NoValidOperation {
         /*
          * Prüfen ob der übergebene Mailboxname gültig ist.
          */
@@ -702,19 +816,41 @@ public class JCyrAdm {
             throw new NoValidMailboxName();
         }
 
+        /*
+         * Prüfen ob sich die Quota senden lässt, bevor etwas geschrieben
+         * wird.
+         */
+        long storage;
+        try {
+            storage = quotaToSet.longValueExact();
+        } catch (ArithmeticException e) {
+            LOGGER.warn("Ungültige Quota " + quotaToSet.toPlainString());
+            throw new NoValidOperation("quota " + quotaToSet.toPlainString());
+        }
+        if (storage < 0) {
+            LOGGER.warn("Negative Quota " + storage);
+            throw new NoValidOperation("negative quota " + storage);
+        }
+
         /*
          * Sende Kommando.
          */
-        sendCommand((new StringBuilder())
-                .append(". setquota \"")
-                .append("user.")
-                .append(mailbox)
-                .append("\" (STORAGE ")
-                .append(quotaToSet)
-                .append(")").toString());
-
-        String line = in.readLine();
-        LOGGER.debug("Server >| " + line);
+        long start = System.nanoTime();
+        String line = null;
+        try {
+            encoder.tag(TAG).atom("setquota").mailbox(userPrefix, mailbox)
+                    .openList().atom("STORAGE")
+                    .number(storage).closeList();
+            sendCommand();
+
+            line = Pipeline.readLine(in);
+            LOGGER.debug("Server >| " + line);
+        } finally {
+            audit(AuditAction.SETQUOTA, mailbox,
+                    mailbox.equals(quotaMailbox) ? quota.toPlainString()
+                            : null,
+                    quotaToSet.toPlainString(), line, start);
+        }
         //System.out.println("Server >| " + line);
 
         // ". setquota \"$mb_name\" (STORAGE $quota)"
@@ -735,6 +871,32 @@ public class JCyrAdm {
      */
     public final void createMailBox(final String mailbox) throws IOException,
             MailboxExists, NoServerResponse, NoValidMailboxName {
+        String partition = null;
+        if (placement != null) {
+            partition = placement.choose();
+        }
+        createMailBox(mailbox, partition);
+    }// Ende createMailBox(String)
+
+    /**
+     * Methode zum erstellen einer Mailbox mit dem Namen "mailbox" auf einer
+     * bestimmten Partition.
+     *
+     * @param mailbox - String mit dem Namen der Mailbox (i.e.
+     *            "mailboxname" ohne [user.])
+     * @param partition - Partition, in einem Cyrus Murder auch
+     *            "backend!partition", oder null für die Standard-Partition
+     *            des Servers.
+     * @throws IOException - InputStream/OutputStream geschlossen oder nicht
+     *             vorhanden
+     * @throws MailboxExists - Die Mailbox die erstellt werden soll exsistiert
+     *             bereits.
+     * @throws NoServerResponse - Wenn der Server nicht antwortet.
+     * @throws NoValidMailboxName - Wenn der Name der Mailbox ungültig ist.
+     */
+    public final void createMailBox(final String mailbox,
+            final String partition) throws IOException, MailboxExists,
+            NoServerResponse, NoValidMailboxName {
         /*
          * Prüfen ob der übergebene Mailboxname gültig ist.
          */
@@ -748,18 +910,34 @@ public class JCyrAdm {
         /*
          * Kommando absetzen.
          */
-        sendCommand((new StringBuilder())
-                .append(". create \"")
-                .append("user.")
-                .append(mailbox)
-                .append("\"")
-                .toString());
+        long start = System.nanoTime();
+        String line = null;
+        try {
+            encoder.tag(TAG).atom("create").mailbox(userPrefix, mailbox);
+            if (partition != null) {
+                encoder.astring(partition);
+            }
+            sendCommand();
+
+            /*
+             * Antwortzeile auslesen.
+             */
+            line = Pipeline.readLine(in);
+            LOGGER.debug("Server >| " + line);
+        } finally {
+            audit(AuditAction.CREATE, mailbox, null, mailbox, line, start);
+        }
 
         /*
-         * Antwortzeile auslesen.
+         * Abbild der Mailbox-Namen aktualisieren.
          */
-        String line = in.readLine();
-        LOGGER.debug("Server >| " + line);
+        if (mailboxTree != null && line != null
+                && (serverAnswers.getString("server.answer.ok")
+                        .contentEquals(new StringBuffer(line))
+                        || line.startsWith(serverAnswers.getString(
+                                "server.answer.exists")))) {
+            mailboxTree.add(userPrefix + mailbox);
+        }
 
         /*
          * Prüfen ob es eine Serverantwort gibt.
@@ -772,11 +950,128 @@ public class JCyrAdm {
         /*
          * Wirft Exception wenn es die Mailbox bereits gibt.
          */
-        if (line.startsWith(". NO Mailbox already exists")) {
+        if (line.startsWith(serverAnswers.getString("server.answer.exists"))) {
             LOGGER.warn("Die Mailbox existiert schon.");
             throw new MailboxExists();
         }
-    }// Ende createMailBox()
+    }// Ende createMailBox(String, String)
+
+    /**
+     * Legt einen Benutzer mit Quota, Rechten und Standard-Ordnern über die
+     * Pipeline an, die übrigen Schritte erst nach erfolgreicher Anlage der
+     * Mailbox. Ohne Partition in der Anfrage wählt die gesetzte
+     * PartitionPlacement die Partition.
+     *
+     * @param request - Der Benutzer.
+     * @return ProvisionResult - Ergebnis je Schritt, schlägt die Anlage der
+     *         Mailbox fehl sind alle folgenden Schritte übersprungen.
+     * @throws IOException - InputStream/OutputStream geschlossen oder nicht
+     *             vorhanden
+     * @throws NoValidMailboxName - Wenn ein Name ungültig ist, es wurde dann
+     *             nichts gesendet.
+     */
+    public final ProvisionResult provisionUser(final ProvisionRequest request)
+            throws IOException, NoValidMailboxName {
+        if (request.getPartition() == null && placement != null) {
+            request.setPartition(placement.choose());
+        }
+        ProvisionResult result = new Provisioner(validator).provision(
+                pipeline(), request);
+        if (mailboxTree != null) {
+            for (String name : result.getCreated()) {
+                mailboxTree.add(name);
+            }
+        }
+        return result;
+    }// Ende provisionUser(ProvisionRequest)
+
+    /**
+     * Fragt Annotationen vieler Mailboxen über die Pipeline ab, mehrere
+     * Mailboxen und alle Einträge je Kommando.
+     *
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param entries - Namen der Einträge (i.e. "/shared/comment").
+     * @param listener - Empfänger der Annotationen, einmal je Mailbox.
+     * @return int - Anzahl der Mailboxen die nicht abgefragt werden konnten.
+     * @throws IOException - InputStream/OutputStream geschlossen oder nicht
+     *             vorhanden
+     */
+    public final int metadata(final Iterable<String> mailboxes,
+            final String[] entries, final MetadataListener listener)
+            throws IOException {
+        return MetadataScan.scan(pipeline(), mailboxes, entries,
+                METADATA_BATCH, listener);
+    }// Ende metadata(Iterable<String>, String[], MetadataListener)
+
+    /**
+     * Setzt Annotationen vieler Mailboxen über die Pipeline.
+     *
+     * @param changes - Vollständiger Name der Mailbox auf die Einträge, ein
+     *            Wert null löscht den Eintrag.
+     * @return Map - Mailbox auf den Text der Ablehnung, leer wenn alles
+     *         gesetzt wurde.
+     * @throws IOException - InputStream/OutputStream geschlossen oder nicht
+     *             vorhanden
+     */
+    public final Map<String, String> setMetadata(
+            final Map<String, Map<String, String>> changes)
+            throws IOException {
+        return MetadataScan.update(pipeline(), changes);
+    }// Ende setMetadata(Map<String, Map<String, String>>)
+
+    /**
+     * Liefert die Namen aller Mailboxen auf die das Muster passt als
+     * Datenstrom. Gelesen wird nur so schnell wie der Subscriber anfordert,
+     * bis zum Ende des Stroms darf die Verbindung nicht anders benutzt
+     * werden.
+     *
+     * @param pattern - Muster (i.e. "user.*").
+     * @return Publisher - Publisher der Namen.
+     */
+    public final Publisher<String> listPublisher(final String pattern) {
+        return Publishers.list(pipeline(), pattern);
+    }// Ende listPublisher(String)
+
+    /**
+     * Liefert die Quota vieler Mailboxen als Datenstrom, die offenen
+     * GETQUOTA Kommandos folgen der Anforderung des Subscribers. Bis zum
+     * Ende des Stroms darf die Verbindung nicht anders benutzt werden.
+     *
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @return Publisher - Publisher der Quota.
+     */
+    public final Publisher<Quota> quotaPublisher(
+            final Iterator<String> mailboxes) {
+        return Publishers.quota(pipeline(), mailboxes);
+    }// Ende quotaPublisher(Iterator<String>)
+
+    /**
+     * Schreibt die Quota vieler Mailboxen direkt in einen Bericht.
+     *
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param writer - Bericht mit den Spalten aus Reports.quotaColumns().
+     * @return int - Anzahl der Mailboxen ohne Quota oder mit Fehler.
+     * @throws IOException - InputStream/OutputStream geschlossen oder nicht
+     *             vorhanden, oder der Bericht kann nicht geschrieben werden.
+     */
+    public final int exportQuota(final Iterator<String> mailboxes,
+            final ReportWriter writer) throws IOException {
+        return Reports.quota(pipeline(), mailboxes, writer);
+    }// Ende exportQuota(Iterator<String>, ReportWriter)
+
+    /**
+     * Schreibt die Rechte vieler Mailboxen direkt in einen Bericht.
+     *
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param writer - Bericht mit den Spalten aus Reports.aclColumns().
+     * @return int - Anzahl der Mailboxen mit Fehler.
+     * @throws IOException - InputStream/OutputStream geschlossen oder nicht
+     *             vorhanden, oder der Bericht kann nicht geschrieben werden.
+     */
+    public final int exportAcl(final Iterator<String> mailboxes,
+            final ReportWriter writer) throws IOException {
+        return Reports.acl(pipeline(), mailboxes, writer);
+    }// Ende exportAcl(Iterator<String>, ReportWriter)
 
     /**
      * Hier. // TODO Doku hier
@@ -809,9 +1104,21 @@ public class JCyrAdm {
             e.printStackTrace();
         }
 
-        sendCommand(". delete \"user." + mailbox + "\"");
-        String line = in.readLine();
-        LOGGER.debug("Server >| " + line);
+        long start = System.nanoTime();
+        String line = null;
+        try {
+            encoder.tag(TAG).atom("delete").mailbox(userPrefix, mailbox);
+            sendCommand();
+            line = Pipeline.readLine(in);
+            LOGGER.debug("Server >| " + line);
+        } finally {
+            audit(AuditAction.DELETE, mailbox, mailbox, null, line, start);
+        }
+        if (mailboxTree != null && line != null
+                && serverAnswers.getString("server.answer.ok")
+                        .contentEquals(new StringBuffer(line))) {
+            mailboxTree.deleted(userPrefix + mailbox);
+        }
         //System.out.println("Server >| " + line);
     }// Ende deleteMailBox()
 
@@ -824,9 +1131,133 @@ public class JCyrAdm {
      *            Verbindung aufgebaut werden soll.
      */
     public final void setHost(final String hostname) {
-        this.host = hostname;
+        this.hosts = Arrays.asList(hostname);
     }// Ende setHost()
 
+    /**
+     * Methode zum setzen mehrerer Hostnamen oder IP-Adressen eines logischen
+     * Servers (z.B. replizierte Frontends). Beim Verbindungsaufbau werden die
+     * Hosts zeitlich versetzt parallel versucht, die erste Verbindung die die
+     * Willkommens-Nachricht liefert wird benutzt. Hosts die kürzlich nicht
+     * erreichbar waren werden zuletzt versucht.
+     *
+     * @param hostnames - Liste der Namen oder IP-Adressen der Server.
+     */
+    public final void setHosts(final List<String> hostnames) {
+        if (hostnames.isEmpty()) {
+            throw new IllegalArgumentException("hostnames must not be empty");
+        }
+        this.hosts = new ArrayList<String>(hostnames);
+    }// Ende setHosts(List<String>)
+
+    /**
+     * Liefert den Host zu dem die aktuelle Verbindung besteht.
+     *
+     * @return String - Hostname oder IP-Adresse, null wenn keine Verbindung
+     *         aufgebaut wurde.
+     */
+    public final String getConnectedHost() {
+        return connectedHost;
+    }// Ende getConnectedHost()
+
+    /**
+     * Setzt den Timeout in Millisekunden je Verbindungsversuch, dieser gilt
+     * für den Aufbau der Verbindung und das Lesen der Willkommens-Nachricht.
+     *
+     * @param timeout - Timeout in Millisekunden.
+     */
+    public final void setConnectTimeout(final int timeout) {
+        connector.setConnectTimeout(timeout);
+    }// Ende setConnectTimeout(int)
+
+    /**
+     * Setzt die Zeit in Millisekunden nach der zusätzlich der nächste Host
+     * versucht wird, wenn der vorherige noch nicht geantwortet hat.
+     *
+     * @param delay - Zeit in Millisekunden.
+     */
+    public final void setStaggerDelay(final long delay) {
+        connector.setStaggerDelay(delay);
+    }// Ende setStaggerDelay(long)
+
+    /**
+     * Setzt das Objekt in dem sich fehlgeschlagene Hosts gemerkt werden,
+     * standardmäßig teilen sich alle JCyrAdm Objekte eine Instanz.
+     *
+     * @param health - Objekt mit den gemerkten Fehlern.
+     */
+    public final void setHostHealth(final HostHealth health) {
+        connector.setHealth(health);
+    }// Ende setHostHealth(HostHealth)
+
+    /**
+     * Setzt den Transport über den die Verbindungen aufgebaut werden (i.e.
+     * UnixTransport für einen Cyrus auf dem selben Host oder TcpTransport
+     * mit eigenen Puffergrößen). Der Parameter von connect(Boolean) wählt
+     * dann nur noch den Standard-Port.
+     *
+     * @param linkTransport - Der Transport, null für TCP oder TLS je nach
+     *            connect(Boolean).
+     */
+    public final void setTransport(final Transport linkTransport) {
+        this.transport = linkTransport;
+    }// Ende setTransport(Transport)
+
+    /**
+     * Setzt den WireRecorder der den Datenverkehr der folgenden Verbindungen
+     * mit Zeitstempeln aufzeichnet, das Passwort von login() wird dabei
+     * ersetzt. Die Aufzeichnung kann mit einem ReplayTransport ohne Server
+     * abgespielt werden.
+     *
+     * @param recorder - Ziel der Aufzeichnung, null um nicht aufzuzeichnen.
+     */
+    public final void setWireRecorder(final WireRecorder recorder) {
+        this.wireRecorder = recorder;
+    }// Ende setWireRecorder(WireRecorder)
+
+    /**
+     * Setzt den CircuitBreaker der Hosts, ohne Aufruf wird die gemeinsame
+     * Instanz benutzt.
+     *
+     * @param breaker - Sperrt Hosts nach zu vielen Fehlern hintereinander.
+     */
+    public final void setCircuitBreaker(final CircuitBreaker breaker) {
+        connector.setCircuitBreaker(breaker);
+    }// Ende setCircuitBreaker(CircuitBreaker)
+
+    /**
+     * Setzt den Empfänger für die Audit-Einträge der administrativen
+     * Änderungen (create, delete, setquota, setacl, deleteacl).
+     *
+     * @param sink - Empfänger der Einträge, null wenn keine geschrieben
+     *            werden sollen.
+     */
+    public final void setAuditSink(final AuditSink sink) {
+        this.auditSink = sink;
+    }// Ende setAuditSink(AuditSink)
+
+    /**
+     * Setzt das lokale Abbild der Mailbox-Namen, das nach jeder Anlage und
+     * Löschung einer Mailbox aktualisiert wird.
+     *
+     * @param tree - Das Abbild, null wenn keines geführt wird.
+     */
+    public final void setMailboxTree(final MailboxTree tree) {
+        this.mailboxTree = tree;
+    }// Ende setMailboxTree(MailboxTree)
+
+    /**
+     * Setzt die Verteilung neuer Mailboxen auf die Partitionen, die von
+     * createMailBox(String) benutzt wird.
+     *
+     * @param partitionPlacement - Die Verteilung, null für die
+     *            Standard-Partition des Servers.
+     */
+    public final void setPlacement(
+            final PartitionPlacement partitionPlacement) {
+        this.placement = partitionPlacement;
+    }// Ende setPlacement(PartitionPlacement)
+
     /**
      * Methode um die Port-Nummer des Server zu verändern, normalerweise nicht
      * nötig, wenn der Server auf den Standard-Ports betrieben wird.
@@ -838,6 +1269,23 @@ public class JCyrAdm {
         this.port = portNumber;
     }// Ende setPort()
 
+    /**
+     * Methode um die Namensregeln des Servers zu setzen. Mit unixhierarchysep
+     * ist '/' das Trennzeichen der Hierarchie (i.e. "user/max.mustermann"),
+     * mit virtdomains dürfen Mailbox-Namen eine Domain enthalten (i.e.
+     * "max@example.com"). Die Werte müssen zur imapd.conf des Servers passen.
+     *
+     * @param unixhierarchysep - True wenn der Server mit unixhierarchysep
+     *            läuft.
+     * @param virtdomains - True wenn der Server mit virtdomains läuft.
+     */
+    public final void setNamingRules(final boolean unixhierarchysep,
+            final boolean virtdomains) {
+        this.validator = new MailboxNameValidator(unixhierarchysep,
+                virtdomains);
+        this.userPrefix = USER_PREFIX + validator.getSeparator();
+    }// Ende setNamingRules(boolean, boolean)
+
     /**
      * Hier. // TODO Doku hier
      *
@@ -865,8 +1313,9 @@ public class JCyrAdm {
      *             vorhanden
      */
     public final String version() throws IOException {
-    	sendCommand(". id NIL");
-        String line = in.readLine();
+        encoder.tag(TAG).atom("id").nil();
+        sendCommand();
+        String line = Pipeline.readLine(in);
         LOGGER.debug("Server >| " + line);
 
         if (isNull(line)) {
@@ -884,7 +1333,7 @@ public class JCyrAdm {
             i++;
         }
 
-        line = in.readLine();
+        line = Pipeline.readLine(in);
         LOGGER.debug("Server >| " + line);
         //System.out.println("Server >| " + line);
 
@@ -959,16 +1408,92 @@ public class JCyrAdm {
     }// Ende getLoad()
 
     /**
-	 * Hilfs-Methode um ein Kommando an den Server zu senden.
+	 * Hilfs-Methode um das Kommando im Encoder abzuschließen und an den
+	 * Server zu senden.
 	 * 
-	 * @param command - Kommando das an den Server gesendet werden soll.
+	 * @throws IOException - Wenn der Stream zum Server geschlossen ist.
 	 */
-    private void sendCommand(final String command) {
-        out.println(command);
-        out.flush();
-        LOGGER.debug("Client >| " + command);
+    private void sendCommand() throws IOException {
+        encoder.end();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Client >| " + encoder);
+        }
+        encoder.flush();
     }// Ende sendCommand()
-    
+
+    /**
+     * Liefert eine Pipeline für die aktuelle Verbindung, mit der mehrere
+     * Kommandos ohne Warten auf die einzelnen Antworten gesendet werden
+     * können. Solange die Pipeline offene Kommandos hat, dürfen die
+     * synchronen Methoden nicht benutzt werden.
+     *
+     * @return Pipeline - Pipeline der aktuellen Verbindung.
+     */
+    public final Pipeline pipeline() {
+        return new Pipeline(encoder, in);
+    }// Ende pipeline()
+
+    /**
+     * Sendet ein NOOP, i.e. um eine freie Verbindung vor dem Timeout des
+     * Servers offen zu halten oder zu prüfen ob sie noch lebt.
+     *
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde oder der
+     *             Server nicht mit OK antwortet.
+     */
+    public final void noop() throws IOException {
+        Pipeline pipeline = pipeline();
+        Command command = Commands.noop();
+        pipeline.submit(command);
+        pipeline.sync();
+        if (!command.isOk()) {
+            throw new IOException("NOOP failed: " + command.getStatus() + " "
+                    + command.getText());
+        }
+    }// Ende noop()
+
+    /**
+     * Hilfs-Methode die einen Audit-Eintrag erzeugt, die Formatierung und
+     * das Schreiben übernimmt der AuditSink.
+     *
+     * @param action - Art der Änderung.
+     * @param mailbox - Betroffene Mailbox.
+     * @param before - Wert vor der Änderung, null wenn unbekannt.
+     * @param after - Wert nach der Änderung.
+     * @param line - Antwortzeile des Servers, null wenn keine kam.
+     * @param start - Zeitpunkt in Nanosekunden vor dem Senden.
+     */
+    private void audit(final AuditAction action, final String mailbox,
+            final String before, final String after, final String line,
+            final long start) {
+        if (auditSink == null) {
+            return;
+        }
+        String outcome = AuditRecord.NO_RESPONSE;
+        if (line != null) {
+            outcome = line.startsWith(TAG + " ")
+                    ? line.substring(TAG.length() + 1) : line;
+        }
+        auditSink.record(new AuditRecord(System.currentTimeMillis(),
+                administrator, connectedHost, action, mailbox, before, after,
+                outcome, System.nanoTime() - start));
+    }// Ende audit(AuditAction, String, String, String, String, long)
+
+    /**
+     * Hilfs-Methode die die zuletzt abgefragten Rechte eines Benutzers
+     * liefert, wenn sie zu der Mailbox gehören.
+     *
+     * @param mailbox - Die Mailbox.
+     * @param user - Der Benutzer.
+     * @return String - Die Rechte oder null wenn unbekannt.
+     */
+    private String knownAcl(final String mailbox, final String user) {
+        if (auditSink == null || acls == null
+                || !mailbox.equals(aclsMailbox)) {
+            return null;
+        }
+        return acls.get(user);
+    }// Ende knownAcl(String, String)
+
     /**
      * Hilfs-Methode die prüft ob ein Object Null ist.
      *
@@ -987,7 +1512,7 @@ public class JCyrAdm {
      * @return Boolean - Wenn gültig dann True.
      */
     private Boolean isValid(final String mbString) {
-        return Pattern.matches("[a-zA-Z_]*", mbString)? true : false;
+        return validator.isValid(mbString);
     }
 
     /**
@@ -0,0 +1,36 @@
+package de.tivsource.lib.jcyradm.audit;
+
+/**
+ * Art einer administrativen Änderung im Audit-Log.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum AuditAction {
+
+    /**
+     * Mailbox angelegt.
+     */
+    CREATE,
+
+    /**
+     * Mailbox gelöscht.
+     */
+    DELETE,
+
+    /**
+     * Quota gesetzt.
+     */
+    SETQUOTA,
+
+    /**
+     * Rechte gesetzt.
+     */
+    SETACL,
+
+    /**
+     * Rechte gelöscht.
+     */
+    DELETEACL;
+
+}// Ende enum
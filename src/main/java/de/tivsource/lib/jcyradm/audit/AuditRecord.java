@@ -0,0 +1,231 @@
+package de.tivsource.lib.jcyradm.audit;
+
+/**
+ * Die Klasse AuditRecord ist ein unveränderlicher Eintrag im Audit-Log: wer
+ * hat wann auf welchem Host was an welcher Mailbox geändert, der Wert davor
+ * und danach, die Antwort des Servers und die Laufzeit. Die Formatierung
+ * (toJson) findet erst im Schreib-Thread statt.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class AuditRecord {
+
+    /**
+     * Ausgang wenn keine Antwort vom Server kam.
+     */
+    public static final String NO_RESPONSE = "ERR no response";
+
+    /**
+     * Zeitpunkt in Millisekunden seit 1970.
+     */
+    private final long timestamp;
+
+    /**
+     * Angemeldeter Administrator.
+     */
+    private final String administrator;
+
+    /**
+     * Host auf dem die Änderung ausgeführt wurde.
+     */
+    private final String host;
+
+    /**
+     * Art der Änderung.
+     */
+    private final AuditAction action;
+
+    /**
+     * Betroffene Mailbox.
+     */
+    private final String mailbox;
+
+    /**
+     * Wert vor der Änderung, null wenn unbekannt.
+     */
+    private final String before;
+
+    /**
+     * Wert nach der Änderung.
+     */
+    private final String after;
+
+    /**
+     * Antwort des Servers ohne Tag (i.e. "OK Completed").
+     */
+    private final String outcome;
+
+    /**
+     * Laufzeit in Nanosekunden.
+     */
+    private final long latencyNanos;
+
+    /**
+     * Konstruktor der Klasse AuditRecord.
+     *
+     * @param time - Zeitpunkt in Millisekunden seit 1970.
+     * @param admin - Angemeldeter Administrator.
+     * @param hostname - Host auf dem die Änderung ausgeführt wurde.
+     * @param auditAction - Art der Änderung.
+     * @param mailboxName - Betroffene Mailbox.
+     * @param valueBefore - Wert vor der Änderung, null wenn unbekannt.
+     * @param valueAfter - Wert nach der Änderung.
+     * @param result - Antwort des Servers ohne Tag.
+     * @param latency - Laufzeit in Nanosekunden.
+     */
+    public AuditRecord(final long time, final String admin,
+            final String hostname, final AuditAction auditAction,
+            final String mailboxName, final String valueBefore,
+            final String valueAfter, final String result, final long latency) {
+        super();
+        this.timestamp = time;
+        this.administrator = admin;
+        this.host = hostname;
+        this.action = auditAction;
+        this.mailbox = mailboxName;
+        this.before = valueBefore;
+        this.after = valueAfter;
+        this.outcome = result;
+        this.latencyNanos = latency;
+    }// Ende AuditRecord(long, String, String, AuditAction, String, ...)
+
+    /**
+     * Liefert ob der Server die Änderung bestätigt hat.
+     *
+     * @return boolean - True bei OK.
+     */
+    public boolean isOk() {
+        return outcome != null && outcome.startsWith("OK");
+    }// Ende isOk()
+
+    /**
+     * Hängt den Eintrag als JSON Objekt an.
+     *
+     * @param json - Ziel der Ausgabe.
+     * @param time - Der formatierte Zeitpunkt.
+     */
+    public void toJson(final StringBuilder json, final String time) {
+        json.append("{\"time\":");
+        quote(json, time);
+        json.append(",\"admin\":");
+        quote(json, administrator);
+        json.append(",\"host\":");
+        quote(json, host);
+        json.append(",\"action\":\"").append(action.name().toLowerCase())
+                .append("\",\"mailbox\":");
+        quote(json, mailbox);
+        json.append(",\"before\":");
+        quote(json, before);
+        json.append(",\"after\":");
+        quote(json, after);
+        json.append(",\"outcome\":");
+        quote(json, outcome);
+        json.append(",\"latencyMicros\":").append(latencyNanos / 1000)
+                .append('}');
+    }// Ende toJson(StringBuilder, String)
+
+    /**
+     * Liefert den Zeitpunkt.
+     *
+     * @return long - Millisekunden seit 1970.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }// Ende getTimestamp()
+
+    /**
+     * Liefert den Administrator.
+     *
+     * @return String - Angemeldeter Administrator.
+     */
+    public String getAdministrator() {
+        return administrator;
+    }// Ende getAdministrator()
+
+    /**
+     * Liefert den Host.
+     *
+     * @return String - Host auf dem die Änderung ausgeführt wurde.
+     */
+    public String getHost() {
+        return host;
+    }// Ende getHost()
+
+    /**
+     * Liefert die Art der Änderung.
+     *
+     * @return AuditAction - Art der Änderung.
+     */
+    public AuditAction getAction() {
+        return action;
+    }// Ende getAction()
+
+    /**
+     * Liefert die Mailbox.
+     *
+     * @return String - Betroffene Mailbox.
+     */
+    public String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert den Wert vor der Änderung.
+     *
+     * @return String - Wert vor der Änderung oder null.
+     */
+    public String getBefore() {
+        return before;
+    }// Ende getBefore()
+
+    /**
+     * Liefert den Wert nach der Änderung.
+     *
+     * @return String - Wert nach der Änderung.
+     */
+    public String getAfter() {
+        return after;
+    }// Ende getAfter()
+
+    /**
+     * Liefert die Antwort des Servers.
+     *
+     * @return String - Antwort ohne Tag.
+     */
+    public String getOutcome() {
+        return outcome;
+    }// Ende getOutcome()
+
+    /**
+     * Liefert die Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }// Ende getLatencyNanos()
+
+    /**
+     * Hilfs-Methode die einen String als JSON String anhängt.
+     */
+    private static void quote(final StringBuilder json, final String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }// Ende quote(StringBuilder, String)
+
+}// Ende class
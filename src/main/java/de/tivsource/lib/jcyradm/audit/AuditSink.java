@@ -0,0 +1,24 @@
+package de.tivsource.lib.jcyradm.audit;
+
+import java.io.Closeable;
+
+/**
+ * Schnittstelle für Empfänger der Audit-Einträge. Die Methode record() wird
+ * direkt aus den Threads aufgerufen die die Änderung ausführen, sie darf
+ * deshalb weder blockieren noch auf die Platte warten.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface AuditSink extends Closeable {
+
+    /**
+     * Nimmt einen Eintrag entgegen.
+     *
+     * @param record - Der Eintrag.
+     * @return boolean - False wenn der Eintrag verworfen werden musste (i.e.
+     *         weil der Puffer voll ist).
+     */
+    boolean record(AuditRecord record);
+
+}// Ende interface
@@ -0,0 +1,244 @@
+package de.tivsource.lib.jcyradm.audit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Die Klasse RingBufferAuditSink nimmt Audit-Einträge in einem Ringpuffer
+ * ohne Sperren entgegen und schreibt sie aus einem eigenen Thread gebündelt
+ * als JSON Zeilen in rollierende Dateien. Die erzeugenden Threads warten nie
+ * auf die Platte, ist der Puffer voll wird der Eintrag verworfen und gezählt.
+ *
+ * <p>
+ * Mehrere Threads reservieren einen Platz mit compareAndSet auf dem Ende des
+ * Puffers und legen den Eintrag danach hinein, der Schreib-Thread liest nur
+ * belegte Plätze und gibt sie wieder frei.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class RingBufferAuditSink implements AuditSink {
+
+    /**
+     * Statischer Logger der Klasse RingBufferAuditSink.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(RingBufferAuditSink.class);
+
+    /**
+     * Standard Größe des Puffers in Einträgen.
+     */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    /**
+     * Standard maximale Größe einer Datei in Bytes.
+     */
+    public static final long DEFAULT_MAX_FILE_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Standard Anzahl der aufbewahrten alten Dateien.
+     */
+    public static final int DEFAULT_MAX_BACKUPS = 30;
+
+    /**
+     * Maximale Anzahl der Einträge je Schreibvorgang.
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * Wartezeit des Schreib-Threads wenn der Puffer leer ist.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * Zeichensatz der Dateien.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Die Plätze des Puffers.
+     */
+    private final AtomicReferenceArray<AuditRecord> slots;
+
+    /**
+     * Maske für die Position im Puffer, die Größe ist eine Zweierpotenz.
+     */
+    private final int mask;
+
+    /**
+     * Nächster freier Platz, wird von den erzeugenden Threads erhöht.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Nächster zu lesender Platz, wird nur vom Schreib-Thread erhöht.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Anzahl der verworfenen Einträge.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Ziel der Einträge.
+     */
+    private final RollingFileWriter writer;
+
+    /**
+     * Der Schreib-Thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Wird beim Schließen gesetzt.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Konstruktor der Klasse RingBufferAuditSink mit den Standard Werten.
+     *
+     * @param file - Die aktuelle Datei des Audit-Logs.
+     * @throws IOException - Wenn die Datei nicht geöffnet werden kann.
+     */
+    public RingBufferAuditSink(final File file) throws IOException {
+        this(file, DEFAULT_CAPACITY, DEFAULT_MAX_FILE_SIZE,
+                DEFAULT_MAX_BACKUPS);
+    }// Ende RingBufferAuditSink(File)
+
+    /**
+     * Konstruktor der Klasse RingBufferAuditSink.
+     *
+     * @param file - Die aktuelle Datei des Audit-Logs.
+     * @param capacity - Größe des Puffers, wird auf eine Zweierpotenz
+     *            aufgerundet.
+     * @param maxFileSize - Maximale Größe einer Datei in Bytes.
+     * @param maxBackups - Anzahl der aufbewahrten alten Dateien.
+     * @throws IOException - Wenn die Datei nicht geöffnet werden kann.
+     */
+    public RingBufferAuditSink(final File file, final int capacity,
+            final long maxFileSize, final int maxBackups) throws IOException {
+        super();
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<AuditRecord>(size);
+        this.mask = size - 1;
+        this.writer = new RollingFileWriter(file, maxFileSize, maxBackups);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "jcyradm-audit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }// Ende RingBufferAuditSink(File, int, long, int)
+
+    @Override
+    public final boolean record(final AuditRecord record) {
+        while (true) {
+            long position = tail.get();
+            if (closed || position - head.get() > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.set((int) (position & mask), record);
+                return true;
+            }
+        }
+    }// Ende record(AuditRecord)
+
+    /**
+     * Liefert die Anzahl der verworfenen Einträge.
+     *
+     * @return long - Verworfene Einträge.
+     */
+    public final long getDropped() {
+        return dropped.get();
+    }// Ende getDropped()
+
+    /**
+     * Liefert die Anzahl der noch nicht geschriebenen Einträge.
+     *
+     * @return long - Einträge im Puffer.
+     */
+    public final long getPending() {
+        return tail.get() - head.get();
+    }// Ende getPending()
+
+    /**
+     * Schreibt alle Einträge im Puffer und schließt die Datei.
+     *
+     * @throws IOException - Wenn die Datei nicht geschlossen werden kann.
+     */
+    @Override
+    public final void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }// Ende close()
+
+    /**
+     * Hilfs-Methode des Schreib-Threads, liest gebündelt und schreibt.
+     */
+    private void drainLoop() {
+        SimpleDateFormat format =
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        StringBuilder text = new StringBuilder(BATCH * 256);
+        Date date = new Date();
+        while (true) {
+            boolean stopping = closed;
+            text.setLength(0);
+            int count = 0;
+            long position = head.get();
+            while (count < BATCH) {
+                int index = (int) (position & mask);
+                AuditRecord record = slots.get(index);
+                if (record == null) {
+                    /*
+                     * Leer oder Platz reserviert aber noch nicht belegt.
+                     */
+                    break;
+                }
+                slots.lazySet(index, null);
+                position++;
+                head.lazySet(position);
+                date.setTime(record.getTimestamp());
+                record.toJson(text, format.format(date));
+                text.append('\n');
+                count++;
+            }
+
+            if (count > 0) {
+                try {
+                    writer.write(ByteBuffer.wrap(
+                            text.toString().getBytes(UTF8)));
+                } catch (IOException e) {
+                    LOGGER.error("Audit-Log nicht geschrieben: "
+                            + e.getMessage());
+                }
+            } else if (stopping && tail.get() == head.get()) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+    }// Ende drainLoop()
+
+}// Ende class
@@ -0,0 +1,200 @@
+package de.tivsource.lib.jcyradm.audit;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Die Klasse RollingFileWriter schreibt in eine Datei die bei Erreichen
+ * einer Größe umbenannt wird, wie beim RollingFileAppender von log4j wird
+ * "audit.log" zu "audit.log.1", "audit.log.1" zu "audit.log.2" usw. Die
+ * älteste Datei über der maximalen Anzahl wird gelöscht. Gewechselt wird
+ * nur an Satzgrenzen (i.e. nach einem Zeilenumbruch), größer als die
+ * maximale Größe wird eine Datei nur durch einen einzelnen übergroßen Satz.
+ * Die Klasse ist nicht threadsicher und wird nur vom Schreib-Thread benutzt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class RollingFileWriter implements Closeable {
+
+    /**
+     * Die aktuelle Datei.
+     */
+    private final File file;
+
+    /**
+     * Maximale Größe einer Datei in Bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * Anzahl der aufbewahrten alten Dateien.
+     */
+    private final int maxBackups;
+
+    /**
+     * Kanal der aktuellen Datei.
+     */
+    private FileChannel channel;
+
+    /**
+     * Größe der aktuellen Datei.
+     */
+    private long size;
+
+    /**
+     * Konstruktor der Klasse RollingFileWriter, an eine bestehende Datei wird
+     * angehängt.
+     *
+     * @param logFile - Die aktuelle Datei.
+     * @param maxFileSize - Maximale Größe einer Datei in Bytes.
+     * @param maxBackupIndex - Anzahl der aufbewahrten alten Dateien.
+     * @throws IOException - Wenn die Datei nicht geöffnet werden kann.
+     */
+    public RollingFileWriter(final File logFile, final long maxFileSize,
+            final int maxBackupIndex) throws IOException {
+        super();
+        this.file = logFile;
+        this.maxSize = maxFileSize;
+        this.maxBackups = maxBackupIndex;
+        open();
+    }// Ende RollingFileWriter(File, long, int)
+
+    /**
+     * Schreibt den Inhalt des Puffers, eine Folge von Sätzen die jeweils mit
+     * einem Zeilenumbruch enden. Passt er nicht mehr in die aktuelle Datei
+     * werden die Sätze die noch passen geschrieben und dann gewechselt.
+     *
+     * @param buffer - Der Puffer, wird vollständig geschrieben.
+     * @throws IOException - Wenn nicht geschrieben werden kann.
+     */
+    public final void write(final ByteBuffer buffer) throws IOException {
+        while (buffer.remaining() > maxSize - size) {
+            int cut = lastRecordEnd(buffer,
+                    (int) Math.max(0, maxSize - size));
+            if (cut < 0 && size > 0) {
+                roll();
+                continue;
+            }
+            if (cut < 0) {
+                /*
+                 * Einzelner Satz größer als eine Datei, ganz schreiben.
+                 */
+                cut = firstRecordEnd(buffer);
+            }
+            ByteBuffer part = buffer.duplicate();
+            part.limit(cut);
+            writeFully(part);
+            buffer.position(cut);
+            if (buffer.hasRemaining()) {
+                roll();
+            }
+        }
+        writeFully(buffer);
+    }// Ende write(ByteBuffer)
+
+    /**
+     * Schreibt die aktuelle Datei auf die Platte.
+     *
+     * @throws IOException - Wenn nicht geschrieben werden kann.
+     */
+    public final void sync() throws IOException {
+        channel.force(false);
+    }// Ende sync()
+
+    @Override
+    public final void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }// Ende close()
+
+    /**
+     * Hilfs-Methode die den Puffer vollständig in die aktuelle Datei
+     * schreibt.
+     */
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }// Ende writeFully(ByteBuffer)
+
+    /**
+     * Hilfs-Methode die die Position hinter dem letzten Satzende innerhalb
+     * der ersten room Bytes liefert, -1 wenn dort kein Satz endet.
+     */
+    private static int lastRecordEnd(final ByteBuffer buffer,
+            final int room) {
+        int end = buffer.position() + Math.min(room, buffer.remaining());
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }// Ende lastRecordEnd(ByteBuffer, int)
+
+    /**
+     * Hilfs-Methode die die Position hinter dem ersten Satzende liefert,
+     * das Ende des Puffers wenn kein Satz endet.
+     */
+    private static int firstRecordEnd(final ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return buffer.limit();
+    }// Ende firstRecordEnd(ByteBuffer)
+
+    /**
+     * Hilfs-Methode die die aktuelle Datei öffnet.
+     */
+    private void open() throws IOException {
+        channel = new FileOutputStream(file, true).getChannel();
+        size = channel.size();
+    }// Ende open()
+
+    /**
+     * Hilfs-Methode die die Dateien weiterschiebt. Schlägt das fehl, wird
+     * die aktuelle Datei trotzdem wieder geöffnet und weiter beschrieben.
+     */
+    private void roll() throws IOException {
+        channel.force(false);
+        channel.close();
+        try {
+            File oldest = new File(file.getPath() + "." + maxBackups);
+            if (oldest.exists() && !oldest.delete()) {
+                throw new IOException("Cannot delete " + oldest);
+            }
+            for (int i = maxBackups - 1; i >= 1; i--) {
+                File source = new File(file.getPath() + "." + i);
+                if (source.exists()) {
+                    rename(source, new File(file.getPath() + "." + (i + 1)));
+                }
+            }
+            if (maxBackups > 0) {
+                rename(file, new File(file.getPath() + ".1"));
+            } else if (!file.delete()) {
+                throw new IOException("Cannot delete " + file);
+            }
+        } finally {
+            open();
+        }
+    }// Ende roll()
+
+    /**
+     * Hilfs-Methode die eine Datei umbenennt.
+     */
+    private static void rename(final File source, final File target)
+            throws IOException {
+        if (!source.renameTo(target)) {
+            throw new IOException("Cannot rename " + source + " to "
+                    + target);
+        }
+    }// Ende rename(File, File)
+
+}// Ende class
@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen für das Audit-Log der
+ * administrativen Änderungen.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.audit;
@@ -0,0 +1,320 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.exception.JournalMismatch;
+
+/**
+ * Die Klasse BulkJournal merkt sich welche Operationen eines Laufs
+ * erfolgreich abgeschlossen wurden. Die Datei ist eine Bitmap die in den
+ * Speicher eingeblendet wird, je Operation ein Bit an der Stelle ihrer
+ * laufenden Nummer. Setzen und Prüfen kosten damit einen Speicherzugriff,
+ * beim Neustart eines abgebrochenen Laufs werden die erledigten Operationen
+ * ohne Kommando an den Server übersprungen.
+ *
+ * <p>
+ * Gesetzte Bits überstehen einen Absturz der JVM, da sie im Page-Cache des
+ * Betriebssystems liegen. Gegen einen Absturz des Systems wird die Datei
+ * gebündelt mit force() geschrieben, nach einer Anzahl von Operationen oder
+ * nach einer Zeitspanne, je nachdem was zuerst eintritt.
+ * </p>
+ *
+ * <p>
+ * Die Bits gehören zu den Zeilennummern einer bestimmten Eingabe. Im Kopf
+ * steht deshalb ein Fingerabdruck der Eingabe-Datei (Größe und CRC32 des
+ * Inhalts), ein Journal wird nur mit derselben Eingabe fortgesetzt.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkJournal implements Closeable {
+
+    /**
+     * Statischer Logger der Klasse BulkJournal.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BulkJournal.class);
+
+    /**
+     * Kennung am Anfang der Datei ("JCYJ").
+     */
+    private static final int MAGIC = 0x4A43594A;
+
+    /**
+     * Version des Formats.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Größe des Kopfes in Bytes.
+     */
+    private static final int HEADER = 32;
+
+    /**
+     * Position der Größe der Eingabe im Kopf, -1 ohne Eingabe-Datei.
+     */
+    private static final int INPUT_SIZE = 8;
+
+    /**
+     * Position der CRC32 der Eingabe im Kopf.
+     */
+    private static final int INPUT_CRC = 16;
+
+    /**
+     * Größe des Puffers beim Lesen der Eingabe.
+     */
+    private static final int READ_BUFFER = 65536;
+
+    /**
+     * Die Datei wird in Schritten dieser Größe vergrößert (8M Operationen).
+     */
+    private static final int CHUNK = 1 << 20;
+
+    /**
+     * Standard Anzahl der Operationen zwischen zwei force() Aufrufen.
+     */
+    private static final int DEFAULT_SYNC_BATCH = 4096;
+
+    /**
+     * Standard Zeit in Millisekunden zwischen zwei force() Aufrufen.
+     */
+    private static final long DEFAULT_SYNC_INTERVAL = 1000L;
+
+    /**
+     * Die geöffnete Datei.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Kanal der Datei.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Eingeblendeter Bereich der Datei.
+     */
+    private MappedByteBuffer map;
+
+    /**
+     * Anzahl der gesetzten Bits.
+     */
+    private long done;
+
+    /**
+     * Seit dem letzten force() gesetzte Bits.
+     */
+    private int unsynced;
+
+    /**
+     * Zeitpunkt in Millisekunden des letzten force().
+     */
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * Anzahl der Operationen zwischen zwei force() Aufrufen.
+     */
+    private int syncBatch = DEFAULT_SYNC_BATCH;
+
+    /**
+     * Zeit in Millisekunden zwischen zwei force() Aufrufen.
+     */
+    private long syncInterval = DEFAULT_SYNC_INTERVAL;
+
+    /**
+     * Konstruktor der Klasse BulkJournal für eine Eingabe ohne Datei (i.e.
+     * stdin), öffnet ein bestehendes Journal oder legt ein neues an.
+     *
+     * @param journalFile - Die Datei des Journals.
+     * @throws IOException - Wenn die Datei nicht geöffnet werden kann oder
+     *             kein Journal ist, JournalMismatch wenn das Journal zu
+     *             einer Eingabe-Datei gehört.
+     */
+    public BulkJournal(final File journalFile) throws IOException {
+        this(journalFile, null);
+    }// Ende BulkJournal(File)
+
+    /**
+     * Konstruktor der Klasse BulkJournal, öffnet ein bestehendes Journal
+     * oder legt ein neues an. Die Eingabe wird dafür einmal ganz gelesen.
+     *
+     * @param journalFile - Die Datei des Journals.
+     * @param input - Die Eingabe-Datei des Laufs, null für stdin.
+     * @throws IOException - Wenn die Datei nicht geöffnet werden kann oder
+     *             kein Journal ist, JournalMismatch wenn das Journal zu
+     *             einer anderen Eingabe gehört.
+     */
+    public BulkJournal(final File journalFile, final File input)
+            throws IOException {
+        super();
+        long inputSize = -1L;
+        long inputCrc = 0L;
+        if (input != null) {
+            inputSize = input.length();
+            inputCrc = crc(input);
+        }
+        this.file = new RandomAccessFile(journalFile, "rw");
+        this.channel = file.getChannel();
+        long size = channel.size();
+        try {
+            if (size == 0) {
+                map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        HEADER + CHUNK);
+                map.putInt(0, MAGIC);
+                map.putInt(4, VERSION);
+                map.putLong(INPUT_SIZE, inputSize);
+                map.putLong(INPUT_CRC, inputCrc);
+            } else {
+                map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (size < HEADER || map.getInt(0) != MAGIC
+                        || map.getInt(4) != VERSION) {
+                    throw new IOException("Not a journal: " + journalFile);
+                }
+                if (map.getLong(INPUT_SIZE) != inputSize
+                        || map.getLong(INPUT_CRC) != inputCrc) {
+                    throw new JournalMismatch(journalFile.getPath());
+                }
+                if (input == null) {
+                    LOGGER.warn("Journal " + journalFile + " wird ohne "
+                            + "Eingabe-Datei fortgesetzt, die Eingabe muss "
+                            + "dieselbe sein.");
+                }
+                for (int i = HEADER; i + 8 <= size; i += 8) {
+                    done += Long.bitCount(map.getLong(i));
+                }
+                for (int i = (int) (size - (size - HEADER) % 8); i < size;
+                        i++) {
+                    done += Integer.bitCount(map.get(i) & 0xFF);
+                }
+                LOGGER.info("Journal " + journalFile + " mit " + done
+                        + " erledigten Operationen geöffnet.");
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }// Ende BulkJournal(File, File)
+
+    /**
+     * Prüft ob eine Operation bereits erledigt ist.
+     *
+     * @param index - Laufende Nummer der Operation.
+     * @return boolean - True wenn die Operation erledigt ist.
+     */
+    public final synchronized boolean isDone(final long index) {
+        long position = HEADER + (index >>> 3);
+        if (index < 0 || position >= map.capacity()) {
+            return false;
+        }
+        return (map.get((int) position) & (1 << (index & 7))) != 0;
+    }// Ende isDone(long)
+
+    /**
+     * Markiert eine Operation als erledigt.
+     *
+     * @param index - Laufende Nummer der Operation.
+     * @throws IOException - Wenn die Datei nicht vergrößert oder geschrieben
+     *             werden kann.
+     */
+    public final synchronized void markDone(final long index)
+            throws IOException {
+        long position = HEADER + (index >>> 3);
+        if (position >= map.capacity()) {
+            grow(position);
+        }
+        int bit = 1 << (index & 7);
+        byte current = map.get((int) position);
+        if ((current & bit) != 0) {
+            return;
+        }
+        map.put((int) position, (byte) (current | bit));
+        done++;
+        if (++unsynced >= syncBatch
+                || System.currentTimeMillis() - lastSync >= syncInterval) {
+            sync();
+        }
+    }// Ende markDone(long)
+
+    /**
+     * Schreibt alle gesetzten Bits auf die Platte.
+     */
+    public final synchronized void sync() {
+        map.force();
+        unsynced = 0;
+        lastSync = System.currentTimeMillis();
+    }// Ende sync()
+
+    /**
+     * Liefert die Anzahl der erledigten Operationen.
+     *
+     * @return long - Erledigte Operationen.
+     */
+    public final synchronized long getDoneCount() {
+        return done;
+    }// Ende getDoneCount()
+
+    /**
+     * Setzt nach wie vielen Operationen spätestens geschrieben wird.
+     *
+     * @param operations - Anzahl der Operationen.
+     */
+    public final synchronized void setSyncBatch(final int operations) {
+        this.syncBatch = Math.max(1, operations);
+    }// Ende setSyncBatch(int)
+
+    /**
+     * Setzt nach welcher Zeit spätestens geschrieben wird.
+     *
+     * @param millis - Zeit in Millisekunden.
+     */
+    public final synchronized void setSyncInterval(final long millis) {
+        this.syncInterval = millis;
+    }// Ende setSyncInterval(long)
+
+    @Override
+    public final synchronized void close() throws IOException {
+        sync();
+        file.close();
+    }// Ende close()
+
+    /**
+     * Hilfs-Methode die die CRC32 des Inhalts einer Datei berechnet.
+     */
+    private static long crc(final File input) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[READ_BUFFER];
+        InputStream in = new FileInputStream(input);
+        try {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }// Ende crc(File)
+
+    /**
+     * Hilfs-Methode die die Datei so vergrößert, dass die Position
+     * eingeblendet ist.
+     */
+    private void grow(final long position) throws IOException {
+        long size = HEADER + ((position - HEADER) / CHUNK + 1) * CHUNK;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal too large: " + size);
+        }
+        map.force();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }// Ende grow(long)
+
+}// Ende class
@@ -0,0 +1,20 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+/**
+ * Schnittstelle für Empfänger der Ergebnisse von Massen-Operationen. Die
+ * Methode wird aus den Arbeits-Threads des BulkRunners aufgerufen und muss
+ * deshalb threadsicher sein.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface BulkListener {
+
+    /**
+     * Wird aufgerufen wenn eine Operation abgeschlossen ist.
+     *
+     * @param result - Das Ergebnis der Operation.
+     */
+    void completed(BulkResult result);
+
+}// Ende interface
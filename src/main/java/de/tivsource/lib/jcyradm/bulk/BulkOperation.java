@@ -0,0 +1,148 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+
+/**
+ * Die Klasse BulkOperation ist eine einzelne Zeile einer Massen-Operation.
+ * Die Mailbox wird wie bei JCyrAdm ohne "user." Präfix angegeben.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class BulkOperation {
+
+    /**
+     * Laufende Nummer der Operation in der Eingabe, beginnt mit 0.
+     */
+    private final long index;
+
+    /**
+     * Art der Operation.
+     */
+    private final OperationType type;
+
+    /**
+     * Mailbox ohne "user." Präfix.
+     */
+    private final String mailbox;
+
+    /**
+     * Quota in KB, nur bei SETQUOTA.
+     */
+    private final long quota;
+
+    /**
+     * Benutzer, nur bei SETACL.
+     */
+    private final String identifier;
+
+    /**
+     * Rechte, nur bei SETACL.
+     */
+    private final String rights;
+
+    /**
+     * Konstruktor der Klasse BulkOperation.
+     *
+     * @param number - Laufende Nummer der Operation in der Eingabe.
+     * @param operationType - Art der Operation.
+     * @param mailboxName - Mailbox ohne "user." Präfix.
+     * @param quotaKb - Quota in KB, nur bei SETQUOTA.
+     * @param user - Benutzer, nur bei SETACL.
+     * @param acl - Rechte, nur bei SETACL.
+     */
+    public BulkOperation(final long number, final OperationType operationType,
+            final String mailboxName, final long quotaKb, final String user,
+            final String acl) {
+        super();
+        this.index = number;
+        this.type = operationType;
+        this.mailbox = mailboxName;
+        this.quota = quotaKb;
+        this.identifier = user;
+        this.rights = acl;
+    }// Ende BulkOperation(long, OperationType, String, long, String, String)
+
+    /**
+     * Erzeugt das Kommando der Operation.
+     *
+     * @param userPrefix - Präfix der Benutzer-Mailboxen (i.e. "user.").
+     * @return Command - Das Kommando.
+     */
+    public Command toCommand(final String userPrefix) {
+        String name = userPrefix + mailbox;
+        switch (type) {
+        case CREATE:
+            return Commands.create(name);
+        case DELETE:
+            return Commands.delete(name);
+        case SETQUOTA:
+            return Commands.setQuota(name, quota);
+        case SETACL:
+            return Commands.setAcl(name, identifier, rights);
+        default:
+            return Commands.getQuota(name);
+        }
+    }// Ende toCommand(String)
+
+    /**
+     * Liefert die laufende Nummer der Operation.
+     *
+     * @return long - Laufende Nummer, beginnt mit 0.
+     */
+    public long getIndex() {
+        return index;
+    }// Ende getIndex()
+
+    /**
+     * Liefert die Art der Operation.
+     *
+     * @return OperationType - Art der Operation.
+     */
+    public OperationType getType() {
+        return type;
+    }// Ende getType()
+
+    /**
+     * Liefert die Mailbox.
+     *
+     * @return String - Mailbox ohne "user." Präfix.
+     */
+    public String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert die Quota.
+     *
+     * @return long - Quota in KB.
+     */
+    public long getQuota() {
+        return quota;
+    }// Ende getQuota()
+
+    /**
+     * Liefert den Benutzer.
+     *
+     * @return String - Benutzer oder null.
+     */
+    public String getIdentifier() {
+        return identifier;
+    }// Ende getIdentifier()
+
+    /**
+     * Liefert die Rechte.
+     *
+     * @return String - Rechte oder null.
+     */
+    public String getRights() {
+        return rights;
+    }// Ende getRights()
+
+    @Override
+    public String toString() {
+        return type.name().toLowerCase() + " " + mailbox;
+    }// Ende toString()
+
+}// Ende class
@@ -0,0 +1,179 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Die Klasse BulkProgress zählt die abgeschlossenen Operationen eines Laufs
+ * und berechnet daraus Durchsatz und voraussichtliche Restlaufzeit.
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkProgress {
+
+    /**
+     * Nanosekunden je Sekunde.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Erfolgreiche Operationen.
+     */
+    private final AtomicLong succeeded = new AtomicLong();
+
+    /**
+     * Fehlgeschlagene Operationen.
+     */
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Übersprungene Operationen, i.e. laut Journal bereits erledigt.
+     */
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Startzeitpunkt in Nanosekunden.
+     */
+    private final long start = System.nanoTime();
+
+    /**
+     * Endzeitpunkt in Nanosekunden, 0 solange der Lauf nicht beendet ist.
+     */
+    private volatile long end;
+
+    /**
+     * Gesamtzahl der Operationen, -1 wenn unbekannt.
+     */
+    private volatile long total = -1;
+
+    /**
+     * Zählt ein Ergebnis.
+     *
+     * @param ok - True wenn die Operation erfolgreich war.
+     */
+    public final void count(final boolean ok) {
+        if (ok) {
+            succeeded.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+    }// Ende count(boolean)
+
+    /**
+     * Zählt eine übersprungene Operation.
+     */
+    public final void skip() {
+        skipped.incrementAndGet();
+    }// Ende skip()
+
+    /**
+     * Markiert das Ende des Laufs.
+     */
+    public final void finish() {
+        end = System.nanoTime();
+    }// Ende finish()
+
+    /**
+     * Setzt die Gesamtzahl der Operationen für die Restlaufzeit.
+     *
+     * @param operations - Gesamtzahl oder -1 wenn unbekannt.
+     */
+    public final void setTotal(final long operations) {
+        this.total = operations;
+    }// Ende setTotal(long)
+
+    /**
+     * Liefert die Anzahl der abgeschlossenen Operationen.
+     *
+     * @return long - Abgeschlossene Operationen ohne übersprungene.
+     */
+    public final long getCompleted() {
+        return succeeded.get() + failed.get();
+    }// Ende getCompleted()
+
+    /**
+     * Liefert die Anzahl der erfolgreichen Operationen.
+     *
+     * @return long - Erfolgreiche Operationen.
+     */
+    public final long getSucceeded() {
+        return succeeded.get();
+    }// Ende getSucceeded()
+
+    /**
+     * Liefert die Anzahl der fehlgeschlagenen Operationen.
+     *
+     * @return long - Fehlgeschlagene Operationen.
+     */
+    public final long getFailed() {
+        return failed.get();
+    }// Ende getFailed()
+
+    /**
+     * Liefert die Anzahl der übersprungenen Operationen.
+     *
+     * @return long - Übersprungene Operationen.
+     */
+    public final long getSkipped() {
+        return skipped.get();
+    }// Ende getSkipped()
+
+    /**
+     * Liefert die Laufzeit.
+     *
+     * @return double - Laufzeit in Sekunden.
+     */
+    public final double getElapsedSeconds() {
+        long now = end == 0 ? System.nanoTime() : end;
+        return (now - start) / NANOS_PER_SECOND;
+    }// Ende getElapsedSeconds()
+
+    /**
+     * Liefert den Durchsatz.
+     *
+     * @return double - Operationen je Sekunde.
+     */
+    public final double getRate() {
+        double elapsed = getElapsedSeconds();
+        return elapsed <= 0 ? 0.0 : getCompleted() / elapsed;
+    }// Ende getRate()
+
+    /**
+     * Liefert die voraussichtliche Restlaufzeit.
+     *
+     * @return long - Restlaufzeit in Sekunden, -1 wenn unbekannt.
+     */
+    public final long getEtaSeconds() {
+        double rate = getRate();
+        long remaining = total - getCompleted() - skipped.get();
+        if (total < 0 || rate <= 0) {
+            return -1;
+        }
+        return (long) Math.ceil(Math.max(0, remaining) / rate);
+    }// Ende getEtaSeconds()
+
+    @Override
+    public final String toString() {
+        StringBuilder text = new StringBuilder(96);
+        text.append(getCompleted());
+        if (total >= 0) {
+            text.append('/').append(total - skipped.get());
+        }
+        text.append(" ops, ").append(succeeded.get()).append(" ok, ")
+                .append(failed.get()).append(" failed");
+        if (skipped.get() > 0) {
+            text.append(", ").append(skipped.get()).append(" skipped");
+        }
+        text.append(", ").append(String.format("%.1f", getRate()))
+                .append(" ops/s, ")
+                .append(String.format("%.1f", getElapsedSeconds()))
+                .append(" s");
+        long eta = getEtaSeconds();
+        if (end == 0 && eta >= 0) {
+            text.append(", ETA ").append(eta / 60).append(':')
+                    .append(String.format("%02d", eta % 60));
+        }
+        return text.toString();
+    }// Ende toString()
+
+}// Ende class
@@ -0,0 +1,345 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.tivsource.lib.jcyradm.exception.NoValidOperation;
+
+/**
+ * Die Klasse BulkReader liest Massen-Operationen zeilenweise als CSV oder
+ * JSONL. Leere Zeilen und Zeilen die mit "#" beginnen werden übersprungen,
+ * eine Kopfzeile ("op,mailbox,...") ebenfalls. Die laufende Nummer einer
+ * Operation ist ihre Zeilennummer (beginnend mit 0), damit bleibt sie bei
+ * jedem Lauf über dieselbe Datei gleich.
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkReader {
+
+    /**
+     * Reader aus dem gelesen wird.
+     */
+    private final BufferedReader in;
+
+    /**
+     * Format der Eingabe.
+     */
+    private final InputFormat format;
+
+    /**
+     * Nummer der nächsten Zeile.
+     */
+    private long lineNumber;
+
+    /**
+     * Konstruktor der Klasse BulkReader.
+     *
+     * @param reader - Reader aus dem gelesen wird.
+     * @param inputFormat - Format der Eingabe.
+     */
+    public BulkReader(final BufferedReader reader,
+            final InputFormat inputFormat) {
+        super();
+        this.in = reader;
+        this.format = inputFormat;
+    }// Ende BulkReader(BufferedReader, InputFormat)
+
+    /**
+     * Liest die nächste Operation.
+     *
+     * @return BulkOperation - Die Operation oder null am Ende der Eingabe.
+     * @throws IOException - Wenn die Eingabe nicht gelesen werden kann.
+     * @throws NoValidOperation - Wenn die Zeile keine gültige Operation ist,
+     *             das Lesen kann danach mit der nächsten Zeile fortgesetzt
+     *             werden.
+     */
+    public final BulkOperation next() throws IOException, NoValidOperation {
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+            line = line.trim();
+            lineNumber++;
+        } while (line.isEmpty() || line.startsWith("#")
+                || (lineNumber == 1 && isHeader(line, format)));
+
+        long index = lineNumber - 1;
+        if (format == InputFormat.JSONL) {
+            return fromJson(index, line);
+        }
+        return fromCsv(index, line);
+    }// Ende next()
+
+    /**
+     * Liefert die Nummer der zuletzt gelesenen Zeile.
+     *
+     * @return long - Zeilennummer, beginnt mit 1.
+     */
+    public final long getLineNumber() {
+        return lineNumber;
+    }// Ende getLineNumber()
+
+    /**
+     * Hilfs-Methode die eine CSV Zeile in eine Operation umwandelt.
+     */
+    private BulkOperation fromCsv(final long index, final String line)
+            throws NoValidOperation {
+        List<String> fields = splitCsv(line);
+        OperationType type = OperationType.parse(fields.get(0).trim());
+        if (type == null) {
+            throw invalid("unknown operation " + fields.get(0));
+        }
+        String mailbox = field(fields, 1);
+        switch (type) {
+        case SETQUOTA:
+            return new BulkOperation(index, type, mailbox,
+                    toLong(field(fields, 2)), null, null);
+        case SETACL:
+            return new BulkOperation(index, type, mailbox, 0,
+                    field(fields, 2), field(fields, 3));
+        default:
+            return new BulkOperation(index, type, mailbox, 0, null, null);
+        }
+    }// Ende fromCsv(long, String)
+
+    /**
+     * Hilfs-Methode die eine JSON Zeile in eine Operation umwandelt.
+     */
+    private BulkOperation fromJson(final long index, final String line)
+            throws NoValidOperation {
+        Map<String, String> values = parseJson(line);
+        OperationType type = OperationType.parse(values.get("op"));
+        if (type == null) {
+            throw invalid("unknown operation " + values.get("op"));
+        }
+        String mailbox = required(values, "mailbox");
+        switch (type) {
+        case SETQUOTA:
+            return new BulkOperation(index, type, mailbox,
+                    toLong(required(values, "quota")), null, null);
+        case SETACL:
+            return new BulkOperation(index, type, mailbox, 0,
+                    required(values, "identifier"),
+                    required(values, "rights"));
+        default:
+            return new BulkOperation(index, type, mailbox, 0, null, null);
+        }
+    }// Ende fromJson(long, String)
+
+    /**
+     * Hilfs-Methode die ein Pflichtfeld einer CSV Zeile liefert.
+     */
+    private String field(final List<String> fields, final int position)
+            throws NoValidOperation {
+        if (fields.size() <= position || fields.get(position).isEmpty()) {
+            throw invalid("missing field " + (position + 1));
+        }
+        return fields.get(position);
+    }// Ende field(List<String>, int)
+
+    /**
+     * Hilfs-Methode die ein Pflichtfeld eines JSON Objekts liefert.
+     */
+    private String required(final Map<String, String> values,
+            final String key) throws NoValidOperation {
+        String value = values.get(key);
+        if (value == null || value.isEmpty()) {
+            throw invalid("missing " + key);
+        }
+        return value;
+    }// Ende required(Map<String, String>, String)
+
+    /**
+     * Hilfs-Methode die eine nicht negative Zahl liest, Zahlen außerhalb
+     * von long werden von parseLong abgelehnt.
+     */
+    private long toLong(final String value) throws NoValidOperation {
+        long number;
+        try {
+            number = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalid("not a number " + value);
+        }
+        if (number < 0) {
+            throw invalid("negative number " + value);
+        }
+        return number;
+    }// Ende toLong(String)
+
+    /**
+     * Hilfs-Methode die die Ausnahme mit der Zeilennummer erzeugt.
+     */
+    private NoValidOperation invalid(final String detail) {
+        return new NoValidOperation("line " + lineNumber + ": " + detail);
+    }// Ende invalid(String)
+
+    /**
+     * Prüft ob die erste Zeile einer Eingabe eine Kopfzeile ist, die nicht
+     * als Operation zählt.
+     *
+     * @param line - Erste Zeile der Eingabe ohne Leerzeichen am Rand.
+     * @param inputFormat - Format der Eingabe.
+     * @return boolean - True wenn die Zeile eine CSV Kopfzeile ist.
+     */
+    public static boolean isHeader(final String line,
+            final InputFormat inputFormat) {
+        return inputFormat == InputFormat.CSV
+                && (line.startsWith("op,") || line.startsWith("operation,"));
+    }// Ende isHeader(String, InputFormat)
+
+    /**
+     * Hilfs-Methode die eine CSV Zeile zerlegt, Felder in doppelten
+     * Anführungszeichen dürfen Kommas enthalten ("" steht für ").
+     */
+    private static List<String> splitCsv(final String line) {
+        List<String> fields = new ArrayList<String>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length()
+                        && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }// Ende splitCsv(String)
+
+    /**
+     * Hilfs-Methode die ein flaches JSON Objekt liest. Werte werden als
+     * String geliefert, verschachtelte Objekte und Arrays werden nicht
+     * unterstützt.
+     */
+    private Map<String, String> parseJson(final String line)
+            throws NoValidOperation {
+        Map<String, String> values = new HashMap<String, String>();
+        int[] pos = {skipSpace(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') {
+            return values;
+        }
+        while (true) {
+            String key = readString(line, pos);
+            expect(line, pos, ':');
+            String value;
+            if (peek(line, pos) == '"') {
+                value = readString(line, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && line.charAt(pos[0]) != ','
+                        && line.charAt(pos[0]) != '}') {
+                    pos[0]++;
+                }
+                value = line.substring(start, pos[0]).trim();
+                if ("null".equals(value)) {
+                    value = null;
+                }
+            }
+            values.put(key, value);
+            char c = peek(line, pos);
+            pos[0]++;
+            if (c == '}') {
+                return values;
+            }
+            if (c != ',') {
+                throw invalid("malformed json");
+            }
+        }
+    }// Ende parseJson(String)
+
+    /**
+     * Hilfs-Methode die einen JSON String liest.
+     */
+    private String readString(final String line, final int[] pos)
+            throws NoValidOperation {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+        while (pos[0] < line.length()) {
+            char c = line.charAt(pos[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\' && pos[0] < line.length()) {
+                c = line.charAt(pos[0]++);
+                switch (c) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (pos[0] + 4 > line.length()) {
+                        throw invalid("malformed json");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(
+                                line.substring(pos[0], pos[0] + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw invalid("malformed json");
+                    }
+                    pos[0] += 4;
+                    break;
+                default:
+                    value.append(c);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+        throw invalid("unterminated string");
+    }// Ende readString(String, int[])
+
+    /**
+     * Hilfs-Methode die ein bestimmtes Zeichen erwartet.
+     */
+    private void expect(final String line, final int[] pos, final char c)
+            throws NoValidOperation {
+        if (peek(line, pos) != c) {
+            throw invalid("expected " + c);
+        }
+        pos[0]++;
+    }// Ende expect(String, int[], char)
+
+    /**
+     * Hilfs-Methode die das nächste Zeichen nach Leerzeichen liefert.
+     */
+    private static char peek(final String line, final int[] pos) {
+        pos[0] = skipSpace(line, pos[0]);
+        return pos[0] < line.length() ? line.charAt(pos[0]) : 0;
+    }// Ende peek(String, int[])
+
+    /**
+     * Hilfs-Methode die Leerzeichen überspringt.
+     */
+    private static int skipSpace(final String line, final int from) {
+        int i = from;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i;
+    }// Ende skipSpace(String, int)
+
+}// Ende class
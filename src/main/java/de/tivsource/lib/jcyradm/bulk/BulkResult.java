@@ -0,0 +1,142 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+
+/**
+ * Die Klasse BulkResult ist das Ergebnis einer einzelnen Massen-Operation.
+ * Der Status ist die Antwort des Servers (OK, NO, BAD, BYE), ERR wenn die
+ * Operation gar nicht gesendet werden konnte (i.e. ungültige Zeile, keine
+ * Verbindung) oder SKIP wenn sie laut MailboxTree nichts ändern würde.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class BulkResult {
+
+    /**
+     * Status einer Operation die nicht gesendet werden konnte.
+     */
+    public static final String ERROR = "ERR";
+
+    /**
+     * Status einer Operation die laut MailboxTree nichts ändern würde und
+     * deshalb nicht gesendet wurde.
+     */
+    public static final String SKIPPED = "SKIP";
+
+    /**
+     * Laufende Nummer der Operation.
+     */
+    private final long index;
+
+    /**
+     * Die Operation, null wenn die Zeile nicht gelesen werden konnte.
+     */
+    private final BulkOperation operation;
+
+    /**
+     * Status der Operation.
+     */
+    private final String status;
+
+    /**
+     * Text der Antwort oder Fehlermeldung.
+     */
+    private final String text;
+
+    /**
+     * Abgefragte Quota, nur bei GETQUOTA.
+     */
+    private final Quota quota;
+
+    /**
+     * Laufzeit der Operation in Nanosekunden.
+     */
+    private final long latencyNanos;
+
+    /**
+     * Konstruktor der Klasse BulkResult.
+     *
+     * @param number - Laufende Nummer der Operation.
+     * @param bulkOperation - Die Operation oder null.
+     * @param responseStatus - Status der Operation.
+     * @param responseText - Text der Antwort oder Fehlermeldung.
+     * @param quotaValue - Abgefragte Quota oder null.
+     * @param latency - Laufzeit der Operation in Nanosekunden.
+     */
+    public BulkResult(final long number, final BulkOperation bulkOperation,
+            final String responseStatus, final String responseText,
+            final Quota quotaValue, final long latency) {
+        super();
+        this.index = number;
+        this.operation = bulkOperation;
+        this.status = responseStatus;
+        this.text = responseText;
+        this.quota = quotaValue;
+        this.latencyNanos = latency;
+    }// Ende BulkResult(long, BulkOperation, String, String, Quota, long)
+
+    /**
+     * Liefert ob die Operation erfolgreich war.
+     *
+     * @return boolean - True wenn der Server mit OK geantwortet hat.
+     */
+    public boolean isOk() {
+        return "OK".equals(status);
+    }// Ende isOk()
+
+    /**
+     * Liefert die laufende Nummer der Operation.
+     *
+     * @return long - Laufende Nummer.
+     */
+    public long getIndex() {
+        return index;
+    }// Ende getIndex()
+
+    /**
+     * Liefert die Operation.
+     *
+     * @return BulkOperation - Die Operation oder null.
+     */
+    public BulkOperation getOperation() {
+        return operation;
+    }// Ende getOperation()
+
+    /**
+     * Liefert den Status.
+     *
+     * @return String - OK, NO, BAD, BYE oder ERR.
+     */
+    public String getStatus() {
+        return status;
+    }// Ende getStatus()
+
+    /**
+     * Liefert den Text der Antwort.
+     *
+     * @return String - Text der Antwort oder Fehlermeldung.
+     */
+    public String getText() {
+        return text;
+    }// Ende getText()
+
+    /**
+     * Liefert die abgefragte Quota.
+     *
+     * @return Quota - Die Quota oder null.
+     */
+    public Quota getQuota() {
+        return quota;
+    }// Ende getQuota()
+
+    /**
+     * Liefert die Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }// Ende getLatencyNanos()
+
+}// Ende class
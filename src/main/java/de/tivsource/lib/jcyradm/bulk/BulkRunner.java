@@ -0,0 +1,606 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.audit.AuditAction;
+import de.tivsource.lib.jcyradm.audit.AuditRecord;
+import de.tivsource.lib.jcyradm.audit.AuditSink;
+import de.tivsource.lib.jcyradm.exception.NoValidOperation;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.mailbox.MailboxTree;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.placement.PartitionPlacement;
+import de.tivsource.lib.jcyradm.pool.AdaptiveLimiter;
+import de.tivsource.lib.jcyradm.pool.SessionFactory;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandListener;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse BulkRunner führt Massen-Operationen parallel über mehrere
+ * Verbindungen aus. Jede Verbindung gehört einem Arbeits-Thread, der die
+ * Operationen aus einer gemeinsamen Warteschlange nimmt und über eine
+ * Pipeline sendet. Die Ergebnisse gehen in der Reihenfolge ihres Abschlusses
+ * an den BulkListener. Mit einem BulkJournal werden erfolgreiche Operationen
+ * vermerkt und bei einem erneuten Lauf übersprungen.
+ *
+ * <p>
+ * Die Tiefe jeder Pipeline wird von einem eigenen AdaptiveLimiter anhand der
+ * Laufzeiten der Kommandos geregelt, die angegebene Tiefe ist dabei die
+ * obere Grenze. Mit setFixedDepth(true) bleibt die Tiefe fest.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkRunner {
+
+    /**
+     * Statischer Logger der Klasse BulkRunner.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BulkRunner.class);
+
+    /**
+     * Markiert das Ende der Warteschlange für einen Arbeits-Thread.
+     */
+    private static final BulkOperation END =
+            new BulkOperation(-1, null, null, 0, null, null);
+
+    /**
+     * Wartezeit beim Einreihen in Millisekunden, danach wird geprüft ob
+     * noch Arbeits-Threads laufen.
+     */
+    private static final long OFFER_MILLIS = 100;
+
+    /**
+     * Erzeugt die Verbindungen.
+     */
+    private final SessionFactory factory;
+
+    /**
+     * Anzahl der Verbindungen.
+     */
+    private final int connections;
+
+    /**
+     * Tiefe der Pipeline je Verbindung, bei geregelter Tiefe die obere
+     * Grenze.
+     */
+    private final int depth;
+
+    /**
+     * Wird gesetzt wenn die Tiefe nicht geregelt werden soll.
+     */
+    private boolean fixedDepth;
+
+    /**
+     * Prüft die Mailbox-Namen und liefert den Trenner.
+     */
+    private MailboxNameValidator validator = new MailboxNameValidator();
+
+    /**
+     * Begrenzt die Rate über alle Verbindungen, null wenn unbegrenzt.
+     */
+    private TokenBucket rateLimit;
+
+    /**
+     * Journal der erledigten Operationen, null wenn keins geführt wird.
+     */
+    private BulkJournal journal;
+
+    /**
+     * Empfänger der Audit-Einträge, null wenn keine geschrieben werden.
+     */
+    private AuditSink auditSink;
+
+    /**
+     * Administrator für die Audit-Einträge.
+     */
+    private String administrator;
+
+    /**
+     * Empfänger der Ergebnisse, null wenn nur gezählt wird.
+     */
+    private BulkListener listener;
+
+    /**
+     * Lokales Abbild der Mailbox-Namen, null wenn keines geführt wird.
+     */
+    private MailboxTree mailboxTree;
+
+    /**
+     * Wählt die Partition neuer Mailboxen, null für die Standard-Partition.
+     */
+    private PartitionPlacement placement;
+
+    /**
+     * Konstruktor der Klasse BulkRunner.
+     *
+     * @param sessionFactory - Erzeugt angemeldete Verbindungen.
+     * @param connectionCount - Anzahl der Verbindungen.
+     * @param pipelineDepth - Tiefe der Pipeline je Verbindung.
+     */
+    public BulkRunner(final SessionFactory sessionFactory,
+            final int connectionCount, final int pipelineDepth) {
+        super();
+        this.factory = sessionFactory;
+        this.connections = Math.max(1, connectionCount);
+        this.depth = Math.max(1, pipelineDepth);
+    }// Ende BulkRunner(SessionFactory, int, int)
+
+    /**
+     * Führt alle Operationen der Eingabe aus und kehrt zurück, wenn alle
+     * abgeschlossen sind.
+     *
+     * @param reader - Liefert die Operationen.
+     * @param progress - Zählt die Ergebnisse.
+     * @throws IOException - Wenn die Eingabe nicht gelesen werden kann.
+     * @throws InterruptedException - Wenn der Thread unterbrochen wurde.
+     */
+    public final void run(final BulkReader reader,
+            final BulkProgress progress)
+            throws IOException, InterruptedException {
+        Map<String, Boolean> planned = new HashMap<String, Boolean>();
+        BlockingQueue<BulkOperation> queue =
+                new ArrayBlockingQueue<BulkOperation>(connections * depth * 2);
+        Worker[] workers = new Worker[connections];
+        for (int i = 0; i < connections; i++) {
+            workers[i] = new Worker(queue, progress);
+            workers[i].setName("jcyradm-bulk-" + i);
+            workers[i].start();
+        }
+
+        try {
+            while (true) {
+                BulkOperation operation;
+                try {
+                    operation = reader.next();
+                } catch (NoValidOperation e) {
+                    report(progress, new BulkResult(reader.getLineNumber() - 1,
+                            null, BulkResult.ERROR, e.getMessage(), null, 0));
+                    continue;
+                }
+                if (operation == null) {
+                    break;
+                }
+                if (journal != null && journal.isDone(operation.getIndex())) {
+                    progress.skip();
+                    continue;
+                }
+                if (!validator.isValid(operation.getMailbox())) {
+                    report(progress, new BulkResult(operation.getIndex(),
+                            operation, BulkResult.ERROR,
+                            "No valid Mailbox Name.", null, 0));
+                    continue;
+                }
+                String skip = noOp(operation, planned);
+                if (skip != null) {
+                    progress.skip();
+                    if (listener != null) {
+                        listener.completed(new BulkResult(operation.getIndex(),
+                                operation, BulkResult.SKIPPED, skip, null, 0));
+                    }
+                    continue;
+                }
+                if (!enqueue(queue, operation, workers)) {
+                    throw new IOException("All bulk workers stopped");
+                }
+            }
+        } finally {
+            for (int i = 0; i < connections; i++) {
+                if (!enqueue(queue, END, workers)) {
+                    break;
+                }
+            }
+            for (Worker worker : workers) {
+                worker.join();
+            }
+            if (journal != null) {
+                journal.sync();
+            }
+            progress.finish();
+        }
+    }// Ende run(BulkReader, BulkProgress)
+
+    /**
+     * Setzt die Namensregeln des Servers.
+     *
+     * @param mailboxNameValidator - Prüft die Mailbox-Namen.
+     */
+    public final void setValidator(
+            final MailboxNameValidator mailboxNameValidator) {
+        this.validator = mailboxNameValidator;
+    }// Ende setValidator(MailboxNameValidator)
+
+    /**
+     * Setzt ob die Tiefe der Pipelines fest bleibt oder anhand der
+     * Laufzeiten geregelt wird.
+     *
+     * @param fixed - True für eine feste Tiefe, Standard ist false.
+     */
+    public final void setFixedDepth(final boolean fixed) {
+        this.fixedDepth = fixed;
+    }// Ende setFixedDepth(boolean)
+
+    /**
+     * Setzt die Begrenzung der Rate über alle Verbindungen.
+     *
+     * @param bucket - Die Begrenzung, null wenn unbegrenzt.
+     */
+    public final void setRateLimit(final TokenBucket bucket) {
+        this.rateLimit = bucket;
+    }// Ende setRateLimit(TokenBucket)
+
+    /**
+     * Setzt das Journal der erledigten Operationen.
+     *
+     * @param bulkJournal - Das Journal, null wenn keins geführt wird.
+     */
+    public final void setJournal(final BulkJournal bulkJournal) {
+        this.journal = bulkJournal;
+    }// Ende setJournal(BulkJournal)
+
+    /**
+     * Setzt den Empfänger für die Audit-Einträge der ändernden Operationen.
+     *
+     * @param sink - Empfänger der Einträge, null wenn keine geschrieben
+     *            werden sollen.
+     * @param admin - Administrator mit dem die Verbindungen angemeldet sind.
+     */
+    public final void setAuditSink(final AuditSink sink, final String admin) {
+        this.auditSink = sink;
+        this.administrator = admin;
+    }// Ende setAuditSink(AuditSink, String)
+
+    /**
+     * Setzt den Empfänger der Ergebnisse.
+     *
+     * @param bulkListener - Empfänger der Ergebnisse.
+     */
+    public final void setListener(final BulkListener bulkListener) {
+        this.listener = bulkListener;
+    }// Ende setListener(BulkListener)
+
+    /**
+     * Setzt das lokale Abbild der Mailbox-Namen. Anlagen bestehender und
+     * Löschungen fehlender Mailboxen werden damit ohne Kommando an den
+     * Server übersprungen, erfolgreiche Anlagen und Löschungen werden in das
+     * Abbild übernommen.
+     *
+     * @param tree - Das Abbild, null wenn keines geführt wird.
+     */
+    public final void setMailboxTree(final MailboxTree tree) {
+        this.mailboxTree = tree;
+    }// Ende setMailboxTree(MailboxTree)
+
+    /**
+     * Setzt die Verteilung neuer Mailboxen auf die Partitionen, die Anlagen
+     * werden dann mit der gewählten Partition gesendet.
+     *
+     * @param partitionPlacement - Die Verteilung, null für die
+     *            Standard-Partition des Servers.
+     */
+    public final void setPlacement(
+            final PartitionPlacement partitionPlacement) {
+        this.placement = partitionPlacement;
+    }// Ende setPlacement(PartitionPlacement)
+
+    /**
+     * Hilfs-Methode die prüft ob eine Operation laut Abbild nichts ändern
+     * würde und dann den Grund liefert. Anlagen und Löschungen die in diesem
+     * Lauf bereits eingereiht wurden, gehen dem Abbild vor.
+     */
+    private String noOp(final BulkOperation operation,
+            final Map<String, Boolean> planned) {
+        if (mailboxTree == null) {
+            return null;
+        }
+        OperationType type = operation.getType();
+        if (type != OperationType.CREATE && type != OperationType.DELETE) {
+            return null;
+        }
+        String name = "user" + validator.getSeparator()
+                + operation.getMailbox();
+        Boolean exists = planned.get(name);
+        if (exists == null) {
+            exists = Boolean.valueOf(mailboxTree.contains(name));
+        }
+        if (type == OperationType.CREATE && exists.booleanValue()) {
+            return "Mailbox already exists";
+        }
+        if (type == OperationType.DELETE && !exists.booleanValue()) {
+            return "Mailbox does not exist";
+        }
+        planned.put(name, Boolean.valueOf(type == OperationType.CREATE));
+        return null;
+    }// Ende noOp(BulkOperation, Map<String, Boolean>)
+
+    /**
+     * Hilfs-Methode die eine Operation einreiht. Ist die Warteschlange voll
+     * und läuft kein Arbeits-Thread mehr, wird nicht weiter gewartet.
+     */
+    private static boolean enqueue(final BlockingQueue<BulkOperation> queue,
+            final BulkOperation operation, final Worker[] workers)
+            throws InterruptedException {
+        while (!queue.offer(operation, OFFER_MILLIS, TimeUnit.MILLISECONDS)) {
+            boolean alive = false;
+            for (Worker worker : workers) {
+                alive |= worker.isAlive();
+            }
+            if (!alive) {
+                LOGGER.error("Alle Arbeits-Threads beendet.");
+                return false;
+            }
+        }
+        return true;
+    }// Ende enqueue(BlockingQueue<BulkOperation>, BulkOperation, Worker[])
+
+    /**
+     * Hilfs-Methode die ein Ergebnis zählt und weitergibt.
+     */
+    private void report(final BulkProgress progress,
+            final BulkResult result) {
+        progress.count(result.isOk());
+        if (journal != null && result.isOk()) {
+            try {
+                journal.markDone(result.getIndex());
+            } catch (IOException e) {
+                LOGGER.error("Journal nicht geschrieben: " + e.getMessage());
+            }
+        }
+        if (listener != null) {
+            listener.completed(result);
+        }
+    }// Ende report(BulkProgress, BulkResult)
+
+    /**
+     * Arbeits-Thread mit einer eigenen Verbindung.
+     */
+    private final class Worker extends Thread {
+
+        /**
+         * Gemeinsame Warteschlange der Operationen.
+         */
+        private final BlockingQueue<BulkOperation> queue;
+
+        /**
+         * Zählt die Ergebnisse.
+         */
+        private final BulkProgress progress;
+
+        /**
+         * Präfix der Benutzer-Mailboxen.
+         */
+        private final String userPrefix =
+                "user" + validator.getSeparator();
+
+        /**
+         * Aktuelle Verbindung, null wenn keine besteht.
+         */
+        private JCyrAdm session;
+
+        /**
+         * Pipeline der aktuellen Verbindung.
+         */
+        private Pipeline pipeline;
+
+        /**
+         * Regelt die Tiefe der Pipeline, null bei fester Tiefe. Bleibt über
+         * neue Verbindungen hinweg erhalten.
+         */
+        private final AdaptiveLimiter limiter =
+                fixedDepth ? null : new AdaptiveLimiter(depth, 1, depth);
+
+        /**
+         * Konstruktor der Klasse Worker.
+         */
+        private Worker(final BlockingQueue<BulkOperation> operations,
+                final BulkProgress bulkProgress) {
+            super();
+            this.queue = operations;
+            this.progress = bulkProgress;
+        }// Ende Worker(BlockingQueue<BulkOperation>, BulkProgress)
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    BulkOperation operation = queue.poll();
+                    if (operation == null) {
+                        /*
+                         * Nichts mehr eingereiht, solange Antworten abholen.
+                         */
+                        if (pipeline != null && pipeline.getInFlight() > 0) {
+                            try {
+                                pipeline.poll();
+                            } catch (IOException e) {
+                                close(e);
+                            }
+                            continue;
+                        }
+                        operation = queue.take();
+                    }
+                    if (operation == END) {
+                        break;
+                    }
+                    submit(operation);
+                }
+                if (pipeline != null) {
+                    pipeline.sync();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                close(e);
+            } catch (RuntimeException e) {
+                LOGGER.error("Arbeits-Thread abgebrochen: " + e.getMessage(),
+                        e);
+            } finally {
+                if (session != null) {
+                    factory.destroy(session);
+                }
+            }
+        }// Ende run()
+
+        /**
+         * Hilfs-Methode die eine Operation in die Pipeline einreiht.
+         */
+        private void submit(final BulkOperation operation) {
+            if (pipeline == null) {
+                try {
+                    session = factory.create();
+                } catch (Exception e) {
+                    LOGGER.warn("Verbindung fehlgeschlagen: " + e.getMessage());
+                    report(progress, new BulkResult(operation.getIndex(),
+                            operation, BulkResult.ERROR,
+                            "No connection: " + e.getMessage(), null, 0));
+                    return;
+                }
+                pipeline = session.pipeline();
+                pipeline.setDepth(depth);
+                pipeline.setDepthLimiter(limiter);
+                pipeline.setRateLimit(rateLimit);
+            }
+
+            Command command = null;
+            try {
+                if (placement != null
+                        && operation.getType() == OperationType.CREATE) {
+                    command = Commands.create(
+                            userPrefix + operation.getMailbox(),
+                            placement.choose());
+                } else {
+                    command = operation.toCommand(userPrefix);
+                }
+                command.setListener(new Completion(operation));
+                pipeline.submit(command);
+            } catch (IOException e) {
+                if (!command.isDone()) {
+                    report(progress, new BulkResult(operation.getIndex(),
+                            operation, BulkResult.ERROR, e.getMessage(), null,
+                            0));
+                }
+                close(e);
+            } catch (RuntimeException e) {
+                /*
+                 * Die Pipeline hat das Kommando verworfen, die Verbindung
+                 * bleibt brauchbar.
+                 */
+                LOGGER.warn("Operation nicht gesendet: " + e.getMessage());
+                if (command == null || !command.isDone()) {
+                    report(progress, new BulkResult(operation.getIndex(),
+                            operation, BulkResult.ERROR, e.getMessage(), null,
+                            0));
+                }
+            }
+        }// Ende submit(BulkOperation)
+
+        /**
+         * Hilfs-Methode die eine unterbrochene Verbindung verwirft, die
+         * nächste Operation baut eine neue auf.
+         */
+        private void close(final IOException cause) {
+            LOGGER.warn("Verbindung unterbrochen: " + cause.getMessage());
+            if (session != null) {
+                factory.destroy(session);
+            }
+            session = null;
+            pipeline = null;
+        }// Ende close(IOException)
+
+        /**
+         * Meldet das Ergebnis eines Kommandos.
+         */
+        private final class Completion implements CommandListener {
+
+            /**
+             * Die Operation des Kommandos.
+             */
+            private final BulkOperation operation;
+
+            /**
+             * Konstruktor der Klasse Completion.
+             */
+            private Completion(final BulkOperation bulkOperation) {
+                this.operation = bulkOperation;
+            }// Ende Completion(BulkOperation)
+
+            @Override
+            public void completed(final Command command) {
+                Quota quota = null;
+                if (operation.getType() == OperationType.GETQUOTA
+                        && command.isOk()) {
+                    for (String line : command.getUntagged()) {
+                        if (line.startsWith("* QUOTA ")) {
+                            quota = Quota.parse(operation.getMailbox(), line);
+                        }
+                    }
+                }
+                if (mailboxTree != null) {
+                    updateTree(command);
+                }
+                report(progress, new BulkResult(operation.getIndex(),
+                        operation, command.getStatus().name(),
+                        command.getText(), quota, command.getLatencyNanos()));
+                if (auditSink != null
+                        && operation.getType() != OperationType.GETQUOTA) {
+                    audit(command);
+                }
+            }// Ende completed(Command)
+
+            /**
+             * Hilfs-Methode die erfolgreiche Anlagen und Löschungen in das
+             * Abbild der Mailbox-Namen übernimmt.
+             */
+            private void updateTree(final Command command) {
+                String name = userPrefix + operation.getMailbox();
+                if (operation.getType() == OperationType.CREATE
+                        && (command.isOk() || command.getText()
+                                .startsWith("Mailbox already exists"))) {
+                    mailboxTree.add(name);
+                } else if (operation.getType() == OperationType.DELETE
+                        && command.isOk()) {
+                    mailboxTree.deleted(name);
+                }
+            }// Ende updateTree(Command)
+
+            /**
+             * Hilfs-Methode die den Audit-Eintrag des Kommandos erzeugt.
+             */
+            private void audit(final Command command) {
+                AuditAction action =
+                        AuditAction.valueOf(operation.getType().name());
+                String after = null;
+                if (action == AuditAction.CREATE) {
+                    after = operation.getMailbox();
+                } else if (action == AuditAction.SETQUOTA) {
+                    after = String.valueOf(operation.getQuota());
+                } else if (action == AuditAction.SETACL) {
+                    after = operation.getIdentifier() + " "
+                            + operation.getRights();
+                }
+                auditSink.record(new AuditRecord(System.currentTimeMillis(),
+                        administrator, session.getConnectedHost(), action,
+                        operation.getMailbox(),
+                        action == AuditAction.DELETE ? operation.getMailbox()
+                                : null,
+                        after, command.getStatus().name() + " "
+                                + command.getText(),
+                        command.getLatencyNanos()));
+            }// Ende audit(Command)
+
+        }// Ende class
+
+    }// Ende class
+
+}// Ende class
@@ -0,0 +1,23 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+/**
+ * Format der Eingabe einer Massen-Operation.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum InputFormat {
+
+    /**
+     * Eine Operation je Zeile, Felder durch Komma getrennt (i.e.
+     * "setquota,max,1024" oder "setacl,max,anyone,lrs").
+     */
+    CSV,
+
+    /**
+     * Ein JSON Objekt je Zeile (i.e.
+     * {"op":"setquota","mailbox":"max","quota":1024}).
+     */
+    JSONL;
+
+}// Ende enum
@@ -0,0 +1,51 @@
+package de.tivsource.lib.jcyradm.bulk;
+
+/**
+ * Art einer Massen-Operation.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum OperationType {
+
+    /**
+     * Mailbox anlegen.
+     */
+    CREATE,
+
+    /**
+     * Mailbox löschen.
+     */
+    DELETE,
+
+    /**
+     * Quota einer Mailbox setzen.
+     */
+    SETQUOTA,
+
+    /**
+     * Rechte eines Benutzers auf eine Mailbox setzen.
+     */
+    SETACL,
+
+    /**
+     * Quota einer Mailbox abfragen.
+     */
+    GETQUOTA;
+
+    /**
+     * Liefert die Art zu einem Namen ohne Beachtung der Groß/Kleinschreibung.
+     *
+     * @param name - Name der Operation (i.e. "create").
+     * @return OperationType - Die Art oder null wenn der Name unbekannt ist.
+     */
+    public static OperationType parse(final String name) {
+        for (OperationType type : values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        return null;
+    }// Ende parse(String)
+
+}// Ende enum
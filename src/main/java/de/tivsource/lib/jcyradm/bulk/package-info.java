@@ -0,0 +1,9 @@
+/**
+ * In diesem Paket befinden sich die Klassen für Massen-Operationen, i.e. das
+ * Einlesen der Operationen aus CSV oder JSONL und deren parallele Ausführung
+ * über mehrere Verbindungen.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.bulk;
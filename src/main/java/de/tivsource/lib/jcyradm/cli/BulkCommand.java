@@ -0,0 +1,432 @@
+package de.tivsource.lib.jcyradm.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.audit.RingBufferAuditSink;
+import de.tivsource.lib.jcyradm.bulk.BulkJournal;
+import de.tivsource.lib.jcyradm.bulk.BulkListener;
+import de.tivsource.lib.jcyradm.bulk.BulkOperation;
+import de.tivsource.lib.jcyradm.bulk.BulkProgress;
+import de.tivsource.lib.jcyradm.bulk.BulkReader;
+import de.tivsource.lib.jcyradm.bulk.BulkResult;
+import de.tivsource.lib.jcyradm.bulk.BulkRunner;
+import de.tivsource.lib.jcyradm.bulk.InputFormat;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.mailbox.MailboxTree;
+import de.tivsource.lib.jcyradm.placement.FileUsageSource;
+import de.tivsource.lib.jcyradm.placement.LeastUsedPolicy;
+import de.tivsource.lib.jcyradm.placement.PartitionPlacement;
+import de.tivsource.lib.jcyradm.placement.PlacementPolicy;
+import de.tivsource.lib.jcyradm.placement.RoundRobinPolicy;
+import de.tivsource.lib.jcyradm.placement.WeightedFreePolicy;
+import de.tivsource.lib.jcyradm.pool.DefaultSessionFactory;
+import de.tivsource.lib.jcyradm.pool.SessionFactory;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+
+/**
+ * Die Klasse BulkCommand ist das Kommando "jcyradm bulk". Es liest
+ * Operationen als CSV oder JSONL aus einer Datei oder von stdin, führt sie
+ * über mehrere Verbindungen mit Pipelining aus und schreibt je Operation
+ * eine Ergebniszeile nach stdout (Zeile, Status, Operation, Mailbox, Text,
+ * durch Tabulator getrennt). Fortschritt und Zusammenfassung gehen nach
+ * stderr. Mit einem Journal (-j) kann ein abgebrochener Lauf über dieselbe
+ * Eingabe fortgesetzt werden, erledigte Operationen werden übersprungen.
+ * Mit --mirror werden vorab alle Mailboxen der Benutzer gelistet, Anlagen
+ * bestehender und Löschungen fehlender Mailboxen werden dann übersprungen.
+ * Mit --usage werden neue Mailboxen anhand des Speichers der Partitionen
+ * verteilt, die Strategie wird mit --placement gewählt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkCommand {
+
+    /**
+     * Statischer Logger der Klasse BulkCommand.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BulkCommand.class);
+
+    /**
+     * Umgebungsvariable mit dem Passwort, wenn es nicht angegeben wurde.
+     */
+    private static final String PASSWORD_ENV = "JCYRADM_PASSWORD";
+
+    /**
+     * Standard Anzahl der Verbindungen.
+     */
+    private static final String DEFAULT_CONNECTIONS = "4";
+
+    /**
+     * Standard Tiefe der Pipeline.
+     */
+    private static final String DEFAULT_DEPTH = "32";
+
+    /**
+     * Größe des Puffers für stdout in Bytes.
+     */
+    private static final int OUTPUT_BUFFER = 65536;
+
+    /**
+     * Intervall in Millisekunden in dem stdout geleert wird.
+     */
+    private static final long FLUSH_INTERVAL = 1000L;
+
+    /**
+     * Anzahl der Intervalle zwischen zwei Fortschrittsmeldungen.
+     */
+    private static final int PROGRESS_TICKS = 5;
+
+    /**
+     * Führt das Kommando aus.
+     *
+     * @param args - Argumente des Kommandos.
+     * @return int - 0 wenn alle Operationen erfolgreich waren, 1 wenn
+     *         Operationen fehlgeschlagen sind, 2 bei falscher Benutzung.
+     */
+    public final int run(final String[] args) {
+        Options options = createOptions();
+        CommandLine line;
+        try {
+            line = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            usage(options);
+            return JCyrAdmCli.EXIT_USAGE;
+        }
+        if (line.hasOption("help") || !line.hasOption("user")) {
+            usage(options);
+            return JCyrAdmCli.EXIT_USAGE;
+        }
+
+        String password = line.getOptionValue("password",
+                System.getenv(PASSWORD_ENV));
+        if (password == null) {
+            System.err.println("password missing, use -w or "
+                    + PASSWORD_ENV);
+            return JCyrAdmCli.EXIT_USAGE;
+        }
+
+        try {
+            return execute(line, password);
+        } catch (NumberFormatException e) {
+            System.err.println("not a number: " + e.getMessage());
+            return JCyrAdmCli.EXIT_USAGE;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage(options);
+            return JCyrAdmCli.EXIT_USAGE;
+        } catch (IOException e) {
+            System.err.println("bulk failed: " + e.getMessage());
+            LOGGER.error("Fehler >| " + e.getMessage(), e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }// Ende run(String[])
+
+    /**
+     * Hilfs-Methode die den Lauf mit den gelesenen Optionen ausführt.
+     */
+    private int execute(final CommandLine line, final String password)
+            throws IOException, InterruptedException {
+        boolean unixHierarchySep = line.hasOption("unixhierarchysep");
+        boolean virtDomains = line.hasOption("virtdomains");
+        String port = line.getOptionValue("port");
+        DefaultSessionFactory factory = new DefaultSessionFactory(
+                Arrays.asList(line.getOptionValue("host", "localhost")
+                        .split(",")),
+                port == null ? null : Integer.valueOf(port),
+                line.hasOption("ssl"), line.getOptionValue("user"), password);
+        factory.setNamingRules(unixHierarchySep, virtDomains);
+
+        BulkRunner runner = new BulkRunner(factory,
+                Integer.parseInt(line.getOptionValue("connections",
+                        DEFAULT_CONNECTIONS)),
+                Integer.parseInt(line.getOptionValue("depth",
+                        DEFAULT_DEPTH)));
+        runner.setFixedDepth(line.hasOption("fixed-depth"));
+        MailboxNameValidator validator =
+                new MailboxNameValidator(unixHierarchySep, virtDomains);
+        runner.setValidator(validator);
+        if (line.hasOption("mirror")) {
+            runner.setMailboxTree(loadTree(factory, validator));
+        }
+        if (line.hasOption("usage")) {
+            runner.setPlacement(new PartitionPlacement(
+                    new FileUsageSource(new File(line.getOptionValue("usage"))),
+                    policy(line.getOptionValue("placement", "least-used"))));
+        }
+        if (line.hasOption("rate")) {
+            double rate = Double.parseDouble(line.getOptionValue("rate"));
+            runner.setRateLimit(new TokenBucket(rate, (int) Math.ceil(rate)));
+        }
+
+        String input = line.getOptionValue("input", "-");
+        InputFormat format = format(line.getOptionValue("format"), input);
+        final BulkProgress progress = new BulkProgress();
+        if (!"-".equals(input)) {
+            progress.setTotal(countOperations(input, format));
+        }
+
+        final PrintStream out = createOutput();
+        if (!line.hasOption("quiet")) {
+            runner.setListener(new BulkListener() {
+                @Override
+                public void completed(final BulkResult result) {
+                    String text = format(result);
+                    synchronized (out) {
+                        out.println(text);
+                    }
+                }
+            });
+        }
+
+        Timer timer = new Timer("jcyradm-bulk-progress", true);
+        timer.schedule(new TimerTask() {
+            private int ticks;
+
+            @Override
+            public void run() {
+                synchronized (out) {
+                    out.flush();
+                }
+                if (++ticks % PROGRESS_TICKS == 0) {
+                    System.err.println(progress);
+                }
+            }
+        }, FLUSH_INTERVAL, FLUSH_INTERVAL);
+
+        BulkJournal journal = null;
+        if (line.hasOption("journal")) {
+            journal = new BulkJournal(new File(line.getOptionValue("journal")),
+                    "-".equals(input) ? null : new File(input));
+            runner.setJournal(journal);
+        }
+
+        RingBufferAuditSink audit = null;
+        if (line.hasOption("audit")) {
+            audit = new RingBufferAuditSink(
+                    new File(line.getOptionValue("audit")));
+            runner.setAuditSink(audit, line.getOptionValue("user"));
+        }
+
+        InputStream stream = "-".equals(input) ? System.in
+                : new FileInputStream(input);
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(stream, "UTF-8"));
+            runner.run(new BulkReader(reader, format), progress);
+        } finally {
+            timer.cancel();
+            synchronized (out) {
+                out.flush();
+            }
+            stream.close();
+            if (journal != null) {
+                journal.close();
+            }
+            if (audit != null) {
+                audit.close();
+            }
+        }
+        System.err.println(progress);
+        return progress.getFailed() == 0 ? 0 : 1;
+    }// Ende execute(CommandLine, String)
+
+    /**
+     * Hilfs-Methode die das Abbild der Mailbox-Namen aller Benutzer lädt.
+     */
+    private static MailboxTree loadTree(final SessionFactory factory,
+            final MailboxNameValidator validator) throws IOException {
+        JCyrAdm session;
+        try {
+            session = factory.create();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("No connection: " + e.getMessage(), e);
+        }
+        try {
+            MailboxTree tree = new MailboxTree(validator);
+            int count = tree.load(session.pipeline(),
+                    "user" + validator.getSeparator() + "*");
+            System.err.println(count + " mailboxes listed");
+            return tree;
+        } finally {
+            factory.destroy(session);
+        }
+    }// Ende loadTree(SessionFactory, MailboxNameValidator)
+
+    /**
+     * Hilfs-Methode die die Ergebniszeile einer Operation erzeugt.
+     */
+    private static String format(final BulkResult result) {
+        StringBuilder text = new StringBuilder(80);
+        text.append(result.getIndex() + 1).append('\t')
+                .append(result.getStatus()).append('\t');
+        BulkOperation operation = result.getOperation();
+        if (operation == null) {
+            text.append("-\t-");
+        } else {
+            text.append(operation.getType().name().toLowerCase())
+                    .append('\t').append(operation.getMailbox());
+        }
+        text.append('\t');
+        if (result.getQuota() != null) {
+            text.append(result.getQuota().getUsed()).append(' ')
+                    .append(result.getQuota().getLimit());
+        } else if (result.getText() != null) {
+            text.append(result.getText());
+        }
+        return text.toString();
+    }// Ende format(BulkResult)
+
+    /**
+     * Hilfs-Methode die das Format aus der Option oder der Dateiendung
+     * bestimmt.
+     */
+    private static InputFormat format(final String option,
+            final String input) {
+        if (option != null) {
+            try {
+                return InputFormat.valueOf(option.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown format: "
+                        + option);
+            }
+        }
+        if (input.endsWith(".jsonl") || input.endsWith(".json")) {
+            return InputFormat.JSONL;
+        }
+        return InputFormat.CSV;
+    }// Ende format(String, String)
+
+    /**
+     * Hilfs-Methode die die Strategie der Verteilung zu ihrem Namen liefert.
+     */
+    private static PlacementPolicy policy(final String name) {
+        if ("least-used".equals(name)) {
+            return new LeastUsedPolicy();
+        } else if ("round-robin".equals(name)) {
+            return new RoundRobinPolicy();
+        } else if ("weighted".equals(name)) {
+            return new WeightedFreePolicy();
+        }
+        throw new IllegalArgumentException("Unknown placement: " + name);
+    }// Ende policy(String)
+
+    /**
+     * Hilfs-Methode die die Operationen einer Datei für die Restlaufzeit
+     * zählt, eine Kopfzeile zählt nicht mit.
+     */
+    private static long countOperations(final String input,
+            final InputFormat format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(input), "UTF-8"));
+        try {
+            long count = 0;
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                lineNumber++;
+                if (!line.isEmpty() && !line.startsWith("#")
+                        && !(lineNumber == 1
+                                && BulkReader.isHeader(line, format))) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }// Ende countOperations(String, InputFormat)
+
+    /**
+     * Hilfs-Methode die stdout gepuffert und in UTF-8 öffnet.
+     */
+    private static PrintStream createOutput()
+            throws UnsupportedEncodingException {
+        return new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER),
+                false, "UTF-8");
+    }// Ende createOutput()
+
+    /**
+     * Hilfs-Methode die die Optionen des Kommandos erzeugt.
+     */
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption("H", "host", true,
+                "comma separated backend hosts (default localhost)");
+        options.addOption("p", "port", true, "IMAP port");
+        options.addOption("s", "ssl", false, "connect with SSL");
+        options.addOption("u", "user", true, "admin user");
+        options.addOption("w", "password", true,
+                "admin password (default $" + PASSWORD_ENV + ")");
+        options.addOption("c", "connections", true,
+                "number of connections (default " + DEFAULT_CONNECTIONS
+                        + ")");
+        options.addOption("d", "depth", true,
+                "maximum pipelining depth per connection (default "
+                        + DEFAULT_DEPTH + ")");
+        options.addOption(null, "fixed-depth", false,
+                "keep the depth, do not adapt it to the latency");
+        options.addOption("r", "rate", true,
+                "maximum operations per second over all connections");
+        options.addOption("i", "input", true,
+                "input file, - for stdin (default)");
+        options.addOption("f", "format", true,
+                "csv or jsonl (default by file extension, csv for stdin)");
+        options.addOption("j", "journal", true,
+                "journal file, completed operations are skipped on rerun");
+        options.addOption("a", "audit", true,
+                "audit log file for all changes (rolled at 64 MB)");
+        options.addOption("m", "mirror", false,
+                "list all mailboxes first and skip no-op create/delete");
+        options.addOption("P", "placement", true,
+                "least-used, round-robin or weighted (default least-used)");
+        options.addOption(null, "usage", true,
+                "partition usage file, place new mailboxes by it");
+        options.addOption("q", "quiet", false, "print only the summary");
+        options.addOption(null, "unixhierarchysep", false,
+                "server runs with unixhierarchysep");
+        options.addOption(null, "virtdomains", false,
+                "server runs with virtdomains");
+        options.addOption(null, "help", false, "print this help");
+        return options;
+    }// Ende createOptions()
+
+    /**
+     * Hilfs-Methode die die Hilfe ausgibt.
+     */
+    private static void usage(final Options options) {
+        new HelpFormatter().printHelp("jcyradm bulk -u <admin> [options]",
+                "\nCSV: op,mailbox[,quota | ,identifier,rights]\n"
+                        + "JSONL: {\"op\":\"setquota\",\"mailbox\":\"max\","
+                        + "\"quota\":1024}\n\n", options, "");
+    }// Ende usage(Options)
+
+}// Ende class
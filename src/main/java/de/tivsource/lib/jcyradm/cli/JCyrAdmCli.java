@@ -0,0 +1,61 @@
+package de.tivsource.lib.jcyradm.cli;
+
+import java.util.Arrays;
+
+/**
+ * Die Klasse JCyrAdmCli ist der Einstieg des Kommandozeilen-Programms. Das
+ * erste Argument wählt das Kommando (i.e. "jcyradm bulk -u cyrus ..."), die
+ * übrigen Argumente gehen an das Kommando.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class JCyrAdmCli {
+
+    /**
+     * Rückgabewert bei falscher Benutzung.
+     */
+    static final int EXIT_USAGE = 2;
+
+    /**
+     * Privater Konstruktor, es gibt nur die main Methode.
+     */
+    private JCyrAdmCli() {
+        super();
+    }// Ende JCyrAdmCli()
+
+    /**
+     * Startet das Programm.
+     *
+     * @param args - Kommando und dessen Argumente.
+     */
+    public static void main(final String[] args) {
+        System.exit(run(args));
+    }// Ende main(String[])
+
+    /**
+     * Führt das Kommando aus.
+     *
+     * @param args - Kommando und dessen Argumente.
+     * @return int - Rückgabewert des Programms.
+     */
+    static int run(final String[] args) {
+        if (args.length > 0 && "bulk".equals(args[0])) {
+            return new BulkCommand().run(
+                    Arrays.copyOfRange(args, 1, args.length));
+        }
+        if (args.length > 0 && "load".equals(args[0])) {
+            return new LoadCommand().run(
+                    Arrays.copyOfRange(args, 1, args.length));
+        }
+        System.err.println("usage: jcyradm <command> [options]");
+        System.err.println();
+        System.err.println("commands:");
+        System.err.println("  bulk    run create, delete, setquota, setacl "
+                + "and getquota operations from CSV or JSONL");
+        System.err.println("  load    generate a mix of admin operations and "
+                + "report throughput and latency");
+        return EXIT_USAGE;
+    }// Ende run(String[])
+
+}// Ende class
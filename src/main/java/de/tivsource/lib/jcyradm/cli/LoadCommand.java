@@ -0,0 +1,312 @@
+package de.tivsource.lib.jcyradm.cli;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.load.LoadGenerator;
+import de.tivsource.lib.jcyradm.load.LoadListener;
+import de.tivsource.lib.jcyradm.load.LoadOperation;
+import de.tivsource.lib.jcyradm.load.LoadResult;
+import de.tivsource.lib.jcyradm.load.LoadSample;
+import de.tivsource.lib.jcyradm.load.OperationMix;
+import de.tivsource.lib.jcyradm.load.StandInServer;
+import de.tivsource.lib.jcyradm.pool.DefaultSessionFactory;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+
+/**
+ * Die Klasse LoadCommand ist das Kommando "jcyradm load". Es erzeugt für
+ * eine feste Dauer Last mit einer Mischung aus Anlagen, Löschungen, Quota-
+ * und Rechte-Operationen und schreibt je Intervall eine Zeile mit Durchsatz,
+ * Fehlern, Verbindungswechseln und Perzentilen der Laufzeit nach stdout
+ * (durch Tabulator getrennt). Die Zusammenfassung, auch je Operation, geht
+ * nach stderr. Mit --standin läuft die Last gegen einen lokalen Ersatz im
+ * Speicher statt gegen einen Cyrus Server.
+ *
+ * @author Marc Michele
+ *
+ */
+public class LoadCommand {
+
+    /**
+     * Statischer Logger der Klasse LoadCommand.
+     */
+    private static final Logger LOGGER = Logger.getLogger(LoadCommand.class);
+
+    /**
+     * Umgebungsvariable mit dem Passwort, wenn es nicht angegeben wurde.
+     */
+    private static final String PASSWORD_ENV = "JCYRADM_PASSWORD";
+
+    /**
+     * Standard Anzahl der Sitzungen.
+     */
+    private static final String DEFAULT_SESSIONS = "4";
+
+    /**
+     * Standard Tiefe der Pipeline.
+     */
+    private static final String DEFAULT_DEPTH = "1";
+
+    /**
+     * Standard Dauer in Sekunden.
+     */
+    private static final String DEFAULT_DURATION = "60";
+
+    /**
+     * Standard Länge eines Intervalls in Sekunden.
+     */
+    private static final String DEFAULT_INTERVAL = "1";
+
+    /**
+     * Standard Mischung der Operationen.
+     */
+    private static final String DEFAULT_MIX =
+            "getquota=6,setquota=1,getacl=1,setacl=1,create=1,delete=1";
+
+    /**
+     * Standard Präfix der Arbeitsmenge.
+     */
+    private static final String DEFAULT_PREFIX = "user.jcyradm-load";
+
+    /**
+     * Standard Größe der Arbeitsmenge.
+     */
+    private static final String DEFAULT_MAILBOXES = "100";
+
+    /**
+     * Administrator und Passwort für den lokalen Ersatz.
+     */
+    private static final String STANDIN_USER = "cyrus";
+
+    /**
+     * Millisekunden je Sekunde.
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * Nanosekunden je Millisekunde.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Führt das Kommando aus.
+     *
+     * @param args - Argumente des Kommandos.
+     * @return int - 0 wenn keine Fehler und Abbrüche gezählt wurden, 1
+     *         sonst, 2 bei falscher Benutzung.
+     */
+    public final int run(final String[] args) {
+        Options options = createOptions();
+        CommandLine line;
+        try {
+            line = new GnuParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            usage(options);
+            return JCyrAdmCli.EXIT_USAGE;
+        }
+        boolean standIn = line.hasOption("standin");
+        if (line.hasOption("help") || (!standIn && !line.hasOption("user"))) {
+            usage(options);
+            return JCyrAdmCli.EXIT_USAGE;
+        }
+
+        String password = line.getOptionValue("password",
+                System.getenv(PASSWORD_ENV));
+        if (password == null && standIn) {
+            password = STANDIN_USER;
+        }
+        if (password == null) {
+            System.err.println("password missing, use -w or "
+                    + PASSWORD_ENV);
+            return JCyrAdmCli.EXIT_USAGE;
+        }
+
+        try {
+            return execute(line, password);
+        } catch (IllegalArgumentException e) {
+            System.err.println("invalid option: " + e.getMessage());
+            return JCyrAdmCli.EXIT_USAGE;
+        } catch (IOException e) {
+            System.err.println("load failed: " + e.getMessage());
+            LOGGER.error("Fehler >| " + e.getMessage(), e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }// Ende run(String[])
+
+    /**
+     * Hilfs-Methode die den Lauf mit den gelesenen Optionen ausführt.
+     */
+    private int execute(final CommandLine line, final String password)
+            throws IOException, InterruptedException {
+        OperationMix mix = OperationMix.parse(
+                line.getOptionValue("mix", DEFAULT_MIX));
+        StandInServer standIn = null;
+        String host = line.getOptionValue("host", "localhost");
+        String port = line.getOptionValue("port");
+        if (line.hasOption("standin")) {
+            standIn = new StandInServer(port == null ? 0
+                    : Integer.parseInt(port));
+            standIn.setLatency(Long.parseLong(
+                    line.getOptionValue("latency", "0")));
+            standIn.start();
+            host = "127.0.0.1";
+            port = String.valueOf(standIn.getPort());
+            System.err.println("stand-in listening on port " + port);
+        }
+        try {
+            DefaultSessionFactory factory = new DefaultSessionFactory(
+                    Arrays.asList(host.split(",")),
+                    port == null ? null : Integer.valueOf(port),
+                    line.hasOption("ssl") && standIn == null,
+                    line.getOptionValue("user", STANDIN_USER), password);
+            factory.setNamingRules(line.hasOption("unixhierarchysep"),
+                    line.hasOption("virtdomains"));
+
+            LoadGenerator generator = new LoadGenerator(factory, mix);
+            generator.setSessions(Integer.parseInt(
+                    line.getOptionValue("sessions", DEFAULT_SESSIONS)));
+            generator.setDepth(Integer.parseInt(
+                    line.getOptionValue("depth", DEFAULT_DEPTH)));
+            generator.setDuration(seconds(
+                    line.getOptionValue("time", DEFAULT_DURATION)));
+            generator.setInterval(seconds(
+                    line.getOptionValue("interval", DEFAULT_INTERVAL)));
+            generator.setMailboxes(
+                    line.getOptionValue("prefix", DEFAULT_PREFIX),
+                    Integer.parseInt(line.getOptionValue("mailboxes",
+                            DEFAULT_MAILBOXES)));
+            generator.setPrepare(!line.hasOption("no-prepare"));
+            generator.setCleanup(!line.hasOption("keep"));
+            if (line.hasOption("rate")) {
+                double rate = Double.parseDouble(line.getOptionValue("rate"));
+                generator.setRateLimit(
+                        new TokenBucket(rate, (int) Math.ceil(rate)));
+            }
+
+            System.out.println("time\tops\tops/s\terrors\taborted\tconnects"
+                    + "\tdisconnects\tp50_ms\tp90_ms\tp99_ms\tmax_ms");
+            generator.setListener(new LoadListener() {
+                @Override
+                public void interval(final LoadSample sample) {
+                    System.out.println(format(sample));
+                }
+            });
+            System.err.println("running " + mix + " for "
+                    + line.getOptionValue("time", DEFAULT_DURATION) + " s");
+            LoadResult result = generator.run();
+
+            System.err.println("total: " + result.getTotal());
+            for (Map.Entry<LoadOperation, LoadSample> entry
+                    : result.getOperations().entrySet()) {
+                System.err.println(entry.getKey().name().toLowerCase()
+                        + ": " + entry.getValue());
+            }
+            LoadSample total = result.getTotal();
+            return total.getErrors() == 0 && total.getAborted() == 0
+                    && total.getConnectFailures() == 0 ? 0 : 1;
+        } finally {
+            if (standIn != null) {
+                standIn.close();
+            }
+        }
+    }// Ende execute(CommandLine, String)
+
+    /**
+     * Hilfs-Methode die die Zeile eines Intervalls erzeugt.
+     */
+    private static String format(final LoadSample sample) {
+        StringBuilder text = new StringBuilder(96);
+        text.append(String.format("%.1f", (sample.getOffset()
+                + sample.getMillis()) / MILLIS_PER_SECOND)).append('\t')
+                .append(sample.getOperations()).append('\t')
+                .append(String.format("%.1f", sample.getThroughput()))
+                .append('\t').append(sample.getErrors()).append('\t')
+                .append(sample.getAborted()).append('\t')
+                .append(sample.getConnects()).append('\t')
+                .append(sample.getDisconnects());
+        for (long nanos : new long[] {sample.getP50(), sample.getP90(),
+                sample.getP99(), sample.getMax()}) {
+            text.append('\t')
+                    .append(String.format("%.3f", nanos / NANOS_PER_MILLI));
+        }
+        return text.toString();
+    }// Ende format(LoadSample)
+
+    /**
+     * Hilfs-Methode die Sekunden in Millisekunden umrechnet.
+     */
+    private static long seconds(final String value) {
+        return (long) (Double.parseDouble(value) * MILLIS_PER_SECOND);
+    }// Ende seconds(String)
+
+    /**
+     * Hilfs-Methode die die Optionen des Kommandos erzeugt.
+     */
+    private static Options createOptions() {
+        Options options = new Options();
+        options.addOption("H", "host", true,
+                "comma separated backend hosts (default localhost)");
+        options.addOption("p", "port", true, "IMAP port");
+        options.addOption("s", "ssl", false, "connect with SSL");
+        options.addOption("u", "user", true, "admin user");
+        options.addOption("w", "password", true,
+                "admin password (default $" + PASSWORD_ENV + ")");
+        options.addOption("c", "sessions", true,
+                "number of sessions (default " + DEFAULT_SESSIONS + ")");
+        options.addOption("d", "depth", true,
+                "pipelining depth per session (default " + DEFAULT_DEPTH
+                        + ")");
+        options.addOption("r", "rate", true,
+                "fixed rate in operations per second over all sessions");
+        options.addOption("t", "time", true,
+                "duration in seconds, 0 until interrupted (default "
+                        + DEFAULT_DURATION + ")");
+        options.addOption("i", "interval", true,
+                "report interval in seconds (default " + DEFAULT_INTERVAL
+                        + ")");
+        options.addOption("m", "mix", true,
+                "operation weights (default " + DEFAULT_MIX + ")");
+        options.addOption("n", "mailboxes", true,
+                "size of the working set (default " + DEFAULT_MAILBOXES
+                        + ")");
+        options.addOption(null, "prefix", true,
+                "name prefix of the working set (default " + DEFAULT_PREFIX
+                        + ")");
+        options.addOption(null, "no-prepare", false,
+                "the working set exists, do not create it");
+        options.addOption(null, "keep", false,
+                "do not delete the created mailboxes");
+        options.addOption(null, "standin", false,
+                "run against a local in-memory stand-in server");
+        options.addOption(null, "latency", true,
+                "stand-in latency per command in microseconds");
+        options.addOption(null, "unixhierarchysep", false,
+                "server runs with unixhierarchysep");
+        options.addOption(null, "virtdomains", false,
+                "server runs with virtdomains");
+        options.addOption(null, "help", false, "print this help");
+        return options;
+    }// Ende createOptions()
+
+    /**
+     * Hilfs-Methode die die Hilfe ausgibt.
+     */
+    private static void usage(final Options options) {
+        new HelpFormatter().printHelp("jcyradm load -u <admin> [options]",
+                "\noperations: create, delete, getquota, setquota, getacl,"
+                        + " setacl\n\n", options, "");
+    }// Ende usage(Options)
+
+}// Ende class
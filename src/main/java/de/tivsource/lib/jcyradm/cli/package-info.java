@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen des Kommandozeilen-Programms
+ * "jcyradm".
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.cli;
@@ -0,0 +1,63 @@
+package de.tivsource.lib.jcyradm.exception;
+
+import java.io.IOException;
+
+/**
+ * Die Klasse CircuitOpen ist die Ausnahme die sofort geworfen wird, wenn der
+ * CircuitBreaker eines Hosts nach zu vielen Fehlern offen ist. Sie erweitert
+ * IOException, damit sie überall durchgereicht wird wo bisher ein Fehler beim
+ * Verbindungsaufbau gemeldet wird (i.e. JCyrAdm.connect()).
+ *
+ * @author Marc Michele
+ *
+ */
+public class CircuitOpen extends IOException {
+
+    /**
+     * SerialVersionUID der Klasse CircuitOpen.
+     */
+    private static final long serialVersionUID = 6158403377120496913L;
+
+    /**
+     * Host dessen Circuit offen ist.
+     */
+    private final String host;
+
+    /**
+     * Zeit in Millisekunden bis zum nächsten Versuch.
+     */
+    private final long retryAfter;
+
+    /**
+     * Konstruktor der Klasse CircuitOpen.
+     *
+     * @param hostname - Host dessen Circuit offen ist.
+     * @param retryAfterMillis - Zeit in Millisekunden bis zum nächsten
+     *            Versuch, 0 wenn gerade ein Versuch läuft.
+     */
+    public CircuitOpen(final String hostname, final long retryAfterMillis) {
+        super("Circuit open for " + hostname + ", retry in "
+                + retryAfterMillis + " ms");
+        this.host = hostname;
+        this.retryAfter = retryAfterMillis;
+    }
+
+    /**
+     * Liefert den Host.
+     *
+     * @return String - Host dessen Circuit offen ist.
+     */
+    public final String getHost() {
+        return host;
+    }
+
+    /**
+     * Liefert die Zeit bis zum nächsten Versuch.
+     *
+     * @return long - Millisekunden, 0 wenn gerade ein Versuch läuft.
+     */
+    public final long getRetryAfter() {
+        return retryAfter;
+    }
+
+} // Ende class
@@ -0,0 +1,33 @@
+package de.tivsource.lib.jcyradm.exception;
+
+import java.io.IOException;
+
+/**
+ * Die Klasse JournalMismatch ist die Ausnahme die geworfen wird, wenn ein
+ * BulkJournal mit einer anderen Eingabe fortgesetzt werden soll als der mit
+ * der es angelegt wurde. Die Bits des Journals gehören zu den Zeilen der
+ * alten Eingabe, Operationen würden sonst still übersprungen oder doppelt
+ * ausgeführt. Sie erweitert IOException wie alle Fehler beim Öffnen des
+ * Journals.
+ *
+ * @author Marc Michele
+ *
+ */
+public class JournalMismatch extends IOException {
+
+    /**
+     * SerialVersionUID der Klasse JournalMismatch.
+     */
+    private static final long serialVersionUID = -2794012230481716653L;
+
+    /**
+     * Konstruktor der Klasse JournalMismatch.
+     *
+     * @param journal - Name der Datei des Journals.
+     */
+    public JournalMismatch(final String journal) {
+        super("Journal " + journal + " belongs to a different input, "
+                + "delete it to start over");
+    }
+
+} // Ende class
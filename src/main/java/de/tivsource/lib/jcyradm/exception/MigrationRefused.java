@@ -0,0 +1,26 @@
+package de.tivsource.lib.jcyradm.exception;
+
+/**
+ * Die Klasse MigrationRefused ist die Ausnahme die geworfen wird, wenn der
+ * Server das Verschieben einer Mailbox (XFER oder RENAME) ablehnt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MigrationRefused extends Exception {
+
+    /**
+     * SerialVersionUID der Klasse MigrationRefused.
+     */
+    private static final long serialVersionUID = 4308161957207383410L;
+
+    /**
+     * Konstruktor der Klasse MigrationRefused.
+     *
+     * @param response - Antwort des Servers (i.e. "NO Mailbox is locked").
+     */
+    public MigrationRefused(final String response) {
+        super("Migration refused: " + response);
+    }
+
+} // Ende class
@@ -0,0 +1,24 @@
+package de.tivsource.lib.jcyradm.exception;
+
+/**
+ * Die Klasse NoSessionAvailable ist die Ausnahme die geworfen wird, wenn in
+ * der angegebenen Zeit keine Sitzung zum Backend frei geworden ist.
+ *
+ * @author Marc Michele
+ *
+ */
+public class NoSessionAvailable extends Exception {
+
+    /**
+     * SerialVersionUID der Klasse NoSessionAvailable.
+     */
+    private static final long serialVersionUID = 3720449712930356842L;
+
+    /**
+     * Konstruktor der Klasse NoSessionAvailable.
+     */
+    public NoSessionAvailable() {
+        super("No Session available.");
+    }
+
+} // Ende class
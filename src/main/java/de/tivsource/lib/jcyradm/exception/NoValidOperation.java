@@ -0,0 +1,27 @@
+package de.tivsource.lib.jcyradm.exception;
+
+/**
+ * Die Klasse NoValidOperation ist die Ausnahme die geworfen wird, wenn eine
+ * Zeile einer Massen-Operation nicht gelesen werden kann oder die Argumente
+ * einer Operation nicht gesendet werden können.
+ *
+ * @author Marc Michele
+ *
+ */
+public class NoValidOperation extends Exception {
+
+    /**
+     * SerialVersionUID der Klasse NoValidOperation.
+     */
+    private static final long serialVersionUID = -6126083510974414207L;
+
+    /**
+     * Konstruktor der Klasse NoValidOperation.
+     *
+     * @param detail - Beschreibung des Fehlers.
+     */
+    public NoValidOperation(final String detail) {
+        super("No valid Operation: " + detail);
+    }
+
+} // Ende class
@@ -0,0 +1,52 @@
+package de.tivsource.lib.jcyradm.exception;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Die Klasse ProvisionIncomplete ist die Ausnahme die geworfen wird, wenn
+ * die Verbindung abbricht während der Provisioner die Schritte einer
+ * fehlgeschlagenen Anlage zurücknimmt. Die bereits ausgeführten, aber nicht
+ * zurückgenommenen Schritte sind dann auf dem Server noch wirksam (i.e. eine
+ * geänderte Quota an einer bestehenden Mailbox) und werden mitgeliefert.
+ *
+ * @author Marc Michele
+ *
+ */
+public class ProvisionIncomplete extends IOException {
+
+    /**
+     * SerialVersionUID der Klasse ProvisionIncomplete.
+     */
+    private static final long serialVersionUID = 3310594720338471032L;
+
+    /**
+     * Die ausgeführten aber nicht zurückgenommenen Schritte.
+     */
+    private final List<String> applied;
+
+    /**
+     * Konstruktor der Klasse ProvisionIncomplete.
+     *
+     * @param appliedSteps - Ausgeführte aber nicht zurückgenommene Schritte
+     *            (i.e. "user.max: setquota 1024").
+     * @param cause - Der Fehler der Verbindung.
+     */
+    public ProvisionIncomplete(final List<String> appliedSteps,
+            final IOException cause) {
+        super("Rollback interrupted, still applied: " + appliedSteps, cause);
+        this.applied = new ArrayList<String>(appliedSteps);
+    }
+
+    /**
+     * Liefert die ausgeführten aber nicht zurückgenommenen Schritte.
+     *
+     * @return List<String> - Die Schritte mit Mailbox und Beschreibung.
+     */
+    public final List<String> getApplied() {
+        return Collections.unmodifiableList(applied);
+    }
+
+} // Ende class
@@ -0,0 +1,186 @@
+package de.tivsource.lib.jcyradm.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Die Klasse LatencyHistogram zählt Laufzeiten in logarithmisch-linearen
+ * Klassen: jede Zweierpotenz von Mikrosekunden ist in 32 gleich breite
+ * Klassen geteilt, der Fehler der Perzentile liegt damit unter 3 Prozent.
+ * Das Zählen ist ohne Sperren und kann aus beliebig vielen Threads
+ * gleichzeitig erfolgen, der Speicher ist unabhängig von der Anzahl der
+ * Werte.
+ *
+ * @author Marc Michele
+ *
+ */
+public class LatencyHistogram {
+
+    /**
+     * Anzahl der Bits der Unterteilung einer Zweierpotenz.
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * Anzahl der Klassen je Zweierpotenz.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Anzahl der Klassen, reicht für alle positiven long Werte.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Prozent als Faktor.
+     */
+    private static final double PERCENT = 100.0;
+
+    /**
+     * Anzahl der Werte je Klasse.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Anzahl aller Werte.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Größter Wert in Mikrosekunden.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Zählt eine Laufzeit.
+     *
+     * @param nanos - Die Laufzeit in Nanosekunden, negative Werte zählen
+     *            als 0.
+     */
+    public final void record(final long nanos) {
+        long micros = Math.max(0L, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(index(micros));
+        count.incrementAndGet();
+        raiseMax(micros);
+    }// Ende record(long)
+
+    /**
+     * Liefert die Anzahl der gezählten Laufzeiten.
+     *
+     * @return long - Anzahl der Werte.
+     */
+    public final long getCount() {
+        return count.get();
+    }// Ende getCount()
+
+    /**
+     * Liefert die größte gezählte Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden, 0 wenn nichts gezählt wurde.
+     */
+    public final long getMax() {
+        return TimeUnit.MICROSECONDS.toNanos(max.get());
+    }// Ende getMax()
+
+    /**
+     * Liefert ein Perzentil der gezählten Laufzeiten.
+     *
+     * @param percent - Das Perzentil, i.e. 99.9.
+     * @return long - Obere Grenze der Klasse in die das Perzentil fällt in
+     *         Nanosekunden, höchstens die größte Laufzeit, 0 wenn nichts
+     *         gezählt wurde.
+     */
+    public final long percentile(final double percent) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(
+                Math.min(PERCENT, percent) / PERCENT * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(
+                        Math.min(upper(i), max.get()));
+            }
+        }
+        return getMax();
+    }// Ende percentile(double)
+
+    /**
+     * Addiert die Werte eines anderen Histogramms.
+     *
+     * @param other - Das andere Histogramm, es bleibt unverändert.
+     */
+    public final void add(final LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = other.counts.get(i);
+            if (value != 0) {
+                counts.addAndGet(i, value);
+            }
+        }
+        count.addAndGet(other.count.get());
+        raiseMax(other.max.get());
+    }// Ende add(LatencyHistogram)
+
+    /**
+     * Verschiebt alle Werte in ein anderes Histogramm, dieses ist danach
+     * leer. Werte die währenddessen gezählt werden gehen nicht verloren,
+     * sondern landen hier oder im Ziel.
+     *
+     * @param target - Das Ziel.
+     */
+    public final void drainTo(final LatencyHistogram target) {
+        long moved = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                long value = counts.getAndSet(i, 0L);
+                target.counts.addAndGet(i, value);
+                moved += value;
+            }
+        }
+        count.addAndGet(-moved);
+        target.count.addAndGet(moved);
+        target.raiseMax(max.getAndSet(0L));
+    }// Ende drainTo(LatencyHistogram)
+
+    /**
+     * Hilfs-Methode die die Klasse eines Werts liefert.
+     */
+    private static int index(final long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }// Ende index(long)
+
+    /**
+     * Hilfs-Methode die den größten Wert einer Klasse liefert.
+     */
+    private static long upper(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }// Ende upper(int)
+
+    /**
+     * Hilfs-Methode die das Maximum anhebt.
+     */
+    private void raiseMax(final long micros) {
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }// Ende raiseMax(long)
+
+}// Ende class
@@ -0,0 +1,825 @@
+package de.tivsource.lib.jcyradm.load;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.pool.SessionFactory;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandListener;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.protocol.ResponseStatus;
+
+/**
+ * Die Klasse LoadGenerator erzeugt Last auf einem Cyrus Server. Jede Sitzung
+ * gehört einem Arbeits-Thread, der Operationen nach einer OperationMix
+ * auswählt und über eine Pipeline sendet. Die Laufzeiten werden je Operation
+ * in einem LatencyHistogram gezählt und am Ende jedes Intervalls als
+ * LoadSample ausgegeben.
+ *
+ * <p>
+ * Ohne Rate wartet jede Sitzung auf die Antworten bevor sie weitere
+ * Kommandos sendet (geschlossene Last). Mit einer Rate und einer Tiefe
+ * größer 1 wird die Last unabhängig von den Laufzeiten erzeugt, solange der
+ * Server mithält. Wird eine Verbindung unterbrochen, zählen ihre offenen
+ * Kommandos als abgebrochen und der Arbeits-Thread baut eine neue auf.
+ * </p>
+ *
+ * <p>
+ * Die Lese- und Rechte-Operationen laufen auf einer Arbeitsmenge von
+ * Mailboxen (Präfix und Nummer), die vor dem Lauf angelegt und danach wieder
+ * gelöscht wird. Angelegte Mailboxen tragen den Präfix, eine Kennung des
+ * Laufs und eine laufende Nummer und werden ebenfalls gelöscht.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class LoadGenerator {
+
+    /**
+     * Statischer Logger der Klasse LoadGenerator.
+     */
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class);
+
+    /**
+     * Standard Anzahl der Sitzungen.
+     */
+    private static final int DEFAULT_SESSIONS = 4;
+
+    /**
+     * Standard Dauer in Millisekunden.
+     */
+    private static final long DEFAULT_DURATION = 60000L;
+
+    /**
+     * Standard Länge eines Intervalls in Millisekunden.
+     */
+    private static final long DEFAULT_INTERVAL = 1000L;
+
+    /**
+     * Standard Präfix der Mailboxen.
+     */
+    private static final String DEFAULT_PREFIX = "user.jcyradm-load";
+
+    /**
+     * Standard Größe der Arbeitsmenge.
+     */
+    private static final int DEFAULT_MAILBOXES = 100;
+
+    /**
+     * Quota der Arbeitsmenge in KB.
+     */
+    private static final long QUOTA = 102400L;
+
+    /**
+     * Spanne der mit SETQUOTA gesetzten Werte in KB.
+     */
+    private static final int QUOTA_SPREAD = 1024;
+
+    /**
+     * Benutzer dessen Rechte mit SETACL gesetzt werden.
+     */
+    private static final String ACL_IDENTIFIER = "jcyradm-load";
+
+    /**
+     * Rechte die abwechselnd gesetzt werden.
+     */
+    private static final String[] RIGHTS = {"lrs", "lrswi"};
+
+    /**
+     * Wartezeit in Millisekunden nach einem fehlgeschlagenen
+     * Verbindungsaufbau.
+     */
+    private static final long RECONNECT_DELAY = 100L;
+
+    /**
+     * Tiefe der Pipeline beim Anlegen und Löschen der Arbeitsmenge.
+     */
+    private static final int SETUP_DEPTH = 64;
+
+    /**
+     * Index der Fehler in den Zählern.
+     */
+    private static final int ERRORS = 0;
+
+    /**
+     * Index der Abbrüche in den Zählern.
+     */
+    private static final int ABORTED = 1;
+
+    /**
+     * Index der Verbindungen in den Zählern.
+     */
+    private static final int CONNECTS = 2;
+
+    /**
+     * Index der Trennungen in den Zählern.
+     */
+    private static final int DISCONNECTS = 3;
+
+    /**
+     * Index der fehlgeschlagenen Verbindungen in den Zählern.
+     */
+    private static final int CONNECT_FAILURES = 4;
+
+    /**
+     * Anzahl der Zähler.
+     */
+    private static final int COUNTERS = 5;
+
+    /**
+     * Basis der Kennung des Laufs.
+     */
+    private static final int RUN_ID_RADIX = 36;
+
+    /**
+     * Erzeugt die Sitzungen.
+     */
+    private final SessionFactory factory;
+
+    /**
+     * Die Mischung der Operationen.
+     */
+    private final OperationMix mix;
+
+    /**
+     * Verbindungen, Trennungen und fehlgeschlagene Verbindungen des
+     * laufenden Intervalls.
+     */
+    private final AtomicLongArray connections = new AtomicLongArray(COUNTERS);
+
+    /**
+     * Zähler je Operation des laufenden Laufs.
+     */
+    private final Map<LoadOperation, Stats> stats =
+            new EnumMap<LoadOperation, Stats>(LoadOperation.class);
+
+    /**
+     * Von den Arbeits-Threads angelegte und nicht gelöschte Mailboxen.
+     */
+    private final Queue<String> leftovers = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * Anzahl der Sitzungen.
+     */
+    private int sessions = DEFAULT_SESSIONS;
+
+    /**
+     * Dauer in Millisekunden, 0 bis stop() aufgerufen wird.
+     */
+    private long duration = DEFAULT_DURATION;
+
+    /**
+     * Länge eines Intervalls in Millisekunden.
+     */
+    private long interval = DEFAULT_INTERVAL;
+
+    /**
+     * Tiefe der Pipeline je Sitzung.
+     */
+    private int depth = 1;
+
+    /**
+     * Begrenzt die Rate über alle Sitzungen, null wenn unbegrenzt.
+     */
+    private TokenBucket rateLimit;
+
+    /**
+     * Präfix der Mailboxen.
+     */
+    private String prefix = DEFAULT_PREFIX;
+
+    /**
+     * Größe der Arbeitsmenge.
+     */
+    private int mailboxes = DEFAULT_MAILBOXES;
+
+    /**
+     * Legt die Arbeitsmenge vor dem Lauf an.
+     */
+    private boolean prepare = true;
+
+    /**
+     * Löscht die angelegten Mailboxen nach dem Lauf.
+     */
+    private boolean cleanup = true;
+
+    /**
+     * Empfänger der Intervalle, null wenn keiner.
+     */
+    private LoadListener listener;
+
+    /**
+     * Wird beim Ende des Laufs geöffnet.
+     */
+    private volatile CountDownLatch stopSignal = new CountDownLatch(1);
+
+    /**
+     * True sobald die Arbeits-Threads aufhören sollen.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Konstruktor der Klasse LoadGenerator.
+     *
+     * @param sessionFactory - Erzeugt angemeldete Sitzungen.
+     * @param operationMix - Die Mischung der Operationen.
+     */
+    public LoadGenerator(final SessionFactory sessionFactory,
+            final OperationMix operationMix) {
+        super();
+        this.factory = sessionFactory;
+        this.mix = operationMix;
+    }// Ende LoadGenerator(SessionFactory, OperationMix)
+
+    /**
+     * Führt einen Lauf aus und kehrt zurück wenn die Dauer abgelaufen ist
+     * oder stop() aufgerufen wurde. Ein LoadGenerator führt nur einen Lauf
+     * zur Zeit aus.
+     *
+     * @return LoadResult - Die Messwerte des Laufs.
+     * @throws IOException - Wenn die Arbeitsmenge nicht angelegt werden
+     *             konnte.
+     * @throws InterruptedException - Wenn der Thread unterbrochen wurde.
+     */
+    public final LoadResult run() throws IOException, InterruptedException {
+        stats.clear();
+        for (LoadOperation operation : LoadOperation.values()) {
+            if (mix.getWeight(operation) > 0
+                    || (operation == LoadOperation.CREATE
+                            && mix.getWeight(LoadOperation.DELETE) > 0)) {
+                stats.put(operation, new Stats());
+            }
+        }
+        for (int i = 0; i < COUNTERS; i++) {
+            connections.set(i, 0L);
+        }
+        leftovers.clear();
+        stopSignal = new CountDownLatch(1);
+        stopped = false;
+
+        List<String> prepared = new ArrayList<String>();
+        if (prepare) {
+            prepare(prepared);
+        }
+
+        String runId = Long.toString(System.currentTimeMillis(),
+                RUN_ID_RADIX);
+        Worker[] workers = new Worker[sessions];
+        List<LoadSample> intervals = new ArrayList<LoadSample>();
+        LatencyHistogram total = new LatencyHistogram();
+        long[] totalCounters = new long[COUNTERS];
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(duration);
+        for (int i = 0; i < sessions; i++) {
+            workers[i] = new Worker(prefix + "-" + runId + "-" + i + "-");
+            workers[i].setName("jcyradm-load-" + i);
+            workers[i].start();
+        }
+
+        long tickStart = start;
+        try {
+            while (true) {
+                long end = tickStart + intervalNanos;
+                boolean last = duration > 0 && end - deadline >= 0;
+                if (last) {
+                    end = deadline;
+                }
+                last |= stopSignal.await(end - System.nanoTime(),
+                        TimeUnit.NANOSECONDS);
+                if (last) {
+                    // Die letzten Antworten gehören noch zum Intervall
+                    stop();
+                    join(workers);
+                }
+                long now = System.nanoTime();
+                LoadSample sample = sample(tickStart, now, start, total,
+                        totalCounters);
+                intervals.add(sample);
+                if (listener != null) {
+                    listener.interval(sample);
+                }
+                tickStart = now;
+                if (last) {
+                    break;
+                }
+            }
+        } finally {
+            stop();
+            join(workers);
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(tickStart - start);
+        Map<LoadOperation, LoadSample> operations =
+                new EnumMap<LoadOperation, LoadSample>(LoadOperation.class);
+        for (Map.Entry<LoadOperation, Stats> entry : stats.entrySet()) {
+            operations.put(entry.getKey(), new LoadSample(0L, millis,
+                    entry.getValue().total, entry.getValue().totalCounters));
+        }
+        LoadResult result = new LoadResult(intervals,
+                new LoadSample(0L, millis, total, totalCounters), operations);
+
+        if (cleanup) {
+            prepared.addAll(leftovers);
+            cleanup(prepared);
+        }
+        return result;
+    }// Ende run()
+
+    /**
+     * Beendet einen laufenden Lauf, run() kehrt zurück sobald die offenen
+     * Kommandos beantwortet sind.
+     */
+    public final void stop() {
+        stopped = true;
+        stopSignal.countDown();
+    }// Ende stop()
+
+    /**
+     * Setzt die Anzahl der Sitzungen.
+     *
+     * @param count - Anzahl der Sitzungen, mindestens 1.
+     */
+    public final void setSessions(final int count) {
+        this.sessions = Math.max(1, count);
+    }// Ende setSessions(int)
+
+    /**
+     * Setzt die Dauer des Laufs.
+     *
+     * @param millis - Dauer in Millisekunden, 0 bis stop() aufgerufen wird.
+     */
+    public final void setDuration(final long millis) {
+        this.duration = Math.max(0L, millis);
+    }// Ende setDuration(long)
+
+    /**
+     * Setzt die Länge der Intervalle.
+     *
+     * @param millis - Länge in Millisekunden, mindestens 1.
+     */
+    public final void setInterval(final long millis) {
+        this.interval = Math.max(1L, millis);
+    }// Ende setInterval(long)
+
+    /**
+     * Setzt die Tiefe der Pipeline je Sitzung.
+     *
+     * @param pipelineDepth - Anzahl der gleichzeitig offenen Kommandos je
+     *            Sitzung, mindestens 1.
+     */
+    public final void setDepth(final int pipelineDepth) {
+        this.depth = Math.max(1, pipelineDepth);
+    }// Ende setDepth(int)
+
+    /**
+     * Setzt die Begrenzung der Rate über alle Sitzungen.
+     *
+     * @param bucket - Die Begrenzung, null wenn unbegrenzt.
+     */
+    public final void setRateLimit(final TokenBucket bucket) {
+        this.rateLimit = bucket;
+    }// Ende setRateLimit(TokenBucket)
+
+    /**
+     * Setzt die Arbeitsmenge.
+     *
+     * @param namePrefix - Präfix der Mailboxen, i.e. "user.load", die
+     *            Mailboxen heißen dann "user.load0" bis "user.load99".
+     * @param count - Anzahl der Mailboxen, mindestens 1.
+     */
+    public final void setMailboxes(final String namePrefix, final int count) {
+        this.prefix = namePrefix;
+        this.mailboxes = Math.max(1, count);
+    }// Ende setMailboxes(String, int)
+
+    /**
+     * Legt fest ob die Arbeitsmenge vor dem Lauf angelegt wird.
+     *
+     * @param create - False wenn die Mailboxen schon bestehen.
+     */
+    public final void setPrepare(final boolean create) {
+        this.prepare = create;
+    }// Ende setPrepare(boolean)
+
+    /**
+     * Legt fest ob die angelegten Mailboxen nach dem Lauf gelöscht werden.
+     *
+     * @param delete - False um sie zu behalten.
+     */
+    public final void setCleanup(final boolean delete) {
+        this.cleanup = delete;
+    }// Ende setCleanup(boolean)
+
+    /**
+     * Setzt den Empfänger der Intervalle.
+     *
+     * @param loadListener - Der Empfänger, null wenn keiner.
+     */
+    public final void setListener(final LoadListener loadListener) {
+        this.listener = loadListener;
+    }// Ende setListener(LoadListener)
+
+    /**
+     * Hilfs-Methode die die Arbeitsmenge anlegt und ihre Quota setzt.
+     * Bestehende Mailboxen werden benutzt aber nicht in die Liste der zu
+     * löschenden aufgenommen.
+     */
+    private void prepare(final List<String> prepared) throws IOException {
+        JCyrAdm session = open();
+        try {
+            Pipeline pipeline = session.pipeline();
+            pipeline.setDepth(SETUP_DEPTH);
+            List<Command> quotas = new ArrayList<Command>(mailboxes);
+            for (int i = 0; i < mailboxes; i++) {
+                final String name = prefix + i;
+                Command create = Commands.create(name);
+                create.setListener(new CommandListener() {
+                    @Override
+                    public void completed(final Command command) {
+                        if (command.isOk()) {
+                            prepared.add(name);
+                        }
+                    }
+                });
+                pipeline.submit(create);
+                Command quota = Commands.setQuota(name, QUOTA);
+                quotas.add(quota);
+                pipeline.submit(quota);
+            }
+            pipeline.sync();
+            for (Command quota : quotas) {
+                if (!quota.isOk()) {
+                    throw new IOException("Prepare failed: "
+                            + quota.getStatus() + " " + quota.getText());
+                }
+            }
+            LOGGER.info(mailboxes + " Mailboxen vorbereitet, "
+                    + prepared.size() + " neu angelegt");
+        } finally {
+            factory.destroy(session);
+        }
+    }// Ende prepare(List<String>)
+
+    /**
+     * Hilfs-Methode die die angelegten Mailboxen löscht, Fehler werden nur
+     * protokolliert.
+     */
+    private void cleanup(final List<String> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        try {
+            JCyrAdm session = open();
+            try {
+                Pipeline pipeline = session.pipeline();
+                pipeline.setDepth(SETUP_DEPTH);
+                for (String name : names) {
+                    pipeline.submit(Commands.delete(name));
+                }
+                pipeline.sync();
+            } finally {
+                factory.destroy(session);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Aufräumen fehlgeschlagen: " + e.getMessage());
+        }
+    }// Ende cleanup(List<String>)
+
+    /**
+     * Hilfs-Methode die eine Sitzung für die Vorbereitung öffnet.
+     */
+    private JCyrAdm open() throws IOException {
+        try {
+            return factory.create();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("No connection: " + e.getMessage(), e);
+        }
+    }// Ende open()
+
+    /**
+     * Hilfs-Methode die die Messwerte eines Intervalls einsammelt und zu den
+     * Summen addiert.
+     */
+    private LoadSample sample(final long from, final long to, final long start,
+            final LatencyHistogram total, final long[] totalCounters) {
+        LatencyHistogram latencies = new LatencyHistogram();
+        long[] counters = new long[COUNTERS];
+        for (Stats operation : stats.values()) {
+            LatencyHistogram part = new LatencyHistogram();
+            operation.current.drainTo(part);
+            long errors = operation.errors.getAndSet(0L);
+            long aborted = operation.aborted.getAndSet(0L);
+            operation.total.add(part);
+            operation.totalCounters[ERRORS] += errors;
+            operation.totalCounters[ABORTED] += aborted;
+            latencies.add(part);
+            counters[ERRORS] += errors;
+            counters[ABORTED] += aborted;
+        }
+        for (int i = CONNECTS; i < COUNTERS; i++) {
+            counters[i] = connections.getAndSet(i, 0L);
+        }
+        total.add(latencies);
+        for (int i = 0; i < COUNTERS; i++) {
+            totalCounters[i] += counters[i];
+        }
+        return new LoadSample(TimeUnit.NANOSECONDS.toMillis(from - start),
+                TimeUnit.NANOSECONDS.toMillis(to - from), latencies,
+                counters);
+    }// Ende sample(long, long, long, LatencyHistogram, long[])
+
+    /**
+     * Hilfs-Methode die auf das Ende der Arbeits-Threads wartet.
+     */
+    private static void join(final Worker[] workers)
+            throws InterruptedException {
+        for (Worker worker : workers) {
+            worker.join();
+        }
+    }// Ende join(Worker[])
+
+    /**
+     * Zähler einer Operation.
+     */
+    private static final class Stats {
+
+        /**
+         * Laufzeiten des laufenden Intervalls.
+         */
+        private final LatencyHistogram current = new LatencyHistogram();
+
+        /**
+         * Fehler des laufenden Intervalls.
+         */
+        private final AtomicLong errors = new AtomicLong();
+
+        /**
+         * Abbrüche des laufenden Intervalls.
+         */
+        private final AtomicLong aborted = new AtomicLong();
+
+        /**
+         * Laufzeiten der abgeschlossenen Intervalle.
+         */
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        /**
+         * Zähler der abgeschlossenen Intervalle.
+         */
+        private final long[] totalCounters = new long[COUNTERS];
+
+    }// Ende class Stats
+
+    /**
+     * Zählt die Antwort eines Kommandos und merkt sich angelegte
+     * Mailboxen für spätere Löschungen.
+     */
+    private static final class Completion implements CommandListener {
+
+        /**
+         * Zähler der Operation.
+         */
+        private final Stats operation;
+
+        /**
+         * Angelegte Mailboxen des Arbeits-Threads.
+         */
+        private final ArrayDeque<String> created;
+
+        /**
+         * Angelegte oder gelöschte Mailbox, sonst null.
+         */
+        private final String mailbox;
+
+        /**
+         * True wenn die Mailbox angelegt wird.
+         */
+        private final boolean create;
+
+        /**
+         * Konstruktor der Klasse Completion.
+         */
+        private Completion(final Stats stats, final ArrayDeque<String> names,
+                final String name, final boolean creating) {
+            this.operation = stats;
+            this.created = names;
+            this.mailbox = name;
+            this.create = creating;
+        }
+
+        @Override
+        public void completed(final Command command) {
+            if (command.getStatus() == ResponseStatus.BYE) {
+                operation.aborted.incrementAndGet();
+                if (mailbox != null && !create) {
+                    // Unbekannt ob gelöscht, beim Aufräumen erneut versuchen
+                    created.addLast(mailbox);
+                }
+                return;
+            }
+            operation.current.record(command.getLatencyNanos());
+            if (!command.isOk()) {
+                operation.errors.incrementAndGet();
+            } else if (create) {
+                created.addLast(mailbox);
+            }
+        }
+    }// Ende class Completion
+
+    /**
+     * Arbeits-Thread mit einer eigenen Sitzung.
+     */
+    private final class Worker extends Thread {
+
+        /**
+         * Zufallsgenerator für Operationen und Mailboxen.
+         */
+        private final Random random = new Random();
+
+        /**
+         * Angelegte und noch nicht gelöschte Mailboxen, die Antworten werden
+         * im selben Thread gelesen.
+         */
+        private final ArrayDeque<String> created = new ArrayDeque<String>();
+
+        /**
+         * Präfix der angelegten Mailboxen.
+         */
+        private final String createPrefix;
+
+        /**
+         * Nummer der nächsten angelegten Mailbox.
+         */
+        private long next;
+
+        /**
+         * Aktuelle Sitzung, null wenn keine besteht.
+         */
+        private JCyrAdm session;
+
+        /**
+         * Pipeline der aktuellen Sitzung.
+         */
+        private Pipeline pipeline;
+
+        /**
+         * Konstruktor der Klasse Worker.
+         */
+        private Worker(final String namePrefix) {
+            super();
+            this.createPrefix = namePrefix;
+        }// Ende Worker(String)
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    if (pipeline == null && !connect()) {
+                        pause();
+                        continue;
+                    }
+                    try {
+                        pipeline.submit(command(mix.choose(random)));
+                        pipeline.flush();
+                    } catch (InterruptedIOException e) {
+                        break;
+                    } catch (IOException e) {
+                        drop(e);
+                    }
+                }
+                if (pipeline != null) {
+                    try {
+                        pipeline.sync();
+                    } catch (IOException e) {
+                        drop(e);
+                    }
+                }
+            } finally {
+                if (session != null) {
+                    factory.destroy(session);
+                }
+                leftovers.addAll(created);
+            }
+        }// Ende run()
+
+        /**
+         * Hilfs-Methode die eine Sitzung aufbaut.
+         */
+        private boolean connect() {
+            try {
+                session = factory.create();
+            } catch (Exception e) {
+                connections.incrementAndGet(CONNECT_FAILURES);
+                LOGGER.warn("Verbindung fehlgeschlagen: " + e.getMessage());
+                return false;
+            }
+            connections.incrementAndGet(CONNECTS);
+            pipeline = session.pipeline();
+            pipeline.setDepth(depth);
+            pipeline.setRateLimit(rateLimit);
+            return true;
+        }// Ende connect()
+
+        /**
+         * Hilfs-Methode die eine unterbrochene Sitzung verwirft.
+         */
+        private void drop(final IOException e) {
+            connections.incrementAndGet(DISCONNECTS);
+            LOGGER.info("Verbindung unterbrochen: " + e.getMessage());
+            factory.destroy(session);
+            session = null;
+            pipeline = null;
+        }// Ende drop(IOException)
+
+        /**
+         * Hilfs-Methode die vor dem nächsten Verbindungsaufbau wartet.
+         */
+        private void pause() {
+            try {
+                stopSignal.await(RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            }
+        }// Ende pause()
+
+        /**
+         * Hilfs-Methode die das Kommando einer Operation erzeugt.
+         */
+        private Command command(final LoadOperation operation) {
+            String name;
+            Command command;
+            switch (operation) {
+            case DELETE:
+                name = created.pollFirst();
+                if (name == null) {
+                    return create();
+                }
+                command = Commands.delete(name);
+                command.setListener(new Completion(stats.get(operation),
+                        created, name, false));
+                return command;
+            case GETQUOTA:
+                command = Commands.getQuota(mailbox());
+                break;
+            case SETQUOTA:
+                command = Commands.setQuota(mailbox(),
+                        QUOTA + random.nextInt(QUOTA_SPREAD));
+                break;
+            case GETACL:
+                command = Commands.getAcl(mailbox());
+                break;
+            case SETACL:
+                command = Commands.setAcl(mailbox(), ACL_IDENTIFIER,
+                        RIGHTS[random.nextInt(RIGHTS.length)]);
+                break;
+            default:
+                return create();
+            }
+            command.setListener(new Completion(stats.get(operation),
+                    created, null, false));
+            return command;
+        }// Ende command(LoadOperation)
+
+        /**
+         * Hilfs-Methode die das Kommando einer neuen Mailbox erzeugt.
+         */
+        private Command create() {
+            String name = createPrefix + next++;
+            Command command = Commands.create(name);
+            command.setListener(new Completion(stats.get(LoadOperation.CREATE),
+                    created, name, true));
+            return command;
+        }// Ende create()
+
+        /**
+         * Hilfs-Methode die eine zufällige Mailbox der Arbeitsmenge liefert.
+         */
+        private String mailbox() {
+            return prefix + random.nextInt(mailboxes);
+        }// Ende mailbox()
+
+    }// Ende class Worker
+
+}// Ende class
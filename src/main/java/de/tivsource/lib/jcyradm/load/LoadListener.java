@@ -0,0 +1,18 @@
+package de.tivsource.lib.jcyradm.load;
+
+/**
+ * Schnittstelle für Empfänger der Messwerte eines Lastlaufs.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface LoadListener {
+
+    /**
+     * Wird am Ende jedes Intervalls aus dem Thread des Laufs aufgerufen.
+     *
+     * @param sample - Die Messwerte des Intervalls.
+     */
+    void interval(LoadSample sample);
+
+}// Ende interface
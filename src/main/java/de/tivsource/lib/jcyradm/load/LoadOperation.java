@@ -0,0 +1,42 @@
+package de.tivsource.lib.jcyradm.load;
+
+/**
+ * Die Operationen die der LoadGenerator ausführt.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum LoadOperation {
+
+    /**
+     * Legt eine neue Mailbox an.
+     */
+    CREATE,
+
+    /**
+     * Löscht eine vom Lauf angelegte Mailbox, gibt es keine wird statt
+     * dessen eine angelegt.
+     */
+    DELETE,
+
+    /**
+     * Liest die Quota einer Mailbox der Arbeitsmenge.
+     */
+    GETQUOTA,
+
+    /**
+     * Setzt die Quota einer Mailbox der Arbeitsmenge.
+     */
+    SETQUOTA,
+
+    /**
+     * Liest die Rechte einer Mailbox der Arbeitsmenge.
+     */
+    GETACL,
+
+    /**
+     * Setzt Rechte auf einer Mailbox der Arbeitsmenge.
+     */
+    SETACL;
+
+}// Ende enum
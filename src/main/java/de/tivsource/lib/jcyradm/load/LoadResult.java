@@ -0,0 +1,74 @@
+package de.tivsource.lib.jcyradm.load;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Die Klasse LoadResult ist das Ergebnis eines Lastlaufs: die Messwerte
+ * jedes Intervalls, des ganzen Laufs und je Operation.
+ *
+ * @author Marc Michele
+ *
+ */
+public class LoadResult {
+
+    /**
+     * Messwerte der Intervalle in zeitlicher Reihenfolge.
+     */
+    private final List<LoadSample> intervals;
+
+    /**
+     * Messwerte des ganzen Laufs.
+     */
+    private final LoadSample total;
+
+    /**
+     * Messwerte des ganzen Laufs je Operation.
+     */
+    private final Map<LoadOperation, LoadSample> operations;
+
+    /**
+     * Konstruktor der Klasse LoadResult.
+     *
+     * @param intervalSamples - Messwerte der Intervalle.
+     * @param totalSample - Messwerte des ganzen Laufs.
+     * @param operationSamples - Messwerte je ausgeführter Operation.
+     */
+    LoadResult(final List<LoadSample> intervalSamples,
+            final LoadSample totalSample,
+            final Map<LoadOperation, LoadSample> operationSamples) {
+        super();
+        this.intervals = Collections.unmodifiableList(intervalSamples);
+        this.total = totalSample;
+        this.operations = Collections.unmodifiableMap(operationSamples);
+    }// Ende LoadResult(List<LoadSample>, LoadSample, Map)
+
+    /**
+     * Liefert die Messwerte der Intervalle.
+     *
+     * @return List - Messwerte in zeitlicher Reihenfolge.
+     */
+    public final List<LoadSample> getIntervals() {
+        return intervals;
+    }// Ende getIntervals()
+
+    /**
+     * Liefert die Messwerte des ganzen Laufs.
+     *
+     * @return LoadSample - Die Messwerte.
+     */
+    public final LoadSample getTotal() {
+        return total;
+    }// Ende getTotal()
+
+    /**
+     * Liefert die Messwerte des ganzen Laufs je Operation.
+     *
+     * @return Map - Messwerte der Operationen der Mischung.
+     */
+    public final Map<LoadOperation, LoadSample> getOperations() {
+        return operations;
+    }// Ende getOperations()
+
+}// Ende class
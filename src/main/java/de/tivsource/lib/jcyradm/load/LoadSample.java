@@ -0,0 +1,268 @@
+package de.tivsource.lib.jcyradm.load;
+
+/**
+ * Die Klasse LoadSample enthält die Messwerte eines Intervalls oder eines
+ * ganzen Lastlaufs: Anzahl der beantworteten Kommandos, Fehler, Abbrüche,
+ * Auf- und Abbau von Verbindungen und die Perzentile der Laufzeiten.
+ *
+ * @author Marc Michele
+ *
+ */
+public class LoadSample {
+
+    /**
+     * Nanosekunden je Millisekunde.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Millisekunden je Sekunde.
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * Median.
+     */
+    private static final double P50 = 50.0;
+
+    /**
+     * 90. Perzentil.
+     */
+    private static final double P90 = 90.0;
+
+    /**
+     * 99. Perzentil.
+     */
+    private static final double P99 = 99.0;
+
+    /**
+     * Beginn in Millisekunden seit dem Start des Laufs.
+     */
+    private final long offset;
+
+    /**
+     * Dauer in Millisekunden.
+     */
+    private final long millis;
+
+    /**
+     * Beantwortete Kommandos.
+     */
+    private final long operations;
+
+    /**
+     * Mit NO oder BAD beantwortete Kommandos.
+     */
+    private final long errors;
+
+    /**
+     * Durch eine unterbrochene Verbindung abgebrochene Kommandos.
+     */
+    private final long aborted;
+
+    /**
+     * Aufgebaute Verbindungen.
+     */
+    private final long connects;
+
+    /**
+     * Unterbrochene Verbindungen.
+     */
+    private final long disconnects;
+
+    /**
+     * Fehlgeschlagene Verbindungsaufbauten.
+     */
+    private final long connectFailures;
+
+    /**
+     * Median der Laufzeit in Nanosekunden.
+     */
+    private final long p50;
+
+    /**
+     * 90. Perzentil der Laufzeit in Nanosekunden.
+     */
+    private final long p90;
+
+    /**
+     * 99. Perzentil der Laufzeit in Nanosekunden.
+     */
+    private final long p99;
+
+    /**
+     * Größte Laufzeit in Nanosekunden.
+     */
+    private final long max;
+
+    /**
+     * Konstruktor der Klasse LoadSample.
+     *
+     * @param start - Beginn in Millisekunden seit dem Start des Laufs.
+     * @param duration - Dauer in Millisekunden.
+     * @param latencies - Laufzeiten der beantworteten Kommandos.
+     * @param counters - Fehler, Abbrüche, Verbindungen, Trennungen und
+     *            fehlgeschlagene Verbindungen in dieser Reihenfolge.
+     */
+    LoadSample(final long start, final long duration,
+            final LatencyHistogram latencies, final long[] counters) {
+        super();
+        this.offset = start;
+        this.millis = duration;
+        this.operations = latencies.getCount();
+        this.errors = counters[0];
+        this.aborted = counters[1];
+        this.connects = counters[2];
+        this.disconnects = counters[3];
+        this.connectFailures = counters[4];
+        this.p50 = latencies.percentile(P50);
+        this.p90 = latencies.percentile(P90);
+        this.p99 = latencies.percentile(P99);
+        this.max = latencies.getMax();
+    }// Ende LoadSample(long, long, LatencyHistogram, long[])
+
+    /**
+     * Liefert den Beginn.
+     *
+     * @return long - Millisekunden seit dem Start des Laufs.
+     */
+    public final long getOffset() {
+        return offset;
+    }// Ende getOffset()
+
+    /**
+     * Liefert die Dauer.
+     *
+     * @return long - Dauer in Millisekunden.
+     */
+    public final long getMillis() {
+        return millis;
+    }// Ende getMillis()
+
+    /**
+     * Liefert die Anzahl der beantworteten Kommandos.
+     *
+     * @return long - Beantwortete Kommandos inklusive Fehler.
+     */
+    public final long getOperations() {
+        return operations;
+    }// Ende getOperations()
+
+    /**
+     * Liefert die Anzahl der mit NO oder BAD beantworteten Kommandos.
+     *
+     * @return long - Fehler.
+     */
+    public final long getErrors() {
+        return errors;
+    }// Ende getErrors()
+
+    /**
+     * Liefert die Anzahl der durch eine unterbrochene Verbindung
+     * abgebrochenen Kommandos.
+     *
+     * @return long - Abbrüche.
+     */
+    public final long getAborted() {
+        return aborted;
+    }// Ende getAborted()
+
+    /**
+     * Liefert die Anzahl der aufgebauten Verbindungen.
+     *
+     * @return long - Verbindungen.
+     */
+    public final long getConnects() {
+        return connects;
+    }// Ende getConnects()
+
+    /**
+     * Liefert die Anzahl der unterbrochenen Verbindungen.
+     *
+     * @return long - Trennungen.
+     */
+    public final long getDisconnects() {
+        return disconnects;
+    }// Ende getDisconnects()
+
+    /**
+     * Liefert die Anzahl der fehlgeschlagenen Verbindungsaufbauten.
+     *
+     * @return long - Fehlgeschlagene Verbindungen.
+     */
+    public final long getConnectFailures() {
+        return connectFailures;
+    }// Ende getConnectFailures()
+
+    /**
+     * Liefert den Median der Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public final long getP50() {
+        return p50;
+    }// Ende getP50()
+
+    /**
+     * Liefert das 90. Perzentil der Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public final long getP90() {
+        return p90;
+    }// Ende getP90()
+
+    /**
+     * Liefert das 99. Perzentil der Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public final long getP99() {
+        return p99;
+    }// Ende getP99()
+
+    /**
+     * Liefert die größte Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public final long getMax() {
+        return max;
+    }// Ende getMax()
+
+    /**
+     * Liefert den Durchsatz.
+     *
+     * @return double - Beantwortete Kommandos je Sekunde.
+     */
+    public final double getThroughput() {
+        return millis <= 0 ? 0.0 : operations * MILLIS_PER_SECOND / millis;
+    }// Ende getThroughput()
+
+    @Override
+    public final String toString() {
+        StringBuilder text = new StringBuilder(128);
+        text.append(String.format("%.1f",
+                (offset + millis) / MILLIS_PER_SECOND))
+                .append(" s, ").append(operations).append(" ops, ")
+                .append(String.format("%.1f", getThroughput()))
+                .append(" ops/s, ").append(errors).append(" errors, ")
+                .append(aborted).append(" aborted, ").append(connects)
+                .append(" connects, ").append(disconnects)
+                .append(" disconnects");
+        if (connectFailures > 0) {
+            text.append(", ").append(connectFailures)
+                    .append(" connect failures");
+        }
+        text.append(", p50 ").append(String.format("%.2f", p50
+                / NANOS_PER_MILLI)).append(" ms, p90 ")
+                .append(String.format("%.2f", p90 / NANOS_PER_MILLI))
+                .append(" ms, p99 ")
+                .append(String.format("%.2f", p99 / NANOS_PER_MILLI))
+                .append(" ms, max ")
+                .append(String.format("%.2f", max / NANOS_PER_MILLI))
+                .append(" ms");
+        return text.toString();
+    }// Ende toString()
+
+}// Ende class
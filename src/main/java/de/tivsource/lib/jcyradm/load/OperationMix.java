@@ -0,0 +1,126 @@
+package de.tivsource.lib.jcyradm.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Die Klasse OperationMix legt fest wie oft jede Operation im Verhältnis zu
+ * den anderen ausgeführt wird, i.e. "getquota=6,setacl=2,create=1".
+ *
+ * @author Marc Michele
+ *
+ */
+public final class OperationMix {
+
+    /**
+     * Die Operationen mit einem Gewicht größer 0.
+     */
+    private final LoadOperation[] operations;
+
+    /**
+     * Summe der Gewichte bis einschließlich der Operation am selben Index.
+     */
+    private final int[] cumulative;
+
+    /**
+     * Die Gewichte wie übergeben.
+     */
+    private final Map<LoadOperation, Integer> weights;
+
+    /**
+     * Konstruktor der Klasse OperationMix.
+     *
+     * @param operationWeights - Gewicht je Operation, fehlende Operationen
+     *            werden nicht ausgeführt.
+     */
+    public OperationMix(final Map<LoadOperation, Integer> operationWeights) {
+        super();
+        this.weights = new EnumMap<LoadOperation, Integer>(LoadOperation.class);
+        int count = 0;
+        for (Map.Entry<LoadOperation, Integer> entry
+                : operationWeights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Negative weight for "
+                        + entry.getKey());
+            }
+            if (entry.getValue() > 0) {
+                weights.put(entry.getKey(), entry.getValue());
+                count++;
+            }
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("Empty operation mix");
+        }
+        operations = new LoadOperation[count];
+        cumulative = new int[count];
+        int index = 0;
+        int sum = 0;
+        for (Map.Entry<LoadOperation, Integer> entry : weights.entrySet()) {
+            sum += entry.getValue();
+            operations[index] = entry.getKey();
+            cumulative[index++] = sum;
+        }
+    }// Ende OperationMix(Map<LoadOperation, Integer>)
+
+    /**
+     * Liest eine Mischung im Format "operation=gewicht,...".
+     *
+     * @param text - Die Mischung, i.e. "getquota=6,setquota=1,create=1".
+     * @return OperationMix - Die gelesene Mischung.
+     * @throws IllegalArgumentException - Wenn eine Operation unbekannt oder
+     *             ein Gewicht ungültig ist.
+     */
+    public static OperationMix parse(final String text) {
+        Map<LoadOperation, Integer> parsed =
+                new EnumMap<LoadOperation, Integer>(LoadOperation.class);
+        for (String part : text.split(",")) {
+            String[] pair = part.trim().split("=", 2);
+            LoadOperation operation =
+                    LoadOperation.valueOf(pair[0].trim().toUpperCase());
+            parsed.put(operation, pair.length == 1 ? 1
+                    : Integer.parseInt(pair[1].trim()));
+        }
+        return new OperationMix(parsed);
+    }// Ende parse(String)
+
+    /**
+     * Wählt eine Operation nach den Gewichten.
+     *
+     * @param random - Zufallsgenerator des Aufrufers.
+     * @return LoadOperation - Die gewählte Operation.
+     */
+    public LoadOperation choose(final Random random) {
+        int value = random.nextInt(cumulative[cumulative.length - 1]);
+        int index = 0;
+        while (cumulative[index] <= value) {
+            index++;
+        }
+        return operations[index];
+    }// Ende choose(Random)
+
+    /**
+     * Liefert das Gewicht einer Operation.
+     *
+     * @param operation - Die Operation.
+     * @return int - Das Gewicht, 0 wenn sie nicht ausgeführt wird.
+     */
+    public int getWeight(final LoadOperation operation) {
+        Integer weight = weights.get(operation);
+        return weight == null ? 0 : weight;
+    }// Ende getWeight(LoadOperation)
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<LoadOperation, Integer> entry : weights.entrySet()) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(entry.getKey().name().toLowerCase()).append('=')
+                    .append(entry.getValue());
+        }
+        return text.toString();
+    }// Ende toString()
+
+}// Ende class
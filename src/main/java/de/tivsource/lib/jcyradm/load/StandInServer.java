@@ -0,0 +1,608 @@
+package de.tivsource.lib.jcyradm.load;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+
+/**
+ * Die Klasse StandInServer ist ein Ersatz für Cyrus im Speicher, gegen den
+ * der LoadGenerator ohne echten Server laufen kann, i.e. um den Client
+ * selbst zu messen oder einen Lauf vorab zu prüfen. Er versteht LOGIN,
+ * LOGOUT, NOOP, CAPABILITY, CREATE, DELETE, LIST, GETQUOTA, SETQUOTA,
+ * GETACL, SETACL und DELETEACL und antwortet mit den Texten von Cyrus.
+ * Jede Anmeldung wird angenommen.
+ *
+ * <p>
+ * Jede Verbindung hat einen eigenen Thread. Eine feste Verzögerung je
+ * Kommando bildet die Laufzeit des Servers nach, mit setDropEvery() wird
+ * regelmäßig eine Verbindung ohne Antwort getrennt.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class StandInServer implements Closeable {
+
+    /**
+     * Statischer Logger der Klasse StandInServer.
+     */
+    private static final Logger LOGGER = Logger.getLogger(StandInServer.class);
+
+    /**
+     * Zeichensatz der Verbindungen, ein Zeichen je Byte.
+     */
+    private static final String CHARSET = "ISO-8859-1";
+
+    /**
+     * Fähigkeiten des Servers.
+     */
+    private static final String CAPABILITIES =
+            "IMAP4rev1 LITERAL+ ACL QUOTA";
+
+    /**
+     * Rechte des Besitzers einer neuen Mailbox.
+     */
+    private static final String OWNER_RIGHTS = "lrswipkxtecda";
+
+    /**
+     * Literal am Ende einer Zeile.
+     */
+    private static final Pattern LITERAL = Pattern.compile(".*\\{\\d+\\+?\\}$");
+
+    /**
+     * Die Mailboxen.
+     */
+    private final ConcurrentMap<String, Mailbox> mailboxes =
+            new ConcurrentHashMap<String, Mailbox>();
+
+    /**
+     * Offene Verbindungen.
+     */
+    private final Set<Socket> clients = Collections.newSetFromMap(
+            new ConcurrentHashMap<Socket, Boolean>());
+
+    /**
+     * Angenommene Verbindungen.
+     */
+    private final AtomicLong connections = new AtomicLong();
+
+    /**
+     * Empfangene Kommandos.
+     */
+    private final AtomicLong commands = new AtomicLong();
+
+    /**
+     * Gewünschter Port, 0 für einen freien.
+     */
+    private final int requestedPort;
+
+    /**
+     * Der Server-Socket, null solange nicht gestartet.
+     */
+    private volatile ServerSocket server;
+
+    /**
+     * Verzögerung je Kommando in Nanosekunden.
+     */
+    private volatile long latency;
+
+    /**
+     * Jedes wievielte Kommando die Verbindung trennt, 0 für nie.
+     */
+    private volatile long dropEvery;
+
+    /**
+     * Konstruktor der Klasse StandInServer für einen freien Port.
+     */
+    public StandInServer() {
+        this(0);
+    }// Ende StandInServer()
+
+    /**
+     * Konstruktor der Klasse StandInServer.
+     *
+     * @param port - Port auf der Loopback-Adresse, 0 für einen freien.
+     */
+    public StandInServer(final int port) {
+        super();
+        this.requestedPort = port;
+    }// Ende StandInServer(int)
+
+    /**
+     * Öffnet den Port und nimmt Verbindungen an.
+     *
+     * @throws IOException - Wenn der Port nicht geöffnet werden kann.
+     */
+    public final synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        final ServerSocket socket = new ServerSocket(requestedPort, 0,
+                InetAddress.getByName(null));
+        server = socket;
+        Thread acceptor = new Thread("jcyradm-standin") {
+            @Override
+            public void run() {
+                accept(socket);
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOGGER.info("Stand-in auf Port " + socket.getLocalPort());
+    }// Ende start()
+
+    /**
+     * Schließt den Port und alle Verbindungen.
+     */
+    @Override
+    public final synchronized void close() {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            LOGGER.debug("Schließen fehlgeschlagen: " + e.getMessage());
+        }
+        for (Socket client : clients) {
+            closeQuietly(client);
+        }
+    }// Ende close()
+
+    /**
+     * Liefert den Port.
+     *
+     * @return int - Der Port, 0 solange nicht gestartet.
+     */
+    public final int getPort() {
+        ServerSocket socket = server;
+        return socket == null ? 0 : socket.getLocalPort();
+    }// Ende getPort()
+
+    /**
+     * Setzt die Verzögerung je Kommando.
+     *
+     * @param micros - Verzögerung in Mikrosekunden.
+     */
+    public final void setLatency(final long micros) {
+        this.latency = TimeUnit.MICROSECONDS.toNanos(Math.max(0L, micros));
+    }// Ende setLatency(long)
+
+    /**
+     * Legt fest dass jedes n-te Kommando die Verbindung ohne Antwort trennt.
+     * LOGIN und LOGOUT sind ausgenommen.
+     *
+     * @param count - Abstand der Trennungen, 0 für nie.
+     */
+    public final void setDropEvery(final long count) {
+        this.dropEvery = Math.max(0L, count);
+    }// Ende setDropEvery(long)
+
+    /**
+     * Legt eine Mailbox an, i.e. um eine Arbeitsmenge vorzugeben.
+     *
+     * @param name - Vollständiger Name der Mailbox.
+     */
+    public final void addMailbox(final String name) {
+        mailboxes.putIfAbsent(name, new Mailbox());
+    }// Ende addMailbox(String)
+
+    /**
+     * Prüft ob eine Mailbox besteht.
+     *
+     * @param name - Vollständiger Name der Mailbox.
+     * @return boolean - True wenn sie besteht.
+     */
+    public final boolean hasMailbox(final String name) {
+        return mailboxes.containsKey(name);
+    }// Ende hasMailbox(String)
+
+    /**
+     * Liefert die Anzahl der Mailboxen.
+     *
+     * @return int - Anzahl der Mailboxen.
+     */
+    public final int getMailboxCount() {
+        return mailboxes.size();
+    }// Ende getMailboxCount()
+
+    /**
+     * Liefert die Anzahl der angenommenen Verbindungen.
+     *
+     * @return long - Anzahl der Verbindungen seit dem Start.
+     */
+    public final long getConnections() {
+        return connections.get();
+    }// Ende getConnections()
+
+    /**
+     * Liefert die Anzahl der empfangenen Kommandos.
+     *
+     * @return long - Anzahl der Kommandos seit dem Start.
+     */
+    public final long getCommands() {
+        return commands.get();
+    }// Ende getCommands()
+
+    /**
+     * Hilfs-Methode die Verbindungen annimmt bis der Port geschlossen wird.
+     */
+    private void accept(final ServerSocket socket) {
+        while (!socket.isClosed()) {
+            final Socket client;
+            try {
+                client = socket.accept();
+            } catch (IOException e) {
+                continue;
+            }
+            connections.incrementAndGet();
+            clients.add(client);
+            Thread thread = new Thread("jcyradm-standin-client") {
+                @Override
+                public void run() {
+                    try {
+                        client.setTcpNoDelay(true);
+                        serve(client);
+                    } catch (IOException e) {
+                        LOGGER.debug("Client getrennt: " + e.getMessage());
+                    } finally {
+                        clients.remove(client);
+                        closeQuietly(client);
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }// Ende accept(ServerSocket)
+
+    /**
+     * Hilfs-Methode die die Kommandos einer Verbindung beantwortet.
+     */
+    private void serve(final Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                client.getInputStream(), CHARSET));
+        OutputStream out = client.getOutputStream();
+        StringBuilder reply = new StringBuilder(256);
+        reply.append("* OK [CAPABILITY ").append(CAPABILITIES)
+                .append("] jcyradm stand-in ready\r\n");
+        write(out, reply);
+        String user = null;
+        while (true) {
+            List<String> words = read(in, out);
+            if (words == null) {
+                return;
+            }
+            long number = commands.incrementAndGet();
+            String tag = words.get(0);
+            String name = words.size() > 1 ? words.get(1).toUpperCase() : "";
+            if ("LOGOUT".equals(name)) {
+                reply.append("* BYE LOGOUT received\r\n").append(tag)
+                        .append(" OK Completed\r\n");
+                write(out, reply);
+                return;
+            }
+            long drop = dropEvery;
+            if (drop > 0 && !"LOGIN".equals(name)
+                    && number % drop == 0) {
+                return;
+            }
+            long delay = latency;
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            if ("LOGIN".equals(name) && words.size() == 4) {
+                user = words.get(2);
+                reply.append(tag).append(" OK [CAPABILITY ")
+                        .append(CAPABILITIES).append("] User logged in\r\n");
+            } else if (user == null && !"CAPABILITY".equals(name)
+                    && !"NOOP".equals(name)) {
+                reply.append(tag).append(" NO Please login first\r\n");
+            } else {
+                String text = execute(name, words, user, reply);
+                reply.append(tag).append(' ').append(text).append("\r\n");
+            }
+            write(out, reply);
+        }
+    }// Ende serve(Socket)
+
+    /**
+     * Hilfs-Methode die ein Kommando ausführt, ungetaggte Antworten an die
+     * Antwort hängt und den Status mit Text liefert.
+     */
+    private String execute(final String name, final List<String> words,
+            final String user, final StringBuilder reply) {
+        int arguments = words.size() - 2;
+        String mailbox = arguments > 0 ? words.get(2) : null;
+        Mailbox box = mailbox == null ? null : mailboxes.get(mailbox);
+        if ("NOOP".equals(name) && arguments == 0) {
+            return "OK Completed";
+        } else if ("CAPABILITY".equals(name) && arguments == 0) {
+            reply.append("* CAPABILITY ").append(CAPABILITIES).append("\r\n");
+            return "OK Completed";
+        } else if ("CREATE".equals(name) && (arguments == 1
+                || arguments == 2)) {
+            Mailbox created = new Mailbox();
+            created.acl.put(user, OWNER_RIGHTS);
+            return mailboxes.putIfAbsent(mailbox, created) == null
+                    ? "OK Completed" : "NO Mailbox already exists";
+        } else if ("DELETE".equals(name) && arguments == 1) {
+            return mailboxes.remove(mailbox) != null
+                    ? "OK Completed" : "NO Mailbox does not exist";
+        } else if ("LIST".equals(name) && arguments == 2) {
+            list(words.get(3), reply);
+            return "OK Completed";
+        } else if (box == null && arguments > 0) {
+            return "NO Mailbox does not exist";
+        } else if ("GETQUOTA".equals(name) && arguments == 1) {
+            long limit = box.limit;
+            if (limit < 0) {
+                return "NO Quota root does not exist";
+            }
+            reply.append("* QUOTA ");
+            name(reply, mailbox);
+            reply.append(" (STORAGE 0 ").append(limit).append(")\r\n");
+            return "OK Completed";
+        } else if ("SETQUOTA".equals(name) && arguments >= 1) {
+            return setQuota(box, words);
+        } else if ("GETACL".equals(name) && arguments == 1) {
+            reply.append("* ACL ");
+            name(reply, mailbox);
+            for (Map.Entry<String, String> entry : box.acl.entrySet()) {
+                reply.append(' ');
+                name(reply, entry.getKey());
+                reply.append(' ').append(entry.getValue());
+            }
+            reply.append("\r\n");
+            return "OK Completed";
+        } else if ("SETACL".equals(name) && arguments == 3) {
+            setAcl(box, words.get(3), words.get(4));
+            return "OK Completed";
+        } else if ("DELETEACL".equals(name) && arguments == 2) {
+            box.acl.remove(words.get(3));
+            return "OK Completed";
+        }
+        return "BAD Unrecognized command";
+    }// Ende execute(String, List<String>, String, StringBuilder)
+
+    /**
+     * Hilfs-Methode die SETQUOTA ausführt, "(STORAGE n)" setzt und "()"
+     * entfernt die Quota.
+     */
+    private static String setQuota(final Mailbox box,
+            final List<String> words) {
+        List<String> list = words.subList(3, words.size());
+        if (list.size() == 2 && "(".equals(list.get(0))
+                && ")".equals(list.get(1))) {
+            box.limit = -1L;
+            return "OK Completed";
+        }
+        if (list.size() == 4 && "(".equals(list.get(0))
+                && "STORAGE".equalsIgnoreCase(list.get(1))
+                && ")".equals(list.get(3))) {
+            try {
+                box.limit = Long.parseLong(list.get(2));
+                return "OK Completed";
+            } catch (NumberFormatException e) {
+                return "BAD Invalid quota limit";
+            }
+        }
+        return "BAD Invalid quota list";
+    }// Ende setQuota(Mailbox, List<String>)
+
+    /**
+     * Hilfs-Methode die SETACL ausführt, Rechte mit "+" oder "-" werden
+     * ergänzt oder entzogen, sonst ersetzt.
+     */
+    private static void setAcl(final Mailbox box, final String identifier,
+            final String rights) {
+        synchronized (box) {
+            String current = box.acl.get(identifier);
+            StringBuilder result = new StringBuilder(
+                    current == null ? "" : current);
+            if (rights.startsWith("+")) {
+                for (char right : rights.substring(1).toCharArray()) {
+                    if (result.indexOf(String.valueOf(right)) < 0) {
+                        result.append(right);
+                    }
+                }
+            } else if (rights.startsWith("-")) {
+                for (char right : rights.substring(1).toCharArray()) {
+                    int index = result.indexOf(String.valueOf(right));
+                    if (index >= 0) {
+                        result.deleteCharAt(index);
+                    }
+                }
+            } else {
+                result.setLength(0);
+                result.append(rights);
+            }
+            if (result.length() == 0) {
+                box.acl.remove(identifier);
+            } else {
+                box.acl.put(identifier, result.toString());
+            }
+        }
+    }// Ende setAcl(Mailbox, String, String)
+
+    /**
+     * Hilfs-Methode die alle Mailboxen eines Musters auflistet, "*" passt
+     * auf alles und "%" auf alles außer dem Trenner.
+     */
+    private void list(final String pattern, final StringBuilder reply) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '%') {
+                regex.append("[^.]*");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern matcher = Pattern.compile(regex.toString());
+        List<String> names = new ArrayList<String>(mailboxes.keySet());
+        Collections.sort(names);
+        for (String mailbox : names) {
+            if (matcher.matcher(mailbox).matches()) {
+                reply.append("* LIST (\\HasNoChildren) \".\" ");
+                name(reply, mailbox);
+                reply.append("\r\n");
+            }
+        }
+    }// Ende list(String, StringBuilder)
+
+    /**
+     * Hilfs-Methode die einen Namen als Atom oder Quoted String anhängt.
+     */
+    private static void name(final StringBuilder reply, final String name) {
+        if (!name.isEmpty() && CommandEncoder.isAtom(name)) {
+            reply.append(name);
+        } else {
+            reply.append('"').append(name.replace("\\", "\\\\")
+                    .replace("\"", "\\\"")).append('"');
+        }
+    }// Ende name(StringBuilder, String)
+
+    /**
+     * Hilfs-Methode die ein Kommando liest und in Wörter zerlegt. Klammern
+     * sind eigene Wörter, Quoted Strings und Literale werden ausgepackt.
+     * Liefert null am Ende der Verbindung.
+     */
+    private static List<String> read(final BufferedReader in,
+            final OutputStream out) throws IOException {
+        List<String> words = new ArrayList<String>();
+        String line = in.readLine();
+        if (line == null) {
+            return null;
+        }
+        while (true) {
+            String literal = null;
+            if (LITERAL.matcher(line).matches()) {
+                literal = line.substring(line.lastIndexOf('{') + 1,
+                        line.length() - 1);
+                line = line.substring(0, line.lastIndexOf('{'));
+            }
+            split(line, words);
+            if (literal == null) {
+                return words;
+            }
+            if (!literal.endsWith("+")) {
+                out.write("+ go ahead\r\n".getBytes(CHARSET));
+                out.flush();
+            } else {
+                literal = literal.substring(0, literal.length() - 1);
+            }
+            char[] value = new char[Integer.parseInt(literal)];
+            int read = 0;
+            while (read < value.length) {
+                int count = in.read(value, read, value.length - read);
+                if (count < 0) {
+                    return null;
+                }
+                read += count;
+            }
+            words.add(new String(value));
+            line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+        }
+    }// Ende read(BufferedReader, OutputStream)
+
+    /**
+     * Hilfs-Methode die eine Zeile ohne Literale in Wörter zerlegt.
+     */
+    private static void split(final String line, final List<String> words) {
+        int position = 0;
+        int length = line.length();
+        while (position < length) {
+            char c = line.charAt(position);
+            if (c == ' ') {
+                position++;
+            } else if (c == '(' || c == ')') {
+                words.add(String.valueOf(c));
+                position++;
+            } else if (c == '"') {
+                StringBuilder word = new StringBuilder();
+                position++;
+                while (position < length && line.charAt(position) != '"') {
+                    char next = line.charAt(position++);
+                    if (next == '\\' && position < length) {
+                        next = line.charAt(position++);
+                    }
+                    word.append(next);
+                }
+                position++;
+                words.add(word.toString());
+            } else {
+                int start = position;
+                while (position < length && " ()".indexOf(
+                        line.charAt(position)) < 0) {
+                    position++;
+                }
+                words.add(line.substring(start, position));
+            }
+        }
+    }// Ende split(String, List<String>)
+
+    /**
+     * Hilfs-Methode die die gesammelte Antwort sendet und den Puffer leert.
+     */
+    private static void write(final OutputStream out,
+            final StringBuilder reply) throws IOException {
+        out.write(reply.toString().getBytes(CHARSET));
+        out.flush();
+        reply.setLength(0);
+    }// Ende write(OutputStream, StringBuilder)
+
+    /**
+     * Hilfs-Methode die eine Verbindung ohne Fehler schließt.
+     */
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.debug("Schließen fehlgeschlagen: " + e.getMessage());
+        }
+    }// Ende closeQuietly(Socket)
+
+    /**
+     * Eine Mailbox mit Quota und Rechten.
+     */
+    private static final class Mailbox {
+
+        /**
+         * Quota in KB, -1 wenn keine gesetzt ist.
+         */
+        private volatile long limit = -1L;
+
+        /**
+         * Rechte je Benutzer.
+         */
+        private final Map<String, String> acl =
+                new ConcurrentHashMap<String, String>();
+
+    }// Ende class Mailbox
+
+}// Ende class
@@ -0,0 +1,10 @@
+/**
+ * In diesem Paket befinden sich die Klassen für Last- und Dauertests: ein
+ * Lastgenerator der eine Mischung von Operationen über mehrere Sitzungen
+ * ausführt, die Messung der Laufzeiten und ein Cyrus-Ersatz im Speicher
+ * gegen den sich die Tests ohne echten Server wiederholen lassen.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.load;
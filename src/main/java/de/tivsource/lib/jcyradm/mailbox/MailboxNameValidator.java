@@ -0,0 +1,206 @@
+package de.tivsource.lib.jcyradm.mailbox;
+
+import de.tivsource.lib.jcyradm.protocol.ModifiedUtf7;
+
+/**
+ * Die Klasse MailboxNameValidator prüft ob ein Name im Sinne einer Cyrus
+ * Mailbox gültig ist. Die Prüfung arbeitet ohne reguläre Ausdrücke und ohne
+ * Objekte je Zeichen, damit auch große Listen von Namen schnell geprüft
+ * werden können.
+ *
+ * <p>
+ * Geprüft werden die Regeln von Cyrus: keine leeren Hierarchie-Ebenen, keine
+ * Wildcards und Steuerzeichen, nur die von Cyrus erlaubten Satzzeichen und
+ * eine maximale Länge nach der Kodierung in modifiziertes UTF-7. Buchstaben
+ * und Ziffern aus allen Sprachen sind erlaubt. Mit "unixhierarchysep" ist '/'
+ * das Trennzeichen der Hierarchie und '.' ein normales Zeichen, mit
+ * "virtdomains" darf der Name auf "@domain" enden.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class MailboxNameValidator {
+
+    /**
+     * Maximale Länge eines Mailbox-Namens bei Cyrus (MAX_MAILBOX_NAME).
+     */
+    public static final int MAX_LENGTH = 490;
+
+    /**
+     * Satzzeichen die Cyrus in Mailbox-Namen erlaubt (GOODCHARS ohne
+     * Buchstaben, Ziffern, '.' und '@').
+     */
+    private static final String PUNCTUATION = " #$'+,-:=^_`~&";
+
+    /**
+     * Ob '/' das Trennzeichen der Hierarchie ist.
+     */
+    private final boolean unixHierarchySep;
+
+    /**
+     * Ob Namen mit Domain erlaubt sind.
+     */
+    private final boolean virtDomains;
+
+    /**
+     * Standard Konstruktor der Klasse MailboxNameValidator, '.' ist das
+     * Trennzeichen und Domains sind nicht erlaubt.
+     */
+    public MailboxNameValidator() {
+        this(false, false);
+    }// Ende MailboxNameValidator()
+
+    /**
+     * Konstruktor der Klasse MailboxNameValidator.
+     *
+     * @param unixhierarchysep - True wenn der Server mit unixhierarchysep
+     *            läuft.
+     * @param virtdomains - True wenn der Server mit virtdomains läuft.
+     */
+    public MailboxNameValidator(final boolean unixhierarchysep,
+            final boolean virtdomains) {
+        super();
+        this.unixHierarchySep = unixhierarchysep;
+        this.virtDomains = virtdomains;
+    }// Ende MailboxNameValidator(boolean, boolean)
+
+    /**
+     * Liefert das Trennzeichen der Hierarchie.
+     *
+     * @return char - '/' mit unixhierarchysep, sonst '.'.
+     */
+    public final char getSeparator() {
+        return unixHierarchySep ? '/' : '.';
+    }// Ende getSeparator()
+
+    /**
+     * Liefert ob der Server mit virtdomains läuft.
+     *
+     * @return boolean - True wenn Namen mit Domain erlaubt sind.
+     */
+    public final boolean isVirtDomains() {
+        return virtDomains;
+    }// Ende isVirtDomains()
+
+    /**
+     * Prüft ob ein Name gültig ist.
+     *
+     * @param name - Der Name in Unicode (i.e. "max.mustermann" oder
+     *            "max@example.com").
+     * @return boolean - True wenn der Name gültig ist.
+     */
+    public final boolean isValid(final CharSequence name) {
+        return check(name) < 0;
+    }// Ende isValid(CharSequence)
+
+    /**
+     * Prüft einen Namen und liefert die Stelle des ersten Fehlers, damit bei
+     * Massen-Importen aussagekräftig protokolliert werden kann.
+     *
+     * @param name - Der Name in Unicode.
+     * @return int - -1 wenn der Name gültig ist, sonst die Stelle des ersten
+     *         ungültigen Zeichens (bei zu langen Namen die Länge).
+     */
+    public final int check(final CharSequence name) {
+        if (name == null || name.length() == 0) {
+            return 0;
+        }
+        char separator = getSeparator();
+        int end = name.length();
+        int at = -1;
+
+        /*
+         * Domain-Teil abtrennen und prüfen.
+         */
+        if (virtDomains) {
+            for (int i = end - 1; i >= 0; i--) {
+                if (name.charAt(i) == '@') {
+                    at = i;
+                    break;
+                }
+            }
+            if (at >= 0) {
+                int error = checkDomain(name, at + 1);
+                if (error >= 0) {
+                    return error;
+                }
+                end = at;
+            }
+        }
+
+        /*
+         * Lokalen Teil mit den Hierarchie-Ebenen prüfen.
+         */
+        boolean componentStart = true;
+        for (int i = 0; i < end; i++) {
+            char c = name.charAt(i);
+            if (c == separator) {
+                if (componentStart) {
+                    return i;
+                }
+                componentStart = true;
+                continue;
+            }
+            if (!isNameChar(c)) {
+                return i;
+            }
+            componentStart = false;
+        }
+        if (componentStart) {
+            return end;
+        }
+
+        if (ModifiedUtf7.encodedLength(name) > MAX_LENGTH) {
+            return name.length();
+        }
+        return -1;
+    }// Ende check(CharSequence)
+
+    /**
+     * Hilfs-Methode die prüft ob ein Zeichen in einer Hierarchie-Ebene
+     * erlaubt ist.
+     */
+    private boolean isNameChar(final char c) {
+        if (c < 0x80) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9')) {
+                return true;
+            }
+            if (c == '.') {
+                return unixHierarchySep;
+            }
+            if (c == '@') {
+                return !virtDomains;
+            }
+            return PUNCTUATION.indexOf(c) >= 0;
+        }
+        return Character.isLetterOrDigit(c) || Character.isSurrogate(c);
+    }// Ende isNameChar(char)
+
+    /**
+     * Hilfs-Methode die den Domain-Teil prüft.
+     */
+    private static int checkDomain(final CharSequence name, final int start) {
+        if (start >= name.length()) {
+            return start;
+        }
+        boolean labelStart = true;
+        for (int i = start; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '.') {
+                if (labelStart) {
+                    return i;
+                }
+                labelStart = true;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || (c == '-' && !labelStart)) {
+                labelStart = false;
+            } else {
+                return i;
+            }
+        }
+        return labelStart ? name.length() : -1;
+    }// Ende checkDomain(CharSequence, int)
+
+}// Ende class
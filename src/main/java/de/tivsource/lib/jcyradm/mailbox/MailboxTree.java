@@ -0,0 +1,527 @@
+package de.tivsource.lib.jcyradm.mailbox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.ModifiedUtf7;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse MailboxTree ist ein lokales Abbild der Mailbox-Namen eines
+ * Servers. Damit lässt sich ohne Kommando an den Server prüfen ob eine
+ * Mailbox existiert oder welche Unter-Mailboxen sie hat, i.e. um in
+ * Massen-Operationen Anlagen bestehender und Löschungen fehlender Mailboxen
+ * vorab auszufiltern.
+ *
+ * <p>
+ * Die Namen liegen als sortierte Tabelle vor, Unter-Mailboxen sind damit
+ * ein zusammenhängender Bereich der per binärer Suche gefunden wird. Neue
+ * und gelöschte Namen werden in kleinen Änderungsmengen gesammelt und ab
+ * einer Größe in die Tabelle übernommen. Mit virtdomains wird die Domain für
+ * die Sortierung vor den Namen gestellt (wie "example.org!user.max" im
+ * Cyrus), damit die Unter-Mailboxen auch dann zusammenhängend liegen.
+ * </p>
+ *
+ * <p>
+ * Gefüllt wird das Abbild mit LIST (siehe load), aktuell gehalten durch die
+ * Anlage und Löschung über JCyrAdm und BulkRunner. Änderungen die an der
+ * Bibliothek vorbei gemacht werden, sieht das Abbild erst beim nächsten
+ * Laden.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class MailboxTree {
+
+    /**
+     * Statischer Logger der Klasse MailboxTree.
+     */
+    private static final Logger LOGGER = Logger.getLogger(MailboxTree.class);
+
+    /**
+     * Präfix einer LIST Antwort.
+     */
+    private static final String LIST_RESPONSE = "* LIST ";
+
+    /**
+     * Oberste Ebene der Mailboxen der Benutzer.
+     */
+    private static final String USER = "user";
+
+    /**
+     * Trennzeichen zwischen Domain und Name im Schlüssel.
+     */
+    private static final char DOMAIN_SEPARATOR = '!';
+
+    /**
+     * Mindestgröße der Änderungsmengen ab der sie übernommen werden.
+     */
+    private static final int MERGE_MIN = 4096;
+
+    /**
+     * Anteil der Tabelle ab dem die Änderungsmengen übernommen werden.
+     */
+    private static final int MERGE_DIVISOR = 8;
+
+    /**
+     * Trennzeichen der Hierarchie.
+     */
+    private final char separator;
+
+    /**
+     * Ob der Server mit virtdomains läuft.
+     */
+    private final boolean virtDomains;
+
+    /**
+     * Schützt Tabelle und Änderungsmengen.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Sortierte Schlüssel.
+     */
+    private String[] keys = new String[0];
+
+    /**
+     * Neue Schlüssel die noch nicht in der Tabelle sind.
+     */
+    private final TreeSet<String> added = new TreeSet<String>();
+
+    /**
+     * Gelöschte Schlüssel die noch in der Tabelle sind.
+     */
+    private final Set<String> removed = new HashSet<String>();
+
+    /**
+     * Konstruktor der Klasse MailboxTree.
+     *
+     * @param validator - Liefert Trennzeichen und virtdomains des Servers.
+     */
+    public MailboxTree(final MailboxNameValidator validator) {
+        super();
+        this.separator = validator.getSeparator();
+        this.virtDomains = validator.isVirtDomains();
+    }// Ende MailboxTree(MailboxNameValidator)
+
+    /**
+     * Ersetzt den Inhalt durch die angegebenen Namen.
+     *
+     * @param names - Vollständige Mailbox-Namen (i.e. "user.max").
+     */
+    public final void load(final Collection<String> names) {
+        String[] sorted = new String[names.size()];
+        int size = 0;
+        for (String name : names) {
+            sorted[size++] = toKey(name);
+        }
+        Arrays.sort(sorted);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || !sorted[i].equals(sorted[unique - 1])) {
+                sorted[unique++] = sorted[i];
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            keys = unique == size ? sorted : Arrays.copyOf(sorted, unique);
+            added.clear();
+            removed.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }// Ende load(Collection<String>)
+
+    /**
+     * Ersetzt den Inhalt durch das Ergebnis eines LIST Kommandos, i.e. mit
+     * dem Muster "user.*" für alle Mailboxen der Benutzer.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Sitzung.
+     * @param pattern - Muster der Mailbox-Namen.
+     * @return int - Anzahl der geladenen Mailboxen.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde oder der
+     *             Server das Kommando ablehnt.
+     */
+    public final int load(final Pipeline pipeline, final String pattern)
+            throws IOException {
+        final List<String> names = new ArrayList<String>();
+        Command command = new Command("LIST") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox("").mailbox(pattern);
+            }
+
+            @Override
+            protected void untagged(final String line) {
+                String name = parseListLine(line);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+        };
+        pipeline.submit(command);
+        pipeline.sync();
+        if (!command.isOk()) {
+            throw new IOException("LIST failed: " + command.getStatus() + " "
+                    + command.getText());
+        }
+        load(names);
+        LOGGER.info(names.size() + " Mailboxen für " + pattern + " geladen.");
+        return names.size();
+    }// Ende load(Pipeline, String)
+
+    /**
+     * Prüft ob eine Mailbox existiert.
+     *
+     * @param name - Vollständiger Mailbox-Name (i.e. "user.max").
+     * @return boolean - True wenn die Mailbox im Abbild existiert.
+     */
+    public final boolean contains(final String name) {
+        String key = toKey(name);
+        lock.readLock().lock();
+        try {
+            return added.contains(key) || (!removed.contains(key)
+                    && Arrays.binarySearch(keys, key) >= 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }// Ende contains(String)
+
+    /**
+     * Nimmt eine Mailbox auf, i.e. nach einer erfolgreichen Anlage.
+     *
+     * @param name - Vollständiger Mailbox-Name.
+     */
+    public final void add(final String name) {
+        String key = toKey(name);
+        lock.writeLock().lock();
+        try {
+            if (!removed.remove(key) && Arrays.binarySearch(keys, key) < 0) {
+                added.add(key);
+                mergeIfLarge();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }// Ende add(String)
+
+    /**
+     * Entfernt eine Mailbox, ihre Unter-Mailboxen bleiben erhalten.
+     *
+     * @param name - Vollständiger Mailbox-Name.
+     * @return boolean - True wenn die Mailbox im Abbild existierte.
+     */
+    public final boolean remove(final String name) {
+        String key = toKey(name);
+        lock.writeLock().lock();
+        try {
+            return removeKey(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }// Ende remove(String)
+
+    /**
+     * Entfernt eine Mailbox mit allen Unter-Mailboxen, i.e. nach dem Löschen
+     * der Mailbox eines Benutzers.
+     *
+     * @param name - Vollständiger Mailbox-Name.
+     * @return int - Anzahl der entfernten Mailboxen.
+     */
+    public final int removeSubtree(final String name) {
+        String key = toKey(name);
+        lock.writeLock().lock();
+        try {
+            int count = removeKey(key) ? 1 : 0;
+            for (String child : collect(key, false)) {
+                if (removeKey(child)) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }// Ende removeSubtree(String)
+
+    /**
+     * Übernimmt das Löschen einer Mailbox so wie Cyrus es ausführt: mit der
+     * Mailbox eines Benutzers (i.e. "user.max") werden alle Unter-Mailboxen
+     * gelöscht, bei allen anderen Mailboxen nur die Mailbox selbst.
+     *
+     * @param name - Vollständiger Mailbox-Name.
+     * @return int - Anzahl der entfernten Mailboxen.
+     */
+    public final int deleted(final String name) {
+        String key = toKey(name);
+        String local = key.substring(key.indexOf(DOMAIN_SEPARATOR) + 1);
+        String userPrefix = USER + separator;
+        if (local.startsWith(userPrefix)
+                && local.indexOf(separator, userPrefix.length()) < 0) {
+            return removeSubtree(name);
+        }
+        return remove(name) ? 1 : 0;
+    }// Ende deleted(String)
+
+    /**
+     * Liefert die direkten Unter-Mailboxen einer Mailbox.
+     *
+     * @param name - Vollständiger Mailbox-Name (i.e. "user.max").
+     * @return List - Vollständige Namen, sortiert.
+     */
+    public final List<String> children(final String name) {
+        return find(name, true);
+    }// Ende children(String)
+
+    /**
+     * Liefert alle Unter-Mailboxen einer Mailbox in jeder Tiefe.
+     *
+     * @param name - Vollständiger Mailbox-Name (i.e. "user.max").
+     * @return List - Vollständige Namen, sortiert.
+     */
+    public final List<String> descendants(final String name) {
+        return find(name, false);
+    }// Ende descendants(String)
+
+    /**
+     * Liefert die Anzahl der Mailboxen.
+     *
+     * @return int - Anzahl der Mailboxen im Abbild.
+     */
+    public final int size() {
+        lock.readLock().lock();
+        try {
+            return keys.length - removed.size() + added.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }// Ende size()
+
+    /**
+     * Liest den Mailbox-Namen aus einer LIST Antwort des Servers (i.e.
+     * "* LIST (\HasNoChildren) "." "user.max"").
+     *
+     * @param line - Die Antwortzeile.
+     * @return String - Der dekodierte Name oder null wenn die Zeile keine
+     *         LIST Antwort ist.
+     */
+    public static String parseListLine(final String line) {
+        if (!line.startsWith(LIST_RESPONSE)) {
+            return null;
+        }
+        int position = line.indexOf(')', LIST_RESPONSE.length());
+        if (position < 0) {
+            return null;
+        }
+        /*
+         * Trennzeichen als Quoted String oder NIL überspringen.
+         */
+        position = skipSpaces(line, position + 1);
+        if (position < line.length() && line.charAt(position) == '"') {
+            position = endOfQuoted(line, position) + 1;
+        } else {
+            while (position < line.length() && line.charAt(position) != ' ') {
+                position++;
+            }
+        }
+        position = skipSpaces(line, position);
+        if (position >= line.length()) {
+            return null;
+        }
+
+        String name;
+        if (line.charAt(position) == '"') {
+            StringBuilder builder = new StringBuilder(line.length());
+            for (int i = position + 1; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    break;
+                }
+                if (c == '\\' && i + 1 < line.length()) {
+                    c = line.charAt(++i);
+                }
+                builder.append(c);
+            }
+            name = builder.toString();
+        } else {
+            name = line.substring(position).trim();
+        }
+        return ModifiedUtf7.decode(name);
+    }// Ende parseListLine(String)
+
+    /**
+     * Hilfs-Methode die einen Schlüssel entfernt, der Schreib-Lock muss
+     * gehalten werden.
+     */
+    private boolean removeKey(final String key) {
+        if (added.remove(key)) {
+            return true;
+        }
+        if (!removed.contains(key) && Arrays.binarySearch(keys, key) >= 0) {
+            removed.add(key);
+            mergeIfLarge();
+            return true;
+        }
+        return false;
+    }// Ende removeKey(String)
+
+    /**
+     * Hilfs-Methode die die Unter-Mailboxen sucht und in Namen wandelt.
+     */
+    private List<String> find(final String name, final boolean direct) {
+        List<String> result;
+        lock.readLock().lock();
+        try {
+            result = collect(toKey(name), direct);
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < result.size(); i++) {
+            result.set(i, toName(result.get(i)));
+        }
+        return result;
+    }// Ende find(String, boolean)
+
+    /**
+     * Hilfs-Methode die die Schlüssel der Unter-Mailboxen sortiert liefert,
+     * ein Lock muss gehalten werden.
+     */
+    private List<String> collect(final String key, final boolean direct) {
+        String from = key + separator;
+        String to = key + (char) (separator + 1);
+        List<String> result = new ArrayList<String>();
+
+        int start = Arrays.binarySearch(keys, from);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        int end = Arrays.binarySearch(keys, to);
+        if (end < 0) {
+            end = -end - 1;
+        }
+        for (int i = start; i < end; i++) {
+            if (!removed.contains(keys[i])) {
+                result.add(keys[i]);
+            }
+        }
+        Set<String> delta = added.subSet(from, to);
+        if (!delta.isEmpty()) {
+            result.addAll(delta);
+            Collections.sort(result);
+        }
+
+        if (direct) {
+            int keep = 0;
+            for (String child : result) {
+                if (child.indexOf(separator, from.length()) < 0) {
+                    result.set(keep++, child);
+                }
+            }
+            result.subList(keep, result.size()).clear();
+        }
+        return result;
+    }// Ende collect(String, boolean)
+
+    /**
+     * Hilfs-Methode die die Änderungsmengen in die Tabelle übernimmt wenn
+     * sie zu groß werden, der Schreib-Lock muss gehalten werden.
+     */
+    private void mergeIfLarge() {
+        int changes = added.size() + removed.size();
+        if (changes < Math.max(MERGE_MIN, keys.length / MERGE_DIVISOR)) {
+            return;
+        }
+        String[] merged = new String[keys.length - removed.size()
+                + added.size()];
+        int size = 0;
+        int i = 0;
+        for (String key : added) {
+            while (i < keys.length && keys[i].compareTo(key) < 0) {
+                if (!removed.contains(keys[i])) {
+                    merged[size++] = keys[i];
+                }
+                i++;
+            }
+            merged[size++] = key;
+        }
+        for (; i < keys.length; i++) {
+            if (!removed.contains(keys[i])) {
+                merged[size++] = keys[i];
+            }
+        }
+        keys = merged;
+        added.clear();
+        removed.clear();
+    }// Ende mergeIfLarge()
+
+    /**
+     * Hilfs-Methode die einen Namen in den Schlüssel wandelt.
+     */
+    private String toKey(final String name) {
+        if (!virtDomains) {
+            return name;
+        }
+        int at = name.lastIndexOf('@');
+        if (at < 0) {
+            return name;
+        }
+        return name.substring(at + 1) + DOMAIN_SEPARATOR
+                + name.substring(0, at);
+    }// Ende toKey(String)
+
+    /**
+     * Hilfs-Methode die einen Schlüssel in den Namen wandelt.
+     */
+    private String toName(final String key) {
+        if (!virtDomains) {
+            return key;
+        }
+        int bang = key.indexOf(DOMAIN_SEPARATOR);
+        if (bang < 0) {
+            return key;
+        }
+        return key.substring(bang + 1) + '@' + key.substring(0, bang);
+    }// Ende toName(String)
+
+    /**
+     * Hilfs-Methode die Leerzeichen überspringt.
+     */
+    private static int skipSpaces(final String line, final int from) {
+        int position = from;
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+        return position;
+    }// Ende skipSpaces(String, int)
+
+    /**
+     * Hilfs-Methode die das Ende eines Quoted Strings sucht.
+     */
+    private static int endOfQuoted(final String line, final int start) {
+        for (int i = start + 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return line.length();
+    }// Ende endOfQuoted(String, int)
+
+}// Ende class
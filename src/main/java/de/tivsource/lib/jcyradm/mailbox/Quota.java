@@ -0,0 +1,129 @@
+package de.tivsource.lib.jcyradm.mailbox;
+
+/**
+ * Die Klasse Quota hält die Quota einer Mailbox zu einem Zeitpunkt.
+ * Objekte der Klasse sind unveränderlich und können gefahrlos zwischen
+ * Threads geteilt werden.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class Quota {
+
+    /**
+     * Name der Mailbox.
+     */
+    private final String mailbox;
+
+    /**
+     * Benutzter Speicher in KB.
+     */
+    private final long used;
+
+    /**
+     * Grenze des Speichers in KB.
+     */
+    private final long limit;
+
+    /**
+     * Konstruktor der Klasse Quota.
+     *
+     * @param mailboxName - Name der Mailbox.
+     * @param usedKb - Benutzter Speicher in KB.
+     * @param limitKb - Grenze des Speichers in KB.
+     */
+    public Quota(final String mailboxName, final long usedKb,
+            final long limitKb) {
+        super();
+        this.mailbox = mailboxName;
+        this.used = usedKb;
+        this.limit = limitKb;
+    }// Ende Quota(String, long, long)
+
+    /**
+     * Liest die Quota aus einer QUOTA Antwort des Servers (i.e.
+     * "* QUOTA user.max (STORAGE 10 1024)").
+     *
+     * @param mailboxName - Name der Mailbox.
+     * @param line - Die Antwortzeile.
+     * @return Quota - Die Quota oder null wenn die Zeile keine STORAGE Quota
+     *         enthält.
+     */
+    public static Quota parse(final String mailboxName, final String line) {
+        int storage = line.lastIndexOf("(STORAGE ");
+        if (storage < 0) {
+            return null;
+        }
+        int start = storage + "(STORAGE ".length();
+        int space = line.indexOf(' ', start);
+        int end = line.indexOf(')', start);
+        if (space < 0 || end < space) {
+            return null;
+        }
+        try {
+            return new Quota(mailboxName,
+                    Long.parseLong(line.substring(start, space)),
+                    Long.parseLong(line.substring(space + 1, end)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }// Ende parse(String, String)
+
+    /**
+     * Liefert den Namen der Mailbox.
+     *
+     * @return String - Name der Mailbox.
+     */
+    public String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert den benutzten Speicher.
+     *
+     * @return long - Benutzter Speicher in KB.
+     */
+    public long getUsed() {
+        return used;
+    }// Ende getUsed()
+
+    /**
+     * Liefert die Grenze des Speichers.
+     *
+     * @return long - Grenze des Speichers in KB.
+     */
+    public long getLimit() {
+        return limit;
+    }// Ende getLimit()
+
+    /**
+     * Liefert die Auslastung der Quota.
+     *
+     * @return double - Auslastung in Prozent, 0 wenn keine Grenze gesetzt ist.
+     */
+    public double getLoad() {
+        return limit <= 0 ? 0.0 : used * 100.0 / limit;
+    }// Ende getLoad()
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof Quota)) {
+            return false;
+        }
+        Quota quota = (Quota) other;
+        return used == quota.used && limit == quota.limit
+                && mailbox.equals(quota.mailbox);
+    }// Ende equals(Object)
+
+    @Override
+    public int hashCode() {
+        return (mailbox.hashCode() * 31 + (int) (used ^ (used >>> 32))) * 31
+                + (int) (limit ^ (limit >>> 32));
+    }// Ende hashCode()
+
+    @Override
+    public String toString() {
+        return mailbox + " (STORAGE " + used + " " + limit + ")";
+    }// Ende toString()
+
+}// Ende class
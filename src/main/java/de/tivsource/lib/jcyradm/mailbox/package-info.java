@@ -0,0 +1,9 @@
+/**
+ * In diesem Paket befinden sich die Klassen zur Prüfung und Verwaltung von
+ * Mailbox-Namen, das lokale Abbild der Mailbox-Namen eines Servers und die
+ * Werte-Klassen der Mailboxen (i.e. Quota).
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.mailbox;
@@ -0,0 +1,124 @@
+package de.tivsource.lib.jcyradm.metadata;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Die Klasse MailboxMetadata enthält die Annotationen einer Mailbox. Die
+ * Namen der Einträge teilen sich alle Mailboxen einer Abfrage, je Mailbox
+ * wird nur ein Array mit den Werten angelegt.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class MailboxMetadata {
+
+    /**
+     * Vollständiger Name der Mailbox.
+     */
+    private final String mailbox;
+
+    /**
+     * Namen der abgefragten Einträge, von allen Mailboxen geteilt.
+     */
+    private final String[] entries;
+
+    /**
+     * Werte, gleicher Index wie die Einträge, null wenn nicht gesetzt.
+     */
+    private final String[] values;
+
+    /**
+     * Konstruktor der Klasse MailboxMetadata.
+     *
+     * @param mailboxName - Vollständiger Name der Mailbox.
+     * @param entryNames - Namen der abgefragten Einträge.
+     */
+    MailboxMetadata(final String mailboxName, final String[] entryNames) {
+        super();
+        this.mailbox = mailboxName;
+        this.entries = entryNames;
+        this.values = new String[entryNames.length];
+    }// Ende MailboxMetadata(String, String[])
+
+    /**
+     * Liefert den Namen der Mailbox.
+     *
+     * @return String - Vollständiger Name der Mailbox.
+     */
+    public String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert den Wert eines Eintrags, Groß- und Kleinschreibung des Namens
+     * spielen keine Rolle.
+     *
+     * @param entry - Name des Eintrags (i.e. "/shared/comment").
+     * @return String - Wert oder null wenn nicht gesetzt oder nicht
+     *         abgefragt.
+     */
+    public String get(final String entry) {
+        int index = indexOf(entries, entry);
+        return index < 0 ? null : values[index];
+    }// Ende get(String)
+
+    /**
+     * Liefert ob mindestens ein Eintrag gesetzt ist.
+     *
+     * @return boolean - True wenn ein Wert vorhanden ist.
+     */
+    public boolean isEmpty() {
+        for (String value : values) {
+            if (value != null) {
+                return false;
+            }
+        }
+        return true;
+    }// Ende isEmpty()
+
+    /**
+     * Liefert die gesetzten Einträge als Map.
+     *
+     * @return Map - Name des Eintrags auf den Wert, in der Reihenfolge der
+     *         Abfrage, ohne nicht gesetzte Einträge.
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < entries.length; i++) {
+            if (values[i] != null) {
+                map.put(entries[i], values[i]);
+            }
+        }
+        return map;
+    }// Ende toMap()
+
+    @Override
+    public String toString() {
+        return mailbox + " " + toMap();
+    }// Ende toString()
+
+    /**
+     * Hilfs-Methode die den Wert eines Eintrags aus der Antwort setzt.
+     * Einträge die nicht abgefragt wurden (i.e. bei DEPTH) werden ignoriert.
+     */
+    void set(final String entry, final String value) {
+        int index = indexOf(entries, entry);
+        if (index >= 0) {
+            values[index] = value;
+        }
+    }// Ende set(String, String)
+
+    /**
+     * Hilfs-Methode die den Index eines Eintrags sucht.
+     */
+    private static int indexOf(final String[] names, final String entry) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(entry)) {
+                return i;
+            }
+        }
+        return -1;
+    }// Ende indexOf(String[], String)
+
+}// Ende class
@@ -0,0 +1,19 @@
+package de.tivsource.lib.jcyradm.metadata;
+
+/**
+ * Das Interface MetadataListener empfängt die Annotationen einer Mailbox,
+ * sobald das Kommando das sie abgefragt hat abgeschlossen ist.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface MetadataListener {
+
+    /**
+     * Wird einmal je abgefragter Mailbox aufgerufen.
+     *
+     * @param metadata - Die Annotationen der Mailbox.
+     */
+    void metadata(MailboxMetadata metadata);
+
+}// Ende interface
@@ -0,0 +1,356 @@
+package de.tivsource.lib.jcyradm.metadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.CommandListener;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.ModifiedUtf7;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse MetadataScan fragt die Annotationen vieler Mailboxen über eine
+ * Pipeline ab (GETMETADATA) und setzt sie (SETMETADATA), ohne auf die
+ * einzelnen Antworten zu warten.
+ * <p>
+ * Ein GETMETADATA fragt alle Einträge auf einmal ab. Cyrus nimmt außerdem
+ * eine Liste von Mailboxen in Klammern an, so reichen für einen ganzen
+ * Server wenige Kommandos. Server die nur eine Mailbox je Kommando
+ * kennen, oder eine Liste mit einer nicht vorhandenen Mailbox, lehnen das
+ * Kommando ab. Die Mailboxen eines abgelehnten Kommandos werden dann
+ * einzeln wiederholt.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public final class MetadataScan {
+
+    /**
+     * Präfix einer METADATA Antwort.
+     */
+    private static final String METADATA_RESPONSE = "* METADATA ";
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private MetadataScan() {
+        super();
+    }// Ende MetadataScan()
+
+    /**
+     * Erzeugt die Abfrage mehrerer Einträge für mehrere Mailboxen. Ist das
+     * Kommando erfolgreich, wird der MetadataListener einmal je Mailbox
+     * aufgerufen, auch wenn keiner der Einträge gesetzt ist.
+     *
+     * @param mailboxes - Vollständige Namen der Mailboxen, mehr als eine nur
+     *            für Cyrus.
+     * @param entries - Namen der Einträge (i.e. "/shared/comment").
+     * @param listener - Empfänger der Annotationen.
+     * @return Command - Das Kommando.
+     */
+    public static Command create(final List<String> mailboxes,
+            final String[] entries, final MetadataListener listener) {
+        if (mailboxes.isEmpty() || entries.length == 0) {
+            throw new IllegalArgumentException("no mailbox or no entry");
+        }
+        return new MetadataCommand(mailboxes, entries, listener);
+    }// Ende create(List<String>, String[], MetadataListener)
+
+    /**
+     * Fragt die Einträge aller Mailboxen ab und wartet auf alle Antworten.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param entries - Namen der Einträge.
+     * @param mailboxesPerCommand - Anzahl der Mailboxen je Kommando, 1 für
+     *            Server ohne die Erweiterung von Cyrus.
+     * @param listener - Empfänger der Annotationen.
+     * @return int - Anzahl der Mailboxen die nicht abgefragt werden konnten.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public static int scan(final Pipeline pipeline,
+            final Iterable<String> mailboxes, final String[] entries,
+            final int mailboxesPerCommand, final MetadataListener listener)
+            throws IOException {
+        final String[] shared = entries.clone();
+        final List<String> retry = new ArrayList<String>();
+        final int[] failed = new int[1];
+        CommandListener batchListener = new CommandListener() {
+            @Override
+            public void completed(final Command command) {
+                if (!command.isOk()) {
+                    List<String> names =
+                            ((MetadataCommand) command).getMailboxes();
+                    if (names.size() > 1) {
+                        retry.addAll(names);
+                    } else {
+                        failed[0]++;
+                    }
+                }
+            }
+        };
+
+        int size = Math.max(1, mailboxesPerCommand);
+        List<String> batch = new ArrayList<String>(size);
+        for (String mailbox : mailboxes) {
+            batch.add(mailbox);
+            if (batch.size() == size) {
+                submit(pipeline, batch, shared, listener, batchListener);
+                batch = new ArrayList<String>(size);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(pipeline, batch, shared, listener, batchListener);
+        }
+        pipeline.sync();
+
+        for (int i = 0; i < retry.size(); i++) {
+            submit(pipeline, Collections.singletonList(retry.get(i)), shared,
+                    listener, batchListener);
+        }
+        pipeline.sync();
+        return failed[0];
+    }// Ende scan(Pipeline, Iterable<String>, String[], int, MetadataListener)
+
+    /**
+     * Setzt die Einträge vieler Mailboxen, ein SETMETADATA je Mailbox, und
+     * wartet auf alle Antworten.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param changes - Vollständiger Name der Mailbox auf die Einträge, ein
+     *            Wert null löscht den Eintrag.
+     * @return Map - Mailbox auf den Text der Ablehnung, leer wenn alle
+     *         Kommandos erfolgreich waren.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public static Map<String, String> update(final Pipeline pipeline,
+            final Map<String, Map<String, String>> changes)
+            throws IOException {
+        final Map<String, String> failures =
+                new LinkedHashMap<String, String>();
+        for (final Map.Entry<String, Map<String, String>> change
+                : changes.entrySet()) {
+            if (change.getValue().isEmpty()) {
+                continue;
+            }
+            Command command = Commands.setMetadata(change.getKey(),
+                    change.getValue());
+            command.setListener(new CommandListener() {
+                @Override
+                public void completed(final Command done) {
+                    if (!done.isOk()) {
+                        failures.put(change.getKey(), done.getText());
+                    }
+                }
+            });
+            pipeline.submit(command);
+        }
+        pipeline.sync();
+        return failures;
+    }// Ende update(Pipeline, Map<String, Map<String, String>>)
+
+    /**
+     * Hilfs-Methode die ein Kommando für eine Gruppe von Mailboxen sendet.
+     */
+    private static void submit(final Pipeline pipeline,
+            final List<String> batch, final String[] entries,
+            final MetadataListener listener,
+            final CommandListener batchListener) throws IOException {
+        MetadataCommand command =
+                new MetadataCommand(batch, entries, listener);
+        command.chain(batchListener);
+        pipeline.submit(command);
+    }// Ende submit(Pipeline, List<String>, String[], ...)
+
+    /**
+     * Das GETMETADATA Kommando, sammelt die Antwortzeilen je Mailbox und
+     * gibt sie beim Abschluss an den MetadataListener.
+     */
+    private static final class MetadataCommand extends Command implements
+            CommandListener {
+
+        /**
+         * Abgefragte Mailboxen.
+         */
+        private final List<String> mailboxes;
+
+        /**
+         * Abgefragte Einträge.
+         */
+        private final String[] entries;
+
+        /**
+         * Empfänger der Annotationen.
+         */
+        private final MetadataListener listener;
+
+        /**
+         * Annotationen je Mailbox, werden erst mit der ersten Antwortzeile
+         * angelegt.
+         */
+        private final Map<String, MailboxMetadata> results;
+
+        /**
+         * Weiterer Listener der nach der Auslieferung aufgerufen wird.
+         */
+        private CommandListener next;
+
+        /**
+         * Konstruktor der Klasse MetadataCommand.
+         */
+        private MetadataCommand(final List<String> mailboxNames,
+                final String[] entryNames,
+                final MetadataListener metadataListener) {
+            super("GETMETADATA");
+            this.mailboxes = mailboxNames;
+            this.entries = entryNames;
+            this.listener = metadataListener;
+            this.results = new LinkedHashMap<String, MailboxMetadata>(
+                    mailboxNames.size() * 2);
+            setListener(this);
+        }
+
+        @Override
+        protected void writeArguments(final CommandEncoder encoder)
+                throws IOException {
+            if (mailboxes.size() == 1) {
+                encoder.mailbox(mailboxes.get(0));
+            } else {
+                encoder.openList();
+                for (String mailbox : mailboxes) {
+                    encoder.mailbox(mailbox);
+                }
+                encoder.closeList();
+            }
+            if (entries.length == 1) {
+                encoder.astring(entries[0]);
+            } else {
+                encoder.openList();
+                for (String entry : entries) {
+                    encoder.astring(entry);
+                }
+                encoder.closeList();
+            }
+        }
+
+        @Override
+        protected void untagged(final String line) {
+            if (!line.startsWith(METADATA_RESPONSE)) {
+                return;
+            }
+            int[] position = {METADATA_RESPONSE.length()};
+            String mailbox = ModifiedUtf7.decode(nextString(line, position));
+            MailboxMetadata metadata = results.get(mailbox);
+            if (metadata == null) {
+                metadata = new MailboxMetadata(mailbox, entries);
+                results.put(mailbox, metadata);
+            }
+            skipTo(line, position, '(');
+            while (position[0] < line.length()
+                    && line.charAt(position[0]) != ')') {
+                String entry = nextString(line, position);
+                if (entry == null) {
+                    return;
+                }
+                metadata.set(entry, nextString(line, position));
+            }
+        }
+
+        @Override
+        public void completed(final Command command) {
+            if (isOk()) {
+                for (String mailbox : mailboxes) {
+                    MailboxMetadata metadata = results.remove(mailbox);
+                    listener.metadata(metadata != null ? metadata
+                            : new MailboxMetadata(mailbox, entries));
+                }
+                // Antworten unter einem anderen Namen (i.e. Groß- und
+                // Kleinschreibung von INBOX)
+                for (MailboxMetadata metadata : results.values()) {
+                    listener.metadata(metadata);
+                }
+            }
+            results.clear();
+            if (next != null) {
+                next.completed(command);
+            }
+        }
+
+        /**
+         * Hilfs-Methode die einen weiteren Listener setzt.
+         */
+        private void chain(final CommandListener commandListener) {
+            this.next = commandListener;
+        }
+
+        /**
+         * Hilfs-Methode die die abgefragten Mailboxen liefert.
+         */
+        private List<String> getMailboxes() {
+            return mailboxes;
+        }
+    }// Ende class MetadataCommand
+
+    /**
+     * Hilfs-Methode die das nächste Atom, den nächsten Quoted String oder
+     * NIL liest. Literale hat die Pipeline schon in Quoted Strings
+     * umgewandelt.
+     */
+    private static String nextString(final String line, final int[] position) {
+        int i = position[0];
+        while (i < line.length() && (line.charAt(i) == ' '
+                || line.charAt(i) == '(')) {
+            i++;
+        }
+        if (i >= line.length() || line.charAt(i) == ')') {
+            position[0] = i;
+            return null;
+        }
+        String result;
+        if (line.charAt(i) == '"') {
+            StringBuilder value = new StringBuilder();
+            i++;
+            while (i < line.length() && line.charAt(i) != '"') {
+                char c = line.charAt(i++);
+                if (c == '\\' && i < line.length()) {
+                    c = line.charAt(i++);
+                }
+                value.append(c);
+            }
+            result = value.toString();
+            i++;
+        } else {
+            int start = i;
+            while (i < line.length() && line.charAt(i) != ' '
+                    && line.charAt(i) != ')' && line.charAt(i) != '(') {
+                i++;
+            }
+            result = line.substring(start, i);
+            if ("NIL".equalsIgnoreCase(result)) {
+                result = null;
+            }
+        }
+        while (i < line.length() && line.charAt(i) == ' ') {
+            i++;
+        }
+        position[0] = i;
+        return result;
+    }// Ende nextString(String, int[])
+
+    /**
+     * Hilfs-Methode die bis hinter ein Zeichen springt.
+     */
+    private static void skipTo(final String line, final int[] position,
+            final char c) {
+        int index = line.indexOf(c, position[0]);
+        position[0] = index < 0 ? line.length() : index + 1;
+    }// Ende skipTo(String, int[], char)
+
+}// Ende class
@@ -0,0 +1,9 @@
+/**
+ * In diesem Paket befinden sich die Klassen zum Lesen und Setzen von
+ * Annotationen (METADATA, RFC 5464) vieler Mailboxen über eine Pipeline,
+ * i.e. für Einstellungen wie /shared/vendor/cmu/cyrus-imapd/expire.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.metadata;
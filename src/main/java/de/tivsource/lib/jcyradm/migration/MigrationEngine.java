@@ -0,0 +1,646 @@
+package de.tivsource.lib.jcyradm.migration;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.bulk.BulkProgress;
+import de.tivsource.lib.jcyradm.exception.MigrationRefused;
+import de.tivsource.lib.jcyradm.exception.NoServerResponse;
+import de.tivsource.lib.jcyradm.exception.NoSessionAvailable;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+
+/**
+ * Die Klasse MigrationEngine verschiebt viele Mailboxen zwischen Backends
+ * und Partitionen ohne ein einzelnes Backend zu überlasten.
+ *
+ * <p>
+ * Ein Verteiler startet die Migrationen sobald auf dem Quell- und dem
+ * Ziel-Backend ein Platz frei ist. Die Anzahl der gleichzeitigen Migrationen
+ * ist je Backend getrennt als Quelle und als Ziel begrenzt. Optional hat ein
+ * Backend eine Bandbreite in KB je Sekunde: beim Start wird die Größe der
+ * Mailbox gegen die Bandbreite von Quelle und Ziel gebucht, ist sie
+ * überbucht, startet auf dem Backend nichts Neues bis die Schuld abgebaut
+ * ist. Die Quellen werden reihum bedient, je Quelle die größten Mailboxen
+ * zuerst, damit am Ende keine einzelne große Mailbox den Lauf verlängert.
+ * </p>
+ *
+ * <p>
+ * Verbindungsfehler und vorübergehende Ablehnungen (i.e. "[TRYAGAIN]" oder
+ * gesperrte Mailboxen) werden mit wachsendem Abstand wiederholt, andere
+ * Ablehnungen gelten sofort als endgültig fehlgeschlagen. Nach einem
+ * Verbindungsfehler ist unbekannt ob der Server das Kommando ausgeführt
+ * hat. Vor der Wiederholung eines XFER wird deshalb mit LIST auf dem Ziel
+ * geprüft ob die Mailbox schon dort liegt. Ein RENAME lässt sich so nicht
+ * prüfen und wird nicht wiederholt. Bleibt der Ausgang offen, endet die
+ * Migration mit UNKNOWN statt FAILED.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class MigrationEngine {
+
+    /**
+     * Statischer Logger der Klasse MigrationEngine.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(MigrationEngine.class);
+
+    /**
+     * Standard Anzahl der gleichzeitigen Migrationen je Backend.
+     */
+    private static final int DEFAULT_LIMIT = 2;
+
+    /**
+     * Standard Anzahl der Versuche je Migration.
+     */
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Standard Wartezeit in Millisekunden vor dem ersten Wiederholen.
+     */
+    private static final long DEFAULT_RETRY_DELAY = 30000L;
+
+    /**
+     * Anzahl der Migrationen je Quelle die nach einem freien Ziel
+     * durchsucht werden.
+     */
+    private static final int SCAN_WINDOW = 16;
+
+    /**
+     * Maximale Wartezeit in Millisekunden des Verteilers.
+     */
+    private static final long MAX_WAIT = 1000L;
+
+    /**
+     * Kennzeichen vorübergehender Ablehnungen in der Antwort des Servers.
+     */
+    private static final String[] TRANSIENT = {"[TRYAGAIN]", "[INUSE]",
+        "locked", "in use"};
+
+    /**
+     * Führt die einzelnen Migrationen aus.
+     */
+    private final Migrator migrator;
+
+    /**
+     * Schützt den Zustand des Verteilers.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Wartende Migrationen je Quell-Backend.
+     */
+    private final Map<String, ArrayDeque<MigrationTask>> queues =
+            new LinkedHashMap<String, ArrayDeque<MigrationTask>>();
+
+    /**
+     * Migrationen die auf ihren nächsten Versuch warten.
+     */
+    private final List<MigrationTask> delayed = new ArrayList<MigrationTask>();
+
+    /**
+     * Laufende Migrationen je Backend als Quelle.
+     */
+    private final Map<String, AtomicInteger> sourceRunning =
+            new HashMap<String, AtomicInteger>();
+
+    /**
+     * Laufende Migrationen je Backend als Ziel.
+     */
+    private final Map<String, AtomicInteger> targetRunning =
+            new HashMap<String, AtomicInteger>();
+
+    /**
+     * Abweichende Grenzen je Backend als Quelle.
+     */
+    private final Map<String, Integer> sourceLimits =
+            new HashMap<String, Integer>();
+
+    /**
+     * Abweichende Grenzen je Backend als Ziel.
+     */
+    private final Map<String, Integer> targetLimits =
+            new HashMap<String, Integer>();
+
+    /**
+     * Bandbreite je Backend, Marken sind KB.
+     */
+    private final Map<String, TokenBucket> bandwidth =
+            new HashMap<String, TokenBucket>();
+
+    /**
+     * Verschobene KB.
+     */
+    private final AtomicLong movedKb = new AtomicLong();
+
+    /**
+     * Anzahl der Wiederholungen.
+     */
+    private final AtomicLong retries = new AtomicLong();
+
+    /**
+     * Grenze der gleichzeitigen Migrationen je Backend als Quelle.
+     */
+    private int sourceLimit = DEFAULT_LIMIT;
+
+    /**
+     * Grenze der gleichzeitigen Migrationen je Backend als Ziel.
+     */
+    private int targetLimit = DEFAULT_LIMIT;
+
+    /**
+     * Maximale Anzahl der Versuche je Migration.
+     */
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    /**
+     * Wartezeit in Millisekunden vor dem ersten Wiederholen, danach
+     * vervielfacht mit der Anzahl der Versuche.
+     */
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+
+    /**
+     * Laufende Migrationen.
+     */
+    private int running;
+
+    /**
+     * Noch nicht abgeschlossene Migrationen.
+     */
+    private int remaining;
+
+    /**
+     * Nächste Quelle des Verteilers.
+     */
+    private int cursor;
+
+    /**
+     * Empfänger der Ergebnisse, null wenn keiner.
+     */
+    private volatile MigrationListener listener;
+
+    /**
+     * Konstruktor der Klasse MigrationEngine.
+     *
+     * @param taskMigrator - Führt die einzelnen Migrationen aus, i.e. ein
+     *            PoolMigrator.
+     */
+    public MigrationEngine(final Migrator taskMigrator) {
+        super();
+        this.migrator = taskMigrator;
+    }// Ende MigrationEngine(Migrator)
+
+    /**
+     * Nimmt eine Migration auf, auch während eines Laufs.
+     *
+     * @param task - Die Migration.
+     */
+    public final void add(final MigrationTask task) {
+        synchronized (lock) {
+            ArrayDeque<MigrationTask> queue = queues.get(task.getSource());
+            if (queue == null) {
+                queue = new ArrayDeque<MigrationTask>();
+                queues.put(task.getSource(), queue);
+            }
+            queue.add(task);
+            remaining++;
+            lock.notifyAll();
+        }
+    }// Ende add(MigrationTask)
+
+    /**
+     * Führt alle aufgenommenen Migrationen aus und kehrt zurück wenn alle
+     * abgeschlossen oder endgültig fehlgeschlagen sind.
+     *
+     * @param progress - Zählt die Migrationen, die Gesamtzahl wird gesetzt.
+     * @throws InterruptedException - Wenn der Thread unterbrochen wurde,
+     *             laufende Migrationen werden noch zu Ende geführt.
+     */
+    public final void run(final BulkProgress progress)
+            throws InterruptedException {
+        ExecutorService workers = Executors.newCachedThreadPool(
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "jcyradm-migration-"
+                                        + count.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            synchronized (lock) {
+                progress.setTotal(remaining);
+                Comparator<MigrationTask> largestFirst =
+                        new Comparator<MigrationTask>() {
+                            @Override
+                            public int compare(final MigrationTask a,
+                                    final MigrationTask b) {
+                                return Long.compare(b.getSizeKb(),
+                                        a.getSizeKb());
+                            }
+                        };
+                for (Map.Entry<String, ArrayDeque<MigrationTask>> entry
+                        : queues.entrySet()) {
+                    List<MigrationTask> sorted =
+                            new ArrayList<MigrationTask>(entry.getValue());
+                    Collections.sort(sorted, largestFirst);
+                    entry.setValue(new ArrayDeque<MigrationTask>(sorted));
+                }
+
+                while (remaining > 0) {
+                    long waitNanos = dispatch(workers, progress);
+                    if (remaining == 0) {
+                        break;
+                    }
+                    long waitMillis = Math.min(MAX_WAIT,
+                            TimeUnit.NANOSECONDS.toMillis(waitNanos));
+                    lock.wait(Math.max(1L, waitMillis));
+                }
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            progress.finish();
+        }
+    }// Ende run(BulkProgress)
+
+    /**
+     * Setzt die Grenze der gleichzeitigen Migrationen je Backend als Quelle.
+     *
+     * @param limit - Grenze, mindestens 1.
+     */
+    public final void setSourceLimit(final int limit) {
+        synchronized (lock) {
+            this.sourceLimit = Math.max(1, limit);
+            lock.notifyAll();
+        }
+    }// Ende setSourceLimit(int)
+
+    /**
+     * Setzt die Grenze der gleichzeitigen Migrationen je Backend als Ziel.
+     *
+     * @param limit - Grenze, mindestens 1.
+     */
+    public final void setTargetLimit(final int limit) {
+        synchronized (lock) {
+            this.targetLimit = Math.max(1, limit);
+            lock.notifyAll();
+        }
+    }// Ende setTargetLimit(int)
+
+    /**
+     * Setzt abweichende Grenzen für ein Backend.
+     *
+     * @param backend - Name des Backends.
+     * @param asSource - Grenze als Quelle, mindestens 1.
+     * @param asTarget - Grenze als Ziel, mindestens 1.
+     */
+    public final void setLimits(final String backend, final int asSource,
+            final int asTarget) {
+        synchronized (lock) {
+            sourceLimits.put(backend, Math.max(1, asSource));
+            targetLimits.put(backend, Math.max(1, asTarget));
+            lock.notifyAll();
+        }
+    }// Ende setLimits(String, int, int)
+
+    /**
+     * Setzt die Bandbreite eines Backends gegen die die Größen der
+     * Mailboxen gebucht werden.
+     *
+     * @param backend - Name des Backends.
+     * @param kbPerSecond - Bandbreite in KB je Sekunde.
+     */
+    public final void setBandwidth(final String backend,
+            final double kbPerSecond) {
+        synchronized (lock) {
+            bandwidth.put(backend, new TokenBucket(kbPerSecond,
+                    (int) Math.min(Integer.MAX_VALUE, Math.ceil(kbPerSecond))));
+            lock.notifyAll();
+        }
+    }// Ende setBandwidth(String, double)
+
+    /**
+     * Setzt die maximale Anzahl der Versuche je Migration.
+     *
+     * @param attempts - Versuche, mindestens 1.
+     */
+    public final void setMaxAttempts(final int attempts) {
+        this.maxAttempts = Math.max(1, attempts);
+    }// Ende setMaxAttempts(int)
+
+    /**
+     * Setzt die Wartezeit vor dem ersten Wiederholen, jede weitere
+     * Wiederholung wartet entsprechend länger.
+     *
+     * @param millis - Wartezeit in Millisekunden.
+     */
+    public final void setRetryDelay(final long millis) {
+        this.retryDelay = Math.max(0L, millis);
+    }// Ende setRetryDelay(long)
+
+    /**
+     * Setzt den Empfänger der Ergebnisse.
+     *
+     * @param migrationListener - Der Empfänger, null wenn keiner.
+     */
+    public final void setListener(final MigrationListener migrationListener) {
+        this.listener = migrationListener;
+    }// Ende setListener(MigrationListener)
+
+    /**
+     * Liefert die Summe der verschobenen KB.
+     *
+     * @return long - Verschobene KB.
+     */
+    public final long getMovedKb() {
+        return movedKb.get();
+    }// Ende getMovedKb()
+
+    /**
+     * Liefert die Anzahl der Wiederholungen.
+     *
+     * @return long - Wiederholungen.
+     */
+    public final long getRetries() {
+        return retries.get();
+    }// Ende getRetries()
+
+    /**
+     * Liefert die Anzahl der laufenden Migrationen.
+     *
+     * @return int - Laufende Migrationen.
+     */
+    public final int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }// Ende getRunning()
+
+    /**
+     * Hilfs-Methode die alle startbaren Migrationen startet und die Zeit
+     * bis zur nächsten möglichen Änderung liefert, der Lock muss gehalten
+     * werden.
+     */
+    private long dispatch(final ExecutorService workers,
+            final BulkProgress progress) {
+        long now = System.nanoTime();
+        long wait = TimeUnit.MILLISECONDS.toNanos(MAX_WAIT);
+
+        Iterator<MigrationTask> retry = delayed.iterator();
+        while (retry.hasNext()) {
+            MigrationTask task = retry.next();
+            long due = task.getNotBefore() - now;
+            if (due <= 0) {
+                retry.remove();
+                queues.get(task.getSource()).addFirst(task);
+            } else {
+                wait = Math.min(wait, due);
+            }
+        }
+
+        List<String> sources = new ArrayList<String>(queues.keySet());
+        boolean started = true;
+        while (started) {
+            started = false;
+            for (int i = 0; i < sources.size(); i++) {
+                String source = sources.get((cursor + i) % sources.size());
+                ArrayDeque<MigrationTask> queue = queues.get(source);
+                if (queue.isEmpty() || count(sourceRunning, source)
+                        >= limit(sourceLimits, source, sourceLimit)) {
+                    continue;
+                }
+                long sourceWait = bandwidthWait(source);
+                if (sourceWait > 0) {
+                    wait = Math.min(wait, sourceWait);
+                    continue;
+                }
+                MigrationTask task = pick(queue);
+                if (task == null) {
+                    continue;
+                }
+                start(task, workers, progress);
+                cursor = (cursor + i + 1) % sources.size();
+                started = true;
+                break;
+            }
+        }
+
+        for (String backend : bandwidth.keySet()) {
+            long backendWait = bandwidthWait(backend);
+            if (backendWait > 0) {
+                wait = Math.min(wait, backendWait);
+            }
+        }
+        return wait;
+    }// Ende dispatch(ExecutorService, BulkProgress)
+
+    /**
+     * Hilfs-Methode die aus den vordersten Migrationen einer Quelle die
+     * erste mit freiem Ziel entnimmt.
+     */
+    private MigrationTask pick(final ArrayDeque<MigrationTask> queue) {
+        Iterator<MigrationTask> iterator = queue.iterator();
+        for (int i = 0; i < SCAN_WINDOW && iterator.hasNext(); i++) {
+            MigrationTask task = iterator.next();
+            String target = task.getTarget();
+            if (task.isRename()) {
+                iterator.remove();
+                return task;
+            }
+            if (count(targetRunning, target)
+                    < limit(targetLimits, target, targetLimit)
+                    && bandwidthWait(target) == 0) {
+                iterator.remove();
+                return task;
+            }
+        }
+        return null;
+    }// Ende pick(ArrayDeque<MigrationTask>)
+
+    /**
+     * Hilfs-Methode die eine Migration startet, der Lock muss gehalten
+     * werden.
+     */
+    private void start(final MigrationTask task,
+            final ExecutorService workers, final BulkProgress progress) {
+        running++;
+        counter(sourceRunning, task.getSource()).incrementAndGet();
+        if (!task.isRename()) {
+            counter(targetRunning, task.getTarget()).incrementAndGet();
+        }
+        reserve(task.getSource(), task.getSizeKb());
+        if (!task.isRename()) {
+            reserve(task.getTarget(), task.getSizeKb());
+        }
+        task.started();
+        LOGGER.debug("Starte " + task);
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                attempt(task, progress);
+            }
+        });
+    }// Ende start(MigrationTask, ExecutorService, BulkProgress)
+
+    /**
+     * Hilfs-Methode die einen Versuch einer Migration ausführt.
+     */
+    private void attempt(final MigrationTask task,
+            final BulkProgress progress) {
+        long start = System.nanoTime();
+        String error = null;
+        boolean retry = false;
+        try {
+            if (task.isUncertain() && migrator.isMigrated(task)) {
+                LOGGER.info("Migration " + task + " war bereits ausgeführt.");
+            } else {
+                task.setUncertain(false);
+                migrator.migrate(task);
+            }
+            task.setUncertain(false);
+        } catch (Exception e) {
+            error = e.getMessage() == null ? e.toString() : e.getMessage();
+            if (isConnectionError(e)) {
+                task.setUncertain(true);
+            }
+            retry = isTransient(e) && task.getAttempts() < maxAttempts
+                    && !(task.isUncertain() && task.isRename());
+            LOGGER.warn("Migration " + task + " fehlgeschlagen (Versuch "
+                    + task.getAttempts() + "): " + error);
+        }
+        long duration = System.nanoTime() - start;
+
+        boolean finished = !retry;
+        synchronized (lock) {
+            running--;
+            counter(sourceRunning, task.getSource()).decrementAndGet();
+            if (!task.isRename()) {
+                counter(targetRunning, task.getTarget()).decrementAndGet();
+            }
+            if (error == null) {
+                task.finished(MigrationState.DONE, null, duration);
+                movedKb.addAndGet(task.getSizeKb());
+            } else if (retry) {
+                task.finished(MigrationState.PENDING, error, duration);
+                task.retryAt(System.nanoTime() + TimeUnit.MILLISECONDS
+                        .toNanos(retryDelay * task.getAttempts()));
+                delayed.add(task);
+                retries.incrementAndGet();
+            } else if (task.isUncertain()) {
+                task.finished(MigrationState.UNKNOWN, error, duration);
+            } else {
+                task.finished(MigrationState.FAILED, error, duration);
+            }
+            if (finished) {
+                remaining--;
+                progress.count(error == null);
+            }
+            lock.notifyAll();
+        }
+
+        MigrationListener current = listener;
+        if (finished && current != null) {
+            current.finished(task);
+        }
+    }// Ende attempt(MigrationTask, BulkProgress)
+
+    /**
+     * Hilfs-Methode die die Größe einer Mailbox gegen die Bandbreite eines
+     * Backends bucht.
+     */
+    private void reserve(final String backend, final long sizeKb) {
+        TokenBucket bucket = bandwidth.get(backend);
+        if (bucket != null) {
+            bucket.reserve(sizeKb);
+        }
+    }// Ende reserve(String, long)
+
+    /**
+     * Hilfs-Methode die liefert wie lange die Bandbreite eines Backends
+     * noch überbucht ist.
+     */
+    private long bandwidthWait(final String backend) {
+        TokenBucket bucket = bandwidth.get(backend);
+        return bucket == null ? 0L : bucket.getWaitNanos();
+    }// Ende bandwidthWait(String)
+
+    /**
+     * Hilfs-Methode die die Grenze eines Backends liefert.
+     */
+    private static int limit(final Map<String, Integer> limits,
+            final String backend, final int fallback) {
+        Integer limit = limits.get(backend);
+        return limit == null ? fallback : limit.intValue();
+    }// Ende limit(Map<String, Integer>, String, int)
+
+    /**
+     * Hilfs-Methode die die laufenden Migrationen eines Backends liefert.
+     */
+    private static int count(final Map<String, AtomicInteger> counters,
+            final String backend) {
+        AtomicInteger counter = counters.get(backend);
+        return counter == null ? 0 : counter.get();
+    }// Ende count(Map<String, AtomicInteger>, String)
+
+    /**
+     * Hilfs-Methode die den Zähler eines Backends liefert oder anlegt.
+     */
+    private static AtomicInteger counter(
+            final Map<String, AtomicInteger> counters, final String backend) {
+        AtomicInteger counter = counters.get(backend);
+        if (counter == null) {
+            counter = new AtomicInteger();
+            counters.put(backend, counter);
+        }
+        return counter;
+    }// Ende counter(Map<String, AtomicInteger>, String)
+
+    /**
+     * Hilfs-Methode die prüft ob ein Fehler die Verbindung betrifft, das
+     * Kommando kann dann trotzdem ausgeführt worden sein.
+     */
+    private static boolean isConnectionError(final Exception e) {
+        return e instanceof IOException || e instanceof NoServerResponse;
+    }// Ende isConnectionError(Exception)
+
+    /**
+     * Hilfs-Methode die prüft ob ein Fehler vorübergehend ist.
+     */
+    private static boolean isTransient(final Exception e) {
+        if (isConnectionError(e) || e instanceof NoSessionAvailable) {
+            return true;
+        }
+        if (e instanceof MigrationRefused) {
+            String message = e.getMessage();
+            for (String marker : TRANSIENT) {
+                if (message.contains(marker)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }// Ende isTransient(Exception)
+
+}// Ende class
@@ -0,0 +1,20 @@
+package de.tivsource.lib.jcyradm.migration;
+
+/**
+ * Schnittstelle für Empfänger der Ergebnisse einer MigrationEngine. Die
+ * Methode wird aus den Threads der Engine aufgerufen.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface MigrationListener {
+
+    /**
+     * Wird aufgerufen wenn eine Migration abgeschlossen oder endgültig
+     * fehlgeschlagen ist.
+     *
+     * @param task - Die Migration.
+     */
+    void finished(MigrationTask task);
+
+}// Ende interface
@@ -0,0 +1,37 @@
+package de.tivsource.lib.jcyradm.migration;
+
+/**
+ * Zustände einer Migration.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum MigrationState {
+
+    /**
+     * Wartet auf einen freien Platz oder auf den nächsten Versuch.
+     */
+    PENDING,
+
+    /**
+     * Das Kommando läuft.
+     */
+    RUNNING,
+
+    /**
+     * Die Mailbox wurde verschoben.
+     */
+    DONE,
+
+    /**
+     * Endgültig fehlgeschlagen.
+     */
+    FAILED,
+
+    /**
+     * Nach einem Verbindungsfehler ist unbekannt ob die Mailbox verschoben
+     * wurde, sie muss von Hand geprüft werden.
+     */
+    UNKNOWN
+
+}// Ende enum
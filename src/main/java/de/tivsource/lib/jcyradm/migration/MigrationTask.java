@@ -0,0 +1,256 @@
+package de.tivsource.lib.jcyradm.migration;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+
+/**
+ * Die Klasse MigrationTask beschreibt das Verschieben einer Mailbox. Liegt
+ * das Ziel auf einem anderen Backend wird XFER benutzt, sonst RENAME mit der
+ * Ziel-Partition. Der Zustand wird von der MigrationEngine gepflegt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MigrationTask {
+
+    /**
+     * Mailbox ohne "user." Präfix.
+     */
+    private final String mailbox;
+
+    /**
+     * Backend auf dem die Mailbox liegt.
+     */
+    private final String source;
+
+    /**
+     * Ziel-Backend.
+     */
+    private final String target;
+
+    /**
+     * Ziel-Partition, null für die Standard-Partition.
+     */
+    private final String partition;
+
+    /**
+     * Größe der Mailbox in KB, Grundlage der Bandbreiten-Planung.
+     */
+    private final long sizeKb;
+
+    /**
+     * Aktueller Zustand.
+     */
+    private volatile MigrationState state = MigrationState.PENDING;
+
+    /**
+     * Anzahl der bisherigen Versuche.
+     */
+    private volatile int attempts;
+
+    /**
+     * Letzte Fehlermeldung, null wenn keine.
+     */
+    private volatile String error;
+
+    /**
+     * Laufzeit des letzten Versuchs in Nanosekunden.
+     */
+    private volatile long durationNanos;
+
+    /**
+     * Wird gesetzt wenn ein Versuch mit einem Verbindungsfehler endete und
+     * damit unbekannt ist ob das Kommando ausgeführt wurde.
+     */
+    private volatile boolean uncertain;
+
+    /**
+     * Zeitpunkt in Nanosekunden ab dem der nächste Versuch starten darf.
+     */
+    private long notBefore;
+
+    /**
+     * Konstruktor der Klasse MigrationTask.
+     *
+     * @param mailboxName - Mailbox ohne "user." Präfix.
+     * @param sourceBackend - Backend auf dem die Mailbox liegt.
+     * @param targetBackend - Ziel-Backend, gleich dem Quell-Backend für
+     *            einen Wechsel der Partition.
+     * @param targetPartition - Ziel-Partition oder null.
+     * @param size - Größe der Mailbox in KB (i.e. aus der Quota).
+     */
+    public MigrationTask(final String mailboxName, final String sourceBackend,
+            final String targetBackend, final String targetPartition,
+            final long size) {
+        super();
+        if (sourceBackend.equals(targetBackend) && targetPartition == null) {
+            throw new IllegalArgumentException(
+                    "partition required to move within " + sourceBackend);
+        }
+        this.mailbox = mailboxName;
+        this.source = sourceBackend;
+        this.target = targetBackend;
+        this.partition = targetPartition;
+        this.sizeKb = Math.max(0L, size);
+    }// Ende MigrationTask(String, String, String, String, long)
+
+    /**
+     * Erzeugt das Kommando das auf dem Quell-Backend ausgeführt wird.
+     *
+     * @param userPrefix - Präfix der Benutzer-Mailboxen (i.e. "user.").
+     * @return Command - XFER oder RENAME.
+     */
+    public final Command toCommand(final String userPrefix) {
+        String name = userPrefix + mailbox;
+        if (isRename()) {
+            return Commands.rename(name, name, partition);
+        }
+        return Commands.xfer(name, target, partition);
+    }// Ende toCommand(String)
+
+    /**
+     * Liefert ob die Mailbox nur die Partition wechselt.
+     *
+     * @return boolean - True für RENAME, False für XFER.
+     */
+    public final boolean isRename() {
+        return source.equals(target);
+    }// Ende isRename()
+
+    /**
+     * Liefert den Namen der Mailbox.
+     *
+     * @return String - Mailbox ohne "user." Präfix.
+     */
+    public final String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert das Quell-Backend.
+     *
+     * @return String - Backend auf dem die Mailbox liegt.
+     */
+    public final String getSource() {
+        return source;
+    }// Ende getSource()
+
+    /**
+     * Liefert das Ziel-Backend.
+     *
+     * @return String - Ziel-Backend.
+     */
+    public final String getTarget() {
+        return target;
+    }// Ende getTarget()
+
+    /**
+     * Liefert die Ziel-Partition.
+     *
+     * @return String - Ziel-Partition oder null.
+     */
+    public final String getPartition() {
+        return partition;
+    }// Ende getPartition()
+
+    /**
+     * Liefert die Größe der Mailbox.
+     *
+     * @return long - Größe in KB.
+     */
+    public final long getSizeKb() {
+        return sizeKb;
+    }// Ende getSizeKb()
+
+    /**
+     * Liefert den Zustand.
+     *
+     * @return MigrationState - Aktueller Zustand.
+     */
+    public final MigrationState getState() {
+        return state;
+    }// Ende getState()
+
+    /**
+     * Liefert die Anzahl der bisherigen Versuche.
+     *
+     * @return int - Versuche.
+     */
+    public final int getAttempts() {
+        return attempts;
+    }// Ende getAttempts()
+
+    /**
+     * Liefert die letzte Fehlermeldung.
+     *
+     * @return String - Fehlermeldung oder null.
+     */
+    public final String getError() {
+        return error;
+    }// Ende getError()
+
+    /**
+     * Liefert die Laufzeit des letzten Versuchs.
+     *
+     * @return long - Laufzeit in Nanosekunden.
+     */
+    public final long getDurationNanos() {
+        return durationNanos;
+    }// Ende getDurationNanos()
+
+    @Override
+    public final String toString() {
+        return mailbox + " " + source + " -> " + target
+                + (partition == null ? "" : "/" + partition) + " " + state;
+    }// Ende toString()
+
+    /**
+     * Hilfs-Methode der Engine die den Beginn eines Versuchs vermerkt.
+     */
+    final void started() {
+        state = MigrationState.RUNNING;
+        attempts++;
+    }// Ende started()
+
+    /**
+     * Hilfs-Methode der Engine die das Ende eines Versuchs vermerkt.
+     */
+    final void finished(final MigrationState newState, final String message,
+            final long duration) {
+        this.state = newState;
+        this.error = message;
+        this.durationNanos = duration;
+    }// Ende finished(MigrationState, String, long)
+
+    /**
+     * Hilfs-Methode der Engine die den frühesten nächsten Versuch setzt.
+     */
+    final void retryAt(final long nanos) {
+        this.state = MigrationState.PENDING;
+        this.notBefore = nanos;
+    }// Ende retryAt(long)
+
+    /**
+     * Hilfs-Methode der Engine die vermerkt ob der Ausgang des letzten
+     * Versuchs unbekannt ist.
+     */
+    final void setUncertain(final boolean unknownOutcome) {
+        this.uncertain = unknownOutcome;
+    }// Ende setUncertain(boolean)
+
+    /**
+     * Hilfs-Methode der Engine die liefert ob der Ausgang des letzten
+     * Versuchs unbekannt ist.
+     */
+    final boolean isUncertain() {
+        return uncertain;
+    }// Ende isUncertain()
+
+    /**
+     * Hilfs-Methode der Engine die den frühesten nächsten Versuch liefert.
+     */
+    final long getNotBefore() {
+        return notBefore;
+    }// Ende getNotBefore()
+
+}// Ende class
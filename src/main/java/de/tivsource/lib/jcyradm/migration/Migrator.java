@@ -0,0 +1,34 @@
+package de.tivsource.lib.jcyradm.migration;
+
+/**
+ * Schnittstelle für die Ausführung einer einzelnen Migration, i.e. über
+ * einen SessionPool des Quell-Backends (siehe PoolMigrator).
+ *
+ * @author Marc Michele
+ *
+ */
+public interface Migrator {
+
+    /**
+     * Verschiebt eine Mailbox und kehrt erst zurück wenn der Server die
+     * Migration abgeschlossen hat.
+     *
+     * @param task - Die Migration.
+     * @throws Exception - Wenn die Migration fehlgeschlagen ist, i.e.
+     *             MigrationRefused bei einer Ablehnung durch den Server oder
+     *             IOException bei Verbindungsfehlern.
+     */
+    void migrate(MigrationTask task) throws Exception;
+
+    /**
+     * Prüft nach einem Verbindungsfehler ob die Mailbox bereits auf dem
+     * Ziel-Backend liegt, i.e. weil das XFER ausgeführt wurde aber die
+     * Antwort verloren ging. Wird nur für XFER aufgerufen.
+     *
+     * @param task - Die Migration.
+     * @return boolean - True wenn die Mailbox auf dem Ziel-Backend liegt.
+     * @throws Exception - Wenn die Prüfung nicht möglich war.
+     */
+    boolean isMigrated(MigrationTask task) throws Exception;
+
+}// Ende interface
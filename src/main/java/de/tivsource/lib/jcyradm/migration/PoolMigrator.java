@@ -0,0 +1,104 @@
+package de.tivsource.lib.jcyradm.migration;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.exception.MigrationRefused;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.pool.Operation;
+import de.tivsource.lib.jcyradm.pool.Priority;
+import de.tivsource.lib.jcyradm.pool.SessionPool;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.protocol.ResponseStatus;
+
+/**
+ * Die Klasse PoolMigrator führt XFER und RENAME als Massen-Operation über
+ * den SessionPool des Quell-Backends aus.
+ *
+ * @author Marc Michele
+ *
+ */
+public class PoolMigrator implements Migrator {
+
+    /**
+     * Pools der Backends, nach Namen.
+     */
+    private final Map<String, SessionPool> pools;
+
+    /**
+     * Präfix der Benutzer-Mailboxen.
+     */
+    private final String userPrefix;
+
+    /**
+     * Konstruktor der Klasse PoolMigrator.
+     *
+     * @param backends - Pools der Backends, nach Namen wie in den
+     *            MigrationTasks.
+     * @param validator - Liefert das Trennzeichen des Servers.
+     */
+    public PoolMigrator(final Map<String, SessionPool> backends,
+            final MailboxNameValidator validator) {
+        super();
+        this.pools = new HashMap<String, SessionPool>(backends);
+        this.userPrefix = "user" + validator.getSeparator();
+    }// Ende PoolMigrator(Map<String, SessionPool>, MailboxNameValidator)
+
+    @Override
+    public void migrate(final MigrationTask task) throws Exception {
+        SessionPool pool = pools.get(task.getSource());
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown backend: "
+                    + task.getSource());
+        }
+        Command command = pool.execute(Priority.BULK,
+                new Operation<Command>() {
+                    @Override
+                    public Command run(final JCyrAdm session)
+                            throws Exception {
+                        Pipeline pipeline = session.pipeline();
+                        Command migration = task.toCommand(userPrefix);
+                        pipeline.submit(migration);
+                        pipeline.sync();
+                        return migration;
+                    }
+                });
+        if (command.getStatus() == ResponseStatus.BYE) {
+            throw new IOException("Connection closed: " + command.getText());
+        }
+        if (!command.isOk()) {
+            throw new MigrationRefused(command.getStatus() + " "
+                    + command.getText());
+        }
+    }// Ende migrate(MigrationTask)
+
+    @Override
+    public boolean isMigrated(final MigrationTask task) throws Exception {
+        SessionPool pool = pools.get(task.getTarget());
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown backend: "
+                    + task.getTarget());
+        }
+        Command list = pool.execute(Priority.BULK, new Operation<Command>() {
+            @Override
+            public Command run(final JCyrAdm session) throws Exception {
+                Pipeline pipeline = session.pipeline();
+                Command command = Commands.list("",
+                        userPrefix + task.getMailbox());
+                pipeline.submit(command);
+                pipeline.sync();
+                return command;
+            }
+        });
+        if (!list.isOk()) {
+            throw new IOException("LIST failed: " + list.getStatus() + " "
+                    + list.getText());
+        }
+        return !list.getUntagged().isEmpty();
+    }// Ende isMigrated(MigrationTask)
+
+}// Ende class
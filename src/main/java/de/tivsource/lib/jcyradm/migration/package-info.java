@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen zum Verschieben von Mailboxen
+ * zwischen Backends und Partitionen (XFER und RENAME).
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.migration;
@@ -0,0 +1,261 @@
+package de.tivsource.lib.jcyradm.net;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.exception.CircuitOpen;
+
+/**
+ * Die Klasse CircuitBreaker zählt je Host die Fehler beim Verbindungsaufbau
+ * und bei Kommandos. Nach einer Anzahl von Fehlern hintereinander wird der
+ * Host gesperrt (OPEN), alle Versuche scheitern dann sofort mit CircuitOpen
+ * statt auf den Timeout zu warten. Nach der Wartezeit wird genau ein
+ * Versuch durchgelassen (HALF_OPEN), gelingt er ist der Host wieder frei,
+ * sonst beginnt die Wartezeit von vorne.
+ * <p>
+ * Jeder Host hat seinen eigenen Zustand, ein toter Host hält also keine
+ * Aufrufe zu anderen Hosts auf.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class CircuitBreaker {
+
+    /**
+     * Statischer Logger der Klasse CircuitBreaker.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(CircuitBreaker.class);
+
+    /**
+     * Standard Anzahl der Fehler hintereinander bis der Host gesperrt wird.
+     */
+    private static final int DEFAULT_THRESHOLD = 5;
+
+    /**
+     * Standard Wartezeit in Millisekunden bis zum Probe-Versuch.
+     */
+    private static final long DEFAULT_OPEN_MILLIS = 30000L;
+
+    /**
+     * Gemeinsame Instanz die von allen JCyrAdm Objekten benutzt wird, wenn
+     * nichts anderes gesetzt wurde.
+     */
+    private static final CircuitBreaker DEFAULT =
+            new CircuitBreaker(DEFAULT_THRESHOLD, DEFAULT_OPEN_MILLIS);
+
+    /**
+     * Zustand je Host.
+     */
+    private final ConcurrentMap<String, Circuit> circuits =
+            new ConcurrentHashMap<String, Circuit>();
+
+    /**
+     * Anzahl der Fehler hintereinander bis der Host gesperrt wird.
+     */
+    private final int threshold;
+
+    /**
+     * Wartezeit in Nanosekunden bis zum Probe-Versuch.
+     */
+    private final long openNanos;
+
+    /**
+     * Konstruktor der Klasse CircuitBreaker.
+     *
+     * @param failureThreshold - Anzahl der Fehler hintereinander bis der Host
+     *            gesperrt wird.
+     * @param openMillis - Wartezeit in Millisekunden bis zum Probe-Versuch.
+     */
+    public CircuitBreaker(final int failureThreshold, final long openMillis) {
+        super();
+        this.threshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }// Ende CircuitBreaker(int, long)
+
+    /**
+     * Liefert die gemeinsam genutzte Instanz.
+     *
+     * @return CircuitBreaker - Die Standard Instanz.
+     */
+    public static CircuitBreaker getDefault() {
+        return DEFAULT;
+    }// Ende getDefault()
+
+    /**
+     * Meldet einen Versuch an. Ist der Host gesperrt wird sofort
+     * abgelehnt, ist die Wartezeit abgelaufen wird der Aufrufer zum einzigen
+     * Probe-Versuch.
+     *
+     * @param host - Der Host.
+     * @return boolean - True wenn der Versuch der Probe-Versuch ist, er muss
+     *         dann mit success() oder failure() abgeschlossen werden.
+     * @throws CircuitOpen - Wenn der Host gesperrt ist oder schon ein
+     *             Probe-Versuch läuft.
+     */
+    public final boolean acquire(final String host) throws CircuitOpen {
+        Circuit circuit = circuits.get(host);
+        return circuit != null && circuit.acquire(host);
+    }// Ende acquire(String)
+
+    /**
+     * Prüft ohne Anmeldung ob ein Versuch zum Host durchgelassen würde.
+     *
+     * @param host - Der Host.
+     * @return boolean - True wenn der Host frei ist oder ein Probe-Versuch
+     *         fällig ist.
+     */
+    public final boolean isAvailable(final String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null || circuit.isAvailable();
+    }// Ende isAvailable(String)
+
+    /**
+     * Meldet einen erfolgreichen Versuch, der Host ist danach frei.
+     *
+     * @param host - Der Host.
+     */
+    public final void success(final String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit != null) {
+            circuit.success(host);
+        }
+    }// Ende success(String)
+
+    /**
+     * Meldet einen fehlgeschlagenen Versuch.
+     *
+     * @param host - Der Host.
+     */
+    public final void failure(final String host) {
+        Circuit circuit = circuits.get(host);
+        if (circuit == null) {
+            Circuit created = new Circuit();
+            circuit = circuits.putIfAbsent(host, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        circuit.failure(host);
+    }// Ende failure(String)
+
+    /**
+     * Liefert den Zustand eines Hosts.
+     *
+     * @param host - Der Host.
+     * @return CircuitState - Der Zustand, OPEN mit abgelaufener Wartezeit
+     *         bleibt OPEN bis zum nächsten Versuch.
+     */
+    public final CircuitState getState(final String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null ? CircuitState.CLOSED : circuit.getState();
+    }// Ende getState(String)
+
+    /**
+     * Liefert die Zeit bis zum nächsten Probe-Versuch eines Hosts.
+     *
+     * @param host - Der Host.
+     * @return long - Millisekunden, 0 wenn der Host nicht gesperrt ist.
+     */
+    public final long getRetryAfter(final String host) {
+        Circuit circuit = circuits.get(host);
+        return circuit == null ? 0L : circuit.retryAfter();
+    }// Ende getRetryAfter(String)
+
+    /**
+     * Der Zustand eines Hosts, alle Methoden sind synchronisiert und kurz.
+     */
+    private final class Circuit {
+
+        /**
+         * Aktueller Zustand.
+         */
+        private CircuitState state = CircuitState.CLOSED;
+
+        /**
+         * Fehler hintereinander.
+         */
+        private int failures;
+
+        /**
+         * Zeitpunkt in Nanosekunden ab dem ein Probe-Versuch erlaubt ist.
+         */
+        private long retryAt;
+
+        /**
+         * Meldet einen Versuch an.
+         */
+        private synchronized boolean acquire(final String host)
+                throws CircuitOpen {
+            if (state == CircuitState.CLOSED) {
+                return false;
+            }
+            long remaining = retryAt - System.nanoTime();
+            if (state == CircuitState.OPEN && remaining <= 0) {
+                LOGGER.info("Probe-Versuch zu " + host);
+                state = CircuitState.HALF_OPEN;
+                return true;
+            }
+            throw new CircuitOpen(host, Math.max(0L,
+                    TimeUnit.NANOSECONDS.toMillis(remaining)));
+        }
+
+        /**
+         * Prüft ob ein Versuch durchgelassen würde.
+         */
+        private synchronized boolean isAvailable() {
+            return state == CircuitState.CLOSED
+                    || (state == CircuitState.OPEN
+                            && retryAt - System.nanoTime() <= 0);
+        }
+
+        /**
+         * Meldet einen Erfolg.
+         */
+        private synchronized void success(final String host) {
+            if (state != CircuitState.CLOSED) {
+                LOGGER.info("Host wieder erreichbar: " + host);
+            }
+            state = CircuitState.CLOSED;
+            failures = 0;
+        }
+
+        /**
+         * Meldet einen Fehler.
+         */
+        private synchronized void failure(final String host) {
+            failures++;
+            if (state == CircuitState.HALF_OPEN
+                    || (state == CircuitState.CLOSED
+                            && failures >= threshold)) {
+                LOGGER.warn("Host gesperrt nach " + failures
+                        + " Fehlern: " + host);
+                state = CircuitState.OPEN;
+                retryAt = System.nanoTime() + openNanos;
+            }
+        }
+
+        /**
+         * Liefert den Zustand.
+         */
+        private synchronized CircuitState getState() {
+            return state;
+        }
+
+        /**
+         * Liefert die Zeit bis zum nächsten Probe-Versuch.
+         */
+        private synchronized long retryAfter() {
+            if (state == CircuitState.CLOSED) {
+                return 0L;
+            }
+            return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(
+                    retryAt - System.nanoTime()));
+        }
+    }// Ende class Circuit
+
+}// Ende class
@@ -0,0 +1,26 @@
+package de.tivsource.lib.jcyradm.net;
+
+/**
+ * Zustand des CircuitBreakers eines Hosts.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum CircuitState {
+
+    /**
+     * Der Host ist erreichbar, alle Versuche werden durchgelassen.
+     */
+    CLOSED,
+
+    /**
+     * Zu viele Fehler hintereinander, alle Versuche scheitern sofort.
+     */
+    OPEN,
+
+    /**
+     * Die Wartezeit ist abgelaufen, ein einzelner Versuch prüft den Host.
+     */
+    HALF_OPEN;
+
+}// Ende enum
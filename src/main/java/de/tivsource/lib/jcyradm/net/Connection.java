@@ -0,0 +1,98 @@
+package de.tivsource.lib.jcyradm.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import de.tivsource.lib.jcyradm.transport.Link;
+
+/**
+ * Die Klasse Connection hält eine aufgebaute Verbindung zu einem Cyrus Server,
+ * deren Willkommens-Nachricht bereits gelesen wurde.
+ *
+ * @author Marc Michele
+ *
+ */
+public class Connection {
+
+    /**
+     * Host zu dem die Verbindung aufgebaut wurde.
+     */
+    private final String host;
+
+    /**
+     * Leitung der Verbindung (i.e. TCP, TLS oder Unix Domain Socket).
+     */
+    private final Link link;
+
+    /**
+     * Der Reader mit dem vom Server gelesen wird.
+     */
+    private final BufferedReader reader;
+
+    /**
+     * Willkommens-Nachricht des Servers.
+     */
+    private final String welcomeMsg;
+
+    /**
+     * Konstruktor der Klasse Connection.
+     *
+     * @param hostname - Host zu dem die Verbindung besteht.
+     * @param connectionLink - Leitung der Verbindung.
+     * @param in - Reader der Verbindung.
+     * @param welcome - Willkommens-Nachricht des Servers.
+     */
+    public Connection(final String hostname, final Link connectionLink,
+            final BufferedReader in, final String welcome) {
+        super();
+        this.host = hostname;
+        this.link = connectionLink;
+        this.reader = in;
+        this.welcomeMsg = welcome;
+    }// Ende Connection(String, Link, BufferedReader, String)
+
+    /**
+     * Liefert den Host zu dem die Verbindung besteht.
+     *
+     * @return String - Hostname oder IP-Adresse.
+     */
+    public final String getHost() {
+        return host;
+    }// Ende getHost()
+
+    /**
+     * Liefert die Leitung der Verbindung.
+     *
+     * @return Link - Leitung der Verbindung.
+     */
+    public final Link getLink() {
+        return link;
+    }// Ende getLink()
+
+    /**
+     * Liefert den Reader der Verbindung.
+     *
+     * @return BufferedReader - Reader der Verbindung.
+     */
+    public final BufferedReader getReader() {
+        return reader;
+    }// Ende getReader()
+
+    /**
+     * Liefert die Willkommens-Nachricht des Servers.
+     *
+     * @return String - Willkommens-Nachricht.
+     */
+    public final String getWelcomeMsg() {
+        return welcomeMsg;
+    }// Ende getWelcomeMsg()
+
+    /**
+     * Schließt die Verbindung.
+     *
+     * @throws IOException - Wenn die Leitung nicht geschlossen werden konnte.
+     */
+    public final void close() throws IOException {
+        link.close();
+    }// Ende close()
+
+}// Ende class
@@ -0,0 +1,147 @@
+package de.tivsource.lib.jcyradm.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Die Klasse HostHealth merkt sich welche Hosts in letzter Zeit nicht
+ * erreichbar waren. Beim Verbindungsaufbau werden gesunde Hosts bevorzugt,
+ * Hosts mit einem kürzlichen Fehler werden erst danach versucht.
+ *
+ * @author Marc Michele
+ *
+ */
+public class HostHealth {
+
+    /**
+     * Statischer Logger der Klasse HostHealth.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HostHealth.class);
+
+    /**
+     * Standard Zeit in Millisekunden die ein Fehler gemerkt wird.
+     */
+    private static final long DEFAULT_RETENTION = 60000L;
+
+    /**
+     * Gemeinsame Instanz die von allen JCyrAdm Objekten benutzt wird, wenn
+     * nichts anderes gesetzt wurde.
+     */
+    private static final HostHealth DEFAULT = new HostHealth(DEFAULT_RETENTION);
+
+    /**
+     * Map mit dem Zeitpunkt des letzten Fehlers je Host (Host/Millisekunden).
+     */
+    private final ConcurrentMap<String, Long> failures =
+            new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Zeit in Millisekunden die ein Fehler gemerkt wird.
+     */
+    private final long retention;
+
+    /**
+     * Konstruktor der Klasse HostHealth.
+     *
+     * @param retentionMillis - Zeit in Millisekunden die ein Fehler gemerkt
+     *            wird.
+     */
+    public HostHealth(final long retentionMillis) {
+        super();
+        this.retention = retentionMillis;
+    }// Ende HostHealth(long)
+
+    /**
+     * Liefert die gemeinsam genutzte Instanz.
+     *
+     * @return HostHealth - Die Standard Instanz.
+     */
+    public static HostHealth getDefault() {
+        return DEFAULT;
+    }// Ende getDefault()
+
+    /**
+     * Merkt sich das ein Verbindungsversuch zum Host fehlgeschlagen ist.
+     *
+     * @param host - Host der nicht erreichbar war.
+     */
+    public final void markFailed(final String host) {
+        LOGGER.debug("Host als fehlerhaft markiert: " + host);
+        failures.put(host, System.currentTimeMillis());
+    }// Ende markFailed(String)
+
+    /**
+     * Vergisst einen gemerkten Fehler, weil der Host wieder erreichbar ist.
+     *
+     * @param host - Host der erfolgreich erreicht wurde.
+     */
+    public final void markHealthy(final String host) {
+        failures.remove(host);
+    }// Ende markHealthy(String)
+
+    /**
+     * Prüft ob der Host in der gemerkten Zeit einen Fehler hatte.
+     *
+     * @param host - Host der geprüft werden soll.
+     * @return Boolean - True wenn kein kürzlicher Fehler bekannt ist.
+     */
+    public final Boolean isHealthy(final String host) {
+        return failedAt(host) == 0L;
+    }// Ende isHealthy(String)
+
+    /**
+     * Sortiert die übergebenen Hosts so das gesunde Hosts in der angegebenen
+     * Reihenfolge zuerst kommen, danach die fehlerhaften Hosts, der mit dem
+     * ältesten Fehler zuerst.
+     *
+     * @param hosts - Liste der Hosts.
+     * @return List - Neu sortierte Liste.
+     */
+    public final List<String> order(final List<String> hosts) {
+        List<String> healthy = new ArrayList<String>(hosts.size());
+        List<String> failed = new ArrayList<String>();
+        for (String host : hosts) {
+            if (isHealthy(host)) {
+                healthy.add(host);
+            } else {
+                failed.add(host);
+            }
+        }
+        Collections.sort(failed, new Comparator<String>() {
+            @Override
+            public int compare(final String a, final String b) {
+                long fa = failedAt(a);
+                long fb = failedAt(b);
+                return fa < fb ? -1 : (fa == fb ? 0 : 1);
+            }
+        });
+        healthy.addAll(failed);
+        return healthy;
+    }// Ende order(List<String>)
+
+    /**
+     * Hilfs-Methode die den Zeitpunkt des letzten noch gültigen Fehlers
+     * liefert.
+     *
+     * @param host - Host der geprüft werden soll.
+     * @return long - Zeitpunkt in Millisekunden oder 0 wenn kein Fehler.
+     */
+    private long failedAt(final String host) {
+        Long time = failures.get(host);
+        if (time == null) {
+            return 0L;
+        }
+        if (System.currentTimeMillis() - time > retention) {
+            failures.remove(host, time);
+            return 0L;
+        }
+        return time;
+    }// Ende failedAt(String)
+
+}// Ende class
@@ -0,0 +1,463 @@
+package de.tivsource.lib.jcyradm.net;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.exception.CircuitOpen;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.transport.Link;
+import de.tivsource.lib.jcyradm.transport.TcpTransport;
+import de.tivsource.lib.jcyradm.transport.TlsTransport;
+import de.tivsource.lib.jcyradm.transport.Transport;
+
+/**
+ * Die Klasse MultiHostConnector baut eine Verbindung zu einem von mehreren
+ * Hosts eines logischen Servers auf. Die Versuche werden zeitlich versetzt
+ * parallel gestartet (ähnlich "Happy Eyeballs"), die erste Verbindung die
+ * die Willkommens-Nachricht des Servers liefert wird benutzt, alle anderen
+ * werden verworfen. Hosts deren CircuitBreaker offen ist werden nicht
+ * versucht, sind alle gesperrt scheitert der Aufbau sofort mit CircuitOpen.
+ * Die Leitungen zu den Hosts erzeugt ein Transport.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MultiHostConnector {
+
+    /**
+     * Statischer Logger der Klasse MultiHostConnector.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(MultiHostConnector.class);
+
+    /**
+     * Standard Zeit in Millisekunden bis der nächste Host versucht wird.
+     */
+    private static final long DEFAULT_STAGGER_DELAY = 250L;
+
+    /**
+     * Standard Timeout in Millisekunden für den Verbindungsaufbau und die
+     * Willkommens-Nachricht.
+     */
+    private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Gemeinsamer Thread-Pool für die Verbindungsversuche.
+     */
+    private static final ExecutorService EXECUTOR = Executors
+            .newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable, "jcyradm-connect");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Gemerkte Fehler der Hosts.
+     */
+    private HostHealth health = HostHealth.getDefault();
+
+    /**
+     * Sperrt Hosts nach zu vielen Fehlern hintereinander.
+     */
+    private CircuitBreaker breaker = CircuitBreaker.getDefault();
+
+    /**
+     * Zeit in Millisekunden bis der nächste Host versucht wird.
+     */
+    private long staggerDelay = DEFAULT_STAGGER_DELAY;
+
+    /**
+     * Timeout in Millisekunden je Verbindungsversuch.
+     */
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * Baut eine Verbindung zu einem der übergebenen Hosts über TCP oder TLS
+     * mit den Standard Optionen auf.
+     *
+     * @param hosts - Liste der Hosts des logischen Servers.
+     * @param port - Port auf dem die Server lauschen.
+     * @param ssl - Boolean mit dem zwischen SSL und Plain umgeschaltet wird.
+     * @return Connection - Die erste erfolgreiche Verbindung.
+     * @throws IOException - Wenn zu keinem Host eine Verbindung möglich war,
+     *             CircuitOpen wenn alle Hosts gesperrt sind.
+     */
+    public final Connection connect(final List<String> hosts, final int port,
+            final Boolean ssl) throws IOException {
+        return connect(hosts, port, ssl ? new TlsTransport()
+                : new TcpTransport());
+    }// Ende connect(List<String>, int, Boolean)
+
+    /**
+     * Baut eine Verbindung zu einem der übergebenen Hosts auf.
+     *
+     * @param hosts - Liste der Hosts des logischen Servers.
+     * @param port - Port auf dem die Server lauschen.
+     * @param transport - Erzeugt die Leitungen zu den Hosts.
+     * @return Connection - Die erste erfolgreiche Verbindung.
+     * @throws IOException - Wenn zu keinem Host eine Verbindung möglich war,
+     *             CircuitOpen wenn alle Hosts gesperrt sind.
+     */
+    public final Connection connect(final List<String> hosts, final int port,
+            final Transport transport) throws IOException {
+        if (hosts.isEmpty()) {
+            throw new IOException("No host configured");
+        }
+        List<String> ordered = new ArrayList<String>(hosts.size());
+        for (String host : health.order(hosts)) {
+            if (breaker.isAvailable(host)) {
+                ordered.add(host);
+            }
+        }
+        if (ordered.isEmpty()) {
+            throw blocked(hosts);
+        }
+
+        /*
+         * Bei nur einem Host lohnt sich kein paralleler Versuch.
+         */
+        if (ordered.size() == 1) {
+            return new Attempt(ordered.get(0), port, transport).call();
+        }
+
+        CompletionService<Connection> completion =
+                new ExecutorCompletionService<Connection>(EXECUTOR);
+        List<Attempt> attempts = new ArrayList<Attempt>(ordered.size());
+        Connection winner = null;
+        IOException lastFailure = null;
+        int next = 0;
+        int running = 0;
+
+        try {
+            attempts.add(start(completion, ordered.get(next++), port,
+                    transport));
+            running++;
+            while (winner == null && (running > 0 || next < ordered.size())) {
+                Future<Connection> done;
+                if (next < ordered.size()) {
+                    done = completion.poll(staggerDelay,
+                            TimeUnit.MILLISECONDS);
+                } else {
+                    done = completion.take();
+                }
+
+                /*
+                 * Keine Antwort innerhalb der Wartezeit, nächsten Host
+                 * zusätzlich versuchen.
+                 */
+                if (done == null) {
+                    attempts.add(start(completion, ordered.get(next++),
+                            port, transport));
+                    running++;
+                    continue;
+                }
+
+                running--;
+                try {
+                    winner = done.get();
+                } catch (ExecutionException e) {
+                    lastFailure = toIOException(e.getCause());
+                    /*
+                     * Ein Fehler startet den nächsten Versuch sofort.
+                     */
+                    if (next < ordered.size()) {
+                        attempts.add(start(completion, ordered.get(next++),
+                                port, transport));
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lastFailure = new IOException("Interrupted while connecting");
+        } finally {
+            for (Attempt attempt : attempts) {
+                attempt.abandon(winner);
+            }
+        }
+
+        if (winner == null) {
+            throw lastFailure != null ? lastFailure
+                    : new IOException("No host reachable");
+        }
+        LOGGER.debug("Verbunden mit " + winner.getHost());
+        return winner;
+    }// Ende connect(List<String>, int, Transport)
+
+    /**
+     * Setzt die gemerkten Fehler der Hosts.
+     *
+     * @param hostHealth - Objekt in dem sich die Fehler gemerkt werden.
+     */
+    public final void setHealth(final HostHealth hostHealth) {
+        this.health = hostHealth;
+    }// Ende setHealth(HostHealth)
+
+    /**
+     * Setzt den CircuitBreaker der Hosts.
+     *
+     * @param circuitBreaker - Sperrt Hosts nach zu vielen Fehlern.
+     */
+    public final void setCircuitBreaker(final CircuitBreaker circuitBreaker) {
+        this.breaker = circuitBreaker;
+    }// Ende setCircuitBreaker(CircuitBreaker)
+
+    /**
+     * Setzt die Zeit in Millisekunden bis der nächste Host versucht wird.
+     *
+     * @param delay - Zeit in Millisekunden.
+     */
+    public final void setStaggerDelay(final long delay) {
+        this.staggerDelay = delay;
+    }// Ende setStaggerDelay(long)
+
+    /**
+     * Setzt den Timeout in Millisekunden je Verbindungsversuch.
+     *
+     * @param timeout - Timeout in Millisekunden.
+     */
+    public final void setConnectTimeout(final int timeout) {
+        this.connectTimeout = timeout;
+    }// Ende setConnectTimeout(int)
+
+    /**
+     * Hilfs-Methode die einen Verbindungsversuch startet.
+     */
+    private Attempt start(final CompletionService<Connection> completion,
+            final String host, final int port, final Transport transport) {
+        LOGGER.trace("Starte Verbindungsversuch zu " + host);
+        Attempt attempt = new Attempt(host, port, transport);
+        completion.submit(attempt);
+        return attempt;
+    }// Ende start()
+
+    /**
+     * Hilfs-Methode die die Ausnahme für gesperrte Hosts erzeugt, mit dem
+     * Host der zuerst wieder versucht wird.
+     */
+    private CircuitOpen blocked(final List<String> hosts) {
+        String first = hosts.get(0);
+        for (String host : hosts) {
+            if (breaker.getRetryAfter(host) < breaker.getRetryAfter(first)) {
+                first = host;
+            }
+        }
+        return new CircuitOpen(first, breaker.getRetryAfter(first));
+    }// Ende blocked(List<String>)
+
+    /**
+     * Hilfs-Methode die eine Ursache in eine IOException umwandelt.
+     */
+    private static IOException toIOException(final Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }// Ende toIOException(Throwable)
+
+    /**
+     * Ein einzelner Verbindungsversuch zu einem Host.
+     */
+    private final class Attempt implements Callable<Connection> {
+
+        /**
+         * Host zu dem die Verbindung aufgebaut werden soll.
+         */
+        private final String host;
+
+        /**
+         * Port auf dem der Server lauscht.
+         */
+        private final int port;
+
+        /**
+         * Erzeugt die Leitung zum Host.
+         */
+        private final Transport transport;
+
+        /**
+         * Leitung des Versuchs, solange er läuft.
+         */
+        private Link link;
+
+        /**
+         * Wird gesetzt wenn das Ergebnis nicht mehr gebraucht wird.
+         */
+        private boolean abandoned;
+
+        /**
+         * Wird gesetzt wenn die Willkommens-Nachricht gelesen wurde.
+         */
+        private boolean greeted;
+
+        /**
+         * Konstruktor der Klasse Attempt.
+         */
+        private Attempt(final String hostname, final int portNumber,
+                final Transport linkTransport) {
+            this.host = hostname;
+            this.port = portNumber;
+            this.transport = linkTransport;
+        }
+
+        @Override
+        public Connection call() throws IOException {
+            boolean probe = breaker.acquire(host);
+            Link created = null;
+            boolean connected = false;
+            try {
+                created = transport.createLink(host, port);
+                register(created);
+                created.connect(connectTimeout);
+                created.setReadTimeout(connectTimeout);
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(created.getInputStream(),
+                                Pipeline.WIRE_CHARSET));
+                String welcome = reader.readLine();
+                if (welcome == null || !(welcome.startsWith("* OK")
+                        || welcome.startsWith("* PREAUTH"))) {
+                    throw new IOException("Unexpected greeting from " + host
+                            + ": " + welcome);
+                }
+                if (probe) {
+                    probe(created, reader);
+                }
+                created.setReadTimeout(0);
+                markGreeted();
+                health.markHealthy(host);
+                breaker.success(host);
+                connected = true;
+                return new Connection(host, created, reader, welcome);
+            } catch (IOException e) {
+                LOGGER.debug("Verbindung zu " + host + " fehlgeschlagen: "
+                        + e.getMessage());
+                throw e;
+            } finally {
+                /*
+                 * Auch bei RuntimeException (i.e. UnresolvedAddressException
+                 * der NioTransport), sonst bleibt der Probe-Platz belegt und
+                 * der Host für immer HALF_OPEN.
+                 */
+                if (!connected) {
+                    failed(probe, created);
+                }
+            }
+        }
+
+        /**
+         * Hilfs-Methode die einen fehlgeschlagenen Versuch verbucht und
+         * seine Leitung schließt.
+         */
+        private void failed(final boolean probe, final Link created) {
+            if (!isAbandoned()) {
+                health.markFailed(host);
+            }
+            /*
+             * Ein abgebrochener Versuch sagt nichts über den Host, außer er
+             * war der Probe-Versuch, dessen Platz frei werden muss.
+             */
+            if (probe || !isAbandoned()) {
+                breaker.failure(host);
+            }
+            if (created != null) {
+                closeQuietly(created);
+            }
+        }
+
+        /**
+         * Prüft einen gesperrten Host mit einem NOOP, die Antwort muss
+         * innerhalb des Timeouts kommen.
+         */
+        private void probe(final Link probeLink,
+                final BufferedReader reader) throws IOException {
+            Pipeline pipeline = new Pipeline(new CommandEncoder(
+                    probeLink.getChannel()), reader);
+            Command noop = Commands.noop();
+            pipeline.submit(noop);
+            pipeline.sync();
+            if (!noop.isOk()) {
+                throw new IOException("Probe of " + host + " failed: "
+                        + noop.getStatus() + " " + noop.getText());
+            }
+        }
+
+        /**
+         * Merkt sich die Leitung, schließt sie sofort falls der Versuch schon
+         * aufgegeben wurde.
+         */
+        private synchronized void register(final Link attemptLink)
+                throws IOException {
+            if (abandoned) {
+                closeQuietly(attemptLink);
+                throw new IOException("Connect attempt abandoned");
+            }
+            link = attemptLink;
+        }
+
+        /**
+         * Merkt sich das die Willkommens-Nachricht gelesen wurde.
+         */
+        private synchronized void markGreeted() {
+            greeted = true;
+        }
+
+        /**
+         * Liefert ob der Versuch aufgegeben wurde.
+         */
+        private synchronized boolean isAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * Gibt den Versuch auf, solange er nicht der Gewinner ist.
+         */
+        private synchronized void abandon(final Connection winner) {
+            if (winner != null && winner.getLink() == link) {
+                return;
+            }
+            abandoned = true;
+            /*
+             * Ein Host der bis jetzt keine Willkommens-Nachricht geliefert
+             * hat wird beim nächsten Mal hinten angestellt.
+             */
+            if (winner != null && !greeted) {
+                health.markFailed(host);
+            }
+            if (link != null) {
+                closeQuietly(link);
+            }
+        }
+
+        /**
+         * Schließt eine Leitung ohne Ausnahme.
+         */
+        private void closeQuietly(final Link attemptLink) {
+            try {
+                attemptLink.close();
+            } catch (IOException e) {
+                LOGGER.trace("Leitung konnte nicht geschlossen werden.");
+            }
+        }
+    }// Ende class Attempt
+
+}// Ende class
@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen für den Verbindungsaufbau zu den
+ * Cyrus Servern.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.net;
@@ -0,0 +1,91 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Die Klasse FileUsageSource liest den Speicher der Partitionen aus einer
+ * Textdatei, die außerhalb regelmäßig neu geschrieben wird (i.e. per cron
+ * aus "df" auf den Backends). Je Zeile steht eine Partition:
+ *
+ * <pre>
+ * # backend partition belegt-kb groesse-kb
+ * imap1 default 81234567 104857600
+ * imap1 spool2 1234567 104857600
+ * </pre>
+ *
+ * Ein Backend "-" steht für einen einzelnen Server ohne Murder. Leere
+ * Zeilen und Zeilen die mit "#" beginnen werden übersprungen.
+ *
+ * @author Marc Michele
+ *
+ */
+public class FileUsageSource implements UsageSource {
+
+    /**
+     * Anzahl der Spalten einer Zeile.
+     */
+    private static final int COLUMNS = 4;
+
+    /**
+     * Datei aus der gelesen wird.
+     */
+    private final File file;
+
+    /**
+     * Konstruktor der Klasse FileUsageSource.
+     *
+     * @param usageFile - Datei aus der gelesen wird.
+     */
+    public FileUsageSource(final File usageFile) {
+        super();
+        this.file = usageFile;
+    }// Ende FileUsageSource(File)
+
+    @Override
+    public final List<PartitionUsage> sample() throws IOException {
+        List<PartitionUsage> usages = new ArrayList<PartitionUsage>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                usages.add(parse(line, number));
+            }
+        } finally {
+            reader.close();
+        }
+        return usages;
+    }// Ende sample()
+
+    /**
+     * Hilfs-Methode die eine Zeile der Datei auswertet.
+     */
+    private PartitionUsage parse(final String line, final int number)
+            throws IOException {
+        String[] columns = line.split("\\s+");
+        if (columns.length != COLUMNS) {
+            throw new IOException(file + ":" + number
+                    + ": expected 4 columns: " + line);
+        }
+        try {
+            String backend = "-".equals(columns[0]) ? null : columns[0];
+            return new PartitionUsage(backend, columns[1],
+                    Long.parseLong(columns[2]), Long.parseLong(columns[3]));
+        } catch (NumberFormatException e) {
+            throw new IOException(file + ":" + number + ": " + e.getMessage());
+        }
+    }// Ende parse(String, int)
+
+}// Ende class
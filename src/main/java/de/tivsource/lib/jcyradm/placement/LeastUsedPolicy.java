@@ -0,0 +1,27 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.util.List;
+
+/**
+ * Die Klasse LeastUsedPolicy wählt die Partition mit der geringsten
+ * Auslastung, bei gleicher Auslastung die mit dem meisten freien Speicher.
+ *
+ * @author Marc Michele
+ *
+ */
+public class LeastUsedPolicy implements PlacementPolicy {
+
+    @Override
+    public final PartitionUsage choose(final List<PartitionUsage> candidates) {
+        PartitionUsage best = null;
+        for (PartitionUsage usage : candidates) {
+            if (best == null || usage.getLoad() < best.getLoad()
+                    || (usage.getLoad() == best.getLoad()
+                            && usage.getFreeKb() > best.getFreeKb())) {
+                best = usage;
+            }
+        }
+        return best;
+    }// Ende choose(List<PartitionUsage>)
+
+}// Ende class
@@ -0,0 +1,203 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Die Klasse PartitionPlacement wählt die Partition (und in einem Cyrus
+ * Murder das Backend) für neue Mailboxen.
+ *
+ * <p>
+ * Der Speicher der Partitionen wird aus einer UsageSource gelesen, beim
+ * ersten Aufruf und danach wieder sobald die letzte Messung älter als das
+ * Intervall ist. Zwischen zwei Messungen wird die erwartete Größe jeder
+ * neuen Mailbox auf ihre Partition aufgeschlagen, damit eine Strategie wie
+ * LeastUsedPolicy nicht alle Anlagen auf dieselbe Partition legt.
+ * Partitionen deren freier Speicher unter der Reserve liegt werden nicht
+ * mehr gewählt.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class PartitionPlacement {
+
+    /**
+     * Statischer Logger der Klasse PartitionPlacement.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(PartitionPlacement.class);
+
+    /**
+     * Standard Intervall der Messungen in Millisekunden.
+     */
+    private static final long DEFAULT_INTERVAL = 300000L;
+
+    /**
+     * Sortiert die Partitionen nach ihrem Ziel, damit die Reihenfolge über
+     * die Messungen gleich bleibt.
+     */
+    private static final Comparator<PartitionUsage> BY_TARGET =
+            new Comparator<PartitionUsage>() {
+                @Override
+                public int compare(final PartitionUsage a,
+                        final PartitionUsage b) {
+                    return a.getTarget().compareTo(b.getTarget());
+                }
+            };
+
+    /**
+     * Quelle der Messungen.
+     */
+    private final UsageSource source;
+
+    /**
+     * Strategie der Auswahl.
+     */
+    private final PlacementPolicy policy;
+
+    /**
+     * Intervall der Messungen in Nanosekunden.
+     */
+    private long interval = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INTERVAL);
+
+    /**
+     * Erwartete Größe einer neuen Mailbox in KB.
+     */
+    private long expectedKb;
+
+    /**
+     * Minimaler freier Speicher einer wählbaren Partition in KB.
+     */
+    private long reserveKb;
+
+    /**
+     * Partitionen der letzten Messung inklusive der seitdem gewählten.
+     */
+    private List<PartitionUsage> usages;
+
+    /**
+     * Zeitpunkt der letzten Messung in Nanosekunden.
+     */
+    private long sampled;
+
+    /**
+     * Konstruktor der Klasse PartitionPlacement.
+     *
+     * @param usageSource - Quelle der Messungen.
+     * @param placementPolicy - Strategie der Auswahl.
+     */
+    public PartitionPlacement(final UsageSource usageSource,
+            final PlacementPolicy placementPolicy) {
+        super();
+        this.source = usageSource;
+        this.policy = placementPolicy;
+    }// Ende PartitionPlacement(UsageSource, PlacementPolicy)
+
+    /**
+     * Wählt das Ziel einer neuen Mailbox.
+     *
+     * @return String - Ziel für das CREATE Kommando ("partition" oder
+     *         "backend!partition"), null wenn keine Partition gewählt werden
+     *         kann und die Standard-Partition des Servers benutzt werden
+     *         soll.
+     */
+    public final synchronized String choose() {
+        long now = System.nanoTime();
+        if (usages == null || now - sampled >= interval) {
+            refresh(now);
+        }
+        if (usages == null) {
+            return null;
+        }
+
+        List<PartitionUsage> candidates = new ArrayList<PartitionUsage>();
+        for (PartitionUsage usage : usages) {
+            if (usage.getFreeKb() >= reserveKb + expectedKb) {
+                candidates.add(usage);
+            }
+        }
+        if (candidates.isEmpty()) {
+            LOGGER.warn("Keine Partition mit genug freiem Speicher.");
+            return null;
+        }
+
+        PartitionUsage chosen = policy.choose(candidates);
+        usages.set(usages.indexOf(chosen), chosen.plus(expectedKb));
+        return chosen.getTarget();
+    }// Ende choose()
+
+    /**
+     * Verwirft die letzte Messung, der nächste Aufruf von choose() misst
+     * neu.
+     */
+    public final synchronized void invalidate() {
+        sampled = System.nanoTime() - interval;
+    }// Ende invalidate()
+
+    /**
+     * Liefert die Partitionen der letzten Messung inklusive der seitdem
+     * aufgeschlagenen Mailboxen.
+     *
+     * @return List<PartitionUsage> - Die Partitionen, leer wenn noch keine
+     *         Messung gelungen ist.
+     */
+    public final synchronized List<PartitionUsage> getUsages() {
+        if (usages == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<PartitionUsage>(usages);
+    }// Ende getUsages()
+
+    /**
+     * Setzt das Intervall der Messungen.
+     *
+     * @param millis - Intervall in Millisekunden.
+     */
+    public final synchronized void setInterval(final long millis) {
+        this.interval = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, millis));
+    }// Ende setInterval(long)
+
+    /**
+     * Setzt die erwartete Größe einer neuen Mailbox, die bis zur nächsten
+     * Messung auf die gewählte Partition aufgeschlagen wird.
+     *
+     * @param kb - Größe in KB, i.e. die Standard-Quota.
+     */
+    public final synchronized void setExpectedKb(final long kb) {
+        this.expectedKb = Math.max(0L, kb);
+    }// Ende setExpectedKb(long)
+
+    /**
+     * Setzt den freien Speicher den eine Partition mindestens behalten muss.
+     *
+     * @param kb - Reserve in KB.
+     */
+    public final synchronized void setReserveKb(final long kb) {
+        this.reserveKb = Math.max(0L, kb);
+    }// Ende setReserveKb(long)
+
+    /**
+     * Hilfs-Methode die die Partitionen neu misst, bei einem Fehler bleibt
+     * die letzte Messung erhalten.
+     */
+    private void refresh(final long now) {
+        try {
+            List<PartitionUsage> sample =
+                    new ArrayList<PartitionUsage>(source.sample());
+            Collections.sort(sample, BY_TARGET);
+            usages = sample.isEmpty() ? null : sample;
+            LOGGER.debug("Partitionen gemessen: " + sample);
+        } catch (Exception e) {
+            LOGGER.warn("Messung der Partitionen fehlgeschlagen: "
+                    + e.getMessage());
+        }
+        sampled = now;
+    }// Ende refresh(long)
+
+}// Ende class
@@ -0,0 +1,130 @@
+package de.tivsource.lib.jcyradm.placement;
+
+/**
+ * Die Klasse PartitionUsage enthält den gemessenen Speicher einer Partition.
+ *
+ * @author Marc Michele
+ *
+ */
+public class PartitionUsage {
+
+    /**
+     * Backend auf dem die Partition liegt, null bei einem einzelnen Server.
+     */
+    private final String backend;
+
+    /**
+     * Name der Partition.
+     */
+    private final String partition;
+
+    /**
+     * Belegter Speicher in KB.
+     */
+    private final long usedKb;
+
+    /**
+     * Größe der Partition in KB.
+     */
+    private final long sizeKb;
+
+    /**
+     * Konstruktor der Klasse PartitionUsage.
+     *
+     * @param backendName - Backend oder null bei einem einzelnen Server.
+     * @param partitionName - Name der Partition.
+     * @param used - Belegter Speicher in KB.
+     * @param size - Größe der Partition in KB.
+     */
+    public PartitionUsage(final String backendName,
+            final String partitionName, final long used, final long size) {
+        super();
+        this.backend = backendName;
+        this.partition = partitionName;
+        this.usedKb = used;
+        this.sizeKb = size;
+    }// Ende PartitionUsage(String, String, long, long)
+
+    /**
+     * Liefert das Ziel wie es dem CREATE Kommando übergeben wird, in einem
+     * Cyrus Murder "backend!partition".
+     *
+     * @return String - Ziel der Anlage.
+     */
+    public final String getTarget() {
+        return backend == null ? partition : backend + "!" + partition;
+    }// Ende getTarget()
+
+    /**
+     * Liefert das Backend.
+     *
+     * @return String - Backend oder null.
+     */
+    public final String getBackend() {
+        return backend;
+    }// Ende getBackend()
+
+    /**
+     * Liefert den Namen der Partition.
+     *
+     * @return String - Name der Partition.
+     */
+    public final String getPartition() {
+        return partition;
+    }// Ende getPartition()
+
+    /**
+     * Liefert den belegten Speicher.
+     *
+     * @return long - Belegter Speicher in KB.
+     */
+    public final long getUsedKb() {
+        return usedKb;
+    }// Ende getUsedKb()
+
+    /**
+     * Liefert die Größe der Partition.
+     *
+     * @return long - Größe in KB.
+     */
+    public final long getSizeKb() {
+        return sizeKb;
+    }// Ende getSizeKb()
+
+    /**
+     * Liefert den freien Speicher.
+     *
+     * @return long - Freier Speicher in KB, nie negativ.
+     */
+    public final long getFreeKb() {
+        return Math.max(0L, sizeKb - usedKb);
+    }// Ende getFreeKb()
+
+    /**
+     * Liefert die Auslastung der Partition.
+     *
+     * @return double - Auslastung in Prozent, 100 bei unbekannter Größe.
+     */
+    public final double getLoad() {
+        if (sizeKb <= 0) {
+            return 100.0;
+        }
+        return usedKb * 100.0 / sizeKb;
+    }// Ende getLoad()
+
+    /**
+     * Liefert eine Kopie mit zusätzlich belegtem Speicher.
+     *
+     * @param kb - Zusätzlich belegter Speicher in KB.
+     * @return PartitionUsage - Die Kopie.
+     */
+    public final PartitionUsage plus(final long kb) {
+        return new PartitionUsage(backend, partition, usedKb + kb, sizeKb);
+    }// Ende plus(long)
+
+    @Override
+    public final String toString() {
+        return getTarget() + " " + usedKb + "/" + sizeKb;
+    }// Ende toString()
+
+}// Ende class
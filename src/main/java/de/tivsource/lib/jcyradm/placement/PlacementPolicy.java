@@ -0,0 +1,23 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.util.List;
+
+/**
+ * Schnittstelle für Strategien die aus den Partitionen das Ziel einer neuen
+ * Mailbox wählen.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Wählt eine Partition.
+     *
+     * @param candidates - Partitionen mit genug freiem Speicher, nie leer
+     *            und immer in derselben Reihenfolge.
+     * @return PartitionUsage - Die gewählte Partition.
+     */
+    PartitionUsage choose(List<PartitionUsage> candidates);
+
+}// Ende interface
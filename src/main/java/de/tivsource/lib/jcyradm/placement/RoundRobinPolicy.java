@@ -0,0 +1,26 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Die Klasse RoundRobinPolicy wählt die Partitionen reihum, unabhängig vom
+ * belegten Speicher.
+ *
+ * @author Marc Michele
+ *
+ */
+public class RoundRobinPolicy implements PlacementPolicy {
+
+    /**
+     * Anzahl der bisherigen Auswahlen.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    @Override
+    public final PartitionUsage choose(final List<PartitionUsage> candidates) {
+        long index = next.getAndIncrement() % candidates.size();
+        return candidates.get((int) index);
+    }// Ende choose(List<PartitionUsage>)
+
+}// Ende class
@@ -0,0 +1,23 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.util.List;
+
+/**
+ * Schnittstelle für Quellen aus denen die PartitionPlacement den Speicher
+ * der Partitionen liest.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface UsageSource {
+
+    /**
+     * Misst den Speicher aller Partitionen.
+     *
+     * @return List<PartitionUsage> - Alle Partitionen auf die neue Mailboxen
+     *         verteilt werden dürfen.
+     * @throws Exception - Wenn die Messung fehlgeschlagen ist.
+     */
+    List<PartitionUsage> sample() throws Exception;
+
+}// Ende interface
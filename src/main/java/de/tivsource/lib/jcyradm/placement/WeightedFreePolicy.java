@@ -0,0 +1,58 @@
+package de.tivsource.lib.jcyradm.placement;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Die Klasse WeightedFreePolicy wählt eine Partition zufällig, gewichtet mit
+ * ihrem freien Speicher. Im Gegensatz zur LeastUsedPolicy landen die
+ * Anlagen zwischen zwei Messungen nicht alle auf derselben Partition.
+ *
+ * @author Marc Michele
+ *
+ */
+public class WeightedFreePolicy implements PlacementPolicy {
+
+    /**
+     * Zufallszahlen für die Auswahl.
+     */
+    private final Random random;
+
+    /**
+     * Konstruktor der Klasse WeightedFreePolicy.
+     */
+    public WeightedFreePolicy() {
+        this(new Random());
+    }// Ende WeightedFreePolicy()
+
+    /**
+     * Konstruktor der Klasse WeightedFreePolicy mit eigenen Zufallszahlen,
+     * i.e. für reproduzierbare Tests.
+     *
+     * @param randomNumbers - Zufallszahlen für die Auswahl.
+     */
+    public WeightedFreePolicy(final Random randomNumbers) {
+        super();
+        this.random = randomNumbers;
+    }// Ende WeightedFreePolicy(Random)
+
+    @Override
+    public final PartitionUsage choose(final List<PartitionUsage> candidates) {
+        long total = 0;
+        for (PartitionUsage usage : candidates) {
+            total += usage.getFreeKb();
+        }
+        if (total <= 0) {
+            return candidates.get(random.nextInt(candidates.size()));
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (PartitionUsage usage : candidates) {
+            pick -= usage.getFreeKb();
+            if (pick < 0) {
+                return usage;
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }// Ende choose(List<PartitionUsage>)
+
+}// Ende class
@@ -0,0 +1,9 @@
+/**
+ * In diesem Paket befinden sich die Klassen zur Verteilung neuer Mailboxen
+ * auf Partitionen und Backends, i.e. die Messwerte der Partitionen, die
+ * Strategien zur Auswahl und die PartitionPlacement die beides verbindet.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.placement;
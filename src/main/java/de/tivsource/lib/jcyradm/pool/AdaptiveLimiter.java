@@ -0,0 +1,240 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Die Klasse AdaptiveLimiter begrenzt die Anzahl der gleichzeitig laufenden
+ * Operationen auf einem Backend und passt die Grenze anhand der gemessenen
+ * Laufzeiten an (AIMD). Solange die Laufzeit nahe an der kleinsten gemessenen
+ * Laufzeit bleibt, wird die Grenze langsam erhöht, steigt sie über das
+ * Toleranz-Vielfache oder schlägt eine Operation fehl, wird die Grenze
+ * multiplikativ gesenkt.
+ *
+ * <p>
+ * Der Limiter kann auch ohne acquire()/release() benutzt werden, dann liefert
+ * er über sample() und getLimit() eine angepasste Tiefe für eine Pipeline.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class AdaptiveLimiter {
+
+    /**
+     * Standard Faktor um den die gemessene Laufzeit über der kleinsten
+     * Laufzeit liegen darf.
+     */
+    private static final double DEFAULT_TOLERANCE = 2.0;
+
+    /**
+     * Standard Faktor mit dem die Grenze bei Überlast gesenkt wird.
+     */
+    private static final double DEFAULT_BACKOFF = 0.9;
+
+    /**
+     * Anzahl der Messungen nach der die kleinste Laufzeit neu bestimmt wird.
+     */
+    private static final int RTT_WINDOW = 500;
+
+    /**
+     * Untere Grenze.
+     */
+    private final int minLimit;
+
+    /**
+     * Obere Grenze.
+     */
+    private final int maxLimit;
+
+    /**
+     * Faktor um den die Laufzeit über der kleinsten Laufzeit liegen darf.
+     */
+    private double tolerance = DEFAULT_TOLERANCE;
+
+    /**
+     * Faktor mit dem die Grenze bei Überlast gesenkt wird.
+     */
+    private double backoff = DEFAULT_BACKOFF;
+
+    /**
+     * Aktuelle Grenze.
+     */
+    private double limit;
+
+    /**
+     * Anzahl der laufenden Operationen.
+     */
+    private int inFlight;
+
+    /**
+     * Kleinste Laufzeit in Nanosekunden aus dem letzten Fenster.
+     */
+    private long minRtt = Long.MAX_VALUE;
+
+    /**
+     * Kleinste Laufzeit in Nanosekunden im aktuellen Fenster.
+     */
+    private long windowMinRtt = Long.MAX_VALUE;
+
+    /**
+     * Anzahl der Messungen im aktuellen Fenster.
+     */
+    private int windowSamples;
+
+    /**
+     * Zeitpunkt in Nanosekunden der letzten Senkung.
+     */
+    private long lastDecrease;
+
+    /**
+     * Konstruktor der Klasse AdaptiveLimiter.
+     *
+     * @param initialLimit - Grenze zu Beginn.
+     * @param min - Untere Grenze, mindestens 1.
+     * @param max - Obere Grenze.
+     */
+    public AdaptiveLimiter(final int initialLimit, final int min,
+            final int max) {
+        super();
+        this.minLimit = Math.max(1, min);
+        this.maxLimit = Math.max(this.minLimit, max);
+        this.limit = Math.min(maxLimit, Math.max(minLimit, initialLimit));
+    }// Ende AdaptiveLimiter(int, int, int)
+
+    /**
+     * Versucht eine Operation zu starten ohne zu warten.
+     *
+     * @return boolean - True wenn die Operation gestartet werden darf.
+     */
+    public final synchronized boolean tryAcquire() {
+        if (inFlight < getLimit()) {
+            inFlight++;
+            return true;
+        }
+        return false;
+    }// Ende tryAcquire()
+
+    /**
+     * Wartet bis eine Operation gestartet werden darf.
+     *
+     * @param timeout - Maximale Wartezeit.
+     * @param unit - Einheit der Wartezeit.
+     * @return boolean - True wenn die Operation gestartet werden darf, False
+     *         wenn die Wartezeit abgelaufen ist.
+     * @throws InterruptedException - Wenn der Thread unterbrochen wurde.
+     */
+    public final synchronized boolean acquire(final long timeout,
+            final TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inFlight >= getLimit()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+        return true;
+    }// Ende acquire(long, TimeUnit)
+
+    /**
+     * Beendet eine Operation und passt die Grenze an.
+     *
+     * @param latencyNanos - Laufzeit der Operation in Nanosekunden.
+     * @param success - False wenn die Operation wegen Überlast oder
+     *            Verbindungsfehler fehlgeschlagen ist.
+     */
+    public final synchronized void release(final long latencyNanos,
+            final boolean success) {
+        inFlight--;
+        sample(latencyNanos, success);
+        notifyAll();
+    }// Ende release(long, boolean)
+
+    /**
+     * Passt die Grenze anhand einer Messung an, ohne die Anzahl der
+     * laufenden Operationen zu verändern.
+     *
+     * @param latencyNanos - Laufzeit der Operation in Nanosekunden.
+     * @param success - False wenn die Operation wegen Überlast oder
+     *            Verbindungsfehler fehlgeschlagen ist.
+     */
+    public final synchronized void sample(final long latencyNanos,
+            final boolean success) {
+        if (success && latencyNanos > 0) {
+            windowMinRtt = Math.min(windowMinRtt, latencyNanos);
+            minRtt = Math.min(minRtt, latencyNanos);
+            if (++windowSamples >= RTT_WINDOW) {
+                /*
+                 * Die kleinste Laufzeit folgt damit Änderungen des Backends.
+                 */
+                minRtt = windowMinRtt;
+                windowMinRtt = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+
+        if (success && latencyNanos <= minRtt * tolerance) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        } else {
+            long now = System.nanoTime();
+            /*
+             * Nur eine Senkung je Laufzeit, ein einzelner Stau soll die
+             * Grenze nicht mehrfach halbieren.
+             */
+            if (now - lastDecrease > latencyNanos) {
+                limit = Math.max(minLimit, limit * backoff);
+                lastDecrease = now;
+            }
+        }
+        notifyAll();
+    }// Ende sample(long, boolean)
+
+    /**
+     * Liefert die aktuelle Grenze.
+     *
+     * @return int - Anzahl der gleichzeitig erlaubten Operationen.
+     */
+    public final synchronized int getLimit() {
+        return (int) limit;
+    }// Ende getLimit()
+
+    /**
+     * Liefert die Anzahl der laufenden Operationen.
+     *
+     * @return int - Laufende Operationen.
+     */
+    public final synchronized int getInFlight() {
+        return inFlight;
+    }// Ende getInFlight()
+
+    /**
+     * Liefert die kleinste gemessene Laufzeit.
+     *
+     * @return long - Laufzeit in Nanosekunden, Long.MAX_VALUE wenn noch
+     *         nichts gemessen wurde.
+     */
+    public final synchronized long getMinRttNanos() {
+        return minRtt;
+    }// Ende getMinRttNanos()
+
+    /**
+     * Setzt den Faktor um den die Laufzeit über der kleinsten Laufzeit
+     * liegen darf, bevor die Grenze gesenkt wird.
+     *
+     * @param factor - Faktor größer 1.
+     */
+    public final synchronized void setTolerance(final double factor) {
+        this.tolerance = factor;
+    }// Ende setTolerance(double)
+
+    /**
+     * Setzt den Faktor mit dem die Grenze bei Überlast gesenkt wird.
+     *
+     * @param factor - Faktor zwischen 0 und 1.
+     */
+    public final synchronized void setBackoff(final double factor) {
+        this.backoff = factor;
+    }// Ende setBackoff(double)
+
+}// Ende class
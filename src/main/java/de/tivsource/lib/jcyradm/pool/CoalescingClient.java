@@ -0,0 +1,159 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+
+/**
+ * Die Klasse CoalescingClient führt Abfragen über einen SessionPool aus und
+ * fasst dabei gleichzeitige gleiche Aufrufe zusammen. Fragen während einer
+ * laufenden GETQUOTA bzw. GETACL Abfrage weitere Threads dieselbe Mailbox
+ * desselben Backends ab, geht kein weiteres Kommando an den Server, alle
+ * bekommen dasselbe unveränderliche Ergebnis. Gleichzeitige Aufrufe von
+ * createMailBox() mit derselben Mailbox werden ebenfalls zu einem einzigen
+ * Versuch zusammengefasst, alle bekommen dessen Ausgang (i.e. dieselbe
+ * MailboxExists Ausnahme).
+ *
+ * @author Marc Michele
+ *
+ */
+public class CoalescingClient {
+
+    /**
+     * Name des Backends, Teil des Schlüssels.
+     */
+    private final String backend;
+
+    /**
+     * Pool mit dem die Operationen ausgeführt werden.
+     */
+    private final SessionPool pool;
+
+    /**
+     * Laufende Quota-Abfragen.
+     */
+    private final SingleFlight<String, Quota> quotaFlights =
+            new SingleFlight<String, Quota>();
+
+    /**
+     * Laufende ACL-Abfragen.
+     */
+    private final SingleFlight<String, Map<String, String>> aclFlights =
+            new SingleFlight<String, Map<String, String>>();
+
+    /**
+     * Laufende Anlage von Mailboxen.
+     */
+    private final SingleFlight<String, Void> createFlights =
+            new SingleFlight<String, Void>();
+
+    /**
+     * Konstruktor der Klasse CoalescingClient.
+     *
+     * @param backendName - Name des Backends (i.e. der Host), Teil des
+     *            Schlüssels unter dem Aufrufe zusammengefasst werden.
+     * @param sessionPool - Pool mit dem die Operationen ausgeführt werden.
+     */
+    public CoalescingClient(final String backendName,
+            final SessionPool sessionPool) {
+        super();
+        this.backend = backendName;
+        this.pool = sessionPool;
+    }// Ende CoalescingClient(String, SessionPool)
+
+    /**
+     * Fragt die Quota einer Mailbox ab.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     * @return Quota - Die Quota der Mailbox.
+     * @throws Exception - Ausnahmen von JCyrAdm.quota(String) oder des Pools.
+     */
+    public final Quota quota(final String mailbox) throws Exception {
+        return quotaFlights.execute(key(mailbox), new Callable<Quota>() {
+            @Override
+            public Quota call() throws Exception {
+                return pool.execute(new Operation<Quota>() {
+                    @Override
+                    public Quota run(final JCyrAdm session) throws Exception {
+                        session.quota(mailbox);
+                        return new Quota(mailbox,
+                                session.getUsed().longValue(),
+                                session.getQuota().longValue());
+                    }
+                });
+            }
+        });
+    }// Ende quota(String)
+
+    /**
+     * Fragt die ACLs einer Mailbox ab.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     * @return Map - Unveränderliche Map Benutzer/Rechte.
+     * @throws Exception - Ausnahmen von JCyrAdm.acl(String) oder des Pools.
+     */
+    public final Map<String, String> acl(final String mailbox)
+            throws Exception {
+        return aclFlights.execute(key(mailbox),
+                new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() throws Exception {
+                return pool.execute(new Operation<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> run(final JCyrAdm session)
+                            throws Exception {
+                        session.acl(mailbox);
+                        return Collections.unmodifiableMap(
+                                new LinkedHashMap<String, String>(
+                                        session.getAcls()));
+                    }
+                });
+            }
+        });
+    }// Ende acl(String)
+
+    /**
+     * Legt eine Mailbox an.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     * @throws Exception - Ausnahmen von JCyrAdm.createMailBox(String) oder des
+     *             Pools.
+     */
+    public final void createMailBox(final String mailbox) throws Exception {
+        createFlights.execute(key(mailbox), new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                return pool.execute(new Operation<Void>() {
+                    @Override
+                    public Void run(final JCyrAdm session) throws Exception {
+                        session.createMailBox(mailbox);
+                        return null;
+                    }
+                });
+            }
+        });
+    }// Ende createMailBox(String)
+
+    /**
+     * Liefert die Anzahl der Aufrufe die sich einer laufenden Operation
+     * angeschlossen haben.
+     *
+     * @return long - Eingesparte Kommandos.
+     */
+    public final long getCoalesced() {
+        return quotaFlights.getCoalesced() + aclFlights.getCoalesced()
+                + createFlights.getCoalesced();
+    }// Ende getCoalesced()
+
+    /**
+     * Hilfs-Methode die den Schlüssel aus Backend und Mailbox bildet.
+     */
+    private String key(final String mailbox) {
+        return backend + ' ' + mailbox;
+    }// Ende key(String)
+
+}// Ende class
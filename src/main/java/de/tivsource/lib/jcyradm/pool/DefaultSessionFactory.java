@@ -0,0 +1,136 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+
+/**
+ * Die Klasse DefaultSessionFactory erzeugt Sitzungen mit den Standard
+ * Properties, baut die Verbindung zu einem der Hosts auf und meldet den
+ * Administrator an.
+ *
+ * @author Marc Michele
+ *
+ */
+public class DefaultSessionFactory implements SessionFactory {
+
+    /**
+     * Statischer Logger der Klasse DefaultSessionFactory.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(DefaultSessionFactory.class);
+
+    /**
+     * Hosts des Backends.
+     */
+    private final List<String> hosts;
+
+    /**
+     * Port des Backends, null für den Standard-Port.
+     */
+    private final Integer port;
+
+    /**
+     * SSL oder Plain.
+     */
+    private final Boolean ssl;
+
+    /**
+     * Administrator mit dem die Sitzungen angemeldet werden.
+     */
+    private final String administrator;
+
+    /**
+     * Passwort des Administrators.
+     */
+    private final String password;
+
+    /**
+     * Ob der Server mit unixhierarchysep läuft.
+     */
+    private boolean unixHierarchySep;
+
+    /**
+     * Ob der Server mit virtdomains läuft.
+     */
+    private boolean virtDomains;
+
+    /**
+     * Konstruktor der Klasse DefaultSessionFactory.
+     *
+     * @param hostnames - Hosts des Backends.
+     * @param portNumber - Port des Backends, null für den Standard-Port.
+     * @param useSsl - SSL oder Plain.
+     * @param admin - Administrator.
+     * @param pass - Passwort des Administrators.
+     */
+    public DefaultSessionFactory(final List<String> hostnames,
+            final Integer portNumber, final Boolean useSsl, final String admin,
+            final String pass) {
+        super();
+        this.hosts = new ArrayList<String>(hostnames);
+        this.port = portNumber;
+        this.ssl = useSsl;
+        this.administrator = admin;
+        this.password = pass;
+    }// Ende DefaultSessionFactory(List<String>, Integer, Boolean, ...)
+
+    /**
+     * Setzt die Namensregeln des Servers für alle neuen Sitzungen.
+     *
+     * @param unixhierarchysep - True wenn der Server mit unixhierarchysep
+     *            läuft.
+     * @param virtdomains - True wenn der Server mit virtdomains läuft.
+     */
+    public final void setNamingRules(final boolean unixhierarchysep,
+            final boolean virtdomains) {
+        this.unixHierarchySep = unixhierarchysep;
+        this.virtDomains = virtdomains;
+    }// Ende setNamingRules(boolean, boolean)
+
+    /**
+     * Liefert die Hosts des Backends.
+     *
+     * @return List - Hosts des Backends.
+     */
+    public final List<String> getHosts() {
+        return hosts;
+    }// Ende getHosts()
+
+    @Override
+    public JCyrAdm create() throws Exception {
+        JCyrAdm session = new JCyrAdm();
+        session.setHosts(hosts);
+        session.setPort(port);
+        session.setAdministrator(administrator);
+        session.setPassword(password);
+        session.setNamingRules(unixHierarchySep, virtDomains);
+        session.connect(ssl);
+        try {
+            session.login();
+        } catch (Exception e) {
+            session.disconnect();
+            throw e;
+        }
+        LOGGER.debug("Neue Sitzung zu " + session.getConnectedHost());
+        return session;
+    }// Ende create()
+
+    @Override
+    public void destroy(final JCyrAdm session) {
+        try {
+            session.logout();
+        } catch (Exception e) {
+            LOGGER.debug("Abmelden fehlgeschlagen: " + e.getMessage());
+        }
+        try {
+            session.disconnect();
+        } catch (Exception e) {
+            LOGGER.debug("Trennen fehlgeschlagen: " + e.getMessage());
+        }
+    }// Ende destroy(JCyrAdm)
+
+}// Ende class
@@ -0,0 +1,25 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+
+/**
+ * Schnittstelle für eine Operation die mit einer angemeldeten Sitzung aus dem
+ * Pool ausgeführt wird.
+ *
+ * @param <T> - Typ des Ergebnisses.
+ * @author Marc Michele
+ *
+ */
+public interface Operation<T> {
+
+    /**
+     * Führt die Operation aus.
+     *
+     * @param session - Angemeldete Sitzung, darf nach der Rückkehr nicht mehr
+     *            benutzt werden.
+     * @return T - Ergebnis der Operation.
+     * @throws Exception - Ausnahmen der benutzten JCyrAdm Methoden.
+     */
+    T run(JCyrAdm session) throws Exception;
+
+}// Ende interface
@@ -0,0 +1,24 @@
+package de.tivsource.lib.jcyradm.pool;
+
+/**
+ * Prioritätsklasse einer Operation im Pool.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum Priority {
+
+    /**
+     * Interaktive Operationen (i.e. ein Benutzer legt im Portal eine Mailbox
+     * an), diese haben reservierte Kapazität und werden vor wartenden
+     * Massen-Operationen ausgeführt.
+     */
+    INTERACTIVE,
+
+    /**
+     * Massen-Operationen (i.e. nächtlicher Quota-Lauf), diese benutzen nur
+     * die nicht reservierte Kapazität.
+     */
+    BULK;
+
+}// Ende enum
@@ -0,0 +1,165 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Die Klasse PriorityScheduler entscheidet welche wartende Operation als
+ * nächstes eine Sitzung bekommt. Die Gesamtzahl der gleichzeitigen
+ * Operationen folgt der Grenze des AdaptiveLimiters, davon ist ein Teil für
+ * interaktive Operationen reserviert. Wartet eine interaktive Operation, wird
+ * keine weitere Massen-Operation gestartet, die interaktive Operation
+ * überholt damit alle wartenden Massen-Operationen.
+ *
+ * @author Marc Michele
+ *
+ */
+public class PriorityScheduler {
+
+    /**
+     * Standard Anzahl der für interaktive Operationen reservierten Plätze.
+     */
+    private static final int DEFAULT_RESERVED = 2;
+
+    /**
+     * Liefert die Grenze und wird mit den Laufzeiten gefüttert.
+     */
+    private final AdaptiveLimiter limiter;
+
+    /**
+     * Für interaktive Operationen reservierte Plätze.
+     */
+    private int reserved = DEFAULT_RESERVED;
+
+    /**
+     * Laufende interaktive Operationen.
+     */
+    private int interactiveInFlight;
+
+    /**
+     * Laufende Massen-Operationen.
+     */
+    private int bulkInFlight;
+
+    /**
+     * Wartende interaktive Operationen.
+     */
+    private int interactiveWaiting;
+
+    /**
+     * Konstruktor der Klasse PriorityScheduler.
+     *
+     * @param concurrency - Liefert die Gesamtzahl der gleichzeitigen
+     *            Operationen.
+     */
+    public PriorityScheduler(final AdaptiveLimiter concurrency) {
+        super();
+        this.limiter = concurrency;
+    }// Ende PriorityScheduler(AdaptiveLimiter)
+
+    /**
+     * Wartet bis eine Operation der angegebenen Klasse starten darf.
+     *
+     * @param priority - Klasse der Operation.
+     * @param timeout - Maximale Wartezeit.
+     * @param unit - Einheit der Wartezeit.
+     * @return boolean - True wenn die Operation starten darf, False wenn die
+     *         Wartezeit abgelaufen ist.
+     * @throws InterruptedException - Wenn der Thread unterbrochen wurde.
+     */
+    public final synchronized boolean acquire(final Priority priority,
+            final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean interactive = priority == Priority.INTERACTIVE;
+        if (interactive) {
+            interactiveWaiting++;
+        }
+        try {
+            while (!canStart(interactive)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            if (interactive) {
+                interactiveInFlight++;
+            } else {
+                bulkInFlight++;
+            }
+            return true;
+        } finally {
+            if (interactive) {
+                interactiveWaiting--;
+                notifyAll();
+            }
+        }
+    }// Ende acquire(Priority, long, TimeUnit)
+
+    /**
+     * Beendet eine Operation und gibt die gemessene Laufzeit an den Limiter.
+     *
+     * @param priority - Klasse der Operation.
+     * @param latencyNanos - Laufzeit der Operation in Nanosekunden.
+     * @param success - False wenn die Operation wegen Überlast oder
+     *            Verbindungsfehler fehlgeschlagen ist.
+     */
+    public final synchronized void release(final Priority priority,
+            final long latencyNanos, final boolean success) {
+        if (priority == Priority.INTERACTIVE) {
+            interactiveInFlight--;
+        } else {
+            bulkInFlight--;
+        }
+        limiter.sample(latencyNanos, success);
+        notifyAll();
+    }// Ende release(Priority, long, boolean)
+
+    /**
+     * Setzt die Anzahl der für interaktive Operationen reservierten Plätze.
+     * Massen-Operationen bekommen immer mindestens einen Platz.
+     *
+     * @param places - Reservierte Plätze.
+     */
+    public final synchronized void setReserved(final int places) {
+        this.reserved = Math.max(0, places);
+        notifyAll();
+    }// Ende setReserved(int)
+
+    /**
+     * Liefert die Anzahl der laufenden Operationen einer Klasse.
+     *
+     * @param priority - Klasse der Operationen.
+     * @return int - Laufende Operationen.
+     */
+    public final synchronized int getInFlight(final Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactiveInFlight
+                : bulkInFlight;
+    }// Ende getInFlight(Priority)
+
+    /**
+     * Liefert den Limiter.
+     *
+     * @return AdaptiveLimiter - Liefert die Gesamtzahl der gleichzeitigen
+     *         Operationen.
+     */
+    public final AdaptiveLimiter getLimiter() {
+        return limiter;
+    }// Ende getLimiter()
+
+    /**
+     * Hilfs-Methode die prüft ob eine Operation starten darf.
+     */
+    private boolean canStart(final boolean interactive) {
+        int limit = limiter.getLimit();
+        if (interactiveInFlight + bulkInFlight >= limit) {
+            return false;
+        }
+        if (interactive) {
+            return true;
+        }
+        int bulkLimit = Math.max(1, limit - reserved);
+        return interactiveWaiting == 0 && bulkInFlight < bulkLimit;
+    }// Ende canStart(boolean)
+
+}// Ende class
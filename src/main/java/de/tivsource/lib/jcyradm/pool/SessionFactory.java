@@ -0,0 +1,31 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+
+/**
+ * Schnittstelle für Objekte die neue, verbundene und angemeldete Sitzungen zu
+ * einem Backend erzeugen.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface SessionFactory {
+
+    /**
+     * Erzeugt eine neue Sitzung, die Verbindung ist aufgebaut und der
+     * Administrator angemeldet.
+     *
+     * @return JCyrAdm - Die neue Sitzung.
+     * @throws Exception - Wenn die Sitzung nicht erzeugt werden konnte.
+     */
+    JCyrAdm create() throws Exception;
+
+    /**
+     * Meldet eine Sitzung ab und trennt die Verbindung, Fehler werden dabei
+     * nur protokolliert.
+     *
+     * @param session - Die Sitzung.
+     */
+    void destroy(JCyrAdm session);
+
+}// Ende interface
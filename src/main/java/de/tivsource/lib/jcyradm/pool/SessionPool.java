@@ -0,0 +1,528 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.exception.CircuitOpen;
+import de.tivsource.lib.jcyradm.exception.NoServerResponse;
+import de.tivsource.lib.jcyradm.exception.NoSessionAvailable;
+import de.tivsource.lib.jcyradm.net.CircuitBreaker;
+
+/**
+ * Die Klasse SessionPool hält angemeldete Sitzungen zu einem Backend und
+ * führt Operationen mit ihnen aus. Bei mehreren Backends bekommt jedes
+ * seinen eigenen Pool, die Mindestzahl der Sitzungen gilt damit je Host.
+ * Die Anzahl der gleichzeitigen Operationen wird von einem AdaptiveLimiter
+ * anhand der gemessenen Laufzeiten geregelt, optional begrenzt ein
+ * TokenBucket die Rate der Massen-Operationen.
+ * Interaktive Operationen haben reservierte Plätze und überholen wartende
+ * Massen-Operationen (siehe PriorityScheduler).
+ * <p>
+ * Mit startMaintenance() hält ein Hintergrund-Thread freie Sitzungen mit
+ * NOOP offen bevor der Server sie wegen Inaktivität trennt, verwirft dabei
+ * tote Sitzungen und füllt den Pool auf die Mindestzahl auf. Beim Ausleihen
+ * wird nicht geprüft, der Aufrufer bekommt eine kürzlich geprüfte Sitzung.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class SessionPool {
+
+    /**
+     * Statischer Logger der Klasse SessionPool.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SessionPool.class);
+
+    /**
+     * Standard Wartezeit in Millisekunden auf eine freie Sitzung.
+     */
+    private static final long DEFAULT_BORROW_TIMEOUT = 30000L;
+
+    /**
+     * Standard Leerlauf in Millisekunden nach dem eine freie Sitzung ein
+     * NOOP bekommt, deutlich unter dem Standard-Timeout von Cyrus (30
+     * Minuten).
+     */
+    private static final long DEFAULT_KEEP_ALIVE = 300000L;
+
+    /**
+     * Maximale Anzahl der Threads beim Vorwärmen.
+     */
+    private static final int WARM_UP_THREADS = 8;
+
+    /**
+     * Erzeugt neue Sitzungen.
+     */
+    private final SessionFactory factory;
+
+    /**
+     * Regelt die Anzahl und Reihenfolge der gleichzeitigen Operationen.
+     */
+    private final PriorityScheduler scheduler;
+
+    /**
+     * Begrenzt die Rate der Massen-Operationen, null wenn unbegrenzt.
+     */
+    private final TokenBucket rateLimit;
+
+    /**
+     * Freie Sitzungen, die zuletzt benutzte zuerst.
+     */
+    private final LinkedBlockingDeque<JCyrAdm> idle =
+            new LinkedBlockingDeque<JCyrAdm>();
+
+    /**
+     * Anzahl der offenen Sitzungen.
+     */
+    private final AtomicInteger open = new AtomicInteger();
+
+    /**
+     * Zeitpunkt in Nanosekunden an dem eine Sitzung zuletzt benutzt oder
+     * geprüft wurde.
+     */
+    private final ConcurrentMap<JCyrAdm, Long> lastUsed =
+            new ConcurrentHashMap<JCyrAdm, Long>();
+
+    /**
+     * Anzahl der gesendeten NOOPs.
+     */
+    private final AtomicLong keepAlives = new AtomicLong();
+
+    /**
+     * Anzahl der im Hintergrund verworfenen Sitzungen.
+     */
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Anzahl der Sitzungen die offen gehalten werden.
+     */
+    private volatile int minIdle;
+
+    /**
+     * Leerlauf in Millisekunden nach dem eine freie Sitzung ein NOOP
+     * bekommt.
+     */
+    private volatile long keepAlive = DEFAULT_KEEP_ALIVE;
+
+    /**
+     * Thread der die freien Sitzungen pflegt.
+     */
+    private Thread maintenance;
+
+    /**
+     * Wartezeit in Millisekunden auf eine freie Sitzung.
+     */
+    private long borrowTimeout = DEFAULT_BORROW_TIMEOUT;
+
+    /**
+     * Zählt Fehler der Kommandos je Host.
+     */
+    private CircuitBreaker breaker = CircuitBreaker.getDefault();
+
+    /**
+     * Wird gesetzt wenn der Pool geschlossen wurde.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Konstruktor der Klasse SessionPool.
+     *
+     * @param sessionFactory - Erzeugt neue Sitzungen.
+     * @param concurrency - Regelt die Anzahl der gleichzeitigen Operationen.
+     * @param bucket - Begrenzt die Rate der Massen-Operationen, null wenn
+     *            unbegrenzt.
+     */
+    public SessionPool(final SessionFactory sessionFactory,
+            final AdaptiveLimiter concurrency, final TokenBucket bucket) {
+        super();
+        this.factory = sessionFactory;
+        this.scheduler = new PriorityScheduler(concurrency);
+        this.rateLimit = bucket;
+    }// Ende SessionPool(SessionFactory, AdaptiveLimiter, TokenBucket)
+
+    /**
+     * Führt eine interaktive Operation mit einer freien Sitzung aus.
+     *
+     * @param <T> - Typ des Ergebnisses.
+     * @param operation - Die Operation.
+     * @return T - Ergebnis der Operation.
+     * @throws NoSessionAvailable - Wenn in der Wartezeit keine Sitzung frei
+     *             wurde.
+     * @throws Exception - Ausnahmen der Operation oder beim Erzeugen der
+     *             Sitzung.
+     */
+    public final <T> T execute(final Operation<T> operation)
+            throws Exception {
+        return execute(Priority.INTERACTIVE, operation);
+    }// Ende execute(Operation<T>)
+
+    /**
+     * Führt eine Operation mit einer freien Sitzung aus. Verbindungsfehler
+     * und fehlende Antworten senken die Grenze der gleichzeitigen
+     * Operationen und werden dem CircuitBreaker des Hosts gemeldet. Endet
+     * die Operation mit irgendeiner Ausnahme, wird die Sitzung verworfen, da
+     * unklar ist ob noch Antworten des Servers ungelesen sind.
+     *
+     * @param <T> - Typ des Ergebnisses.
+     * @param priority - Klasse der Operation.
+     * @param operation - Die Operation.
+     * @return T - Ergebnis der Operation.
+     * @throws NoSessionAvailable - Wenn in der Wartezeit keine Sitzung frei
+     *             wurde.
+     * @throws Exception - Ausnahmen der Operation oder beim Erzeugen der
+     *             Sitzung.
+     */
+    public final <T> T execute(final Priority priority,
+            final Operation<T> operation) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("SessionPool closed");
+        }
+        if (rateLimit != null && priority == Priority.BULK) {
+            rateLimit.acquire();
+        }
+        if (!scheduler.acquire(priority, borrowTimeout,
+                TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("Keine freie Sitzung innerhalb von " + borrowTimeout
+                    + " ms.");
+            throw new NoSessionAvailable();
+        }
+
+        long start = System.nanoTime();
+        boolean healthy = true;
+        boolean reusable = false;
+        JCyrAdm session = null;
+        try {
+            session = take();
+            T result = operation.run(session);
+            reusable = true;
+            if (session.getConnectedHost() != null) {
+                breaker.success(session.getConnectedHost());
+            }
+            return result;
+        } catch (CircuitOpen e) {
+            /*
+             * Gesperrter Host, es wurde nichts versucht und nichts gemessen.
+             */
+            throw e;
+        } catch (IOException e) {
+            healthy = false;
+            commandFailed(session);
+            throw e;
+        } catch (NoServerResponse e) {
+            healthy = false;
+            commandFailed(session);
+            throw e;
+        } finally {
+            scheduler.release(priority, System.nanoTime() - start, healthy);
+            if (session != null) {
+                if (reusable && !closed) {
+                    lastUsed.put(session, System.nanoTime());
+                    idle.offerFirst(session);
+                } else {
+                    discard(session);
+                }
+            }
+        }
+    }// Ende execute(Priority, Operation<T>)
+
+    /**
+     * Schließt den Pool und alle freien Sitzungen, laufende Sitzungen werden
+     * nach ihrer Operation geschlossen.
+     */
+    public final void close() {
+        closed = true;
+        stopMaintenance();
+        JCyrAdm session;
+        while ((session = idle.pollFirst()) != null) {
+            discard(session);
+        }
+    }// Ende close()
+
+    /**
+     * Liefert die Anzahl der offenen Sitzungen.
+     *
+     * @return int - Offene Sitzungen.
+     */
+    public final int getOpenSessions() {
+        return open.get();
+    }// Ende getOpenSessions()
+
+    /**
+     * Liefert die Anzahl der freien Sitzungen.
+     *
+     * @return int - Freie Sitzungen.
+     */
+    public final int getIdleSessions() {
+        return idle.size();
+    }// Ende getIdleSessions()
+
+    /**
+     * Liefert den Limiter des Pools.
+     *
+     * @return AdaptiveLimiter - Regelt die gleichzeitigen Operationen.
+     */
+    public final AdaptiveLimiter getLimiter() {
+        return scheduler.getLimiter();
+    }// Ende getLimiter()
+
+    /**
+     * Liefert den Scheduler des Pools, i.e. um die reservierten Plätze für
+     * interaktive Operationen zu setzen.
+     *
+     * @return PriorityScheduler - Regelt die Reihenfolge der Operationen.
+     */
+    public final PriorityScheduler getScheduler() {
+        return scheduler;
+    }// Ende getScheduler()
+
+    /**
+     * Setzt die Wartezeit auf eine freie Sitzung.
+     *
+     * @param timeoutMillis - Wartezeit in Millisekunden.
+     */
+    public final void setBorrowTimeout(final long timeoutMillis) {
+        this.borrowTimeout = timeoutMillis;
+    }// Ende setBorrowTimeout(long)
+
+    /**
+     * Setzt die Anzahl der Sitzungen die vorgewärmt und offen gehalten
+     * werden. Die Zahl gilt für den ganzen Pool, welchen Host eine neue
+     * Sitzung erreicht entscheidet die SessionFactory. Wird je Host eine
+     * Mindestzahl gebraucht, bekommt jeder Host einen eigenen Pool.
+     *
+     * @param sessions - Mindestzahl der offenen Sitzungen.
+     */
+    public final void setMinIdle(final int sessions) {
+        this.minIdle = Math.max(0, sessions);
+    }// Ende setMinIdle(int)
+
+    /**
+     * Setzt den Leerlauf nach dem eine freie Sitzung ein NOOP bekommt, er
+     * muss unter dem "timeout" des Servers liegen.
+     *
+     * @param millis - Leerlauf in Millisekunden.
+     */
+    public final void setKeepAlive(final long millis) {
+        this.keepAlive = Math.max(1L, millis);
+    }// Ende setKeepAlive(long)
+
+    /**
+     * Liefert die Anzahl der gesendeten NOOPs.
+     *
+     * @return long - NOOPs an freie Sitzungen.
+     */
+    public final long getKeepAlives() {
+        return keepAlives.get();
+    }// Ende getKeepAlives()
+
+    /**
+     * Liefert die Anzahl der im Hintergrund verworfenen Sitzungen.
+     *
+     * @return long - Sitzungen deren NOOP fehlgeschlagen ist.
+     */
+    public final long getEvicted() {
+        return evicted.get();
+    }// Ende getEvicted()
+
+    /**
+     * Öffnet parallel so viele Sitzungen dass mindestens minIdle offen sind
+     * und wartet bis alle angemeldet sind, i.e. beim Start der Anwendung.
+     *
+     * @return int - Anzahl der neu geöffneten Sitzungen.
+     * @throws InterruptedException - Wenn beim Warten unterbrochen wurde.
+     */
+    public final int warmUp() throws InterruptedException {
+        int missing = minIdle - open.get();
+        if (missing <= 0 || closed) {
+            return 0;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(missing, WARM_UP_THREADS));
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        try {
+            for (int i = 0; i < missing; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return addIdle();
+                    }
+                }));
+            }
+            int created = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    if (result.get()) {
+                        created++;
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Vorwärmen fehlgeschlagen: " + e.getCause());
+                }
+            }
+            LOGGER.info(created + " Sitzungen vorgewärmt.");
+            return created;
+        } finally {
+            executor.shutdownNow();
+        }
+    }// Ende warmUp()
+
+    /**
+     * Startet den Hintergrund-Thread der freie Sitzungen offen hält, tote
+     * Sitzungen verwirft und auf minIdle auffüllt.
+     */
+    public final synchronized void startMaintenance() {
+        if (maintenance != null) {
+            return;
+        }
+        maintenance = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!closed && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        Thread.sleep(Math.max(10L, keepAlive / 4));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    maintain();
+                }
+            }
+        }, "jcyradm-pool-maintenance");
+        maintenance.setDaemon(true);
+        maintenance.start();
+    }// Ende startMaintenance()
+
+    /**
+     * Hält den Hintergrund-Thread an und wartet auf sein Ende.
+     */
+    public final synchronized void stopMaintenance() {
+        if (maintenance == null) {
+            return;
+        }
+        maintenance.interrupt();
+        try {
+            maintenance.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        maintenance = null;
+    }// Ende stopMaintenance()
+
+    /**
+     * Führt einen Durchlauf der Pflege aus: freie Sitzungen die länger als
+     * der Leerlauf unbenutzt sind bekommen ein NOOP, Sitzungen ohne Antwort
+     * werden verworfen, danach wird auf minIdle aufgefüllt. Wird
+     * normalerweise vom Hintergrund-Thread aufgerufen.
+     */
+    public final void maintain() {
+        long due = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(
+                keepAlive);
+        /*
+         * Am Ende der Schlange liegen die am längsten freien Sitzungen,
+         * geprüfte Sitzungen kommen nach vorne.
+         */
+        for (int i = idle.size(); i > 0 && !closed; i--) {
+            JCyrAdm session = idle.pollLast();
+            if (session == null) {
+                break;
+            }
+            Long used = lastUsed.get(session);
+            if (used != null && used.longValue() - due > 0) {
+                idle.offerLast(session);
+                break;
+            }
+            try {
+                keepAlives.incrementAndGet();
+                session.noop();
+                lastUsed.put(session, System.nanoTime());
+                idle.offerFirst(session);
+            } catch (IOException e) {
+                LOGGER.info("Freie Sitzung verworfen: " + e.getMessage());
+                evicted.incrementAndGet();
+                discard(session);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Freie Sitzung verworfen: " + e, e);
+                evicted.incrementAndGet();
+                discard(session);
+            }
+        }
+        while (!closed && open.get() < minIdle && addIdle()) {
+            LOGGER.debug("Pool auf " + open.get() + " Sitzungen aufgefüllt.");
+        }
+    }// Ende maintain()
+
+    /**
+     * Setzt den CircuitBreaker dem die Fehler der Kommandos gemeldet werden,
+     * i.e. denselben wie beim Verbindungsaufbau der Sitzungen.
+     *
+     * @param circuitBreaker - Zählt Fehler je Host.
+     */
+    public final void setCircuitBreaker(final CircuitBreaker circuitBreaker) {
+        this.breaker = circuitBreaker;
+    }// Ende setCircuitBreaker(CircuitBreaker)
+
+    /**
+     * Hilfs-Methode die den Fehler eines Kommandos meldet, Fehler beim
+     * Erzeugen der Sitzung hat der Verbindungsaufbau schon gemeldet.
+     */
+    private void commandFailed(final JCyrAdm session) {
+        if (session != null && session.getConnectedHost() != null) {
+            breaker.failure(session.getConnectedHost());
+        }
+    }// Ende commandFailed(JCyrAdm)
+
+    /**
+     * Hilfs-Methode die eine freie Sitzung nimmt oder eine neue erzeugt.
+     */
+    private JCyrAdm take() throws Exception {
+        JCyrAdm session = idle.pollFirst();
+        if (session != null) {
+            return session;
+        }
+        session = factory.create();
+        open.incrementAndGet();
+        return session;
+    }// Ende take()
+
+    /**
+     * Hilfs-Methode die eine neue freie Sitzung öffnet, Fehler werden nur
+     * protokolliert.
+     */
+    private boolean addIdle() {
+        try {
+            JCyrAdm session = factory.create();
+            open.incrementAndGet();
+            lastUsed.put(session, System.nanoTime());
+            idle.offerLast(session);
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Sitzung konnte nicht geöffnet werden: "
+                    + e.getMessage());
+            return false;
+        }
+    }// Ende addIdle()
+
+    /**
+     * Hilfs-Methode die eine Sitzung schließt.
+     */
+    private void discard(final JCyrAdm session) {
+        lastUsed.remove(session);
+        open.decrementAndGet();
+        factory.destroy(session);
+    }// Ende discard(JCyrAdm)
+
+}// Ende class
@@ -0,0 +1,94 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Die Klasse SingleFlight fasst gleichzeitige Aufrufe mit demselben Schlüssel
+ * zusammen. Der erste Aufrufer führt die Operation aus, alle die während der
+ * Ausführung mit demselben Schlüssel dazukommen warten auf dessen Ergebnis
+ * und bekommen dasselbe Ergebnis bzw. dieselbe Ausnahme. Ist die Operation
+ * abgeschlossen, wird der Schlüssel sofort vergessen, es gibt also keine
+ * veralteten Ergebnisse wie bei einem Cache.
+ *
+ * @param <K> - Typ des Schlüssels.
+ * @param <V> - Typ des Ergebnisses, sollte unveränderlich sein.
+ * @author Marc Michele
+ *
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Laufende Operationen je Schlüssel.
+     */
+    private final ConcurrentMap<K, FutureTask<V>> flights =
+            new ConcurrentHashMap<K, FutureTask<V>>();
+
+    /**
+     * Anzahl der Aufrufe die sich einer laufenden Operation angeschlossen
+     * haben.
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Führt die Operation aus oder wartet auf eine laufende Operation mit
+     * demselben Schlüssel.
+     *
+     * @param key - Schlüssel der Operation.
+     * @param call - Die Operation.
+     * @return V - Gemeinsames Ergebnis der Operation.
+     * @throws Exception - Die Ausnahme der Operation.
+     */
+    public final V execute(final K key, final Callable<V> call)
+            throws Exception {
+        FutureTask<V> task = new FutureTask<V>(call);
+        FutureTask<V> running = flights.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run();
+            } finally {
+                flights.remove(key, task);
+            }
+            running = task;
+        } else {
+            coalesced.incrementAndGet();
+        }
+
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }// Ende execute(K, Callable<V>)
+
+    /**
+     * Liefert die Anzahl der gerade laufenden Operationen.
+     *
+     * @return int - Laufende Operationen.
+     */
+    public final int getInFlight() {
+        return flights.size();
+    }// Ende getInFlight()
+
+    /**
+     * Liefert die Anzahl der Aufrufe die keine eigene Operation ausgeführt
+     * haben.
+     *
+     * @return long - Zusammengefasste Aufrufe.
+     */
+    public final long getCoalesced() {
+        return coalesced.get();
+    }// Ende getCoalesced()
+
+}// Ende class
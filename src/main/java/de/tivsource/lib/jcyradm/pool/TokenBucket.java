@@ -0,0 +1,144 @@
+package de.tivsource.lib.jcyradm.pool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Die Klasse TokenBucket begrenzt die Rate der Kommandos die an ein Backend
+ * gehen. Je Sekunde werden "rate" Marken nachgefüllt, es können höchstens
+ * "burst" Marken angespart werden.
+ *
+ * @author Marc Michele
+ *
+ */
+public class TokenBucket {
+
+    /**
+     * Nanosekunden je Sekunde.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Marken je Sekunde.
+     */
+    private double rate;
+
+    /**
+     * Maximale Anzahl angesparter Marken.
+     */
+    private final double burst;
+
+    /**
+     * Verfügbare Marken.
+     */
+    private double tokens;
+
+    /**
+     * Zeitpunkt in Nanosekunden der letzten Nachfüllung.
+     */
+    private long lastRefill;
+
+    /**
+     * Konstruktor der Klasse TokenBucket.
+     *
+     * @param ratePerSecond - Marken je Sekunde.
+     * @param maxBurst - Maximale Anzahl angesparter Marken.
+     */
+    public TokenBucket(final double ratePerSecond, final int maxBurst) {
+        super();
+        this.rate = ratePerSecond;
+        this.burst = Math.max(1, maxBurst);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }// Ende TokenBucket(double, int)
+
+    /**
+     * Nimmt eine Marke ohne zu warten.
+     *
+     * @return boolean - True wenn eine Marke verfügbar war.
+     */
+    public final synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }// Ende tryAcquire()
+
+    /**
+     * Nimmt eine Marke und wartet dafür wenn nötig.
+     *
+     * @throws InterruptedException - Wenn der Thread unterbrochen wurde.
+     */
+    public final void acquire() throws InterruptedException {
+        while (true) {
+            long wait;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1.0) {
+                    tokens -= 1.0;
+                    return;
+                }
+                wait = (long) ((1.0 - tokens) / rate * NANOS_PER_SECOND);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(wait, 1000L));
+        }
+    }// Ende acquire()
+
+    /**
+     * Reserviert mehrere Marken auf einmal, auch mehr als vorhanden sind.
+     * Die fehlenden Marken werden als Schuld geführt, die folgenden
+     * Aufrufer warten bis sie nachgefüllt ist. So lassen sich i.e. die KB
+     * einer Übertragung gegen eine Bandbreite buchen.
+     *
+     * @param permits - Anzahl der Marken.
+     * @return long - Nanosekunden bis die Reservierung gedeckt ist, 0 wenn
+     *         sofort.
+     */
+    public final synchronized long reserve(final double permits) {
+        refill();
+        tokens -= permits;
+        return tokens >= 0 ? 0L : (long) (-tokens / rate * NANOS_PER_SECOND);
+    }// Ende reserve(double)
+
+    /**
+     * Liefert die Wartezeit bis wieder eine Marke verfügbar ist.
+     *
+     * @return long - Nanosekunden, 0 wenn sofort eine Marke verfügbar ist.
+     */
+    public final synchronized long getWaitNanos() {
+        refill();
+        return tokens >= 1.0 ? 0L
+                : (long) ((1.0 - tokens) / rate * NANOS_PER_SECOND);
+    }// Ende getWaitNanos()
+
+    /**
+     * Ändert die Rate, i.e. für nächtliche Läufe.
+     *
+     * @param ratePerSecond - Marken je Sekunde.
+     */
+    public final synchronized void setRate(final double ratePerSecond) {
+        refill();
+        this.rate = ratePerSecond;
+    }// Ende setRate(double)
+
+    /**
+     * Liefert die Rate.
+     *
+     * @return double - Marken je Sekunde.
+     */
+    public final synchronized double getRate() {
+        return rate;
+    }// Ende getRate()
+
+    /**
+     * Hilfs-Methode die die Marken anhand der vergangenen Zeit nachfüllt.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst,
+                tokens + (now - lastRefill) / NANOS_PER_SECOND * rate);
+        lastRefill = now;
+    }// Ende refill()
+
+}// Ende class
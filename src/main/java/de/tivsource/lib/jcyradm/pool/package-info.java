@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen für Pools von Sitzungen und die
+ * Regelung der Last auf den Backends.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.pool;
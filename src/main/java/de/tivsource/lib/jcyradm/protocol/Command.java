@@ -0,0 +1,215 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Die Klasse Command ist ein einzelnes IMAP-Kommando das über eine Pipeline
+ * an den Server geschickt wird. Die ungetaggten Antwortzeilen und der
+ * abschließende Status werden im Kommando gesammelt.
+ *
+ * @author Marc Michele
+ *
+ */
+public abstract class Command {
+
+    /**
+     * Name des Kommandos (i.e. "GETQUOTA").
+     */
+    private final String name;
+
+    /**
+     * Laufende Nummer des Tags, -1 solange das Kommando nicht gesendet wurde.
+     */
+    private long tag = -1;
+
+    /**
+     * Status mit dem der Server das Kommando abgeschlossen hat.
+     */
+    private ResponseStatus status;
+
+    /**
+     * Text der abschließenden Antwort ohne Tag und Status.
+     */
+    private String text;
+
+    /**
+     * Ungetaggte Antwortzeilen die zu diesem Kommando gehören.
+     */
+    private List<String> untagged;
+
+    /**
+     * Zeitpunkt in Nanosekunden zu dem das Kommando in den Puffer geschrieben
+     * wurde.
+     */
+    private long submitted;
+
+    /**
+     * Zeitpunkt in Nanosekunden zu dem die abschließende Antwort kam.
+     */
+    private long finished;
+
+    /**
+     * Objekt das beim Abschluss benachrichtigt wird.
+     */
+    private CommandListener listener;
+
+    /**
+     * Konstruktor der Klasse Command.
+     *
+     * @param commandName - Name des Kommandos.
+     */
+    protected Command(final String commandName) {
+        super();
+        this.name = commandName;
+    }// Ende Command(String)
+
+    /**
+     * Schreibt die Argumente des Kommandos, der Tag und der Name wurden zu
+     * diesem Zeitpunkt schon geschrieben.
+     *
+     * @param encoder - Encoder in den geschrieben wird.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    protected abstract void writeArguments(CommandEncoder encoder)
+            throws IOException;
+
+    /**
+     * Wird für jede ungetaggte Antwortzeile aufgerufen die zu diesem Kommando
+     * gehört. Standardmäßig werden die Zeilen gesammelt, Unterklassen können
+     * die Zeilen direkt auswerten.
+     *
+     * @param line - Antwortzeile des Servers (i.e. "* QUOTA ...").
+     */
+    protected void untagged(final String line) {
+        if (untagged == null) {
+            untagged = new ArrayList<String>(2);
+        }
+        untagged.add(line);
+    }// Ende untagged(String)
+
+    /**
+     * Schreibt das komplette Kommando in den Encoder.
+     */
+    final void encode(final CommandEncoder encoder, final char prefix,
+            final long tagNumber) throws IOException {
+        this.tag = tagNumber;
+        encoder.tag(prefix, tagNumber).atom(name);
+        writeArguments(encoder);
+        encoder.end();
+        submitted = System.nanoTime();
+    }// Ende encode(CommandEncoder, char, long)
+
+    /**
+     * Schließt das Kommando ab und benachrichtigt den Listener.
+     */
+    final void complete(final ResponseStatus responseStatus,
+            final String responseText) {
+        this.status = responseStatus;
+        this.text = responseText;
+        this.finished = System.nanoTime();
+        if (listener != null) {
+            listener.completed(this);
+        }
+    }// Ende complete(ResponseStatus, String)
+
+    /**
+     * Liefert den Namen des Kommandos.
+     *
+     * @return String - Name des Kommandos.
+     */
+    public final String getName() {
+        return name;
+    }// Ende getName()
+
+    /**
+     * Liefert die laufende Nummer des Tags.
+     *
+     * @return long - Nummer des Tags, -1 wenn noch nicht gesendet.
+     */
+    public final long getTag() {
+        return tag;
+    }// Ende getTag()
+
+    /**
+     * Liefert ob der Server das Kommando abgeschlossen hat.
+     *
+     * @return boolean - True wenn eine abschließende Antwort vorliegt.
+     */
+    public final boolean isDone() {
+        return status != null;
+    }// Ende isDone()
+
+    /**
+     * Liefert ob der Server das Kommando mit OK abgeschlossen hat.
+     *
+     * @return boolean - True bei OK.
+     */
+    public final boolean isOk() {
+        return status == ResponseStatus.OK;
+    }// Ende isOk()
+
+    /**
+     * Liefert den Status der abschließenden Antwort.
+     *
+     * @return ResponseStatus - Status oder null wenn noch nicht
+     *         abgeschlossen.
+     */
+    public final ResponseStatus getStatus() {
+        return status;
+    }// Ende getStatus()
+
+    /**
+     * Liefert den Text der abschließenden Antwort (i.e. "Completed" oder
+     * "Mailbox already exists").
+     *
+     * @return String - Text der Antwort.
+     */
+    public final String getText() {
+        return text;
+    }// Ende getText()
+
+    /**
+     * Liefert die gesammelten ungetaggten Antwortzeilen.
+     *
+     * @return List - Antwortzeilen, niemals null.
+     */
+    public final List<String> getUntagged() {
+        if (untagged == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(untagged);
+    }// Ende getUntagged()
+
+    /**
+     * Liefert die Zeit vom Schreiben in den Puffer bis zur abschließenden
+     * Antwort.
+     *
+     * @return long - Laufzeit in Nanosekunden, -1 wenn noch nicht
+     *         abgeschlossen.
+     */
+    public final long getLatencyNanos() {
+        if (status == null) {
+            return -1L;
+        }
+        return finished - submitted;
+    }// Ende getLatencyNanos()
+
+    /**
+     * Setzt das Objekt das beim Abschluss benachrichtigt wird.
+     *
+     * @param commandListener - Der Listener.
+     */
+    public final void setListener(final CommandListener commandListener) {
+        this.listener = commandListener;
+    }// Ende setListener(CommandListener)
+
+    @Override
+    public String toString() {
+        return name + (status == null ? "" : " " + status + " " + text);
+    }// Ende toString()
+
+}// Ende class
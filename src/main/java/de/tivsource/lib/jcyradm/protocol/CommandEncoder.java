@@ -0,0 +1,600 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Die Klasse CommandEncoder schreibt IMAP-Kommandos (Tag, Atome, Quoted
+ * Strings, Literale, Zahlen und Listen) direkt in einen wiederverwendbaren
+ * direkten ByteBuffer. Es können mehrere Kommandos gesammelt werden, die dann
+ * mit einem einzigen Schreibvorgang an den Server gehen.
+ *
+ * <p>
+ * Strings die weder als Atom noch als Quoted String dargestellt werden können
+ * (CR, LF, NUL oder 8-Bit Zeichen), werden als nicht synchronisierendes
+ * Literal (LITERAL+, RFC 2088) in UTF-8 geschrieben. Cyrus unterstützt
+ * LITERAL+, dadurch muss nicht auf eine Fortsetzungs-Anfrage gewartet werden.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class CommandEncoder {
+
+    /**
+     * Standard Größe des Puffers in Bytes.
+     */
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Zeichensatz für die Ausgabe im Log.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Ziffern für die Ausgabe von Zahlen.
+     */
+    private static final byte[] DIGITS = {'0', '1', '2', '3', '4', '5', '6',
+        '7', '8', '9'};
+
+    /**
+     * Der Puffer in den die Kommandos geschrieben werden.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Der Kanal über den die Kommandos an den Server gehen.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Hilfspuffer für die Ausgabe von Zahlen.
+     */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Wiederverwendeter Puffer für die Kodierung von Mailbox-Namen.
+     */
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    /**
+     * Wird gesetzt wenn vor dem nächsten Argument ein Leerzeichen kommt.
+     */
+    private boolean space;
+
+    /**
+     * Anzahl der vollständigen Kommandos im Puffer.
+     */
+    private int queued;
+
+    /**
+     * Anfang des letzten Kommandos im Puffer, -1 wenn es bereits teilweise
+     * geschrieben wurde.
+     */
+    private int commandStart;
+
+    /**
+     * Wird gesetzt solange ein Kommando begonnen aber nicht mit end()
+     * abgeschlossen ist.
+     */
+    private boolean open;
+
+    /**
+     * Konstruktor der Klasse CommandEncoder mit der Standard Puffergröße.
+     *
+     * @param out - Kanal über den die Kommandos an den Server gehen.
+     */
+    public CommandEncoder(final WritableByteChannel out) {
+        this(out, DEFAULT_CAPACITY);
+    }// Ende CommandEncoder(WritableByteChannel)
+
+    /**
+     * Konstruktor der Klasse CommandEncoder.
+     *
+     * @param out - Kanal über den die Kommandos an den Server gehen.
+     * @param capacity - Größe des Puffers in Bytes.
+     */
+    public CommandEncoder(final WritableByteChannel out, final int capacity) {
+        super();
+        this.channel = out;
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }// Ende CommandEncoder(WritableByteChannel, int)
+
+    /**
+     * Beginnt ein neues Kommando mit dem übergebenen Tag. Ein vorheriges
+     * Kommando das nicht mit end() abgeschlossen wurde, wird verworfen.
+     *
+     * @param tag - Tag des Kommandos (i.e. ".").
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte oder ein unvollständiges Kommando bereits gesendet
+     *             wurde.
+     */
+    public final CommandEncoder tag(final CharSequence tag) throws IOException {
+        begin();
+        ascii(tag);
+        space = true;
+        return this;
+    }// Ende tag(CharSequence)
+
+    /**
+     * Beginnt ein neues Kommando mit einem Tag aus Präfix und laufender
+     * Nummer (i.e. "A17"). Ein vorheriges Kommando das nicht mit end()
+     * abgeschlossen wurde, wird verworfen.
+     *
+     * @param prefix - Präfix des Tags.
+     * @param number - Laufende Nummer des Tags.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte oder ein unvollständiges Kommando bereits gesendet
+     *             wurde.
+     */
+    public final CommandEncoder tag(final char prefix, final long number)
+            throws IOException {
+        checkNumber(number);
+        begin();
+        put((byte) prefix);
+        digits(number);
+        space = true;
+        return this;
+    }// Ende tag(char, long)
+
+    /**
+     * Schreibt ein Atom (i.e. Kommandoname oder Schlüsselwort).
+     *
+     * @param atom - Das Atom.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder atom(final CharSequence atom)
+            throws IOException {
+        if (atom.length() == 0 || !isAtom(atom)) {
+            throw new IllegalArgumentException("Not an IMAP atom: " + atom);
+        }
+        separate();
+        ascii(atom);
+        return this;
+    }// Ende atom(CharSequence)
+
+    /**
+     * Schreibt eine nicht negative Zahl.
+     *
+     * @param number - Die Zahl.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder number(final long number) throws IOException {
+        checkNumber(number);
+        separate();
+        digits(number);
+        return this;
+    }// Ende number(long)
+
+    /**
+     * Schreibt NIL.
+     *
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder nil() throws IOException {
+        return atom("NIL");
+    }// Ende nil()
+
+    /**
+     * Schreibt einen String in der kürzesten möglichen Form, als Atom, als
+     * Quoted String oder als Literal.
+     *
+     * @param value - Der String.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder astring(final CharSequence value)
+            throws IOException {
+        if (value.length() > 0 && isAtom(value)) {
+            separate();
+            ascii(value);
+            return this;
+        }
+        return string("", value);
+    }// Ende astring(CharSequence)
+
+    /**
+     * Schreibt einen String als Quoted String oder, wenn das nicht möglich
+     * ist, als Literal.
+     *
+     * @param value - Der String.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder string(final CharSequence value)
+            throws IOException {
+        return string("", value);
+    }// Ende string(CharSequence)
+
+    /**
+     * Schreibt zwei Teile als einen einzigen String, ohne diese vorher
+     * zusammenzusetzen (i.e. "user." und der Name der Mailbox).
+     *
+     * @param prefix - Erster Teil des Strings.
+     * @param value - Zweiter Teil des Strings.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder string(final CharSequence prefix,
+            final CharSequence value) throws IOException {
+        if (isQuotable(prefix) && isQuotable(value)) {
+            separate();
+            put((byte) '"');
+            quotedPart(prefix);
+            quotedPart(value);
+            put((byte) '"');
+            return this;
+        }
+        return literal(prefix, value);
+    }// Ende string(CharSequence, CharSequence)
+
+    /**
+     * Schreibt einen Mailbox-Namen, der Name wird dabei in modifiziertes
+     * UTF-7 kodiert.
+     *
+     * @param name - Vollständiger Name der Mailbox in Unicode.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder mailbox(final CharSequence name)
+            throws IOException {
+        return mailbox("", name);
+    }// Ende mailbox(CharSequence)
+
+    /**
+     * Schreibt einen Mailbox-Namen aus Präfix und Namen (i.e. "user." und
+     * "mailboxname"), der Name wird dabei in modifiziertes UTF-7 kodiert.
+     *
+     * @param prefix - Präfix des Namens in ASCII.
+     * @param name - Name der Mailbox in Unicode.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder mailbox(final CharSequence prefix,
+            final CharSequence name) throws IOException {
+        if (!ModifiedUtf7.needsEncoding(name)) {
+            return string(prefix, name);
+        }
+        scratch.setLength(0);
+        ModifiedUtf7.encode(name, scratch);
+        return string(prefix, scratch);
+    }// Ende mailbox(CharSequence, CharSequence)
+
+    /**
+     * Schreibt einen String als nicht synchronisierendes Literal in UTF-8.
+     *
+     * @param value - Der String.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder literal(final CharSequence value)
+            throws IOException {
+        return literal("", value);
+    }// Ende literal(CharSequence)
+
+    /**
+     * Schreibt zwei Teile als ein einziges nicht synchronisierendes Literal in
+     * UTF-8.
+     *
+     * @param prefix - Erster Teil des Literals.
+     * @param value - Zweiter Teil des Literals.
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder literal(final CharSequence prefix,
+            final CharSequence value) throws IOException {
+        separate();
+        put((byte) '{');
+        digits(utf8Length(prefix) + utf8Length(value));
+        put((byte) '+');
+        put((byte) '}');
+        put((byte) '\r');
+        put((byte) '\n');
+        utf8(prefix);
+        utf8(value);
+        return this;
+    }// Ende literal(CharSequence, CharSequence)
+
+    /**
+     * Öffnet eine Liste "(".
+     *
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder openList() throws IOException {
+        separate();
+        put((byte) '(');
+        space = false;
+        return this;
+    }// Ende openList()
+
+    /**
+     * Schließt eine Liste ")".
+     *
+     * @return CommandEncoder - Dieses Objekt.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final CommandEncoder closeList() throws IOException {
+        put((byte) ')');
+        space = true;
+        return this;
+    }// Ende closeList()
+
+    /**
+     * Schließt das aktuelle Kommando mit CRLF ab. Das Kommando bleibt im
+     * Puffer bis flush() aufgerufen wird.
+     *
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    public final void end() throws IOException {
+        put((byte) '\r');
+        put((byte) '\n');
+        space = false;
+        open = false;
+        queued++;
+    }// Ende end()
+
+    /**
+     * Verwirft das begonnene und noch nicht mit end() abgeschlossene
+     * Kommando, der Puffer steht danach wieder am Ende des letzten
+     * vollständigen Kommandos. Ohne begonnenes Kommando passiert nichts.
+     *
+     * @throws IOException - Wenn ein Teil des Kommandos bereits an den Server
+     *             gesendet wurde, die Verbindung ist dann nicht mehr
+     *             brauchbar.
+     */
+    public final void discard() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        space = false;
+        if (commandStart < 0) {
+            /*
+             * Vor dem Leeren stand nur der Anfang dieses Kommandos im Puffer.
+             */
+            buffer.clear();
+            throw new IOException("Incomplete command already sent");
+        }
+        buffer.position(commandStart);
+    }// Ende discard()
+
+    /**
+     * Liefert die Anzahl der vollständigen Kommandos im Puffer.
+     *
+     * @return int - Anzahl der Kommandos.
+     */
+    public final int getQueued() {
+        return queued;
+    }// Ende getQueued()
+
+    /**
+     * Schreibt alle gesammelten Kommandos mit einem Schreibvorgang an den
+     * Server.
+     *
+     * @throws IOException - Wenn der Kanal geschlossen ist.
+     */
+    public final void flush() throws IOException {
+        discard();
+        drain();
+        queued = 0;
+        commandStart = 0;
+    }// Ende flush()
+
+    /**
+     * Liefert das zuletzt begonnene Kommando als Text, nur für Log-Ausgaben
+     * gedacht.
+     *
+     * @return String - Das Kommando ohne CRLF.
+     */
+    @Override
+    public final String toString() {
+        if (commandStart < 0) {
+            return "[...]";
+        }
+        ByteBuffer copy = buffer.duplicate();
+        copy.flip();
+        copy.position(commandStart);
+        byte[] bytes = new byte[copy.remaining()];
+        copy.get(bytes);
+        return new String(bytes, UTF8).trim();
+    }// Ende toString()
+
+    /**
+     * Prüft ob ein String als Atom geschrieben werden kann.
+     *
+     * @param value - Der String.
+     * @return boolean - True wenn nur ASTRING-CHARs enthalten sind.
+     */
+    public static boolean isAtom(final CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c <= ' ' || c >= 0x7f || c == '(' || c == ')' || c == '{'
+                    || c == '%' || c == '*' || c == '"' || c == '\\') {
+                return false;
+            }
+        }
+        return true;
+    }// Ende isAtom(CharSequence)
+
+    /**
+     * Prüft ob ein String als Quoted String geschrieben werden kann.
+     *
+     * @param value - Der String.
+     * @return boolean - True wenn weder CR, LF, NUL noch 8-Bit Zeichen
+     *         enthalten sind.
+     */
+    public static boolean isQuotable(final CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == 0 || c == '\r' || c == '\n' || c >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }// Ende isQuotable(CharSequence)
+
+    /**
+     * Hilfs-Methode die ein unvollständiges Kommando verwirft und den Anfang
+     * des neuen Kommandos merkt.
+     */
+    private void begin() throws IOException {
+        discard();
+        commandStart = buffer.position();
+        open = true;
+    }// Ende begin()
+
+    /**
+     * Hilfs-Methode die prüft ob eine Zahl geschrieben werden kann, bevor
+     * etwas in den Puffer geht.
+     */
+    private static void checkNumber(final long number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("Negative number: " + number);
+        }
+    }// Ende checkNumber(long)
+
+    /**
+     * Hilfs-Methode die bei Bedarf ein Leerzeichen vor das nächste Argument
+     * schreibt.
+     */
+    private void separate() throws IOException {
+        if (space) {
+            put((byte) ' ');
+        }
+        space = true;
+    }// Ende separate()
+
+    /**
+     * Hilfs-Methode die einen Teil eines Quoted Strings mit Escapes schreibt.
+     */
+    private void quotedPart(final CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                put((byte) '\\');
+            }
+            put((byte) c);
+        }
+    }// Ende quotedPart(CharSequence)
+
+    /**
+     * Hilfs-Methode die ASCII-Zeichen schreibt.
+     */
+    private void ascii(final CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            put((byte) value.charAt(i));
+        }
+    }// Ende ascii(CharSequence)
+
+    /**
+     * Hilfs-Methode die eine nicht negative Zahl ohne Zwischenobjekte
+     * schreibt.
+     */
+    private void digits(final long number) throws IOException {
+        long rest = number;
+        int count = 0;
+        do {
+            digits[count++] = DIGITS[(int) (rest % 10)];
+            rest /= 10;
+        } while (rest > 0);
+        while (count > 0) {
+            put(digits[--count]);
+        }
+    }// Ende digits(long)
+
+    /**
+     * Hilfs-Methode die die Länge eines Strings in UTF-8 berechnet.
+     */
+    private static int utf8Length(final CharSequence value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }// Ende utf8Length(CharSequence)
+
+    /**
+     * Hilfs-Methode die einen String in UTF-8 schreibt.
+     */
+    private void utf8(final CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xc0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                put((byte) (0xf0 | (cp >> 18)));
+                put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+                put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+                put((byte) (0x80 | (cp & 0x3f)));
+            } else {
+                put((byte) (0xe0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }// Ende utf8(CharSequence)
+
+    /**
+     * Hilfs-Methode die ein Byte in den Puffer schreibt, ist der Puffer voll
+     * wird er vorher geleert.
+     */
+    private void put(final byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+            commandStart = -1;
+        }
+        buffer.put(value);
+    }// Ende put(byte)
+
+    /**
+     * Hilfs-Methode die den Puffer in den Kanal schreibt.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }// Ende drain()
+
+}// Ende class
@@ -0,0 +1,20 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+/**
+ * Schnittstelle für Objekte die benachrichtigt werden wollen, sobald der
+ * Server ein Kommando abgeschlossen hat.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface CommandListener {
+
+    /**
+     * Wird aufgerufen wenn die abschließende Antwort des Servers eingelesen
+     * wurde.
+     *
+     * @param command - Das abgeschlossene Kommando.
+     */
+    void completed(Command command);
+
+}// Ende interface
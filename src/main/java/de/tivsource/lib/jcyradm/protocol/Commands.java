@@ -0,0 +1,326 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Die Klasse Commands erzeugt die Verwaltungskommandos die über eine Pipeline
+ * geschickt werden können. Alle Mailbox-Namen werden vollständig und in
+ * Unicode übergeben (i.e. "user.mailboxname"), die Kodierung in modifiziertes
+ * UTF-7 übernimmt der Encoder.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class Commands {
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private Commands() {
+        super();
+    }// Ende Commands()
+
+    /**
+     * Erzeugt ein NOOP Kommando.
+     *
+     * @return Command - Das Kommando.
+     */
+    public static Command noop() {
+        return new Command("NOOP") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder) {
+                // Keine Argumente
+            }
+        };
+    }// Ende noop()
+
+    /**
+     * Erzeugt ein CAPABILITY Kommando.
+     *
+     * @return Command - Das Kommando.
+     */
+    public static Command capability() {
+        return new Command("CAPABILITY") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder) {
+                // Keine Argumente
+            }
+        };
+    }// Ende capability()
+
+    /**
+     * Erzeugt ein CREATE Kommando.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @return Command - Das Kommando.
+     */
+    public static Command create(final String mailbox) {
+        return new Command("CREATE") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox);
+            }
+        };
+    }// Ende create(String)
+
+    /**
+     * Erzeugt ein CREATE Kommando das die Mailbox auf der angegebenen
+     * Partition anlegt.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param partition - Partition, in einem Cyrus Murder auch
+     *            "backend!partition", oder null für die Standard-Partition.
+     * @return Command - Das Kommando.
+     */
+    public static Command create(final String mailbox,
+            final String partition) {
+        return new Command("CREATE") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox);
+                if (partition != null) {
+                    encoder.astring(partition);
+                }
+            }
+        };
+    }// Ende create(String, String)
+
+    /**
+     * Erzeugt ein DELETE Kommando.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @return Command - Das Kommando.
+     */
+    public static Command delete(final String mailbox) {
+        return new Command("DELETE") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox);
+            }
+        };
+    }// Ende delete(String)
+
+    /**
+     * Erzeugt ein GETQUOTA Kommando.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @return Command - Das Kommando.
+     */
+    public static Command getQuota(final String mailbox) {
+        return new Command("GETQUOTA") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox);
+            }
+        };
+    }// Ende getQuota(String)
+
+    /**
+     * Erzeugt ein SETQUOTA Kommando für die Ressource STORAGE.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param storage - Quota in KB.
+     * @return Command - Das Kommando.
+     */
+    public static Command setQuota(final String mailbox, final long storage) {
+        return new Command("SETQUOTA") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).openList().atom("STORAGE")
+                        .number(storage).closeList();
+            }
+        };
+    }// Ende setQuota(String, long)
+
+    /**
+     * Erzeugt ein SETQUOTA Kommando mit mehreren Ressourcen. Der Server
+     * verwirft dabei alle nicht genannten Ressourcen der Mailbox.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param limits - Grenze je Ressource (i.e. "STORAGE", "MESSAGE").
+     * @return Command - Das Kommando.
+     */
+    public static Command setQuota(final String mailbox,
+            final Map<String, Long> limits) {
+        return new Command("SETQUOTA") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).openList();
+                for (Map.Entry<String, Long> limit : limits.entrySet()) {
+                    encoder.atom(limit.getKey()).number(limit.getValue());
+                }
+                encoder.closeList();
+            }
+        };
+    }// Ende setQuota(String, Map<String, Long>)
+
+    /**
+     * Erzeugt ein SETQUOTA Kommando mit leerer Liste, das die Quota der
+     * Mailbox entfernt.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @return Command - Das Kommando.
+     */
+    public static Command removeQuota(final String mailbox) {
+        return new Command("SETQUOTA") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).openList().closeList();
+            }
+        };
+    }// Ende removeQuota(String)
+
+    /**
+     * Erzeugt ein GETACL Kommando.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @return Command - Das Kommando.
+     */
+    public static Command getAcl(final String mailbox) {
+        return new Command("GETACL") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox);
+            }
+        };
+    }// Ende getAcl(String)
+
+    /**
+     * Erzeugt ein SETACL Kommando.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param identifier - Benutzer für den die Rechte gelten sollen.
+     * @param rights - Rechte die für den Benutzer gelten sollen.
+     * @return Command - Das Kommando.
+     */
+    public static Command setAcl(final String mailbox, final String identifier,
+            final String rights) {
+        return new Command("SETACL") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).astring(identifier).astring(rights);
+            }
+        };
+    }// Ende setAcl(String, String, String)
+
+    /**
+     * Erzeugt ein DELETEACL Kommando.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param identifier - Benutzer dessen Rechte gelöscht werden sollen.
+     * @return Command - Das Kommando.
+     */
+    public static Command deleteAcl(final String mailbox,
+            final String identifier) {
+        return new Command("DELETEACL") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).astring(identifier);
+            }
+        };
+    }// Ende deleteAcl(String, String)
+
+    /**
+     * Erzeugt ein LIST Kommando.
+     *
+     * @param reference - Referenz (i.e. "").
+     * @param pattern - Muster der Mailbox-Namen (i.e. "user.%").
+     * @return Command - Das Kommando.
+     */
+    public static Command list(final String reference, final String pattern) {
+        return new Command("LIST") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(reference).mailbox(pattern);
+            }
+        };
+    }// Ende list(String, String)
+
+    /**
+     * Erzeugt ein RENAME Kommando, mit Partition verschiebt Cyrus die
+     * Mailbox dabei auf die angegebene Partition (auch bei gleichem Namen).
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param newName - Vollständiger neuer Name der Mailbox.
+     * @param partition - Ziel-Partition oder null.
+     * @return Command - Das Kommando.
+     */
+    public static Command rename(final String mailbox, final String newName,
+            final String partition) {
+        return new Command("RENAME") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).mailbox(newName);
+                if (partition != null) {
+                    encoder.astring(partition);
+                }
+            }
+        };
+    }// Ende rename(String, String, String)
+
+    /**
+     * Erzeugt ein XFER Kommando das eine Mailbox auf ein anderes Backend
+     * überträgt (Cyrus Murder).
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param server - Name des Ziel-Backends.
+     * @param partition - Ziel-Partition oder null für die Standard-Partition.
+     * @return Command - Das Kommando.
+     */
+    public static Command xfer(final String mailbox, final String server,
+            final String partition) {
+        return new Command("XFER") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).astring(server);
+                if (partition != null) {
+                    encoder.astring(partition);
+                }
+            }
+        };
+    }// Ende xfer(String, String, String)
+
+    /**
+     * Erzeugt ein SETMETADATA Kommando das mehrere Einträge einer Mailbox
+     * auf einmal setzt.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox.
+     * @param entries - Name des Eintrags (i.e. "/shared/comment") auf den
+     *            Wert, ein Wert null löscht den Eintrag.
+     * @return Command - Das Kommando.
+     */
+    public static Command setMetadata(final String mailbox,
+            final Map<String, String> entries) {
+        return new Command("SETMETADATA") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox).openList();
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    encoder.astring(entry.getKey());
+                    if (entry.getValue() == null) {
+                        encoder.nil();
+                    } else {
+                        encoder.string(entry.getValue());
+                    }
+                }
+                encoder.closeList();
+            }
+        };
+    }// Ende setMetadata(String, Map<String, String>)
+
+}// Ende class
@@ -0,0 +1,220 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+/**
+ * Die Klasse ModifiedUtf7 kodiert und dekodiert Mailbox-Namen im modifizierten
+ * UTF-7 nach RFC 3501, Abschnitt 5.1.3. Alle Methoden schreiben in einen vom
+ * Aufrufer übergebenen StringBuilder, bei der Verarbeitung großer Listen kann
+ * dieser wiederverwendet werden, so dass keine Objekte je Zeichen oder je Name
+ * entstehen.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class ModifiedUtf7 {
+
+    /**
+     * Zeichen des modifizierten Base64 (',' statt '/').
+     */
+    private static final char[] BASE64 =
+            ("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+,")
+            .toCharArray();
+
+    /**
+     * Umkehrtabelle des modifizierten Base64, -1 für ungültige Zeichen.
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = -1;
+        }
+        for (int i = 0; i < BASE64.length; i++) {
+            VALUES[BASE64[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private ModifiedUtf7() {
+        super();
+    }// Ende ModifiedUtf7()
+
+    /**
+     * Prüft ob ein Name kodiert werden muss.
+     *
+     * @param name - Der Name.
+     * @return boolean - True wenn '&amp;' oder Zeichen außerhalb von
+     *         druckbarem ASCII enthalten sind.
+     */
+    public static boolean needsEncoding(final CharSequence name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '&') {
+                return true;
+            }
+        }
+        return false;
+    }// Ende needsEncoding(CharSequence)
+
+    /**
+     * Kodiert einen Namen und hängt das Ergebnis an.
+     *
+     * @param name - Der Name in Unicode.
+     * @param out - StringBuilder an den das Ergebnis angehängt wird.
+     */
+    public static void encode(final CharSequence name,
+            final StringBuilder out) {
+        int bits = 0;
+        int buffer = 0;
+        boolean base64 = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x20 && c <= 0x7e) {
+                if (base64) {
+                    if (bits > 0) {
+                        out.append(BASE64[(buffer << (6 - bits)) & 0x3f]);
+                    }
+                    out.append('-');
+                    base64 = false;
+                    bits = 0;
+                    buffer = 0;
+                }
+                out.append(c);
+                if (c == '&') {
+                    out.append('-');
+                }
+            } else {
+                if (!base64) {
+                    out.append('&');
+                    base64 = true;
+                }
+                buffer = (buffer << 16) | c;
+                bits += 16;
+                while (bits >= 6) {
+                    bits -= 6;
+                    out.append(BASE64[(buffer >> bits) & 0x3f]);
+                }
+                buffer &= (1 << bits) - 1;
+            }
+        }
+        if (base64) {
+            if (bits > 0) {
+                out.append(BASE64[(buffer << (6 - bits)) & 0x3f]);
+            }
+            out.append('-');
+        }
+    }// Ende encode(CharSequence, StringBuilder)
+
+    /**
+     * Kodiert einen Namen.
+     *
+     * @param name - Der Name in Unicode.
+     * @return String - Der kodierte Name, oder der Name selbst wenn keine
+     *         Kodierung nötig ist.
+     */
+    public static String encode(final String name) {
+        if (!needsEncoding(name)) {
+            return name;
+        }
+        StringBuilder out = new StringBuilder(name.length() + 16);
+        encode(name, out);
+        return out.toString();
+    }// Ende encode(String)
+
+    /**
+     * Berechnet die Länge des kodierten Namens ohne ihn zu kodieren.
+     *
+     * @param name - Der Name in Unicode.
+     * @return int - Anzahl der Zeichen nach der Kodierung.
+     */
+    public static int encodedLength(final CharSequence name) {
+        int length = 0;
+        int run = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x20 && c <= 0x7e) {
+                if (run > 0) {
+                    length += 2 + (run * 16 + 5) / 6;
+                    run = 0;
+                }
+                length += c == '&' ? 2 : 1;
+            } else {
+                run++;
+            }
+        }
+        if (run > 0) {
+            length += 2 + (run * 16 + 5) / 6;
+        }
+        return length;
+    }// Ende encodedLength(CharSequence)
+
+    /**
+     * Dekodiert einen Namen und hängt das Ergebnis an.
+     *
+     * @param name - Der kodierte Name (i.e. aus einer LIST Antwort).
+     * @param out - StringBuilder an den das Ergebnis angehängt wird.
+     * @throws IllegalArgumentException - Wenn der Name nicht gültig kodiert
+     *             ist.
+     */
+    public static void decode(final CharSequence name,
+            final StringBuilder out) {
+        int i = 0;
+        while (i < name.length()) {
+            char c = name.charAt(i++);
+            if (c != '&') {
+                out.append(c);
+                continue;
+            }
+            if (i < name.length() && name.charAt(i) == '-') {
+                out.append('&');
+                i++;
+                continue;
+            }
+            int bits = 0;
+            int buffer = 0;
+            boolean closed = false;
+            while (i < name.length()) {
+                char b = name.charAt(i++);
+                if (b == '-') {
+                    closed = true;
+                    break;
+                }
+                int value = b < VALUES.length ? VALUES[b] : -1;
+                if (value < 0) {
+                    throw new IllegalArgumentException(
+                            "Invalid modified UTF-7: " + name);
+                }
+                buffer = (buffer << 6) | value;
+                bits += 6;
+                if (bits >= 16) {
+                    bits -= 16;
+                    out.append((char) ((buffer >> bits) & 0xffff));
+                    buffer &= (1 << bits) - 1;
+                }
+            }
+            if (!closed || bits >= 6) {
+                throw new IllegalArgumentException(
+                        "Invalid modified UTF-7: " + name);
+            }
+        }
+    }// Ende decode(CharSequence, StringBuilder)
+
+    /**
+     * Dekodiert einen Namen.
+     *
+     * @param name - Der kodierte Name.
+     * @return String - Der Name in Unicode.
+     * @throws IllegalArgumentException - Wenn der Name nicht gültig kodiert
+     *             ist.
+     */
+    public static String decode(final String name) {
+        if (name.indexOf('&') < 0) {
+            return name;
+        }
+        StringBuilder out = new StringBuilder(name.length());
+        decode(name, out);
+        return out.toString();
+    }// Ende decode(String)
+
+}// Ende class
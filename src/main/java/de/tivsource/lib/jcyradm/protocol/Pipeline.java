@@ -0,0 +1,438 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.pool.AdaptiveLimiter;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+
+/**
+ * Die Klasse Pipeline schickt mehrere Kommandos hintereinander an den Server
+ * ohne auf die jeweilige Antwort zu warten. Die Kommandos werden im Encoder
+ * gesammelt und mit einem einzigen Schreibvorgang gesendet, die Antworten
+ * werden anhand der Tags den Kommandos zugeordnet.
+ *
+ * <p>
+ * Cyrus arbeitet die Kommandos einer Verbindung der Reihe nach ab, ungetaggte
+ * Antworten gehören deshalb immer zum ältesten noch offenen Kommando.
+ * Während eine Pipeline offene Kommandos hat, dürfen die synchronen Methoden
+ * von JCyrAdm auf derselben Verbindung nicht benutzt werden.
+ * </p>
+ *
+ * <p>
+ * Mit einem AdaptiveLimiter passt sich die Tiefe der Pipeline an die
+ * gemessenen Laufzeiten an, ein TokenBucket begrenzt die Rate der Kommandos.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class Pipeline {
+
+    /**
+     * Statischer Logger der Klasse Pipeline.
+     */
+    private static final Logger LOGGER = Logger.getLogger(Pipeline.class);
+
+    /**
+     * Präfix der Tags die von der Pipeline vergeben werden.
+     */
+    private static final char TAG_PREFIX = 'A';
+
+    /**
+     * Zeichensatz in dem die Antworten des Servers gelesen werden müssen,
+     * ein Zeichen je Byte.
+     */
+    public static final String WIRE_CHARSET = "ISO-8859-1";
+
+    /**
+     * Zeichensatz der Antworten auf der Leitung.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Erstes Zeichen außerhalb von ASCII.
+     */
+    private static final char ASCII_LIMIT = 0x80;
+
+    /**
+     * Standard Anzahl der gleichzeitig offenen Kommandos.
+     */
+    private static final int DEFAULT_DEPTH = 32;
+
+    /**
+     * Encoder in den die Kommandos geschrieben werden.
+     */
+    private final CommandEncoder encoder;
+
+    /**
+     * Der Reader mit dem vom Server gelesen wird.
+     */
+    private final BufferedReader in;
+
+    /**
+     * Gesendete aber noch nicht abgeschlossene Kommandos.
+     */
+    private final ArrayDeque<Command> inflight = new ArrayDeque<Command>();
+
+    /**
+     * Maximale Anzahl der gleichzeitig offenen Kommandos.
+     */
+    private int depth = DEFAULT_DEPTH;
+
+    /**
+     * Nummer des nächsten Tags.
+     */
+    private long nextTag = 1;
+
+    /**
+     * Passt die Tiefe an die Laufzeiten an, null für eine feste Tiefe.
+     */
+    private AdaptiveLimiter depthLimiter;
+
+    /**
+     * Begrenzt die Rate der Kommandos, null wenn unbegrenzt.
+     */
+    private TokenBucket rateLimit;
+
+    /**
+     * Konstruktor der Klasse Pipeline.
+     *
+     * @param commandEncoder - Encoder der Verbindung.
+     * @param reader - Reader der Verbindung.
+     */
+    public Pipeline(final CommandEncoder commandEncoder,
+            final BufferedReader reader) {
+        super();
+        this.encoder = commandEncoder;
+        this.in = reader;
+    }// Ende Pipeline(CommandEncoder, BufferedReader)
+
+    /**
+     * Reiht ein Kommando ein. Das Kommando wird erst beim nächsten flush()
+     * gesendet, sind bereits so viele Kommandos offen wie die Tiefe erlaubt,
+     * wird vorher auf die Antwort des ältesten Kommandos gewartet.
+     *
+     * @param command - Das Kommando.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde, alle
+     *             offenen Kommandos sind dann mit BYE abgeschlossen.
+     * @throws IllegalArgumentException - Wenn ein Argument nicht kodiert
+     *             werden kann, das Kommando wird dann nicht eingereiht.
+     */
+    public final void submit(final Command command) throws IOException {
+        while (inflight.size() >= depth) {
+            flush();
+            readResponse();
+        }
+        if (rateLimit != null && !rateLimit.tryAcquire()) {
+            /*
+             * Vor dem Warten auf die nächste Marke alles Gesammelte senden.
+             */
+            flush();
+            try {
+                rateLimit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted in rate limit");
+            }
+        }
+        try {
+            command.encode(encoder, TAG_PREFIX, nextTag++);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        } catch (RuntimeException e) {
+            /*
+             * Ungültiges Argument, der angefangene Teil darf nicht mit dem
+             * nächsten Kommando gesendet werden.
+             */
+            try {
+                encoder.discard();
+            } catch (IOException discarded) {
+                abort();
+                throw discarded;
+            }
+            throw e;
+        }
+        inflight.add(command);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Client >| " + encoder);
+        }
+    }// Ende submit(Command)
+
+    /**
+     * Sendet alle eingereihten Kommandos mit einem Schreibvorgang.
+     *
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public final void flush() throws IOException {
+        if (encoder.getQueued() > 0) {
+            try {
+                encoder.flush();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+    }// Ende flush()
+
+    /**
+     * Sendet alle eingereihten Kommandos und wartet bis alle offenen
+     * Kommandos abgeschlossen sind.
+     *
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public final void sync() throws IOException {
+        flush();
+        while (!inflight.isEmpty()) {
+            readResponse();
+        }
+    }// Ende sync()
+
+    /**
+     * Liest genau eine Antwortzeile und ordnet sie dem passenden Kommando zu.
+     * Ist nichts offen, kehrt die Methode sofort zurück.
+     *
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public final void poll() throws IOException {
+        if (!inflight.isEmpty()) {
+            flush();
+            readResponse();
+        }
+    }// Ende poll()
+
+    /**
+     * Liefert die Anzahl der offenen Kommandos.
+     *
+     * @return int - Anzahl der gesendeten oder eingereihten Kommandos ohne
+     *         abschließende Antwort.
+     */
+    public final int getInFlight() {
+        return inflight.size();
+    }// Ende getInFlight()
+
+    /**
+     * Liefert die maximale Anzahl der gleichzeitig offenen Kommandos.
+     *
+     * @return int - Tiefe der Pipeline.
+     */
+    public final int getDepth() {
+        return depth;
+    }// Ende getDepth()
+
+    /**
+     * Setzt die maximale Anzahl der gleichzeitig offenen Kommandos.
+     *
+     * @param pipelineDepth - Tiefe der Pipeline, mindestens 1.
+     */
+    public final void setDepth(final int pipelineDepth) {
+        this.depth = Math.max(1, pipelineDepth);
+    }// Ende setDepth(int)
+
+    /**
+     * Setzt den Limiter mit dem die Tiefe an die gemessenen Laufzeiten
+     * angepasst wird. Die Tiefe folgt dann der Grenze des Limiters.
+     *
+     * @param limiter - Der Limiter, null für eine feste Tiefe.
+     */
+    public final void setDepthLimiter(final AdaptiveLimiter limiter) {
+        this.depthLimiter = limiter;
+        if (limiter != null) {
+            setDepth(limiter.getLimit());
+        }
+    }// Ende setDepthLimiter(AdaptiveLimiter)
+
+    /**
+     * Setzt die Begrenzung der Rate der Kommandos.
+     *
+     * @param bucket - Die Begrenzung, null wenn unbegrenzt.
+     */
+    public final void setRateLimit(final TokenBucket bucket) {
+        this.rateLimit = bucket;
+    }// Ende setRateLimit(TokenBucket)
+
+    /**
+     * Hilfs-Methode die eine Antwortzeile liest und zuordnet.
+     */
+    private void readResponse() throws IOException {
+        String line;
+        try {
+            line = readLine(in);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Server >| " + line);
+        }
+
+        if (line == null) {
+            abort();
+            throw new IOException("Connection closed by server");
+        }
+
+        /*
+         * Ungetaggte Antwort, gehört zum ältesten offenen Kommando.
+         */
+        if (line.startsWith("* ")) {
+            Command head = inflight.peek();
+            if (head != null) {
+                head.untagged(line);
+            }
+            if (line.startsWith("* BYE")) {
+                LOGGER.warn("Server beendet die Verbindung: " + line);
+            }
+            return;
+        }
+
+        /*
+         * Fortsetzungs-Anfragen werden wegen LITERAL+ nicht erwartet.
+         */
+        if (line.startsWith("+")) {
+            return;
+        }
+
+        int space = line.indexOf(' ');
+        long tag = parseTag(line, space);
+        Iterator<Command> iterator = inflight.iterator();
+        while (iterator.hasNext()) {
+            Command command = iterator.next();
+            if (command.getTag() == tag) {
+                iterator.remove();
+                int textStart = line.indexOf(' ', space + 1);
+                command.complete(ResponseStatus.parse(line, space + 1),
+                        textStart < 0 ? "" : line.substring(textStart + 1));
+                if (depthLimiter != null) {
+                    depthLimiter.sample(command.getLatencyNanos(),
+                            command.getStatus() != ResponseStatus.BAD);
+                    setDepth(depthLimiter.getLimit());
+                }
+                return;
+            }
+        }
+        LOGGER.warn("Antwort ohne passendes Kommando: " + line);
+    }// Ende readResponse()
+
+    /**
+     * Hilfs-Methode die alle offenen Kommandos mit BYE abschließt.
+     */
+    private void abort() {
+        while (!inflight.isEmpty()) {
+            inflight.poll().complete(ResponseStatus.BYE, "Connection closed");
+        }
+    }// Ende abort()
+
+    /**
+     * Hilfs-Methode die die Nummer aus einem Tag liest.
+     */
+    private static long parseTag(final String line, final int end) {
+        if (end < 2 || line.charAt(0) != TAG_PREFIX) {
+            return -1L;
+        }
+        long tag = 0;
+        for (int i = 1; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1L;
+            }
+            tag = tag * 10 + (c - '0');
+        }
+        return tag;
+    }// Ende parseTag(String, int)
+
+    /**
+     * Liest eine Antwortzeile vom Server. Enthält die Zeile Literale
+     * ("{n}"), werden diese mitgelesen und als Quoted String in die Zeile
+     * eingesetzt. Die Länge eines Literals zählt Bytes, der Reader muss
+     * deshalb je Byte genau ein Zeichen liefern (ISO-8859-1, siehe
+     * WIRE_CHARSET). Die fertige Zeile wird als UTF-8 dekodiert.
+     *
+     * @param reader - Reader der Verbindung in ISO-8859-1.
+     * @return String - Die vollständige Antwortzeile oder null wenn die
+     *         Verbindung beendet wurde.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public static String readLine(final BufferedReader reader)
+            throws IOException {
+        String line = reader.readLine();
+        if (line == null || !line.endsWith("}")) {
+            return decode(line);
+        }
+        StringBuilder result = new StringBuilder(line.length() + 64);
+        while (line != null && line.endsWith("}")) {
+            int open = line.lastIndexOf('{');
+            int length = open < 0 ? -1 : parseLength(line, open + 1,
+                    line.length() - 1);
+            if (length < 0) {
+                break;
+            }
+            result.append(line, 0, open).append('"');
+            for (int i = 0; i < length; i++) {
+                int c = reader.read();
+                if (c < 0) {
+                    return null;
+                }
+                if (c == '"' || c == '\\') {
+                    result.append('\\');
+                }
+                result.append((char) c);
+            }
+            result.append('"');
+            line = reader.readLine();
+        }
+        if (line != null) {
+            result.append(line);
+        }
+        return decode(result);
+    }// Ende readLine(BufferedReader)
+
+    /**
+     * Hilfs-Methode die eine in ISO-8859-1 gelesene Zeile als UTF-8
+     * dekodiert, reine ASCII-Zeilen werden unverändert geliefert.
+     */
+    private static String decode(final CharSequence line) {
+        if (line == null) {
+            return null;
+        }
+        int length = line.length();
+        int first = 0;
+        while (first < length && line.charAt(first) < ASCII_LIMIT) {
+            first++;
+        }
+        if (first == length) {
+            return line.toString();
+        }
+        byte[] octets = new byte[length];
+        for (int i = 0; i < length; i++) {
+            octets[i] = (byte) line.charAt(i);
+        }
+        return new String(octets, UTF8);
+    }// Ende decode(CharSequence)
+
+    /**
+     * Hilfs-Methode die die Länge eines Literals liest.
+     */
+    private static int parseLength(final String line, final int from,
+            final int to) {
+        if (from >= to) {
+            return -1;
+        }
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            length = length * 10 + (c - '0');
+        }
+        return length;
+    }// Ende parseLength(String, int, int)
+
+}// Ende class
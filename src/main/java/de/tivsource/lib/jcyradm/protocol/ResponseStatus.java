@@ -0,0 +1,50 @@
+package de.tivsource.lib.jcyradm.protocol;
+
+/**
+ * Status mit dem der Server ein Kommando abschließt.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum ResponseStatus {
+
+    /**
+     * Das Kommando wurde erfolgreich ausgeführt.
+     */
+    OK,
+
+    /**
+     * Das Kommando wurde vom Server abgelehnt (i.e. Mailbox existiert
+     * bereits).
+     */
+    NO,
+
+    /**
+     * Das Kommando war fehlerhaft oder unbekannt.
+     */
+    BAD,
+
+    /**
+     * Die Verbindung wurde beendet bevor das Kommando abgeschlossen wurde.
+     */
+    BYE;
+
+    /**
+     * Liest den Status ab der angegebenen Stelle einer Antwortzeile.
+     *
+     * @param line - Antwortzeile des Servers.
+     * @param offset - Stelle an der der Status beginnt.
+     * @return ResponseStatus - Der Status, BAD wenn er unbekannt ist.
+     */
+    public static ResponseStatus parse(final String line, final int offset) {
+        if (line.startsWith("OK", offset)) {
+            return OK;
+        } else if (line.startsWith("NO", offset)) {
+            return NO;
+        } else if (line.startsWith("BYE", offset)) {
+            return BYE;
+        }
+        return BAD;
+    }// Ende parse(String, int)
+
+}// Ende enum
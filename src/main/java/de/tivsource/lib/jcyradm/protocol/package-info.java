@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen die das IMAP-Protokoll kodieren
+ * und die Antworten des Servers zuordnen.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.protocol;
@@ -0,0 +1,146 @@
+package de.tivsource.lib.jcyradm.provision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Die Klasse ProvisionRequest beschreibt einen neuen Benutzer: die Mailbox,
+ * ihre Quota, die Rechte und die Standard-Ordner (i.e. Sent, Trash und
+ * Drafts).
+ *
+ * @author Marc Michele
+ *
+ */
+public class ProvisionRequest {
+
+    /**
+     * Standard-Ordner eines neuen Benutzers.
+     */
+    private static final String[] DEFAULT_FOLDERS = {"Sent", "Trash",
+        "Drafts"};
+
+    /**
+     * Mailbox ohne "user." Präfix.
+     */
+    private final String mailbox;
+
+    /**
+     * Quota in KB, negativ wenn keine gesetzt wird.
+     */
+    private long quota = -1;
+
+    /**
+     * Partition der Mailbox, null für die Standard-Partition.
+     */
+    private String partition;
+
+    /**
+     * Rechte je Benutzer in der Reihenfolge in der sie gesetzt werden.
+     */
+    private final Map<String, String> acls =
+            new LinkedHashMap<String, String>();
+
+    /**
+     * Ordner unterhalb der Mailbox.
+     */
+    private List<String> folders =
+            new ArrayList<String>(Arrays.asList(DEFAULT_FOLDERS));
+
+    /**
+     * Konstruktor der Klasse ProvisionRequest.
+     *
+     * @param mailboxName - Mailbox ohne "user." Präfix.
+     */
+    public ProvisionRequest(final String mailboxName) {
+        super();
+        this.mailbox = mailboxName;
+    }// Ende ProvisionRequest(String)
+
+    /**
+     * Liefert die Mailbox.
+     *
+     * @return String - Mailbox ohne "user." Präfix.
+     */
+    public final String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert die Quota.
+     *
+     * @return long - Quota in KB, negativ wenn keine gesetzt wird.
+     */
+    public final long getQuota() {
+        return quota;
+    }// Ende getQuota()
+
+    /**
+     * Setzt die Quota.
+     *
+     * @param quotaKb - Quota in KB, negativ wenn keine gesetzt wird.
+     */
+    public final void setQuota(final long quotaKb) {
+        this.quota = quotaKb;
+    }// Ende setQuota(long)
+
+    /**
+     * Liefert die Partition.
+     *
+     * @return String - Partition oder null.
+     */
+    public final String getPartition() {
+        return partition;
+    }// Ende getPartition()
+
+    /**
+     * Setzt die Partition der Mailbox.
+     *
+     * @param partitionName - Partition, in einem Cyrus Murder auch
+     *            "backend!partition", oder null für die Standard-Partition.
+     */
+    public final void setPartition(final String partitionName) {
+        this.partition = partitionName;
+    }// Ende setPartition(String)
+
+    /**
+     * Liefert die Rechte.
+     *
+     * @return Map<String, String> - Rechte je Benutzer.
+     */
+    public final Map<String, String> getAcls() {
+        return Collections.unmodifiableMap(acls);
+    }// Ende getAcls()
+
+    /**
+     * Fügt Rechte für einen Benutzer hinzu, die Ordner erben sie.
+     *
+     * @param identifier - Benutzer oder Gruppe.
+     * @param rights - Rechte (i.e. "lrswipkxtecda").
+     */
+    public final void setAcl(final String identifier, final String rights) {
+        acls.put(identifier, rights);
+    }// Ende setAcl(String, String)
+
+    /**
+     * Liefert die Ordner.
+     *
+     * @return List<String> - Ordner unterhalb der Mailbox.
+     */
+    public final List<String> getFolders() {
+        return Collections.unmodifiableList(folders);
+    }// Ende getFolders()
+
+    /**
+     * Setzt die Ordner die unterhalb der Mailbox angelegt werden.
+     *
+     * @param folderNames - Namen der Ordner, keine für nur die Mailbox.
+     */
+    public final void setFolders(final String... folderNames) {
+        this.folders = new ArrayList<String>(Arrays.asList(folderNames));
+    }// Ende setFolders(String...)
+
+}// Ende class
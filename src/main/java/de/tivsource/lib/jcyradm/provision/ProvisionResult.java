@@ -0,0 +1,138 @@
+package de.tivsource.lib.jcyradm.provision;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Die Klasse ProvisionResult enthält die Ergebnisse aller Schritte der
+ * Anlage eines Benutzers. Der erste Schritt ist immer die Anlage der
+ * Mailbox.
+ *
+ * @author Marc Michele
+ *
+ */
+public class ProvisionResult {
+
+    /**
+     * Mailbox ohne "user." Präfix.
+     */
+    private final String mailbox;
+
+    /**
+     * Die Schritte in der Reihenfolge ihrer Ausführung.
+     */
+    private final List<ProvisionStep> steps = new ArrayList<ProvisionStep>();
+
+    /**
+     * Anzahl der Durchläufe über die Verbindung.
+     */
+    private int roundTrips;
+
+    /**
+     * Konstruktor der Klasse ProvisionResult.
+     *
+     * @param mailboxName - Mailbox ohne "user." Präfix.
+     */
+    ProvisionResult(final String mailboxName) {
+        super();
+        this.mailbox = mailboxName;
+    }// Ende ProvisionResult(String)
+
+    /**
+     * Liefert die Mailbox.
+     *
+     * @return String - Mailbox ohne "user." Präfix.
+     */
+    public final String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert die Schritte.
+     *
+     * @return List<ProvisionStep> - Die Schritte, die Anlage der Mailbox
+     *         zuerst.
+     */
+    public final List<ProvisionStep> getSteps() {
+        return Collections.unmodifiableList(steps);
+    }// Ende getSteps()
+
+    /**
+     * Liefert ob alle Schritte ausgeführt wurden.
+     *
+     * @return boolean - True wenn jeder Schritt DONE ist.
+     */
+    public final boolean isOk() {
+        for (ProvisionStep step : steps) {
+            if (step.getOutcome() != StepOutcome.DONE) {
+                return false;
+            }
+        }
+        return true;
+    }// Ende isOk()
+
+    /**
+     * Liefert ob die Mailbox angelegt wurde, auch wenn einzelne folgende
+     * Schritte fehlgeschlagen sind.
+     *
+     * @return boolean - True wenn die Anlage der Mailbox DONE ist.
+     */
+    public final boolean isCreated() {
+        return !steps.isEmpty()
+                && steps.get(0).getOutcome() == StepOutcome.DONE;
+    }// Ende isCreated()
+
+    /**
+     * Liefert die Mailboxen die angelegt wurden und nach dem Durchlauf noch
+     * existieren.
+     *
+     * @return List<String> - Vollständige Namen, die Mailbox zuerst.
+     */
+    public final List<String> getCreated() {
+        List<String> created = new ArrayList<String>();
+        for (ProvisionStep step : steps) {
+            if (step.getCreated() != null
+                    && step.getOutcome() == StepOutcome.DONE) {
+                created.add(step.getCreated());
+            }
+        }
+        return created;
+    }// Ende getCreated()
+
+    /**
+     * Liefert die Anzahl der Durchläufe über die Verbindung, 1 wenn nichts
+     * zurückgenommen werden musste.
+     *
+     * @return int - Durchläufe.
+     */
+    public final int getRoundTrips() {
+        return roundTrips;
+    }// Ende getRoundTrips()
+
+    @Override
+    public final String toString() {
+        StringBuilder builder = new StringBuilder(mailbox);
+        for (ProvisionStep step : steps) {
+            builder.append('\n').append(step);
+        }
+        return builder.toString();
+    }// Ende toString()
+
+    /**
+     * Hilfs-Methode des Provisioners die einen Schritt anhängt.
+     */
+    final ProvisionStep add(final String description, final String created) {
+        ProvisionStep step = new ProvisionStep(description, created);
+        steps.add(step);
+        return step;
+    }// Ende add(String, String)
+
+    /**
+     * Hilfs-Methode des Provisioners die die Durchläufe setzt.
+     */
+    final void setRoundTrips(final int trips) {
+        this.roundTrips = trips;
+    }// Ende setRoundTrips(int)
+
+}// Ende class
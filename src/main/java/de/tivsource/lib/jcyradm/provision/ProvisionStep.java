@@ -0,0 +1,97 @@
+package de.tivsource.lib.jcyradm.provision;
+
+/**
+ * Die Klasse ProvisionStep enthält das Ergebnis eines Schritts der Anlage
+ * eines Benutzers.
+ *
+ * @author Marc Michele
+ *
+ */
+public class ProvisionStep {
+
+    /**
+     * Beschreibung des Schritts (i.e. "setacl anyone lrs").
+     */
+    private final String description;
+
+    /**
+     * Vollständiger Name der Mailbox die der Schritt anlegt, null wenn er
+     * keine anlegt.
+     */
+    private final String created;
+
+    /**
+     * Ergebnis des Schritts.
+     */
+    private StepOutcome outcome = StepOutcome.SKIPPED;
+
+    /**
+     * Antworttext des Servers.
+     */
+    private String text = "";
+
+    /**
+     * Konstruktor der Klasse ProvisionStep.
+     *
+     * @param stepDescription - Beschreibung des Schritts.
+     * @param createdMailbox - Mailbox die der Schritt anlegt oder null.
+     */
+    ProvisionStep(final String stepDescription,
+            final String createdMailbox) {
+        super();
+        this.description = stepDescription;
+        this.created = createdMailbox;
+    }// Ende ProvisionStep(String, String)
+
+    /**
+     * Liefert die Beschreibung des Schritts.
+     *
+     * @return String - Beschreibung (i.e. "setacl anyone lrs").
+     */
+    public final String getDescription() {
+        return description;
+    }// Ende getDescription()
+
+    /**
+     * Liefert die Mailbox die der Schritt anlegt.
+     *
+     * @return String - Vollständiger Name oder null wenn der Schritt keine
+     *         Mailbox anlegt.
+     */
+    public final String getCreated() {
+        return created;
+    }// Ende getCreated()
+
+    /**
+     * Liefert das Ergebnis des Schritts.
+     *
+     * @return StepOutcome - Ergebnis.
+     */
+    public final StepOutcome getOutcome() {
+        return outcome;
+    }// Ende getOutcome()
+
+    /**
+     * Liefert den Antworttext des Servers.
+     *
+     * @return String - Antworttext, leer wenn keiner.
+     */
+    public final String getText() {
+        return text;
+    }// Ende getText()
+
+    @Override
+    public final String toString() {
+        return outcome + "\t" + description + "\t" + text;
+    }// Ende toString()
+
+    /**
+     * Hilfs-Methode des Provisioners die das Ergebnis setzt.
+     */
+    final void setOutcome(final StepOutcome stepOutcome,
+            final String responseText) {
+        this.outcome = stepOutcome;
+        this.text = responseText == null ? "" : responseText;
+    }// Ende setOutcome(StepOutcome, String)
+
+}// Ende class
@@ -0,0 +1,540 @@
+package de.tivsource.lib.jcyradm.provision;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.exception.NoValidMailboxName;
+import de.tivsource.lib.jcyradm.exception.ProvisionIncomplete;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse Provisioner legt neue Benutzer mit allen Schritten über die
+ * Pipeline an: CREATE der Mailbox, SETQUOTA, SETACL je Recht und CREATE je
+ * Ordner. Die Rechte werden vor den Ordnern gesetzt, damit die Ordner sie
+ * erben.
+ *
+ * <p>
+ * Standardmäßig werden die übrigen Schritte erst nach der Antwort auf CREATE
+ * und nur für neu angelegte Mailboxen geschickt. Die CREATEs aller Benutzer
+ * gehen gemeinsam in einem Durchlauf, die übrigen Schritte in einem zweiten.
+ * Eine bestehende Mailbox bleibt dabei unberührt.
+ * </p>
+ *
+ * <p>
+ * Mit setCreateFirst(false) gehen alle Schritte in einem einzigen Durchlauf.
+ * Da der Server die Kommandos einer Pipeline der Reihe nach ausführt, aber
+ * nicht von einander abhängig macht, werden dann vorab Quota und Rechte der
+ * Mailbox abgefragt. Schlägt die Anlage fehl (i.e. weil es die Mailbox schon
+ * gibt), werden alle trotzdem ausgeführten Schritte in einem zweiten
+ * Durchlauf zurückgenommen: Quota und Rechte erhalten ihren vorherigen Wert,
+ * angelegte Ordner werden gelöscht. Schritte ohne Wirkung werden als
+ * übersprungen gemeldet.
+ * </p>
+ *
+ * <p>
+ * Eine bestehende Mailbox wird in diesem Modus vorübergehend verändert: bis
+ * zum zweiten Durchlauf gelten dort die neue Quota, die neuen Rechte und die
+ * neuen Ordner. Enthält die Anfrage i.e. "anyone lrs", ist eine fremde, in
+ * Benutzung befindliche Mailbox solange für alle lesbar. Bricht die
+ * Verbindung vor dem Zurücknehmen ab, bleibt das so und es wird
+ * ProvisionIncomplete mit den noch wirksamen Schritten geworfen. Der Modus
+ * ist deshalb nur für Läufe gedacht, in denen die Mailboxen sicher noch
+ * nicht bestehen.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class Provisioner {
+
+    /**
+     * Statischer Logger der Klasse Provisioner.
+     */
+    private static final Logger LOGGER = Logger.getLogger(Provisioner.class);
+
+    /**
+     * Präfix der Benutzer-Mailboxen ohne Trennzeichen.
+     */
+    private static final String USER_PREFIX = "user";
+
+    /**
+     * Beginn einer ACL Antwort.
+     */
+    private static final String ACL_RESPONSE = "* ACL ";
+
+    /**
+     * Beginn einer QUOTA Antwort.
+     */
+    private static final String QUOTA_RESPONSE = "* QUOTA ";
+
+    /**
+     * Namensregeln des Servers.
+     */
+    private final MailboxNameValidator validator;
+
+    /**
+     * Präfix der Benutzer-Mailboxen (i.e. "user.").
+     */
+    private final String userPrefix;
+
+    /**
+     * Ob die übrigen Schritte erst nach erfolgreicher Anlage geschickt
+     * werden.
+     */
+    private boolean createFirst = true;
+
+    /**
+     * Konstruktor der Klasse Provisioner.
+     *
+     * @param mailboxNameValidator - Namensregeln des Servers.
+     */
+    public Provisioner(final MailboxNameValidator mailboxNameValidator) {
+        super();
+        this.validator = mailboxNameValidator;
+        this.userPrefix = USER_PREFIX + mailboxNameValidator.getSeparator();
+    }// Ende Provisioner(MailboxNameValidator)
+
+    /**
+     * Setzt ob die übrigen Schritte erst nach der Antwort auf CREATE und
+     * nur bei erfolgreicher Anlage geschickt werden. Mit false geht jede
+     * Anlage in einem Durchlauf, eine bestehende Mailbox erhält dann aber
+     * bis zum Zurücknehmen die Quota, Rechte und Ordner der Anfrage, siehe
+     * Beschreibung der Klasse.
+     *
+     * @param waitForCreate - True um auf die Anlage zu warten, Standard ist
+     *            true.
+     */
+    public final void setCreateFirst(final boolean waitForCreate) {
+        this.createFirst = waitForCreate;
+    }// Ende setCreateFirst(boolean)
+
+    /**
+     * Legt einen Benutzer an.
+     *
+     * @param pipeline - Pipeline der Verbindung, ohne offene Kommandos.
+     * @param request - Der Benutzer.
+     * @return ProvisionResult - Ergebnis je Schritt.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde, welche
+     *             Schritte ausgeführt wurden ist dann unbekannt.
+     *             ProvisionIncomplete wenn sie beim Zurücknehmen abbricht.
+     * @throws NoValidMailboxName - Wenn ein Name ungültig ist, es wurde dann
+     *             nichts gesendet.
+     */
+    public final ProvisionResult provision(final Pipeline pipeline,
+            final ProvisionRequest request) throws IOException,
+            NoValidMailboxName {
+        return provisionAll(pipeline, Collections.singletonList(request))
+                .get(0);
+    }// Ende provision(Pipeline, ProvisionRequest)
+
+    /**
+     * Legt mehrere Benutzer gemeinsam an, alle Schritte aller Benutzer
+     * laufen im selben Durchlauf über die Pipeline.
+     *
+     * @param pipeline - Pipeline der Verbindung, ohne offene Kommandos.
+     * @param requests - Die Benutzer.
+     * @return List<ProvisionResult> - Ergebnis je Benutzer in derselben
+     *         Reihenfolge.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde, welche
+     *             Schritte ausgeführt wurden ist dann unbekannt.
+     *             ProvisionIncomplete wenn sie beim Zurücknehmen abbricht.
+     * @throws NoValidMailboxName - Wenn ein Name ungültig ist, es wurde dann
+     *             nichts gesendet.
+     */
+    public final List<ProvisionResult> provisionAll(final Pipeline pipeline,
+            final List<ProvisionRequest> requests) throws IOException,
+            NoValidMailboxName {
+        List<Flight> flights = new ArrayList<Flight>(requests.size());
+        for (ProvisionRequest request : requests) {
+            flights.add(new Flight(request));
+        }
+        for (Flight flight : flights) {
+            flight.submitCreate(pipeline);
+            if (!createFirst) {
+                flight.submitSteps(pipeline);
+            }
+        }
+        pipeline.sync();
+        if (createFirst) {
+            for (Flight flight : flights) {
+                if (flight.commands.get(0).isOk()) {
+                    flight.submitSteps(pipeline);
+                }
+            }
+            pipeline.sync();
+        }
+
+        List<Command> rollbacks = new ArrayList<Command>();
+        for (Flight flight : flights) {
+            flight.evaluate(rollbacks);
+        }
+        if (!rollbacks.isEmpty()) {
+            try {
+                for (Command command : rollbacks) {
+                    pipeline.submit(command);
+                }
+                pipeline.sync();
+            } catch (IOException e) {
+                List<String> applied = new ArrayList<String>();
+                for (Flight flight : flights) {
+                    flight.notRolledBack(applied);
+                }
+                LOGGER.error("Verbindung beim Zurücknehmen unterbrochen, "
+                        + "noch wirksam: " + applied);
+                throw new ProvisionIncomplete(applied, e);
+            }
+            for (Flight flight : flights) {
+                flight.rolledBack();
+            }
+        }
+
+        List<ProvisionResult> results =
+                new ArrayList<ProvisionResult>(flights.size());
+        for (Flight flight : flights) {
+            results.add(flight.result);
+        }
+        return results;
+    }// Ende provisionAll(Pipeline, List<ProvisionRequest>)
+
+    /**
+     * Liefert den vollständigen Namen eines Ordners unterhalb einer
+     * Benutzer-Mailbox, mit virtdomains steht die Domain am Ende.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     * @param folder - Name des Ordners.
+     * @return String - Vollständiger Name (i.e. "user.max.Sent").
+     */
+    public final String folderName(final String mailbox, final String folder) {
+        int at = validator.isVirtDomains() ? mailbox.lastIndexOf('@') : -1;
+        if (at < 0) {
+            return userPrefix + mailbox + validator.getSeparator() + folder;
+        }
+        return userPrefix + mailbox.substring(0, at)
+                + validator.getSeparator() + folder + mailbox.substring(at);
+    }// Ende folderName(String, String)
+
+    /**
+     * Liest die Rechte aus einer ACL Antwort des Servers (i.e.
+     * "* ACL user.max anyone lrs max lrswipkxtecda").
+     *
+     * @param line - Die Antwortzeile.
+     * @return Map<String, String> - Rechte je Benutzer, null wenn die Zeile
+     *         keine ACL Antwort ist.
+     */
+    public static Map<String, String> parseAcl(final String line) {
+        if (!line.startsWith(ACL_RESPONSE)) {
+            return null;
+        }
+        List<String> tokens = new ArrayList<String>();
+        int position = ACL_RESPONSE.length();
+        while (position < line.length()) {
+            if (line.charAt(position) == ' ') {
+                position++;
+            } else if (line.charAt(position) == '"') {
+                StringBuilder token = new StringBuilder();
+                position++;
+                while (position < line.length()
+                        && line.charAt(position) != '"') {
+                    if (line.charAt(position) == '\\') {
+                        position++;
+                    }
+                    if (position < line.length()) {
+                        token.append(line.charAt(position++));
+                    }
+                }
+                tokens.add(token.toString());
+                position++;
+            } else {
+                int end = line.indexOf(' ', position);
+                end = end < 0 ? line.length() : end;
+                tokens.add(line.substring(position, end));
+                position = end;
+            }
+        }
+        Map<String, String> acls = new HashMap<String, String>();
+        for (int i = 1; i + 1 < tokens.size(); i += 2) {
+            acls.put(tokens.get(i), tokens.get(i + 1));
+        }
+        return acls;
+    }// Ende parseAcl(String)
+
+    /**
+     * Liest die Grenzen aller Ressourcen aus einer QUOTA Antwort des Servers
+     * (i.e. "* QUOTA user.max (STORAGE 10 500 MESSAGE 3 1000)").
+     *
+     * @param line - Die Antwortzeile.
+     * @return Map<String, Long> - Grenze je Ressource in der Reihenfolge der
+     *         Antwort, null wenn die Zeile keine QUOTA Antwort ist.
+     */
+    public static Map<String, Long> parseQuota(final String line) {
+        int open = line.lastIndexOf('(');
+        int close = line.lastIndexOf(')');
+        if (!line.startsWith(QUOTA_RESPONSE) || open < 0 || close < open) {
+            return null;
+        }
+        String[] tokens = line.substring(open + 1, close).trim().split(" +");
+        Map<String, Long> limits = new LinkedHashMap<String, Long>();
+        for (int i = 0; i + 2 < tokens.length; i += 3) {
+            try {
+                limits.put(tokens[i], Long.valueOf(tokens[i + 2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return limits;
+    }// Ende parseQuota(String)
+
+    /**
+     * Die Kommandos der Anlage eines Benutzers mit ihren Schritten.
+     */
+    private final class Flight {
+
+        /**
+         * Der Benutzer.
+         */
+        private final ProvisionRequest request;
+
+        /**
+         * Das Ergebnis.
+         */
+        private final ProvisionResult result;
+
+        /**
+         * Vollständiger Name der Mailbox.
+         */
+        private final String name;
+
+        /**
+         * Abfrage der vorherigen Quota, null wenn keine gesetzt wird.
+         */
+        private Command quotaBefore;
+
+        /**
+         * Abfrage der vorherigen Rechte, null wenn keine gesetzt werden.
+         */
+        private Command aclBefore;
+
+        /**
+         * Die Kommandos der Schritte, die Anlage zuerst.
+         */
+        private final List<Command> commands = new ArrayList<Command>();
+
+        /**
+         * Betroffener Benutzer bei SETACL oder angelegter Ordner bei CREATE,
+         * parallel zu den Kommandos.
+         */
+        private final List<String> arguments = new ArrayList<String>();
+
+        /**
+         * Die Schritte, parallel zu den Kommandos.
+         */
+        private final List<ProvisionStep> steps =
+                new ArrayList<ProvisionStep>();
+
+        /**
+         * Die Kommandos die Schritte zurücknehmen, null wenn der Schritt
+         * nicht zurückgenommen wird.
+         */
+        private final List<Command> undo = new ArrayList<Command>();
+
+        /**
+         * Konstruktor der Klasse Flight, prüft alle Namen und erzeugt die
+         * Kommandos.
+         */
+        private Flight(final ProvisionRequest provisionRequest)
+                throws NoValidMailboxName {
+            this.request = provisionRequest;
+            this.result = new ProvisionResult(request.getMailbox());
+            this.name = userPrefix + request.getMailbox();
+            if (!validator.isValid(request.getMailbox())) {
+                throw new NoValidMailboxName();
+            }
+
+            step("create " + name, Commands.create(name,
+                    request.getPartition()), name);
+            if (request.getQuota() >= 0) {
+                quotaBefore = createFirst ? null : Commands.getQuota(name);
+                step("setquota " + request.getQuota(),
+                        Commands.setQuota(name, request.getQuota()), null);
+            }
+            if (!request.getAcls().isEmpty()) {
+                aclBefore = createFirst ? null : Commands.getAcl(name);
+                for (Map.Entry<String, String> acl
+                        : request.getAcls().entrySet()) {
+                    step("setacl " + acl.getKey() + " " + acl.getValue(),
+                            Commands.setAcl(name, acl.getKey(),
+                                    acl.getValue()), acl.getKey());
+                }
+            }
+            for (String folder : request.getFolders()) {
+                String folderName = folderName(request.getMailbox(), folder);
+                if (!validator.isValid(folderName)) {
+                    throw new NoValidMailboxName();
+                }
+                step("create " + folderName, Commands.create(folderName),
+                        folderName);
+            }
+        }// Ende Flight(ProvisionRequest)
+
+        /**
+         * Hilfs-Methode die einen Schritt mit seinem Kommando anhängt.
+         */
+        private void step(final String description, final Command command,
+                final String argument) {
+            steps.add(result.add(description,
+                    "CREATE".equals(command.getName()) ? argument : null));
+            commands.add(command);
+            arguments.add(argument);
+        }// Ende step(String, Command, String)
+
+        /**
+         * Hilfs-Methode die die Abfragen und die Anlage der Mailbox
+         * einreiht.
+         */
+        private void submitCreate(final Pipeline pipeline)
+                throws IOException {
+            if (quotaBefore != null) {
+                pipeline.submit(quotaBefore);
+            }
+            if (aclBefore != null) {
+                pipeline.submit(aclBefore);
+            }
+            pipeline.submit(commands.get(0));
+        }// Ende submitCreate(Pipeline)
+
+        /**
+         * Hilfs-Methode die die übrigen Schritte einreiht.
+         */
+        private void submitSteps(final Pipeline pipeline)
+                throws IOException {
+            for (int i = 1; i < commands.size(); i++) {
+                pipeline.submit(commands.get(i));
+            }
+        }// Ende submitSteps(Pipeline)
+
+        /**
+         * Hilfs-Methode die die Ergebnisse setzt und nach einer
+         * fehlgeschlagenen Anlage die Kommandos zum Zurücknehmen erzeugt.
+         */
+        private void evaluate(final List<Command> rollbacks) {
+            result.setRoundTrips(createFirst && commands.get(0).isOk()
+                    && commands.size() > 1 ? 2 : 1);
+            Command create = commands.get(0);
+            steps.get(0).setOutcome(create.isOk() ? StepOutcome.DONE
+                    : StepOutcome.FAILED, create.getText());
+            for (int i = 1; i < commands.size(); i++) {
+                Command command = commands.get(i);
+                Command rollback = null;
+                if (create.isOk()) {
+                    steps.get(i).setOutcome(command.isOk() ? StepOutcome.DONE
+                            : StepOutcome.FAILED, command.getText());
+                } else if (command.isOk()) {
+                    rollback = rollback(command, arguments.get(i));
+                    rollbacks.add(rollback);
+                } else {
+                    steps.get(i).setOutcome(StepOutcome.SKIPPED,
+                            command.getText());
+                }
+                undo.add(rollback);
+            }
+            if (!create.isOk()) {
+                LOGGER.warn("Anlage von " + name + " fehlgeschlagen: "
+                        + create.getText());
+            }
+        }// Ende evaluate(List<Command>)
+
+        /**
+         * Hilfs-Methode die das Kommando erzeugt, das einen ausgeführten
+         * Schritt zurücknimmt.
+         */
+        private Command rollback(final Command command,
+                final String argument) {
+            if ("SETQUOTA".equals(command.getName())) {
+                /*
+                 * SETQUOTA verwirft alle nicht genannten Ressourcen, also
+                 * alle vorherigen Grenzen wieder setzen.
+                 */
+                Map<String, Long> before = null;
+                if (quotaBefore.isOk()) {
+                    for (String line : quotaBefore.getUntagged()) {
+                        Map<String, Long> limits = parseQuota(line);
+                        before = limits == null ? before : limits;
+                    }
+                }
+                return before == null || before.isEmpty()
+                        ? Commands.removeQuota(name)
+                        : Commands.setQuota(name, before);
+            }
+            if ("SETACL".equals(command.getName())) {
+                Map<String, String> before = null;
+                if (aclBefore.isOk()) {
+                    for (String line : aclBefore.getUntagged()) {
+                        Map<String, String> acls = parseAcl(line);
+                        before = acls == null ? before : acls;
+                    }
+                }
+                if (before != null && before.containsKey(argument)) {
+                    return Commands.setAcl(name, argument,
+                            before.get(argument));
+                }
+                return Commands.deleteAcl(name, argument);
+            }
+            return Commands.delete(argument);
+        }// Ende rollback(Command, String)
+
+        /**
+         * Hilfs-Methode die die ausgeführten Schritte sammelt deren
+         * Zurücknahme nicht bestätigt wurde.
+         */
+        private void notRolledBack(final List<String> applied) {
+            for (int i = 0; i < undo.size(); i++) {
+                Command rollback = undo.get(i);
+                if (rollback != null && !rollback.isOk()) {
+                    applied.add(name + ": "
+                            + steps.get(i + 1).getDescription());
+                }
+            }
+        }// Ende notRolledBack(List<String>)
+
+        /**
+         * Hilfs-Methode die die Ergebnisse der zurückgenommenen Schritte
+         * setzt.
+         */
+        private void rolledBack() {
+            boolean any = false;
+            for (int i = 0; i < undo.size(); i++) {
+                Command rollback = undo.get(i);
+                if (rollback == null) {
+                    continue;
+                }
+                any = true;
+                if (rollback.isOk()) {
+                    steps.get(i + 1).setOutcome(StepOutcome.ROLLED_BACK,
+                            rollback.getText());
+                } else {
+                    steps.get(i + 1).setOutcome(StepOutcome.FAILED,
+                            "rollback " + rollback.getStatus() + " "
+                                    + rollback.getText());
+                    LOGGER.error("Zurücknehmen von " + name + " "
+                            + steps.get(i + 1).getDescription()
+                            + " fehlgeschlagen: " + rollback.getText());
+                }
+            }
+            if (any) {
+                result.setRoundTrips(2);
+            }
+        }// Ende rolledBack()
+
+    }// Ende class Flight
+
+}// Ende class
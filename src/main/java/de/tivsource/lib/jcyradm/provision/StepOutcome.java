@@ -0,0 +1,35 @@
+package de.tivsource.lib.jcyradm.provision;
+
+/**
+ * Ergebnis eines Schritts der Anlage eines Benutzers.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum StepOutcome {
+
+    /**
+     * Der Schritt wurde ausgeführt.
+     */
+    DONE,
+
+    /**
+     * Der Schritt ist fehlgeschlagen oder konnte nicht zurückgenommen
+     * werden.
+     */
+    FAILED,
+
+    /**
+     * Der Schritt hatte keine Wirkung, weil die Anlage der Mailbox
+     * fehlgeschlagen ist, oder wurde wegen einer unterbrochenen Verbindung
+     * nicht ausgeführt.
+     */
+    SKIPPED,
+
+    /**
+     * Der Schritt wurde ausgeführt und wieder zurückgenommen, weil die
+     * Anlage der Mailbox fehlgeschlagen ist.
+     */
+    ROLLED_BACK;
+
+}// Ende enum
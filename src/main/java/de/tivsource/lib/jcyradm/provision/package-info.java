@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Klassen zur Anlage neuer Benutzer mit
+ * Quota, Rechten und Standard-Ordnern über die Pipeline.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.provision;
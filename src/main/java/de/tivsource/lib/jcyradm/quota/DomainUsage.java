@@ -0,0 +1,115 @@
+package de.tivsource.lib.jcyradm.quota;
+
+/**
+ * Die Klasse DomainUsage fasst die Quota-Historie aller Mailboxen einer
+ * Domain zusammen.
+ *
+ * @author Marc Michele
+ *
+ */
+public class DomainUsage {
+
+    /**
+     * Name der Domain, "" für Mailboxen ohne Domain.
+     */
+    private final String domain;
+
+    /**
+     * Anzahl der Mailboxen mit Messungen im Zeitraum.
+     */
+    private int mailboxes;
+
+    /**
+     * Summe des zuletzt gemessenen Speichers in KB.
+     */
+    private long used;
+
+    /**
+     * Summe der zuletzt gemessenen Grenzen in KB.
+     */
+    private long limit;
+
+    /**
+     * Summe des Wachstums in KB je Tag.
+     */
+    private double growthPerDay;
+
+    /**
+     * Konstruktor der Klasse DomainUsage.
+     *
+     * @param domainName - Name der Domain.
+     */
+    public DomainUsage(final String domainName) {
+        super();
+        this.domain = domainName;
+    }// Ende DomainUsage(String)
+
+    /**
+     * Nimmt eine Mailbox in die Summe auf.
+     *
+     * @param usedKb - Zuletzt gemessener Speicher in KB.
+     * @param limitKb - Zuletzt gemessene Grenze in KB.
+     * @param kbPerDay - Wachstum in KB je Tag, NaN wenn unbekannt.
+     */
+    public final void add(final long usedKb, final long limitKb,
+            final double kbPerDay) {
+        mailboxes++;
+        used += usedKb;
+        limit += limitKb;
+        if (!Double.isNaN(kbPerDay)) {
+            growthPerDay += kbPerDay;
+        }
+    }// Ende add(long, long, double)
+
+    /**
+     * Liefert den Namen der Domain.
+     *
+     * @return String - Name der Domain, "" für Mailboxen ohne Domain.
+     */
+    public final String getDomain() {
+        return domain;
+    }// Ende getDomain()
+
+    /**
+     * Liefert die Anzahl der Mailboxen.
+     *
+     * @return int - Mailboxen mit Messungen im Zeitraum.
+     */
+    public final int getMailboxes() {
+        return mailboxes;
+    }// Ende getMailboxes()
+
+    /**
+     * Liefert den benutzten Speicher der Domain.
+     *
+     * @return long - Summe des zuletzt gemessenen Speichers in KB.
+     */
+    public final long getUsed() {
+        return used;
+    }// Ende getUsed()
+
+    /**
+     * Liefert die Grenze der Domain.
+     *
+     * @return long - Summe der zuletzt gemessenen Grenzen in KB.
+     */
+    public final long getLimit() {
+        return limit;
+    }// Ende getLimit()
+
+    /**
+     * Liefert das Wachstum der Domain.
+     *
+     * @return double - Summe des Wachstums in KB je Tag.
+     */
+    public final double getGrowthPerDay() {
+        return growthPerDay;
+    }// Ende getGrowthPerDay()
+
+    @Override
+    public final String toString() {
+        return domain + " " + mailboxes + " " + used + "/" + limit + " "
+                + Math.round(growthPerDay) + "/d";
+    }// Ende toString()
+
+}// Ende class
@@ -0,0 +1,97 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Die Klasse LongColumn ist eine wachsende Spalte mit long Werten. Die Werte
+ * liegen wahlweise in einem long-Array auf dem Heap oder in einem direkten
+ * Puffer außerhalb des Heaps, dort belasten sie den Garbage Collector nicht.
+ *
+ * <p>
+ * Die Klasse ist nicht threadsicher.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public final class LongColumn {
+
+    /**
+     * Anfangsgröße der Spalte.
+     */
+    private static final int INITIAL = 1024;
+
+    /**
+     * Ob die Werte außerhalb des Heaps liegen.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Die Werte.
+     */
+    private LongBuffer values;
+
+    /**
+     * Konstruktor der Klasse LongColumn.
+     *
+     * @param direct - True wenn die Werte außerhalb des Heaps liegen sollen.
+     */
+    public LongColumn(final boolean direct) {
+        super();
+        this.offHeap = direct;
+        this.values = allocate(INITIAL);
+    }// Ende LongColumn(boolean)
+
+    /**
+     * Liefert einen Wert.
+     *
+     * @param row - Die Zeile.
+     * @return long - Der Wert.
+     */
+    public long get(final int row) {
+        return values.get(row);
+    }// Ende get(int)
+
+    /**
+     * Setzt einen Wert, die Spalte wächst wenn nötig.
+     *
+     * @param row - Die Zeile.
+     * @param value - Der Wert.
+     */
+    public void set(final int row, final long value) {
+        if (row >= values.capacity()) {
+            int capacity = values.capacity();
+            while (capacity <= row) {
+                capacity *= 2;
+            }
+            LongBuffer grown = allocate(capacity);
+            values.clear();
+            grown.put(values);
+            values = grown;
+        }
+        values.put(row, value);
+    }// Ende set(int, long)
+
+    /**
+     * Liefert den belegten Speicher.
+     *
+     * @return long - Größe in Bytes.
+     */
+    public long memoryUsage() {
+        return values.capacity() * 8L;
+    }// Ende memoryUsage()
+
+    /**
+     * Hilfs-Methode die einen Puffer anlegt.
+     */
+    private LongBuffer allocate(final int capacity) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(capacity * 8)
+                    .order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        return LongBuffer.allocate(capacity);
+    }// Ende allocate(int)
+
+}// Ende class
@@ -0,0 +1,229 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Die Klasse NameDictionary vergibt für Namen fortlaufende Nummern und hält
+ * alle Namen als UTF-8 in einem einzigen Byte-Array. Je Name kostet das nur
+ * die Bytes und zwei int (Anfang im Array, Platz in der Hash-Tabelle), statt
+ * eines String Objekts mit char-Array. Beim Hinzufügen und Suchen wird der
+ * Name direkt aus einer CharSequence kodiert, ohne Zwischen-Objekte.
+ *
+ * <p>
+ * Die Klasse ist nicht threadsicher.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public final class NameDictionary {
+
+    /**
+     * Zeichensatz der Namen.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Anfangsgröße der Arrays.
+     */
+    private static final int INITIAL = 1024;
+
+    /**
+     * Alle Namen hintereinander als UTF-8.
+     */
+    private byte[] bytes = new byte[INITIAL * 16];
+
+    /**
+     * Belegte Bytes.
+     */
+    private int length;
+
+    /**
+     * Ende des zuletzt kodierten Namens hinter length.
+     */
+    private int pending;
+
+    /**
+     * Anfang jedes Namens in bytes, an Stelle size steht das Ende.
+     */
+    private int[] offsets = new int[INITIAL + 1];
+
+    /**
+     * Anzahl der Namen.
+     */
+    private int size;
+
+    /**
+     * Hash-Tabelle mit offener Adressierung, Nummer + 1 oder 0 wenn frei.
+     */
+    private int[] table = new int[INITIAL * 2];
+
+    /**
+     * Liefert die Nummer eines Namens und fügt ihn hinzu wenn er neu ist.
+     *
+     * @param name - Der Name.
+     * @return int - Nummer des Namens, beginnt mit 0.
+     */
+    public int add(final CharSequence name) {
+        int id = lookup(name);
+        if (id >= 0) {
+            return id;
+        }
+        /*
+         * lookup() hat den Namen bereits hinter length kodiert.
+         */
+        id = size++;
+        length = pending;
+        if (size + 1 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[size] = length;
+        if (size * 2 > table.length) {
+            rehash();
+        } else {
+            insert(id, hash(offsets[id], length));
+        }
+        return id;
+    }// Ende add(CharSequence)
+
+    /**
+     * Sucht die Nummer eines Namens.
+     *
+     * @param name - Der Name.
+     * @return int - Nummer des Namens oder -1 wenn er unbekannt ist.
+     */
+    public int find(final CharSequence name) {
+        return lookup(name);
+    }// Ende find(CharSequence)
+
+    /**
+     * Liefert einen Namen.
+     *
+     * @param id - Nummer des Namens.
+     * @return String - Der Name.
+     */
+    public String get(final int id) {
+        return new String(bytes, offsets[id], offsets[id + 1] - offsets[id],
+                UTF8);
+    }// Ende get(int)
+
+    /**
+     * Liefert die Anzahl der Namen.
+     *
+     * @return int - Anzahl der Namen.
+     */
+    public int size() {
+        return size;
+    }// Ende size()
+
+    /**
+     * Liefert den belegten Speicher.
+     *
+     * @return long - Ungefähre Größe in Bytes.
+     */
+    public long memoryUsage() {
+        return bytes.length + offsets.length * 4L + table.length * 4L;
+    }// Ende memoryUsage()
+
+    /**
+     * Hilfs-Methode die den Namen hinter length kodiert und sucht.
+     */
+    private int lookup(final CharSequence name) {
+        pending = encode(name, length);
+        int hash = hash(length, pending);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0;
+                slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (equalsPending(offsets[id], offsets[id + 1])) {
+                return id;
+            }
+        }
+        return -1;
+    }// Ende lookup(CharSequence)
+
+    /**
+     * Hilfs-Methode die prüft ob ein gespeicherter Name dem kodierten Namen
+     * hinter length entspricht.
+     */
+    private boolean equalsPending(final int from, final int to) {
+        if (to - from != pending - length) {
+            return false;
+        }
+        for (int i = from, j = length; i < to; i++, j++) {
+            if (bytes[i] != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }// Ende equalsPending(int, int)
+
+    /**
+     * Hilfs-Methode die eine CharSequence als UTF-8 ab einer Position in
+     * bytes schreibt.
+     */
+    private int encode(final CharSequence name, final int from) {
+        int position = from;
+        for (int i = 0; i < name.length(); i++) {
+            if (position + 4 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            int c = name.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < name.length()
+                    && Character.isLowSurrogate(name.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, name.charAt(++i));
+            }
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c < 0x10000) {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                bytes[position++] = (byte) (0xF0 | (c >> 18));
+                bytes[position++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }// Ende encode(CharSequence, int)
+
+    /**
+     * Hilfs-Methode die den Hash eines Bereichs berechnet (FNV-1a).
+     */
+    private int hash(final int from, final int to) {
+        int hash = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }// Ende hash(int, int)
+
+    /**
+     * Hilfs-Methode die eine Nummer in die Hash-Tabelle einträgt.
+     */
+    private void insert(final int id, final int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }// Ende insert(int, int)
+
+    /**
+     * Hilfs-Methode die die Hash-Tabelle verdoppelt.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int id = 0; id < size; id++) {
+            insert(id, hash(offsets[id], offsets[id + 1]));
+        }
+    }// Ende rehash()
+
+}// Ende class
@@ -0,0 +1,46 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.pool.Operation;
+import de.tivsource.lib.jcyradm.pool.Priority;
+import de.tivsource.lib.jcyradm.pool.SessionPool;
+
+/**
+ * Die Klasse PoolQuotaSource fragt die Quota über einen SessionPool ab. Die
+ * Abfragen laufen als Massen-Operationen und stehen damit hinter
+ * interaktiven Operationen zurück.
+ *
+ * @author Marc Michele
+ *
+ */
+public class PoolQuotaSource implements QuotaSource {
+
+    /**
+     * Pool mit dem die Abfragen ausgeführt werden.
+     */
+    private final SessionPool pool;
+
+    /**
+     * Konstruktor der Klasse PoolQuotaSource.
+     *
+     * @param sessionPool - Pool mit dem die Abfragen ausgeführt werden.
+     */
+    public PoolQuotaSource(final SessionPool sessionPool) {
+        super();
+        this.pool = sessionPool;
+    }// Ende PoolQuotaSource(SessionPool)
+
+    @Override
+    public Quota fetch(final String mailbox) throws Exception {
+        return pool.execute(Priority.BULK, new Operation<Quota>() {
+            @Override
+            public Quota run(final JCyrAdm session) throws Exception {
+                session.quota(mailbox);
+                return new Quota(mailbox, session.getUsed().longValue(),
+                        session.getQuota().longValue());
+            }
+        });
+    }// Ende fetch(String)
+
+}// Ende class
@@ -0,0 +1,1214 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Die Klasse QuotaHistory speichert Quota-Messungen vieler Mailboxen über
+ * lange Zeiträume in Segment-Dateien eines Verzeichnisses.
+ *
+ * <p>
+ * Neue Messungen werden je Mailbox im Speicher kodiert und mit flush() (oder
+ * automatisch ab einer Größe) als neues Segment geschrieben. Innerhalb eines
+ * Segments liegen die Messungen einer Mailbox als ein Block: die erste
+ * Messung absolut, danach für die Zeit die Differenz der Differenzen und für
+ * Speicher und Grenze die Differenz, jeweils als ZigZag-Varint. Bei
+ * stündlichen Messungen kostet eine Messung so meist drei bis fünf Bytes,
+ * eine Million Mailboxen über ein Jahr passen in wenige GB.
+ * </p>
+ *
+ * <p>
+ * Segmente werden nur gelesen und dafür in den Speicher eingeblendet. Der
+ * Index (Name, Anzahl, Beginn je Block) liegt nach Namen sortiert am Ende
+ * der Datei und wird dort binär durchsucht, ein Segment belegt im Heap also
+ * nur wenige Felder, unabhängig von der Anzahl der Mailboxen. Über Zeitraum
+ * und Index werden bei einer Abfrage nur die Blöcke der betroffenen Mailbox
+ * dekodiert.
+ * </p>
+ *
+ * <p>
+ * Damit die Anzahl der Segmente nicht mit der Laufzeit wächst, werden je
+ * MERGE_FACTOR aufeinander folgende Segmente einer Stufe zu einem Segment
+ * der nächsten Stufe zusammengefasst, jede Messung wird so nur
+ * logarithmisch oft umgeschrieben. Ein Segment kennt den Bereich der
+ * laufenden Nummern den es abdeckt, bleiben nach einem Absturz zusammen-
+ * gefasste Segmente liegen werden sie beim Öffnen gelöscht. Alle Methoden
+ * sind synchronisiert.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaHistory implements Closeable {
+
+    /**
+     * Statischer Logger der Klasse QuotaHistory.
+     */
+    private static final Logger LOGGER = Logger.getLogger(QuotaHistory.class);
+
+    /**
+     * Zeichensatz der Namen.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Kennung am Anfang eines Segments ("JCYQ").
+     */
+    private static final int MAGIC = 0x4A435951;
+
+    /**
+     * Version des Formats.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Größe des Kopfes in Bytes (Kennung, Version, Anzahl, Zeitraum, Beginn
+     * des Index, Stufe, erste und letzte laufende Nummer).
+     */
+    private static final int HEADER = 44;
+
+    /**
+     * Größe eines Eintrags im Index (Beginn und Länge des Namens, Beginn und
+     * Anzahl des Blocks).
+     */
+    private static final int ENTRY = 16;
+
+    /**
+     * Endung der Segment-Dateien.
+     */
+    private static final String SUFFIX = ".seg";
+
+    /**
+     * Endung der Segment-Dateien während sie geschrieben werden.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Anzahl der Segmente einer Stufe die zusammengefasst werden.
+     */
+    private static final int MERGE_FACTOR = 4;
+
+    /**
+     * Größte Summe der Quellen einer Zusammenfassung in Bytes, mit Abstand
+     * unter der Grenze von 2 GB eines eingeblendeten Bereichs.
+     */
+    private static final long MAX_MERGE_SIZE = 1L << 30;
+
+    /**
+     * Geschätzter Heap je Mailbox im Speicher neben Name und Messungen:
+     * Objekt-Köpfe und Felder von Series, String und den Arrays sowie der
+     * Eintrag der HashMap.
+     */
+    private static final int SERIES_OVERHEAD = 176;
+
+    /**
+     * Standard Größe in Bytes des Heaps der Messungen im Speicher ab der ein
+     * Segment geschrieben wird.
+     */
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    /**
+     * Puffer beim Schreiben eines Segments.
+     */
+    private static final int WRITE_BUFFER = 1 << 16;
+
+    /**
+     * Sekunden je Tag.
+     */
+    private static final double SECONDS_PER_DAY = 86400.0;
+
+    /**
+     * Reihenfolge der Namen im Index, byteweise ohne Vorzeichen wie
+     * Segment.compare().
+     */
+    private static final Comparator<byte[]> NAME_ORDER =
+            new Comparator<byte[]>() {
+                @Override
+                public int compare(final byte[] a, final byte[] b) {
+                    int length = Math.min(a.length, b.length);
+                    for (int i = 0; i < length; i++) {
+                        int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+                        if (diff != 0) {
+                            return diff;
+                        }
+                    }
+                    return a.length - b.length;
+                }
+            };
+
+    /**
+     * Verzeichnis der Segmente.
+     */
+    private final File directory;
+
+    /**
+     * Geschriebene Segmente, nach laufender Nummer und damit Zeit sortiert.
+     */
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    /**
+     * Noch nicht geschriebene Messungen je Mailbox.
+     */
+    private final Map<String, Series> head = new HashMap<String, Series>();
+
+    /**
+     * Geschätzter Heap der noch nicht geschriebenen Messungen in Bytes.
+     */
+    private long headBytes;
+
+    /**
+     * Heap in Bytes ab dem automatisch ein Segment geschrieben wird.
+     */
+    private long segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * Laufende Nummer für die Namen der Segmente.
+     */
+    private int sequence;
+
+    /**
+     * Konstruktor der Klasse QuotaHistory, öffnet alle Segmente des
+     * Verzeichnisses oder legt das Verzeichnis an.
+     *
+     * @param historyDirectory - Verzeichnis der Segmente.
+     * @throws IOException - Wenn das Verzeichnis nicht angelegt oder ein
+     *             Segment nicht gelesen oder zusammengefasst werden kann.
+     */
+    public QuotaHistory(final File historyDirectory) throws IOException {
+        super();
+        this.directory = historyDirectory;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        for (File file : files) {
+            segments.add(Segment.open(file));
+        }
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(final Segment a, final Segment b) {
+                return a.first < b.first ? -1 : (a.first == b.first ? 0 : 1);
+            }
+        });
+        removeMerged();
+        for (Segment segment : segments) {
+            sequence = Math.max(sequence, segment.last + 1);
+        }
+        compact();
+        LOGGER.info("Quota-Historie " + directory + " mit "
+                + segments.size() + " Segmenten geöffnet.");
+    }// Ende QuotaHistory(File)
+
+    /**
+     * Speichert eine Messung.
+     *
+     * @param mailbox - Name der Mailbox.
+     * @param time - Zeitpunkt in Sekunden seit 1970.
+     * @param usedKb - Benutzter Speicher in KB.
+     * @param limitKb - Grenze des Speichers in KB.
+     * @throws IOException - Wenn das automatisch geschriebene Segment nicht
+     *             geschrieben werden kann.
+     */
+    public final synchronized void append(final String mailbox,
+            final long time, final long usedKb, final long limitKb)
+            throws IOException {
+        Series series = head.get(mailbox);
+        long before = 0;
+        if (series == null) {
+            series = new Series(mailbox);
+            head.put(mailbox, series);
+        } else {
+            before = series.heapSize();
+        }
+        series.append(time, usedKb, limitKb);
+        headBytes += series.heapSize() - before;
+        if (headBytes >= segmentSize) {
+            flush();
+        }
+    }// Ende append(String, long, long, long)
+
+    /**
+     * Schreibt alle Messungen im Speicher als neues Segment und fasst danach
+     * gegebenenfalls Segmente zusammen.
+     *
+     * @throws IOException - Wenn das Segment nicht geschrieben werden kann.
+     */
+    public final synchronized void flush() throws IOException {
+        if (head.isEmpty()) {
+            return;
+        }
+        Map<byte[], Series> sorted = new TreeMap<byte[], Series>(NAME_ORDER);
+        long minTime = Long.MAX_VALUE;
+        for (Series series : head.values()) {
+            sorted.put(series.mailbox.getBytes(UTF8), series);
+            minTime = Math.min(minTime, series.minTime);
+        }
+        File temp = segmentFile(minTime, TEMP_SUFFIX);
+        SegmentWriter writer = new SegmentWriter(temp);
+        for (Map.Entry<byte[], Series> entry : sorted.entrySet()) {
+            writer.add(entry.getKey(), entry.getValue());
+        }
+        writer.finish(0, sequence, sequence);
+        File file = segmentFile(minTime, SUFFIX);
+        segments.add(install(temp, file));
+        sequence++;
+        LOGGER.debug("Segment " + file + " mit " + head.size()
+                + " Mailboxen geschrieben.");
+        head.clear();
+        headBytes = 0;
+        compact();
+    }// Ende flush()
+
+    /**
+     * Liefert die Messungen einer Mailbox in einem Zeitraum.
+     *
+     * @param mailbox - Name der Mailbox.
+     * @param from - Beginn in Sekunden seit 1970, einschließlich.
+     * @param to - Ende in Sekunden seit 1970, einschließlich.
+     * @return QuotaSeries - Die Messungen in der gespeicherten Reihenfolge.
+     */
+    public final synchronized QuotaSeries series(final String mailbox,
+            final long from, final long to) {
+        final QuotaSeries result = new QuotaSeries(mailbox);
+        scan(mailbox, from, to, new Visitor() {
+            @Override
+            public void sample(final long time, final long used,
+                    final long limit) {
+                result.add(time, used, limit);
+            }
+        });
+        return result;
+    }// Ende series(String, long, long)
+
+    /**
+     * Berechnet das Wachstum einer Mailbox als Steigung der
+     * Ausgleichsgeraden über alle Messungen im Zeitraum.
+     *
+     * @param mailbox - Name der Mailbox.
+     * @param from - Beginn in Sekunden seit 1970, einschließlich.
+     * @param to - Ende in Sekunden seit 1970, einschließlich.
+     * @return double - Wachstum in KB je Tag, NaN bei weniger als zwei
+     *         Messungen.
+     */
+    public final synchronized double growthRate(final String mailbox,
+            final long from, final long to) {
+        Regression regression = new Regression();
+        scan(mailbox, from, to, regression);
+        return regression.perDay();
+    }// Ende growthRate(String, long, long)
+
+    /**
+     * Schätzt anhand des Wachstums im Zeitraum wann die Mailbox voll ist.
+     *
+     * @param mailbox - Name der Mailbox.
+     * @param from - Beginn in Sekunden seit 1970, einschließlich.
+     * @param to - Ende in Sekunden seit 1970, einschließlich.
+     * @return long - Zeitpunkt in Sekunden seit 1970, der Zeitpunkt der
+     *         letzten Messung wenn die Mailbox bereits voll ist oder -1 wenn
+     *         sie nicht wächst oder keine Grenze hat.
+     */
+    public final synchronized long forecastFull(final String mailbox,
+            final long from, final long to) {
+        Regression regression = new Regression();
+        scan(mailbox, from, to, regression);
+        return regression.forecastFull();
+    }// Ende forecastFull(String, long, long)
+
+    /**
+     * Fasst die Messungen im Zeitraum je Domain zusammen: Anzahl der
+     * Mailboxen, zuletzt gemessener Speicher und Grenze sowie das Wachstum.
+     * Jeder Block wird dabei genau einmal der Reihe nach dekodiert.
+     *
+     * @param from - Beginn in Sekunden seit 1970, einschließlich.
+     * @param to - Ende in Sekunden seit 1970, einschließlich.
+     * @return Map - Zusammenfassung je Domain, nach Domain sortiert.
+     */
+    public final synchronized Map<String, DomainUsage> domainUsage(
+            final long from, final long to) {
+        Map<String, Regression> mailboxes = new HashMap<String, Regression>();
+        for (Segment segment : segments) {
+            if (segment.maxTime < from || segment.minTime > to) {
+                continue;
+            }
+            for (int id = 0; id < segment.size; id++) {
+                String mailbox = segment.name(id);
+                Regression regression = mailboxes.get(mailbox);
+                if (regression == null) {
+                    regression = new Regression();
+                    mailboxes.put(mailbox, regression);
+                }
+                segment.decode(id, from, to, regression);
+            }
+        }
+        for (Series series : head.values()) {
+            Regression regression = mailboxes.get(series.mailbox);
+            if (regression == null) {
+                regression = new Regression();
+                mailboxes.put(series.mailbox, regression);
+            }
+            series.decode(from, to, regression);
+        }
+
+        Map<String, DomainUsage> result = new TreeMap<String, DomainUsage>();
+        for (Map.Entry<String, Regression> entry : mailboxes.entrySet()) {
+            Regression regression = entry.getValue();
+            if (regression.count == 0) {
+                continue;
+            }
+            String domain = domainOf(entry.getKey());
+            DomainUsage usage = result.get(domain);
+            if (usage == null) {
+                usage = new DomainUsage(domain);
+                result.put(domain, usage);
+            }
+            usage.add(regression.lastUsed, regression.lastLimit,
+                    regression.perDay());
+        }
+        return result;
+    }// Ende domainUsage(long, long)
+
+    /**
+     * Liefert die Anzahl der geschriebenen Segmente.
+     *
+     * @return int - Anzahl der Segmente.
+     */
+    public final synchronized int getSegmentCount() {
+        return segments.size();
+    }// Ende getSegmentCount()
+
+    /**
+     * Liefert die Größe aller Segmente auf der Platte.
+     *
+     * @return long - Größe in Bytes.
+     */
+    public final synchronized long diskUsage() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.file.length();
+        }
+        return size;
+    }// Ende diskUsage()
+
+    /**
+     * Setzt den Heap der Messungen im Speicher ab dem automatisch ein
+     * Segment geschrieben wird. Gezählt werden neben den kodierten Messungen
+     * auch Name und Objekte jeder Mailbox.
+     *
+     * @param bytes - Größe in Bytes.
+     */
+    public final synchronized void setSegmentSize(final long bytes) {
+        this.segmentSize = Math.max(1L, bytes);
+    }// Ende setSegmentSize(long)
+
+    /**
+     * Schreibt die Messungen im Speicher und gibt die Segmente frei. Die
+     * eingeblendeten Bereiche werden vom Garbage Collector entfernt.
+     *
+     * @throws IOException - Wenn das letzte Segment nicht geschrieben werden
+     *             kann.
+     */
+    @Override
+    public final synchronized void close() throws IOException {
+        flush();
+        segments.clear();
+    }// Ende close()
+
+    /**
+     * Hilfs-Methode die alle Messungen einer Mailbox im Zeitraum besucht.
+     */
+    private void scan(final String mailbox, final long from, final long to,
+            final Visitor visitor) {
+        byte[] name = mailbox.getBytes(UTF8);
+        for (Segment segment : segments) {
+            if (segment.maxTime < from || segment.minTime > to) {
+                continue;
+            }
+            int id = segment.find(name);
+            if (id >= 0) {
+                segment.decode(id, from, to, visitor);
+            }
+        }
+        Series series = head.get(mailbox);
+        if (series != null) {
+            series.decode(from, to, visitor);
+        }
+    }// Ende scan(String, long, long, Visitor)
+
+    /**
+     * Hilfs-Methode die die Datei für ein Segment mit der nächsten
+     * laufenden Nummer liefert.
+     */
+    private File segmentFile(final long minTime, final String suffix) {
+        return new File(directory, String.format("quota-%016x-%08x",
+                minTime, sequence) + suffix);
+    }// Ende segmentFile(long, String)
+
+    /**
+     * Hilfs-Methode die ein fertig geschriebenes Segment umbenennt und
+     * einblendet.
+     */
+    private static Segment install(final File temp, final File file)
+            throws IOException {
+        if (!temp.renameTo(file)) {
+            throw new IOException("Cannot rename " + temp + " to " + file);
+        }
+        return Segment.open(file);
+    }// Ende install(File, File)
+
+    /**
+     * Hilfs-Methode die Segmente zusammenfasst solange am Ende
+     * MERGE_FACTOR Segmente derselben Stufe stehen.
+     */
+    private void compact() throws IOException {
+        while (segments.size() >= MERGE_FACTOR) {
+            int from = segments.size() - MERGE_FACTOR;
+            int level = segments.get(from).level;
+            long bytes = 0;
+            for (int i = from; i < segments.size(); i++) {
+                if (segments.get(i).level != level) {
+                    return;
+                }
+                bytes += segments.get(i).file.length();
+            }
+            if (bytes > MAX_MERGE_SIZE) {
+                return;
+            }
+            merge(from, level);
+        }
+    }// Ende compact()
+
+    /**
+     * Hilfs-Methode die die Segmente ab einer Position zu einem Segment der
+     * nächsten Stufe zusammenfasst. Die Indizes sind nach Namen sortiert,
+     * die Mailboxen werden also in einem Durchgang gemischt und jeder Block
+     * nur einmal dekodiert.
+     */
+    private void merge(final int from, final int level) throws IOException {
+        List<Segment> sources = new ArrayList<Segment>(
+                segments.subList(from, segments.size()));
+        long minTime = Long.MAX_VALUE;
+        for (Segment source : sources) {
+            minTime = Math.min(minTime, source.minTime);
+        }
+        File temp = segmentFile(minTime, TEMP_SUFFIX);
+        SegmentWriter writer = new SegmentWriter(temp);
+        int[] positions = new int[sources.size()];
+        while (true) {
+            int lowest = -1;
+            for (int k = 0; k < sources.size(); k++) {
+                if (positions[k] < sources.get(k).size && (lowest < 0
+                        || sources.get(k).compare(positions[k],
+                                sources.get(lowest), positions[lowest]) < 0)) {
+                    lowest = k;
+                }
+            }
+            if (lowest < 0) {
+                break;
+            }
+            Segment first = sources.get(lowest);
+            int id = positions[lowest];
+            byte[] name = first.nameBytes(id);
+            Series series = new Series(new String(name, UTF8));
+            for (int k = lowest; k < sources.size(); k++) {
+                Segment source = sources.get(k);
+                if (positions[k] < source.size
+                        && source.compare(positions[k], first, id) == 0) {
+                    source.decode(positions[k], Long.MIN_VALUE,
+                            Long.MAX_VALUE, series);
+                    positions[k]++;
+                }
+            }
+            writer.add(name, series);
+        }
+        writer.finish(level + 1, sources.get(0).first, sequence);
+        File file = segmentFile(minTime, SUFFIX);
+        Segment merged = install(temp, file);
+        sequence++;
+
+        segments.subList(from, segments.size()).clear();
+        segments.add(merged);
+        for (Segment source : sources) {
+            if (!source.file.delete()) {
+                LOGGER.warn("Segment " + source.file + " nicht gelöscht.");
+            }
+        }
+        LOGGER.debug("Segment " + file + " aus " + sources.size()
+                + " Segmenten der Stufe " + level + " zusammengefasst.");
+    }// Ende merge(int, int)
+
+    /**
+     * Hilfs-Methode die Segmente löscht die bereits in einem anderen
+     * Segment zusammengefasst sind, i.e. nach einem Absturz während merge().
+     */
+    private void removeMerged() {
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            for (Segment other : segments) {
+                if (other != segment && other.first <= segment.first
+                        && segment.last <= other.last) {
+                    LOGGER.warn("Segment " + segment.file + " ist bereits in "
+                            + other.file + " enthalten und wird gelöscht.");
+                    iterator.remove();
+                    if (!segment.file.delete()) {
+                        LOGGER.warn("Segment " + segment.file
+                                + " nicht gelöscht.");
+                    }
+                    break;
+                }
+            }
+        }
+    }// Ende removeMerged()
+
+    /**
+     * Hilfs-Methode die die Domain einer Mailbox liefert.
+     */
+    private static String domainOf(final String mailbox) {
+        int at = mailbox.lastIndexOf('@');
+        return at < 0 ? "" : mailbox.substring(at + 1);
+    }// Ende domainOf(String)
+
+    /**
+     * Hilfs-Methode die einen Block von Messungen dekodiert.
+     */
+    private static void decode(final ByteBuffer buffer, final int count,
+            final long from, final long to, final Visitor visitor) {
+        long time = 0;
+        long delta = 0;
+        long used = 0;
+        long limit = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                time = unzigzag(readVarint(buffer));
+                used = unzigzag(readVarint(buffer));
+                limit = unzigzag(readVarint(buffer));
+            } else {
+                delta += unzigzag(readVarint(buffer));
+                time += delta;
+                used += unzigzag(readVarint(buffer));
+                limit += unzigzag(readVarint(buffer));
+            }
+            if (time >= from && time <= to) {
+                visitor.sample(time, used, limit);
+            }
+        }
+    }// Ende decode(ByteBuffer, int, long, long, Visitor)
+
+    /**
+     * Hilfs-Methode die einen Varint liest.
+     */
+    private static long readVarint(final ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }// Ende readVarint(ByteBuffer)
+
+    /**
+     * Hilfs-Methode die eine Zahl mit Vorzeichen ZigZag-kodiert.
+     */
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }// Ende zigzag(long)
+
+    /**
+     * Hilfs-Methode die eine ZigZag-kodierte Zahl dekodiert.
+     */
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }// Ende unzigzag(long)
+
+    /**
+     * Empfänger der dekodierten Messungen.
+     */
+    private interface Visitor {
+
+        /**
+         * Wird für jede Messung im Zeitraum aufgerufen.
+         */
+        void sample(long time, long used, long limit);
+
+    }// Ende interface Visitor
+
+    /**
+     * Ausgleichsgerade über die Messungen einer Mailbox.
+     */
+    private static final class Regression implements Visitor {
+
+        /**
+         * Anzahl der Messungen.
+         */
+        private int count;
+
+        /**
+         * Zeitpunkt der ersten Messung, Nullpunkt der Zeitachse.
+         */
+        private long firstTime;
+
+        /**
+         * Speicher der ersten Messung, Nullpunkt der Speicherachse.
+         */
+        private long firstUsed;
+
+        /**
+         * Summe der Zeitwerte.
+         */
+        private double sumX;
+
+        /**
+         * Summe der Speicherwerte.
+         */
+        private double sumY;
+
+        /**
+         * Summe der Quadrate der Zeitwerte.
+         */
+        private double sumXX;
+
+        /**
+         * Summe der Produkte aus Zeit und Speicher.
+         */
+        private double sumXY;
+
+        /**
+         * Zeitpunkt der letzten Messung.
+         */
+        private long lastTime = Long.MIN_VALUE;
+
+        /**
+         * Speicher der letzten Messung.
+         */
+        private long lastUsed;
+
+        /**
+         * Grenze der letzten Messung.
+         */
+        private long lastLimit;
+
+        @Override
+        public void sample(final long time, final long used,
+                final long limit) {
+            if (count == 0) {
+                firstTime = time;
+                firstUsed = used;
+            }
+            double x = time - firstTime;
+            double y = used - firstUsed;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+            count++;
+            if (time >= lastTime) {
+                lastTime = time;
+                lastUsed = used;
+                lastLimit = limit;
+            }
+        }// Ende sample(long, long, long)
+
+        /**
+         * Liefert die Steigung in KB je Tag oder NaN.
+         */
+        private double perDay() {
+            double denominator = count * sumXX - sumX * sumX;
+            if (count < 2 || denominator == 0) {
+                return Double.NaN;
+            }
+            return (count * sumXY - sumX * sumY) / denominator
+                    * SECONDS_PER_DAY;
+        }// Ende perDay()
+
+        /**
+         * Liefert den geschätzten Zeitpunkt an dem die Mailbox voll ist.
+         */
+        private long forecastFull() {
+            if (count == 0 || lastLimit <= 0) {
+                return -1L;
+            }
+            if (lastUsed >= lastLimit) {
+                return lastTime;
+            }
+            double growth = perDay();
+            if (Double.isNaN(growth) || growth <= 0) {
+                return -1L;
+            }
+            return lastTime + (long) ((lastLimit - lastUsed) / growth
+                    * SECONDS_PER_DAY);
+        }// Ende forecastFull()
+
+    }// Ende class Regression
+
+    /**
+     * Noch nicht geschriebene Messungen einer Mailbox. Als Visitor kodiert
+     * sie beim Zusammenfassen die Messungen anderer Blöcke.
+     */
+    private static final class Series implements Visitor {
+
+        /**
+         * Name der Mailbox.
+         */
+        private final String mailbox;
+
+        /**
+         * Kodierte Messungen.
+         */
+        private byte[] data = new byte[16];
+
+        /**
+         * Benutzte Bytes in data.
+         */
+        private int length;
+
+        /**
+         * Anzahl der Messungen.
+         */
+        private int count;
+
+        /**
+         * Frühester Zeitpunkt.
+         */
+        private long minTime = Long.MAX_VALUE;
+
+        /**
+         * Spätester Zeitpunkt.
+         */
+        private long maxTime = Long.MIN_VALUE;
+
+        /**
+         * Zeitpunkt der letzten Messung.
+         */
+        private long lastTime;
+
+        /**
+         * Abstand der letzten beiden Messungen.
+         */
+        private long lastDelta;
+
+        /**
+         * Speicher der letzten Messung.
+         */
+        private long lastUsed;
+
+        /**
+         * Grenze der letzten Messung.
+         */
+        private long lastLimit;
+
+        /**
+         * Konstruktor der Klasse Series.
+         */
+        private Series(final String name) {
+            this.mailbox = name;
+        }// Ende Series(String)
+
+        /**
+         * Kodiert eine Messung.
+         */
+        private void append(final long time, final long used,
+                final long limit) {
+            if (count == 0) {
+                put(zigzag(time));
+                put(zigzag(used));
+                put(zigzag(limit));
+                lastDelta = 0;
+            } else {
+                long delta = time - lastTime;
+                put(zigzag(delta - lastDelta));
+                put(zigzag(used - lastUsed));
+                put(zigzag(limit - lastLimit));
+                lastDelta = delta;
+            }
+            lastTime = time;
+            lastUsed = used;
+            lastLimit = limit;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            count++;
+        }// Ende append(long, long, long)
+
+        @Override
+        public void sample(final long time, final long used,
+                final long limit) {
+            append(time, used, limit);
+        }// Ende sample(long, long, long)
+
+        /**
+         * Liefert den geschätzten Heap der Mailbox in Bytes.
+         */
+        private long heapSize() {
+            return SERIES_OVERHEAD + 2L * mailbox.length() + data.length;
+        }// Ende heapSize()
+
+        /**
+         * Dekodiert die Messungen im Zeitraum.
+         */
+        private void decode(final long from, final long to,
+                final Visitor visitor) {
+            if (maxTime < from || minTime > to) {
+                return;
+            }
+            QuotaHistory.decode(ByteBuffer.wrap(data, 0, length), count,
+                    from, to, visitor);
+        }// Ende decode(long, long, Visitor)
+
+        /**
+         * Hängt einen Varint an.
+         */
+        private void put(final long value) {
+            if (length + 10 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            long rest = value;
+            while ((rest & ~0x7FL) != 0) {
+                data[length++] = (byte) ((rest & 0x7F) | 0x80);
+                rest >>>= 7;
+            }
+            data[length++] = (byte) rest;
+        }// Ende put(long)
+
+    }// Ende class Series
+
+    /**
+     * Ein eingeblendetes Segment, der Index wird in der Datei gelesen.
+     */
+    private static final class Segment {
+
+        /**
+         * Die Datei des Segments.
+         */
+        private final File file;
+
+        /**
+         * Eingeblendeter Inhalt der Datei.
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Anzahl der Mailboxen.
+         */
+        private final int size;
+
+        /**
+         * Frühester Zeitpunkt im Segment.
+         */
+        private final long minTime;
+
+        /**
+         * Spätester Zeitpunkt im Segment.
+         */
+        private final long maxTime;
+
+        /**
+         * Beginn des Index in der Datei.
+         */
+        private final int index;
+
+        /**
+         * Stufe, 0 für ein mit flush() geschriebenes Segment.
+         */
+        private final int level;
+
+        /**
+         * Erste abgedeckte laufende Nummer.
+         */
+        private final int first;
+
+        /**
+         * Letzte abgedeckte laufende Nummer, die des Segments selbst.
+         */
+        private final int last;
+
+        /**
+         * Konstruktor der Klasse Segment, prüft Kopf und Index.
+         */
+        private Segment(final File segmentFile, final MappedByteBuffer map)
+                throws IOException {
+            this.file = segmentFile;
+            this.buffer = map;
+            if (map.limit() < HEADER || map.getInt(0) != MAGIC
+                    || map.getInt(4) != VERSION) {
+                throw new IOException("Not a quota segment: " + file);
+            }
+            this.size = map.getInt(8);
+            this.minTime = map.getLong(12);
+            this.maxTime = map.getLong(20);
+            this.index = map.getInt(28);
+            this.level = map.getInt(32);
+            this.first = map.getInt(36);
+            this.last = map.getInt(40);
+            if (size < 0 || index < HEADER
+                    || index + (long) size * ENTRY > map.limit()) {
+                throw new IOException("Truncated quota segment: " + file);
+            }
+        }// Ende Segment(File, MappedByteBuffer)
+
+        /**
+         * Blendet eine Segment-Datei ein.
+         */
+        private static Segment open(final File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Quota segment too large: " + file);
+                }
+                return new Segment(file, channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                raf.close();
+            }
+        }// Ende open(File)
+
+        /**
+         * Sucht den Block einer Mailbox binär im Index.
+         */
+        private int find(final byte[] name) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int order = compare(nameStart(middle), nameLength(middle),
+                        buffer, name);
+                if (order < 0) {
+                    low = middle + 1;
+                } else if (order > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }// Ende find(byte[])
+
+        /**
+         * Vergleicht den Namen eines Blocks mit dem eines anderen Segments.
+         */
+        private int compare(final int id, final Segment other,
+                final int otherId) {
+            return compare(nameStart(id), nameLength(id), buffer,
+                    other.nameStart(otherId), other.nameLength(otherId),
+                    other.buffer);
+        }// Ende compare(int, Segment, int)
+
+        /**
+         * Liefert den Namen eines Blocks als UTF-8.
+         */
+        private byte[] nameBytes(final int id) {
+            byte[] name = new byte[nameLength(id)];
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.position(nameStart(id));
+            bytes.get(name);
+            return name;
+        }// Ende nameBytes(int)
+
+        /**
+         * Liefert den Namen eines Blocks.
+         */
+        private String name(final int id) {
+            return new String(nameBytes(id), UTF8);
+        }// Ende name(int)
+
+        /**
+         * Dekodiert die Messungen eines Blocks im Zeitraum.
+         */
+        private void decode(final int id, final long from, final long to,
+                final Visitor visitor) {
+            int entry = index + id * ENTRY;
+            ByteBuffer block = buffer.duplicate();
+            block.position(buffer.getInt(entry + 8));
+            QuotaHistory.decode(block, buffer.getInt(entry + 12), from, to,
+                    visitor);
+        }// Ende decode(int, long, long, Visitor)
+
+        /**
+         * Liefert den Beginn des Namens eines Blocks.
+         */
+        private int nameStart(final int id) {
+            return buffer.getInt(index + id * ENTRY);
+        }// Ende nameStart(int)
+
+        /**
+         * Liefert die Länge des Namens eines Blocks.
+         */
+        private int nameLength(final int id) {
+            return buffer.getInt(index + id * ENTRY + 4);
+        }// Ende nameLength(int)
+
+        /**
+         * Vergleicht einen Namen in der Datei mit einem Namen als Array.
+         */
+        private static int compare(final int start, final int length,
+                final ByteBuffer bytes, final byte[] name) {
+            int common = Math.min(length, name.length);
+            for (int i = 0; i < common; i++) {
+                int diff = (bytes.get(start + i) & 0xFF) - (name[i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - name.length;
+        }// Ende compare(int, int, ByteBuffer, byte[])
+
+        /**
+         * Vergleicht zwei Namen in Dateien.
+         */
+        private static int compare(final int start, final int length,
+                final ByteBuffer bytes, final int otherStart,
+                final int otherLength, final ByteBuffer otherBytes) {
+            int common = Math.min(length, otherLength);
+            for (int i = 0; i < common; i++) {
+                int diff = (bytes.get(start + i) & 0xFF)
+                        - (otherBytes.get(otherStart + i) & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - otherLength;
+        }// Ende compare(int, int, ByteBuffer, int, int, ByteBuffer)
+
+    }// Ende class Segment
+
+    /**
+     * Schreibt ein Segment: Kopf, die Blöcke in der Reihenfolge von add(),
+     * dann Index und Namen. Der Kopf wird zuletzt geschrieben, erst dann
+     * sind Anzahl und Beginn des Index bekannt.
+     */
+    private static final class SegmentWriter {
+
+        /**
+         * Die Datei.
+         */
+        private final FileOutputStream stream;
+
+        /**
+         * Gepufferter Strom in die Datei, zählt die geschriebenen Bytes.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * Namen der Blöcke als UTF-8.
+         */
+        private final List<byte[]> names = new ArrayList<byte[]>();
+
+        /**
+         * Beginn jedes Blocks.
+         */
+        private int[] offsets = new int[WRITE_BUFFER / ENTRY];
+
+        /**
+         * Anzahl der Messungen jedes Blocks.
+         */
+        private int[] counts = new int[WRITE_BUFFER / ENTRY];
+
+        /**
+         * Frühester Zeitpunkt.
+         */
+        private long minTime = Long.MAX_VALUE;
+
+        /**
+         * Spätester Zeitpunkt.
+         */
+        private long maxTime = Long.MIN_VALUE;
+
+        /**
+         * Konstruktor der Klasse SegmentWriter, legt die Datei an.
+         */
+        private SegmentWriter(final File temp) throws IOException {
+            this.stream = new FileOutputStream(temp);
+            this.out = new DataOutputStream(
+                    new BufferedOutputStream(stream, WRITE_BUFFER));
+            out.write(new byte[HEADER]);
+        }// Ende SegmentWriter(File)
+
+        /**
+         * Schreibt den Block einer Mailbox, die Namen müssen aufsteigend
+         * nach NAME_ORDER kommen.
+         */
+        private void add(final byte[] name, final Series series)
+                throws IOException {
+            int id = names.size();
+            if (id == offsets.length) {
+                offsets = Arrays.copyOf(offsets, id * 2);
+                counts = Arrays.copyOf(counts, id * 2);
+            }
+            offsets[id] = out.size();
+            counts[id] = series.count;
+            names.add(name);
+            out.write(series.data, 0, series.length);
+            minTime = Math.min(minTime, series.minTime);
+            maxTime = Math.max(maxTime, series.maxTime);
+        }// Ende add(byte[], Series)
+
+        /**
+         * Schreibt Index und Kopf und schließt die Datei.
+         */
+        private void finish(final int level, final int first,
+                final int last) throws IOException {
+            try {
+                int index = out.size();
+                long start = index + (long) names.size() * ENTRY;
+                for (int id = 0; id < names.size(); id++) {
+                    int length = names.get(id).length;
+                    out.writeInt((int) start);
+                    out.writeInt(length);
+                    out.writeInt(offsets[id]);
+                    out.writeInt(counts[id]);
+                    start += length;
+                }
+                if (start > Integer.MAX_VALUE) {
+                    throw new IOException("Quota segment too large");
+                }
+                for (byte[] name : names) {
+                    out.write(name);
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putInt(names.size());
+                header.putLong(minTime).putLong(maxTime).putInt(index);
+                header.putInt(level).putInt(first).putInt(last);
+                header.flip();
+                FileChannel channel = stream.getChannel();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                stream.getFD().sync();
+            } finally {
+                out.close();
+            }
+        }// Ende finish(int, int, int)
+
+    }// Ende class SegmentWriter
+
+}// Ende class
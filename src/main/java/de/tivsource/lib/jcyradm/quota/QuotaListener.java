@@ -0,0 +1,25 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+
+/**
+ * Schnittstelle für Empfänger der Meldungen des QuotaWatchers. Die Methode
+ * wird aus dem Thread des Watchers aufgerufen und sollte schnell
+ * zurückkehren.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface QuotaListener {
+
+    /**
+     * Wird aufgerufen wenn die Auslastung einer Mailbox eine Schwelle
+     * überschritten oder wieder unterschritten hat.
+     *
+     * @param quota - Die aktuelle Quota.
+     * @param threshold - Die Schwelle in Prozent.
+     * @param rising - True beim Überschreiten, False beim Unterschreiten.
+     */
+    void thresholdCrossed(Quota quota, double threshold, boolean rising);
+
+}// Ende interface
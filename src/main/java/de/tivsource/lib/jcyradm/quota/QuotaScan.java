@@ -0,0 +1,82 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.io.IOException;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.CommandListener;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse QuotaScan fragt die Quota vieler Mailboxen über eine Pipeline
+ * ab und schreibt die QUOTA Antworten direkt in einen QuotaSnapshot. Die
+ * Antwortzeilen werden nicht gesammelt, je Mailbox entsteht außer der Zeile
+ * selbst kein Objekt.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class QuotaScan {
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private QuotaScan() {
+        super();
+    }// Ende QuotaScan()
+
+    /**
+     * Erzeugt die Abfrage einer Mailbox, deren Antwort direkt in den
+     * QuotaSnapshot geht.
+     *
+     * @param mailbox - Vollständiger Name der Mailbox (i.e. "user.max").
+     * @param snapshot - Ziel der Antwort.
+     * @return Command - Das Kommando.
+     */
+    public static Command create(final String mailbox,
+            final QuotaSnapshot snapshot) {
+        return new Command("GETQUOTA") {
+            @Override
+            protected void writeArguments(final CommandEncoder encoder)
+                    throws IOException {
+                encoder.mailbox(mailbox);
+            }
+
+            @Override
+            protected void untagged(final String line) {
+                snapshot.addQuotaLine(line);
+            }
+        };
+    }// Ende create(String, QuotaSnapshot)
+
+    /**
+     * Fragt die Quota aller Mailboxen ab und wartet auf alle Antworten.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param snapshot - Ziel der Antworten.
+     * @return int - Anzahl der Mailboxen ohne Quota oder mit Fehler.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde.
+     */
+    public static int scan(final Pipeline pipeline,
+            final Iterable<String> mailboxes, final QuotaSnapshot snapshot)
+            throws IOException {
+        final int[] failed = new int[1];
+        CommandListener listener = new CommandListener() {
+            @Override
+            public void completed(final Command command) {
+                if (!command.isOk()) {
+                    failed[0]++;
+                }
+            }
+        };
+        for (String mailbox : mailboxes) {
+            Command command = create(mailbox, snapshot);
+            command.setListener(listener);
+            pipeline.submit(command);
+        }
+        pipeline.sync();
+        return failed[0];
+    }// Ende scan(Pipeline, Iterable<String>, QuotaSnapshot)
+
+}// Ende class
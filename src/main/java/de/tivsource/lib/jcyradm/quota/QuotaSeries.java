@@ -0,0 +1,122 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.util.Arrays;
+
+/**
+ * Die Klasse QuotaSeries enthält die Quota-Messungen einer Mailbox in einem
+ * Zeitraum, so wie sie aus der QuotaHistory gelesen wurden.
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaSeries {
+
+    /**
+     * Anfangsgröße der Spalten.
+     */
+    private static final int INITIAL = 64;
+
+    /**
+     * Name der Mailbox.
+     */
+    private final String mailbox;
+
+    /**
+     * Zeitpunkte in Sekunden seit 1970.
+     */
+    private long[] times = new long[INITIAL];
+
+    /**
+     * Benutzter Speicher in KB.
+     */
+    private long[] used = new long[INITIAL];
+
+    /**
+     * Grenze des Speichers in KB.
+     */
+    private long[] limits = new long[INITIAL];
+
+    /**
+     * Anzahl der Messungen.
+     */
+    private int size;
+
+    /**
+     * Konstruktor der Klasse QuotaSeries.
+     *
+     * @param mailboxName - Name der Mailbox.
+     */
+    public QuotaSeries(final String mailboxName) {
+        super();
+        this.mailbox = mailboxName;
+    }// Ende QuotaSeries(String)
+
+    /**
+     * Hängt eine Messung an.
+     *
+     * @param time - Zeitpunkt in Sekunden seit 1970.
+     * @param usedKb - Benutzter Speicher in KB.
+     * @param limitKb - Grenze des Speichers in KB.
+     */
+    public final void add(final long time, final long usedKb,
+            final long limitKb) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            used = Arrays.copyOf(used, size * 2);
+            limits = Arrays.copyOf(limits, size * 2);
+        }
+        times[size] = time;
+        used[size] = usedKb;
+        limits[size] = limitKb;
+        size++;
+    }// Ende add(long, long, long)
+
+    /**
+     * Liefert den Namen der Mailbox.
+     *
+     * @return String - Name der Mailbox.
+     */
+    public final String getMailbox() {
+        return mailbox;
+    }// Ende getMailbox()
+
+    /**
+     * Liefert die Anzahl der Messungen.
+     *
+     * @return int - Anzahl der Messungen.
+     */
+    public final int size() {
+        return size;
+    }// Ende size()
+
+    /**
+     * Liefert den Zeitpunkt einer Messung.
+     *
+     * @param index - Nummer der Messung.
+     * @return long - Zeitpunkt in Sekunden seit 1970.
+     */
+    public final long getTime(final int index) {
+        return times[index];
+    }// Ende getTime(int)
+
+    /**
+     * Liefert den benutzten Speicher einer Messung.
+     *
+     * @param index - Nummer der Messung.
+     * @return long - Benutzter Speicher in KB.
+     */
+    public final long getUsed(final int index) {
+        return used[index];
+    }// Ende getUsed(int)
+
+    /**
+     * Liefert die Grenze einer Messung.
+     *
+     * @param index - Nummer der Messung.
+     * @return long - Grenze des Speichers in KB.
+     */
+    public final long getLimit(final int index) {
+        return limits[index];
+    }// Ende getLimit(int)
+
+}// Ende class
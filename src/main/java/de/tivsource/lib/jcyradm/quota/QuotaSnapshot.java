@@ -0,0 +1,534 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.tivsource.lib.jcyradm.protocol.ModifiedUtf7;
+
+/**
+ * Die Klasse QuotaSnapshot hält die Quota sehr vieler Mailboxen spaltenweise:
+ * die Namen in einem NameDictionary, benutzter Speicher und Grenze in zwei
+ * long Spalten (wahlweise außerhalb des Heaps) und die Domain als int Spalte.
+ * Eine Zeile kostet damit etwa 30 Bytes plus Name statt drei BigDecimal und
+ * eines String Objekts.
+ *
+ * <p>
+ * Gefüllt wird der Speicher entweder mit add() oder direkt aus den
+ * Antwortzeilen der GETQUOTA Kommandos (addQuotaLine, siehe QuotaScan), ohne
+ * Objekte je Mailbox. Abfragen laufen als einfache Schleifen über die
+ * Spalten. Alle Methoden sind synchronisiert, ein Abfrage-Thread kann also
+ * neben dem füllenden Thread laufen.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaSnapshot {
+
+    /**
+     * Präfix einer QUOTA Antwort.
+     */
+    private static final String QUOTA_RESPONSE = "* QUOTA ";
+
+    /**
+     * Ressource der Speicher-Quota.
+     */
+    private static final String STORAGE = "(STORAGE ";
+
+    /**
+     * Namen der Mailboxen (Quota-Roots), die Nummer ist die Zeile.
+     */
+    private final NameDictionary names = new NameDictionary();
+
+    /**
+     * Namen der Domains, Nummer 0 ist "keine Domain".
+     */
+    private final NameDictionary domainNames = new NameDictionary();
+
+    /**
+     * Benutzter Speicher in KB.
+     */
+    private final LongColumn used;
+
+    /**
+     * Grenze des Speichers in KB.
+     */
+    private final LongColumn limit;
+
+    /**
+     * Domain jeder Zeile.
+     */
+    private int[] domains = new int[1024];
+
+    /**
+     * Puffer für Namen die aus Antwortzeilen gelesen werden.
+     */
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    /**
+     * Puffer für dekodierte Namen.
+     */
+    private final StringBuilder decoded = new StringBuilder(64);
+
+    /**
+     * Konstruktor der Klasse QuotaSnapshot mit Spalten auf dem Heap.
+     */
+    public QuotaSnapshot() {
+        this(false);
+    }// Ende QuotaSnapshot()
+
+    /**
+     * Konstruktor der Klasse QuotaSnapshot.
+     *
+     * @param offHeap - True wenn die Spalten außerhalb des Heaps liegen
+     *            sollen.
+     */
+    public QuotaSnapshot(final boolean offHeap) {
+        super();
+        this.used = new LongColumn(offHeap);
+        this.limit = new LongColumn(offHeap);
+        this.domainNames.add("");
+    }// Ende QuotaSnapshot(boolean)
+
+    /**
+     * Setzt die Quota einer Mailbox, eine bekannte Mailbox wird
+     * überschrieben.
+     *
+     * @param mailbox - Name der Mailbox (i.e. "user.max@example.org").
+     * @param usedKb - Benutzter Speicher in KB.
+     * @param limitKb - Grenze des Speichers in KB.
+     * @return int - Zeile der Mailbox.
+     */
+    public final synchronized int add(final CharSequence mailbox,
+            final long usedKb, final long limitKb) {
+        int size = names.size();
+        int row = names.add(mailbox);
+        if (row == size) {
+            if (row >= domains.length) {
+                domains = Arrays.copyOf(domains, domains.length * 2);
+            }
+            domains[row] = domainOf(mailbox);
+        }
+        used.set(row, usedKb);
+        limit.set(row, limitKb);
+        return row;
+    }// Ende add(CharSequence, long, long)
+
+    /**
+     * Übernimmt eine QUOTA Antwort des Servers (i.e.
+     * "* QUOTA user.max (STORAGE 10 1024)"). Der Name wird aus
+     * Anführungszeichen und modifiziertem UTF-7 gelöst.
+     *
+     * @param line - Die Antwortzeile.
+     * @return int - Zeile der Mailbox oder -1 wenn die Antwort keine
+     *         STORAGE Quota enthält.
+     */
+    public final synchronized int addQuotaLine(final CharSequence line) {
+        if (!startsWith(line, 0, QUOTA_RESPONSE)) {
+            return -1;
+        }
+        int position = QUOTA_RESPONSE.length();
+        scratch.setLength(0);
+        if (position < line.length() && line.charAt(position) == '"') {
+            position++;
+            while (position < line.length() && line.charAt(position) != '"') {
+                char c = line.charAt(position++);
+                if (c == '\\' && position < line.length()) {
+                    c = line.charAt(position++);
+                }
+                scratch.append(c);
+            }
+            position++;
+        } else {
+            while (position < line.length() && line.charAt(position) != ' ') {
+                scratch.append(line.charAt(position++));
+            }
+        }
+
+        int storage = indexOf(line, STORAGE, position);
+        if (storage < 0) {
+            return -1;
+        }
+        position = storage + STORAGE.length();
+        long usedKb = 0;
+        while (position < line.length() && isDigit(line.charAt(position))) {
+            usedKb = usedKb * 10 + (line.charAt(position++) - '0');
+        }
+        position++;
+        long limitKb = 0;
+        while (position < line.length() && isDigit(line.charAt(position))) {
+            limitKb = limitKb * 10 + (line.charAt(position++) - '0');
+        }
+
+        CharSequence mailbox = scratch;
+        if (indexOf(scratch, "&", 0) >= 0) {
+            decoded.setLength(0);
+            try {
+                ModifiedUtf7.decode(scratch, decoded);
+                mailbox = decoded;
+            } catch (IllegalArgumentException e) {
+                mailbox = scratch;
+            }
+        }
+        return add(mailbox, usedKb, limitKb);
+    }// Ende addQuotaLine(CharSequence)
+
+    /**
+     * Liefert die Zeile einer Mailbox.
+     *
+     * @param mailbox - Name der Mailbox.
+     * @return int - Zeile oder -1 wenn die Mailbox unbekannt ist.
+     */
+    public final synchronized int find(final CharSequence mailbox) {
+        return names.find(mailbox);
+    }// Ende find(CharSequence)
+
+    /**
+     * Liefert die Anzahl der Mailboxen.
+     *
+     * @return int - Anzahl der Zeilen.
+     */
+    public final synchronized int size() {
+        return names.size();
+    }// Ende size()
+
+    /**
+     * Liefert den Namen einer Zeile.
+     *
+     * @param row - Die Zeile.
+     * @return String - Name der Mailbox.
+     */
+    public final synchronized String getName(final int row) {
+        return names.get(row);
+    }// Ende getName(int)
+
+    /**
+     * Liefert den benutzten Speicher einer Zeile.
+     *
+     * @param row - Die Zeile.
+     * @return long - Benutzter Speicher in KB.
+     */
+    public final synchronized long getUsed(final int row) {
+        return used.get(row);
+    }// Ende getUsed(int)
+
+    /**
+     * Liefert die Grenze einer Zeile.
+     *
+     * @param row - Die Zeile.
+     * @return long - Grenze in KB.
+     */
+    public final synchronized long getLimit(final int row) {
+        return limit.get(row);
+    }// Ende getLimit(int)
+
+    /**
+     * Liefert die Auslastung einer Zeile.
+     *
+     * @param row - Die Zeile.
+     * @return double - Auslastung in Prozent, 0 ohne Grenze.
+     */
+    public final synchronized double getLoad(final int row) {
+        return load(row);
+    }// Ende getLoad(int)
+
+    /**
+     * Liefert die Domain einer Zeile.
+     *
+     * @param row - Die Zeile.
+     * @return String - Domain oder "" ohne Domain.
+     */
+    public final synchronized String getDomain(final int row) {
+        return domainNames.get(domains[row]);
+    }// Ende getDomain(int)
+
+    /**
+     * Liefert die Zeilen mit der höchsten Auslastung.
+     *
+     * @param count - Maximale Anzahl der Zeilen.
+     * @return int[] - Zeilen, die höchste Auslastung zuerst.
+     */
+    public final synchronized int[] topByLoad(final int count) {
+        int size = names.size();
+        int n = Math.min(count, size);
+        if (n <= 0) {
+            return new int[0];
+        }
+        /*
+         * Min-Heap der besten n Zeilen, die Wurzel ist die schlechteste.
+         */
+        int[] heap = new int[n];
+        double[] keys = new double[n];
+        int filled = 0;
+        for (int row = 0; row < size; row++) {
+            double key = load(row);
+            if (filled < n) {
+                heap[filled] = row;
+                keys[filled] = key;
+                siftUp(heap, keys, filled++);
+            } else if (key > keys[0]) {
+                heap[0] = row;
+                keys[0] = key;
+                siftDown(heap, keys, n);
+            }
+        }
+        int[] result = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[i];
+            keys[0] = keys[i];
+            siftDown(heap, keys, i);
+        }
+        return result;
+    }// Ende topByLoad(int)
+
+    /**
+     * Liefert alle Zeilen ab einer Auslastung.
+     *
+     * @param percent - Mindest-Auslastung in Prozent (i.e. 90).
+     * @return int[] - Zeilen in aufsteigender Reihenfolge.
+     */
+    public final synchronized int[] atLeast(final double percent) {
+        int size = names.size();
+        int[] result = new int[Math.min(size, 64)];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (load(row) >= percent) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, result.length * 2);
+                }
+                result[count++] = row;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }// Ende atLeast(double)
+
+    /**
+     * Liefert ein Perzentil der Auslastung.
+     *
+     * @param percentile - Das Perzentil zwischen 0 und 1 (i.e. 0.99).
+     * @return double - Auslastung in Prozent, 0 wenn der Speicher leer ist.
+     */
+    public final synchronized double loadPercentile(final double percentile) {
+        int size = names.size();
+        if (size == 0) {
+            return 0.0;
+        }
+        double[] loads = new double[size];
+        for (int row = 0; row < size; row++) {
+            loads[row] = load(row);
+        }
+        return select(loads, rank(percentile, size));
+    }// Ende loadPercentile(double)
+
+    /**
+     * Liefert ein Perzentil des benutzten Speichers.
+     *
+     * @param percentile - Das Perzentil zwischen 0 und 1 (i.e. 0.5).
+     * @return long - Benutzter Speicher in KB, 0 wenn der Speicher leer ist.
+     */
+    public final synchronized long usedPercentile(final double percentile) {
+        int size = names.size();
+        if (size == 0) {
+            return 0L;
+        }
+        double[] values = new double[size];
+        for (int row = 0; row < size; row++) {
+            values[row] = used.get(row);
+        }
+        return (long) select(values, rank(percentile, size));
+    }// Ende usedPercentile(double)
+
+    /**
+     * Liefert je Domain ein Histogramm der Auslastung. Die Auslastung wird in
+     * gleich breite Bereiche von 0 bis 100 Prozent geteilt, höhere Werte
+     * fallen in den letzten Bereich.
+     *
+     * @param buckets - Anzahl der Bereiche (i.e. 10).
+     * @return Map - Domain/Anzahl je Bereich, "" für Mailboxen ohne Domain.
+     */
+    public final synchronized Map<String, long[]> loadHistogramByDomain(
+            final int buckets) {
+        long[][] counts = new long[domainNames.size()][];
+        int size = names.size();
+        for (int row = 0; row < size; row++) {
+            int domain = domains[row];
+            if (counts[domain] == null) {
+                counts[domain] = new long[buckets];
+            }
+            int bucket = (int) (load(row) * buckets / 100.0);
+            counts[domain][Math.max(0, Math.min(buckets - 1, bucket))]++;
+        }
+        Map<String, long[]> result = new LinkedHashMap<String, long[]>();
+        for (int domain = 0; domain < counts.length; domain++) {
+            if (counts[domain] != null) {
+                result.put(domainNames.get(domain), counts[domain]);
+            }
+        }
+        return result;
+    }// Ende loadHistogramByDomain(int)
+
+    /**
+     * Liefert den belegten Speicher auf und außerhalb des Heaps.
+     *
+     * @return long - Ungefähre Größe in Bytes.
+     */
+    public final synchronized long memoryUsage() {
+        return names.memoryUsage() + domainNames.memoryUsage()
+                + used.memoryUsage() + limit.memoryUsage()
+                + domains.length * 4L;
+    }// Ende memoryUsage()
+
+    /**
+     * Hilfs-Methode die die Auslastung einer Zeile berechnet.
+     */
+    private double load(final int row) {
+        long max = limit.get(row);
+        return max <= 0 ? 0.0 : used.get(row) * 100.0 / max;
+    }// Ende load(int)
+
+    /**
+     * Hilfs-Methode die die Domain eines Namens einträgt.
+     */
+    private int domainOf(final CharSequence mailbox) {
+        for (int i = mailbox.length() - 1; i >= 0; i--) {
+            if (mailbox.charAt(i) == '@') {
+                return domainNames.add(
+                        mailbox.subSequence(i + 1, mailbox.length()));
+            }
+        }
+        return 0;
+    }// Ende domainOf(CharSequence)
+
+    /**
+     * Hilfs-Methode die den Rang eines Perzentils berechnet.
+     */
+    private static int rank(final double percentile, final int size) {
+        int rank = (int) Math.ceil(percentile * size) - 1;
+        return Math.max(0, Math.min(size - 1, rank));
+    }// Ende rank(double, int)
+
+    /**
+     * Hilfs-Methode die den k-kleinsten Wert sucht (Quickselect).
+     */
+    private static double select(final double[] values, final int k) {
+        int left = 0;
+        int right = values.length - 1;
+        while (left < right) {
+            double pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return values[k];
+            }
+        }
+        return values[k];
+    }// Ende select(double[], int)
+
+    /**
+     * Hilfs-Methode die ein Element im Min-Heap nach oben schiebt.
+     */
+    private static void siftUp(final int[] heap, final double[] keys,
+            final int from) {
+        int child = from;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (keys[parent] <= keys[child]) {
+                return;
+            }
+            swap(heap, keys, parent, child);
+            child = parent;
+        }
+    }// Ende siftUp(int[], double[], int)
+
+    /**
+     * Hilfs-Methode die die Wurzel im Min-Heap nach unten schiebt.
+     */
+    private static void siftDown(final int[] heap, final double[] keys,
+            final int size) {
+        int parent = 0;
+        while (true) {
+            int child = parent * 2 + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[parent] <= keys[child]) {
+                return;
+            }
+            swap(heap, keys, parent, child);
+            parent = child;
+        }
+    }// Ende siftDown(int[], double[], int)
+
+    /**
+     * Hilfs-Methode die zwei Heap-Elemente tauscht.
+     */
+    private static void swap(final int[] heap, final double[] keys,
+            final int a, final int b) {
+        int row = heap[a];
+        heap[a] = heap[b];
+        heap[b] = row;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }// Ende swap(int[], double[], int, int)
+
+    /**
+     * Hilfs-Methode die prüft ob eine Zeichenfolge an einer Stelle mit einem
+     * Präfix beginnt.
+     */
+    private static boolean startsWith(final CharSequence text, final int from,
+            final String prefix) {
+        if (text.length() - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }// Ende startsWith(CharSequence, int, String)
+
+    /**
+     * Hilfs-Methode die eine Zeichenfolge sucht.
+     */
+    private static int indexOf(final CharSequence text, final String part,
+            final int from) {
+        for (int i = from; i <= text.length() - part.length(); i++) {
+            if (startsWith(text, i, part)) {
+                return i;
+            }
+        }
+        return -1;
+    }// Ende indexOf(CharSequence, String, int)
+
+    /**
+     * Hilfs-Methode die prüft ob ein Zeichen eine Ziffer ist.
+     */
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }// Ende isDigit(char)
+
+}// Ende class
@@ -0,0 +1,23 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+
+/**
+ * Schnittstelle für Quellen aus denen der QuotaWatcher die aktuelle Quota
+ * einer Mailbox abfragt.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface QuotaSource {
+
+    /**
+     * Fragt die Quota einer Mailbox ab.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     * @return Quota - Die aktuelle Quota.
+     * @throws Exception - Wenn die Abfrage fehlgeschlagen ist.
+     */
+    Quota fetch(String mailbox) throws Exception;
+
+}// Ende interface
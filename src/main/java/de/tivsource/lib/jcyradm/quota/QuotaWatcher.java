@@ -0,0 +1,568 @@
+package de.tivsource.lib.jcyradm.quota;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+
+/**
+ * Die Klasse QuotaWatcher fragt die Quota der beobachteten Mailboxen im
+ * Hintergrund ab und meldet das Über- und Unterschreiten von Schwellen an
+ * die QuotaListener.
+ *
+ * <p>
+ * Jede Mailbox wird mindestens einmal je Zyklus abgefragt. Die erste Abfrage
+ * liegt anhand des Namens gleichmäßig verteilt im Zyklus, danach folgt jede
+ * Mailbox ihrem eigenen Takt, die Abfragen verteilen sich also gleichmäßig
+ * über den Zyklus statt als Welle zu kommen. Mailboxen über der Schwelle
+ * "nearFull" und Mailboxen die beim aktuellen Wachstum innerhalb eines
+ * Zyklus voll wären, werden entsprechend öfter abgefragt, aber nie öfter als
+ * das minimale Intervall.
+ * </p>
+ *
+ * <p>
+ * Es läuft immer nur eine Abfrage, zusätzlich begrenzt ein TokenBucket die
+ * Abfragen je Sekunde. Die Last auf dem Server bleibt damit flach und nach
+ * oben begrenzt, auch wenn viele Mailboxen gleichzeitig fällig werden.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaWatcher {
+
+    /**
+     * Statischer Logger der Klasse QuotaWatcher.
+     */
+    private static final Logger LOGGER = Logger.getLogger(QuotaWatcher.class);
+
+    /**
+     * Standard Schwellen in Prozent.
+     */
+    private static final double[] DEFAULT_THRESHOLDS = {80.0, 90.0, 100.0};
+
+    /**
+     * Standard Auslastung in Prozent ab der öfter abgefragt wird.
+     */
+    private static final double DEFAULT_NEAR_FULL = 90.0;
+
+    /**
+     * Anteil der Zeit bis die Mailbox voll ist, nach dem wieder abgefragt
+     * wird.
+     */
+    private static final int TIME_TO_FULL_DIVISOR = 4;
+
+    /**
+     * Teiler des Zyklus für das Intervall naher voller Mailboxen.
+     */
+    private static final int NEAR_FULL_DIVISOR = 8;
+
+    /**
+     * Gewicht einer neuen Messung im gleitenden Mittel des Wachstums.
+     */
+    private static final double GROWTH_WEIGHT = 0.5;
+
+    /**
+     * Millisekunden je Sekunde.
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * Nanosekunden je Millisekunde.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Quelle der Quota.
+     */
+    private final QuotaSource source;
+
+    /**
+     * Zyklus in Millisekunden in dem jede Mailbox abgefragt wird.
+     */
+    private final long cycle;
+
+    /**
+     * Begrenzt die Abfragen je Sekunde.
+     */
+    private final TokenBucket rateLimit;
+
+    /**
+     * Beobachtete Mailboxen.
+     */
+    private final Map<String, Watch> watches = new HashMap<String, Watch>();
+
+    /**
+     * Beobachtete Mailboxen sortiert nach der nächsten Abfrage.
+     */
+    private final PriorityQueue<Watch> due = new PriorityQueue<Watch>();
+
+    /**
+     * Empfänger der Meldungen.
+     */
+    private final List<QuotaListener> listeners =
+            new CopyOnWriteArrayList<QuotaListener>();
+
+    /**
+     * Anzahl der Abfragen.
+     */
+    private final AtomicLong polls = new AtomicLong();
+
+    /**
+     * Anzahl der fehlgeschlagenen Abfragen.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Schwellen in Prozent, aufsteigend sortiert.
+     */
+    private volatile double[] thresholds = DEFAULT_THRESHOLDS.clone();
+
+    /**
+     * Auslastung in Prozent ab der öfter abgefragt wird.
+     */
+    private volatile double nearFull = DEFAULT_NEAR_FULL;
+
+    /**
+     * Minimales Intervall in Millisekunden zwischen zwei Abfragen einer
+     * Mailbox.
+     */
+    private volatile long minInterval;
+
+    /**
+     * Speicher in den alle Abfragen übernommen werden, null wenn keiner.
+     */
+    private volatile QuotaSnapshot snapshot;
+
+    /**
+     * Historie in die alle Abfragen geschrieben werden, null wenn keine.
+     */
+    private volatile QuotaHistory history;
+
+    /**
+     * Thread der die Abfragen ausführt.
+     */
+    private Thread worker;
+
+    /**
+     * Wird gesetzt solange der Watcher läuft.
+     */
+    private volatile boolean running;
+
+    /**
+     * Konstruktor der Klasse QuotaWatcher.
+     *
+     * @param quotaSource - Quelle der Quota, i.e. eine PoolQuotaSource.
+     * @param cycleMillis - Zyklus in Millisekunden in dem jede Mailbox
+     *            mindestens einmal abgefragt wird.
+     * @param maxPollsPerSecond - Maximale Anzahl der Abfragen je Sekunde.
+     */
+    public QuotaWatcher(final QuotaSource quotaSource, final long cycleMillis,
+            final double maxPollsPerSecond) {
+        super();
+        this.source = quotaSource;
+        this.cycle = Math.max(1L, cycleMillis);
+        this.minInterval = Math.max(1L, cycle / (NEAR_FULL_DIVISOR * 2));
+        this.rateLimit = new TokenBucket(maxPollsPerSecond, 1);
+    }// Ende QuotaWatcher(QuotaSource, long, double)
+
+    /**
+     * Nimmt eine Mailbox in die Beobachtung auf. Die erste Abfrage liegt
+     * anhand des Namens verteilt im ersten Zyklus.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     */
+    public final void watch(final String mailbox) {
+        synchronized (due) {
+            if (watches.containsKey(mailbox)) {
+                return;
+            }
+            Watch watch = new Watch(mailbox);
+            long offset = (mailbox.hashCode() & 0xFFFFL) * cycle / 0x10000L;
+            watch.next = now() + offset;
+            watches.put(mailbox, watch);
+            due.add(watch);
+            due.notifyAll();
+        }
+    }// Ende watch(String)
+
+    /**
+     * Nimmt eine Mailbox aus der Beobachtung.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     */
+    public final void unwatch(final String mailbox) {
+        synchronized (due) {
+            Watch watch = watches.remove(mailbox);
+            if (watch != null) {
+                due.remove(watch);
+            }
+        }
+    }// Ende unwatch(String)
+
+    /**
+     * Liefert die Anzahl der beobachteten Mailboxen.
+     *
+     * @return int - Beobachtete Mailboxen.
+     */
+    public final int getWatched() {
+        synchronized (due) {
+            return watches.size();
+        }
+    }// Ende getWatched()
+
+    /**
+     * Liefert die zuletzt abgefragte Quota einer Mailbox.
+     *
+     * @param mailbox - Mailbox ohne "user." Präfix.
+     * @return Quota - Die Quota oder null wenn noch nicht abgefragt.
+     */
+    public final Quota getQuota(final String mailbox) {
+        synchronized (due) {
+            Watch watch = watches.get(mailbox);
+            return watch == null ? null : watch.quota;
+        }
+    }// Ende getQuota(String)
+
+    /**
+     * Fügt einen Empfänger der Meldungen hinzu.
+     *
+     * @param listener - Der Empfänger.
+     */
+    public final void addListener(final QuotaListener listener) {
+        listeners.add(listener);
+    }// Ende addListener(QuotaListener)
+
+    /**
+     * Entfernt einen Empfänger der Meldungen.
+     *
+     * @param listener - Der Empfänger.
+     */
+    public final void removeListener(final QuotaListener listener) {
+        listeners.remove(listener);
+    }// Ende removeListener(QuotaListener)
+
+    /**
+     * Setzt die Schwellen deren Über- und Unterschreiten gemeldet wird.
+     *
+     * @param percents - Schwellen in Prozent.
+     */
+    public final void setThresholds(final double... percents) {
+        double[] sorted = percents.clone();
+        Arrays.sort(sorted);
+        this.thresholds = sorted;
+    }// Ende setThresholds(double...)
+
+    /**
+     * Setzt die Auslastung ab der eine Mailbox öfter abgefragt wird.
+     *
+     * @param percent - Auslastung in Prozent.
+     */
+    public final void setNearFull(final double percent) {
+        this.nearFull = percent;
+    }// Ende setNearFull(double)
+
+    /**
+     * Setzt das minimale Intervall zwischen zwei Abfragen einer Mailbox.
+     *
+     * @param millis - Intervall in Millisekunden.
+     */
+    public final void setMinInterval(final long millis) {
+        this.minInterval = Math.max(1L, Math.min(millis, cycle));
+    }// Ende setMinInterval(long)
+
+    /**
+     * Ändert die maximale Anzahl der Abfragen je Sekunde.
+     *
+     * @param pollsPerSecond - Abfragen je Sekunde.
+     */
+    public final void setRate(final double pollsPerSecond) {
+        rateLimit.setRate(pollsPerSecond);
+    }// Ende setRate(double)
+
+    /**
+     * Setzt den Speicher in den alle Abfragen übernommen werden.
+     *
+     * @param quotaSnapshot - Der Speicher, null wenn keiner.
+     */
+    public final void setSnapshot(final QuotaSnapshot quotaSnapshot) {
+        this.snapshot = quotaSnapshot;
+    }// Ende setSnapshot(QuotaSnapshot)
+
+    /**
+     * Setzt die Historie in die alle Abfragen geschrieben werden.
+     *
+     * @param quotaHistory - Die Historie, null wenn keine.
+     */
+    public final void setHistory(final QuotaHistory quotaHistory) {
+        this.history = quotaHistory;
+    }// Ende setHistory(QuotaHistory)
+
+    /**
+     * Liefert die Anzahl der bisherigen Abfragen.
+     *
+     * @return long - Abfragen.
+     */
+    public final long getPolls() {
+        return polls.get();
+    }// Ende getPolls()
+
+    /**
+     * Liefert die Anzahl der fehlgeschlagenen Abfragen.
+     *
+     * @return long - Fehlgeschlagene Abfragen.
+     */
+    public final long getFailures() {
+        return failures.get();
+    }// Ende getFailures()
+
+    /**
+     * Startet den Hintergrund-Thread.
+     */
+    public final synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "jcyradm-quota-watcher");
+        worker.setDaemon(true);
+        worker.start();
+    }// Ende start()
+
+    /**
+     * Hält den Hintergrund-Thread an und wartet auf sein Ende.
+     *
+     * @throws InterruptedException - Wenn der Thread beim Warten unterbrochen
+     *             wurde.
+     */
+    public final synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join();
+        worker = null;
+    }// Ende stop()
+
+    /**
+     * Berechnet das Intervall bis zur nächsten Abfrage einer Mailbox.
+     *
+     * @param quota - Die zuletzt abgefragte Quota.
+     * @param growthKbPerSecond - Gemessenes Wachstum in KB je Sekunde.
+     * @return long - Intervall in Millisekunden, zwischen dem minimalen
+     *         Intervall und dem Zyklus.
+     */
+    public final long interval(final Quota quota,
+            final double growthKbPerSecond) {
+        long interval = cycle;
+        if (quota.getLimit() > 0 && quota.getLoad() >= nearFull) {
+            interval = cycle / NEAR_FULL_DIVISOR;
+        }
+        if (growthKbPerSecond > 0 && quota.getLimit() > 0) {
+            long free = Math.max(0L, quota.getLimit() - quota.getUsed());
+            double toFull = free / growthKbPerSecond * MILLIS_PER_SECOND;
+            interval = Math.min(interval,
+                    (long) (toFull / TIME_TO_FULL_DIVISOR));
+        }
+        return Math.max(minInterval, Math.min(interval, cycle));
+    }// Ende interval(Quota, double)
+
+    /**
+     * Hilfs-Methode die die fälligen Mailboxen nacheinander abfragt.
+     */
+    private void loop() {
+        while (running) {
+            Watch watch = null;
+            try {
+                watch = next();
+                rateLimit.acquire();
+            } catch (InterruptedException e) {
+                if (watch != null) {
+                    /*
+                     * next() hat die Mailbox schon aus der Warteschlange
+                     * genommen, für den nächsten start() zurücklegen.
+                     */
+                    synchronized (due) {
+                        if (watches.get(watch.mailbox) == watch) {
+                            due.add(watch);
+                        }
+                    }
+                }
+                break;
+            }
+            poll(watch);
+        }
+    }// Ende loop()
+
+    /**
+     * Hilfs-Methode die auf die nächste fällige Mailbox wartet.
+     */
+    private Watch next() throws InterruptedException {
+        synchronized (due) {
+            while (true) {
+                Watch head = due.peek();
+                if (head == null) {
+                    due.wait();
+                    continue;
+                }
+                long wait = head.next - now();
+                if (wait > 0) {
+                    due.wait(wait);
+                    continue;
+                }
+                return due.poll();
+            }
+        }
+    }// Ende next()
+
+    /**
+     * Hilfs-Methode die eine Mailbox abfragt, die Schwellen prüft und die
+     * nächste Abfrage einplant.
+     */
+    private void poll(final Watch watch) {
+        Quota quota = null;
+        try {
+            quota = source.fetch(watch.mailbox);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            LOGGER.warn("Quota von " + watch.mailbox
+                    + " nicht abfragbar: " + e.getMessage());
+        }
+        polls.incrementAndGet();
+        long time = now();
+
+        Quota previous;
+        synchronized (due) {
+            previous = watch.quota;
+            if (quota != null) {
+                if (previous != null && time > watch.polled) {
+                    double rate = (quota.getUsed() - previous.getUsed())
+                            * MILLIS_PER_SECOND / (time - watch.polled);
+                    watch.growth = GROWTH_WEIGHT * rate
+                            + (1.0 - GROWTH_WEIGHT) * watch.growth;
+                }
+                watch.quota = quota;
+                watch.polled = time;
+            }
+            if (watches.get(watch.mailbox) == watch) {
+                watch.next = time + (watch.quota == null ? cycle
+                        : interval(watch.quota, watch.growth));
+                due.add(watch);
+            }
+        }
+
+        if (quota == null) {
+            return;
+        }
+        QuotaSnapshot store = snapshot;
+        if (store != null) {
+            store.add(quota.getMailbox(), quota.getUsed(), quota.getLimit());
+        }
+        QuotaHistory samples = history;
+        if (samples != null) {
+            try {
+                samples.append(quota.getMailbox(),
+                        TimeUnit.MILLISECONDS.toSeconds(
+                                System.currentTimeMillis()),
+                        quota.getUsed(), quota.getLimit());
+            } catch (IOException e) {
+                LOGGER.warn("Quota-Historie nicht schreibbar: "
+                        + e.getMessage());
+            }
+        }
+        /*
+         * Die erste Abfrage zählt als Anstieg von 0, eine beim Start schon
+         * volle Mailbox wird sonst nie gemeldet.
+         */
+        notifyCrossings(previous == null ? 0.0 : previous.getLoad(), quota);
+    }// Ende poll(Watch)
+
+    /**
+     * Hilfs-Methode die die überschrittenen Schwellen meldet.
+     */
+    private void notifyCrossings(final double before, final Quota quota) {
+        double after = quota.getLoad();
+        for (double threshold : thresholds) {
+            boolean rising = before < threshold && after >= threshold;
+            boolean falling = before >= threshold && after < threshold;
+            if (!rising && !falling) {
+                continue;
+            }
+            for (QuotaListener listener : listeners) {
+                try {
+                    listener.thresholdCrossed(quota, threshold, rising);
+                } catch (RuntimeException e) {
+                    LOGGER.error("QuotaListener fehlgeschlagen", e);
+                }
+            }
+        }
+    }// Ende notifyCrossings(double, Quota)
+
+    /**
+     * Hilfs-Methode die die aktuelle Zeit in Millisekunden liefert.
+     */
+    private static long now() {
+        return System.nanoTime() / NANOS_PER_MILLI;
+    }// Ende now()
+
+    /**
+     * Zustand einer beobachteten Mailbox.
+     */
+    private static final class Watch implements Comparable<Watch> {
+
+        /**
+         * Name der Mailbox.
+         */
+        private final String mailbox;
+
+        /**
+         * Zeitpunkt in Millisekunden der nächsten Abfrage.
+         */
+        private long next;
+
+        /**
+         * Zeitpunkt in Millisekunden der letzten erfolgreichen Abfrage.
+         */
+        private long polled;
+
+        /**
+         * Zuletzt abgefragte Quota, null wenn noch keine.
+         */
+        private Quota quota;
+
+        /**
+         * Gleitendes Mittel des Wachstums in KB je Sekunde.
+         */
+        private double growth;
+
+        /**
+         * Konstruktor der Klasse Watch.
+         */
+        private Watch(final String name) {
+            this.mailbox = name;
+        }// Ende Watch(String)
+
+        @Override
+        public int compareTo(final Watch other) {
+            return next < other.next ? -1 : (next == other.next ? 0 : 1);
+        }// Ende compareTo(Watch)
+
+    }// Ende class Watch
+
+}// Ende class
@@ -0,0 +1,10 @@
+/**
+ * In diesem Paket befinden sich die Klassen zur Auswertung der Quota vieler
+ * Mailboxen, i.e. der spaltenweise Speicher für Quota-Abfragen, der
+ * Watcher der die Quota im Hintergrund beobachtet und die Historie der
+ * Quota über lange Zeiträume.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.quota;
@@ -0,0 +1,22 @@
+package de.tivsource.lib.jcyradm.report;
+
+/**
+ * Format eines Berichts.
+ *
+ * @author Marc Michele
+ *
+ */
+public enum ReportFormat {
+
+    /**
+     * Eine Kopfzeile mit den Spalten, dann eine Zeile je Eintrag, Felder
+     * durch Komma getrennt und bei Bedarf in Anführungszeichen (RFC 4180).
+     */
+    CSV,
+
+    /**
+     * Ein JSON Objekt je Zeile (i.e. {"mailbox":"user.max","used":10}).
+     */
+    JSONL;
+
+}// Ende enum
@@ -0,0 +1,505 @@
+package de.tivsource.lib.jcyradm.report;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Die Klasse ReportWriter schreibt einen Bericht Feld für Feld als CSV oder
+ * JSONL in einen Kanal. Die Felder gehen über einen festen Zeichen- und
+ * Byte-Puffer direkt in den Kanal, je Zeile entsteht weder ein String noch
+ * ein Byte-Array, der Speicher ist also unabhängig von der Größe des
+ * Berichts.
+ * <p>
+ * Mit einer Datei kann der Bericht bei Erreichen einer Größe auf mehrere
+ * Teile verteilt werden ("quota.csv.gz", "quota.1.csv.gz", ...). Jeder Teil
+ * ist für sich vollständig, i.e. mit eigener CSV Kopfzeile und eigenem
+ * gzip Strom, gewechselt wird nur zwischen zwei Zeilen. Die Klasse ist
+ * nicht threadsicher.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class ReportWriter implements Closeable {
+
+    /**
+     * Zeichensatz der Berichte.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Größe des Zeichen-Puffers.
+     */
+    private static final int CHAR_BUFFER = 8192;
+
+    /**
+     * Größe des Byte-Puffers, gleichzeitig die Größe eines Schreibvorgangs.
+     */
+    private static final int BYTE_BUFFER = 65536;
+
+    /**
+     * Format des Berichts.
+     */
+    private final ReportFormat format;
+
+    /**
+     * Namen der Spalten.
+     */
+    private final String[] columns;
+
+    /**
+     * Ob komprimiert wird.
+     */
+    private final boolean gzip;
+
+    /**
+     * Datei des ersten Teils, null wenn in einen fremden Kanal geschrieben
+     * wird.
+     */
+    private final File file;
+
+    /**
+     * Größe ab der ein neuer Teil begonnen wird, 0 für keine Teile.
+     */
+    private final long maxBytes;
+
+    /**
+     * Zeichen die noch nicht kodiert sind.
+     */
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER);
+
+    /**
+     * Kodierte Bytes die noch nicht geschrieben sind.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocate(BYTE_BUFFER);
+
+    /**
+     * Kodierer für UTF-8, wird für jeden Teil zurückgesetzt.
+     */
+    private final CharsetEncoder encoder = UTF8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * Puffer für die Ziffern einer Zahl.
+     */
+    private final char[] digits = new char[20];
+
+    /**
+     * Kanal des aktuellen Teils, ohne Komprimierung.
+     */
+    private WritableByteChannel raw;
+
+    /**
+     * Ziel der kodierten Bytes, bei Komprimierung der gzip Strom.
+     */
+    private WritableByteChannel target;
+
+    /**
+     * Der gzip Strom des aktuellen Teils oder null.
+     */
+    private GZIPOutputStream compressor;
+
+    /**
+     * Geschriebene Bytes des aktuellen Teils, nach der Komprimierung.
+     */
+    private long partBytes;
+
+    /**
+     * Geschriebene Bytes aller Teile, nach der Komprimierung.
+     */
+    private long totalBytes;
+
+    /**
+     * Nummer des aktuellen Teils.
+     */
+    private int part;
+
+    /**
+     * Anzahl der Felder der aktuellen Zeile.
+     */
+    private int column;
+
+    /**
+     * Anzahl der geschriebenen Zeilen.
+     */
+    private long rows;
+
+    /**
+     * Konstruktor der Klasse ReportWriter für einen Kanal. Der Kanal wird
+     * beim Schließen nicht geschlossen.
+     *
+     * @param channel - Ziel des Berichts.
+     * @param reportFormat - CSV oder JSONL.
+     * @param compress - True für gzip.
+     * @param columnNames - Namen der Spalten.
+     * @throws IOException - Wenn die Kopfzeile nicht geschrieben werden
+     *             kann.
+     */
+    public ReportWriter(final WritableByteChannel channel,
+            final ReportFormat reportFormat, final boolean compress,
+            final String... columnNames) throws IOException {
+        this(null, channel, reportFormat, compress, 0L, columnNames);
+    }// Ende ReportWriter(WritableByteChannel, ReportFormat, boolean, ...)
+
+    /**
+     * Konstruktor der Klasse ReportWriter für eine Datei, eine bestehende
+     * Datei wird überschrieben.
+     *
+     * @param reportFile - Datei des ersten Teils.
+     * @param reportFormat - CSV oder JSONL.
+     * @param compress - True für gzip.
+     * @param maxPartBytes - Größe eines Teils in Bytes, 0 für eine Datei.
+     * @param columnNames - Namen der Spalten.
+     * @throws IOException - Wenn die Datei nicht geöffnet werden kann.
+     */
+    public ReportWriter(final File reportFile,
+            final ReportFormat reportFormat, final boolean compress,
+            final long maxPartBytes, final String... columnNames)
+            throws IOException {
+        this(reportFile, null, reportFormat, compress,
+                Math.max(0L, maxPartBytes), columnNames);
+    }// Ende ReportWriter(File, ReportFormat, boolean, long, ...)
+
+    /**
+     * Gemeinsamer Konstruktor.
+     */
+    private ReportWriter(final File reportFile,
+            final WritableByteChannel channel,
+            final ReportFormat reportFormat, final boolean compress,
+            final long maxPartBytes, final String[] columnNames)
+            throws IOException {
+        super();
+        if (columnNames.length == 0) {
+            throw new IllegalArgumentException("no columns");
+        }
+        this.file = reportFile;
+        this.format = reportFormat;
+        this.gzip = compress;
+        this.maxBytes = maxPartBytes;
+        this.columns = columnNames.clone();
+        open(channel);
+    }// Ende ReportWriter(File, WritableByteChannel, ...)
+
+    /**
+     * Schreibt das nächste Feld der Zeile als Text.
+     *
+     * @param value - Der Wert, null für ein leeres Feld.
+     * @throws IOException - Wenn nicht geschrieben werden kann.
+     */
+    public final void field(final CharSequence value) throws IOException {
+        separate();
+        if (value == null) {
+            put(format == ReportFormat.JSONL ? "null" : "");
+        } else if (format == ReportFormat.JSONL) {
+            json(value);
+        } else {
+            csv(value);
+        }
+    }// Ende field(CharSequence)
+
+    /**
+     * Schreibt das nächste Feld der Zeile als Zahl.
+     *
+     * @param value - Der Wert.
+     * @throws IOException - Wenn nicht geschrieben werden kann.
+     */
+    public final void field(final long value) throws IOException {
+        separate();
+        long rest = value;
+        if (rest < 0) {
+            put('-');
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        while (position < digits.length) {
+            put(digits[position++]);
+        }
+    }// Ende field(long)
+
+    /**
+     * Schließt die Zeile ab. Ist der aktuelle Teil voll, beginnt danach ein
+     * neuer.
+     *
+     * @throws IOException - Wenn nicht geschrieben werden kann.
+     */
+    public final void endRow() throws IOException {
+        if (column != columns.length) {
+            throw new IllegalStateException("row has " + column + " of "
+                    + columns.length + " fields");
+        }
+        if (format == ReportFormat.JSONL) {
+            put('}');
+        }
+        put('\n');
+        column = 0;
+        rows++;
+        if (maxBytes > 0 && pending() + partBytes >= maxBytes) {
+            finishPart();
+            part++;
+            open(null);
+        }
+    }// Ende endRow()
+
+    /**
+     * Schreibt alle gepufferten Zeilen in den Kanal.
+     *
+     * @throws IOException - Wenn nicht geschrieben werden kann.
+     */
+    public final void flush() throws IOException {
+        encode(false);
+        writeBytes();
+        if (compressor != null) {
+            compressor.flush();
+        }
+    }// Ende flush()
+
+    @Override
+    public final void close() throws IOException {
+        if (target != null) {
+            finishPart();
+            target = null;
+        }
+    }// Ende close()
+
+    /**
+     * Liefert die Anzahl der geschriebenen Zeilen.
+     *
+     * @return long - Zeilen ohne Kopfzeilen.
+     */
+    public final long getRows() {
+        return rows;
+    }// Ende getRows()
+
+    /**
+     * Liefert die Anzahl der Teile.
+     *
+     * @return int - Anzahl der begonnenen Dateien.
+     */
+    public final int getParts() {
+        return part + 1;
+    }// Ende getParts()
+
+    /**
+     * Liefert die Anzahl der geschriebenen Bytes.
+     *
+     * @return long - Bytes aller Teile nach der Komprimierung, ohne die
+     *         noch gepufferten.
+     */
+    public final long getBytesWritten() {
+        return totalBytes;
+    }// Ende getBytesWritten()
+
+    /**
+     * Liefert die Datei eines Teils.
+     *
+     * @param reportFile - Datei des ersten Teils.
+     * @param index - Nummer des Teils, 0 für den ersten.
+     * @return File - Die Datei, die Nummer steht vor den Endungen (i.e.
+     *         "quota.2.csv.gz").
+     */
+    public static File partFile(final File reportFile, final int index) {
+        if (index == 0) {
+            return reportFile;
+        }
+        String name = reportFile.getName();
+        int dot = name.indexOf('.', 1);
+        String partName = dot < 0 ? name + "." + index
+                : name.substring(0, dot) + "." + index + name.substring(dot);
+        return new File(reportFile.getParentFile(), partName);
+    }// Ende partFile(File, int)
+
+    /**
+     * Hilfs-Methode die einen Teil öffnet und die Kopfzeile schreibt.
+     */
+    private void open(final WritableByteChannel channel) throws IOException {
+        final WritableByteChannel output = channel != null ? channel
+                : new FileOutputStream(partFile(file, part)).getChannel();
+        partBytes = 0;
+        raw = new WritableByteChannel() {
+            @Override
+            public int write(final ByteBuffer src) throws IOException {
+                int count = output.write(src);
+                partBytes += count;
+                totalBytes += count;
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return output.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (file != null) {
+                    output.close();
+                }
+            }
+        };
+        if (gzip) {
+            compressor = new GZIPOutputStream(Channels.newOutputStream(raw),
+                    BYTE_BUFFER);
+            target = Channels.newChannel(compressor);
+        } else {
+            compressor = null;
+            target = raw;
+        }
+        if (format == ReportFormat.CSV) {
+            for (String name : columns) {
+                field(name);
+            }
+            put('\n');
+            column = 0;
+        }
+    }// Ende open(WritableByteChannel)
+
+    /**
+     * Hilfs-Methode die den aktuellen Teil vollständig schreibt und
+     * schließt.
+     */
+    private void finishPart() throws IOException {
+        encode(true);
+        writeBytes();
+        if (compressor != null) {
+            compressor.finish();
+        }
+        raw.close();
+    }// Ende finishPart()
+
+    /**
+     * Hilfs-Methode die das Trennzeichen vor einem Feld schreibt.
+     */
+    private void separate() throws IOException {
+        if (column >= columns.length) {
+            throw new IllegalStateException("too many fields");
+        }
+        if (format == ReportFormat.JSONL) {
+            put(column == 0 ? '{' : ',');
+            json(columns[column]);
+            put(':');
+        } else if (column > 0) {
+            put(',');
+        }
+        column++;
+    }// Ende separate()
+
+    /**
+     * Hilfs-Methode die einen Wert als CSV Feld schreibt, in
+     * Anführungszeichen nur wenn nötig.
+     */
+    private void csv(final CharSequence value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            put(value);
+            return;
+        }
+        put('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                put('"');
+            }
+            put(c);
+        }
+        put('"');
+    }// Ende csv(CharSequence)
+
+    /**
+     * Hilfs-Methode die einen Wert als JSON String schreibt.
+     */
+    private void json(final CharSequence value) throws IOException {
+        put('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if (c < ' ') {
+                put("\\u00");
+                put(Character.forDigit(c >> 4, 16));
+                put(Character.forDigit(c & 0xf, 16));
+            } else {
+                put(c);
+            }
+        }
+        put('"');
+    }// Ende json(CharSequence)
+
+    /**
+     * Hilfs-Methode die Zeichen in den Puffer schreibt.
+     */
+    private void put(final CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            put(value.charAt(i));
+        }
+    }// Ende put(CharSequence)
+
+    /**
+     * Hilfs-Methode die ein Zeichen in den Puffer schreibt.
+     */
+    private void put(final char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }// Ende put(char)
+
+    /**
+     * Hilfs-Methode die die gepufferten Zeichen kodiert, ein halbes
+     * Surrogat-Paar am Ende bleibt im Puffer.
+     */
+    private void encode(final boolean end) throws IOException {
+        chars.flip();
+        while (encoder.encode(chars, bytes, end).isOverflow()) {
+            writeBytes();
+        }
+        chars.compact();
+        if (end) {
+            CoderResult result = encoder.flush(bytes);
+            while (result.isOverflow()) {
+                writeBytes();
+                result = encoder.flush(bytes);
+            }
+            encoder.reset();
+        }
+    }// Ende encode(boolean)
+
+    /**
+     * Hilfs-Methode die die kodierten Bytes schreibt.
+     */
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            target.write(bytes);
+        }
+        bytes.clear();
+    }// Ende writeBytes()
+
+    /**
+     * Hilfs-Methode die die gepufferten Bytes des aktuellen Teils schätzt,
+     * komprimiert ist der Anteil unbekannt und wird nicht gezählt.
+     */
+    private long pending() {
+        return gzip ? 0L : chars.position() + bytes.position();
+    }// Ende pending()
+
+}// Ende class
@@ -0,0 +1,272 @@
+package de.tivsource.lib.jcyradm.report;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.CommandListener;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.quota.QuotaSnapshot;
+
+/**
+ * Die Klasse Reports schreibt die Quota und die Rechte vieler Mailboxen
+ * über einen ReportWriter. Die Abfragen laufen über eine Pipeline, jede
+ * Antwortzeile wird sofort als Zeile des Berichts geschrieben und nicht
+ * gesammelt. Die Namen der Mailboxen kommen aus einem Iterator (i.e. einer
+ * Datei oder einem MailboxTree) und werden erst beim Senden gelesen.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class Reports {
+
+    /**
+     * Präfix einer QUOTA Antwort.
+     */
+    private static final String QUOTA_RESPONSE = "* QUOTA ";
+
+    /**
+     * Präfix einer ACL Antwort.
+     */
+    private static final String ACL_RESPONSE = "* ACL ";
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private Reports() {
+        super();
+    }// Ende Reports()
+
+    /**
+     * Liefert die Spalten des Quota-Berichts.
+     *
+     * @return String[] - "mailbox", "used" und "limit", in KB.
+     */
+    public static String[] quotaColumns() {
+        return new String[] {"mailbox", "used", "limit"};
+    }// Ende quotaColumns()
+
+    /**
+     * Liefert die Spalten des Rechte-Berichts.
+     *
+     * @return String[] - "mailbox", "identifier" und "rights", eine Zeile je
+     *         Eintrag der ACL.
+     */
+    public static String[] aclColumns() {
+        return new String[] {"mailbox", "identifier", "rights"};
+    }// Ende aclColumns()
+
+    /**
+     * Fragt die Quota aller Mailboxen ab und schreibt eine Zeile je
+     * Mailbox mit Quota.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param writer - Bericht mit den Spalten aus quotaColumns().
+     * @return int - Anzahl der Mailboxen ohne Quota oder mit Fehler.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde oder der
+     *             Bericht nicht geschrieben werden kann.
+     */
+    public static int quota(final Pipeline pipeline,
+            final Iterator<String> mailboxes, final ReportWriter writer)
+            throws IOException {
+        return run(pipeline, mailboxes, new Export(writer, "GETQUOTA") {
+            @Override
+            void row(final String mailbox, final String line)
+                    throws IOException {
+                if (!line.startsWith(QUOTA_RESPONSE)) {
+                    return;
+                }
+                Quota quota = Quota.parse(mailbox, line);
+                if (quota != null) {
+                    writer.field(mailbox);
+                    writer.field(quota.getUsed());
+                    writer.field(quota.getLimit());
+                    writer.endRow();
+                }
+            }
+        });
+    }// Ende quota(Pipeline, Iterator<String>, ReportWriter)
+
+    /**
+     * Schreibt einen bereits erstellten QuotaSnapshot.
+     *
+     * @param snapshot - Der Snapshot.
+     * @param writer - Bericht mit den Spalten aus quotaColumns().
+     * @throws IOException - Wenn der Bericht nicht geschrieben werden kann.
+     */
+    public static void quota(final QuotaSnapshot snapshot,
+            final ReportWriter writer) throws IOException {
+        int size = snapshot.size();
+        for (int row = 0; row < size; row++) {
+            writer.field(snapshot.getName(row));
+            writer.field(snapshot.getUsed(row));
+            writer.field(snapshot.getLimit(row));
+            writer.endRow();
+        }
+    }// Ende quota(QuotaSnapshot, ReportWriter)
+
+    /**
+     * Fragt die Rechte aller Mailboxen ab und schreibt eine Zeile je
+     * Eintrag der ACL.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @param writer - Bericht mit den Spalten aus aclColumns().
+     * @return int - Anzahl der Mailboxen mit Fehler.
+     * @throws IOException - Wenn die Verbindung unterbrochen wurde oder der
+     *             Bericht nicht geschrieben werden kann.
+     */
+    public static int acl(final Pipeline pipeline,
+            final Iterator<String> mailboxes, final ReportWriter writer)
+            throws IOException {
+        return run(pipeline, mailboxes, new Export(writer, "GETACL") {
+            private final StringBuilder token = new StringBuilder(64);
+
+            @Override
+            void row(final String mailbox, final String line)
+                    throws IOException {
+                if (!line.startsWith(ACL_RESPONSE)) {
+                    return;
+                }
+                // Den Namen der Mailbox überspringen
+                int position = next(line, ACL_RESPONSE.length(), token);
+                while (position < line.length()) {
+                    writer.field(mailbox);
+                    position = next(line, position, token);
+                    writer.field(token);
+                    position = next(line, position, token);
+                    writer.field(token);
+                    writer.endRow();
+                }
+            }
+        });
+    }// Ende acl(Pipeline, Iterator<String>, ReportWriter)
+
+    /**
+     * Hilfs-Methode die die Kommandos sendet und auf alle Antworten wartet.
+     * Kann der Bericht nicht geschrieben werden, wird nichts mehr gesendet.
+     */
+    private static int run(final Pipeline pipeline,
+            final Iterator<String> mailboxes, final Export export)
+            throws IOException {
+        while (mailboxes.hasNext() && export.failure == null) {
+            pipeline.submit(export.command(mailboxes.next()));
+        }
+        pipeline.sync();
+        if (export.failure != null) {
+            throw export.failure;
+        }
+        export.writer.flush();
+        return export.failed;
+    }// Ende run(Pipeline, Iterator<String>, Export)
+
+    /**
+     * Hilfs-Methode die ein Atom oder einen Quoted String liest.
+     */
+    private static int next(final String line, final int from,
+            final StringBuilder token) {
+        token.setLength(0);
+        int position = from;
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+        if (position < line.length() && line.charAt(position) == '"') {
+            position++;
+            while (position < line.length()
+                    && line.charAt(position) != '"') {
+                char c = line.charAt(position++);
+                if (c == '\\' && position < line.length()) {
+                    c = line.charAt(position++);
+                }
+                token.append(c);
+            }
+            position++;
+        } else {
+            while (position < line.length()
+                    && line.charAt(position) != ' ') {
+                token.append(line.charAt(position++));
+            }
+        }
+        while (position < line.length() && line.charAt(position) == ' ') {
+            position++;
+        }
+        return position;
+    }// Ende next(String, int, StringBuilder)
+
+    /**
+     * Ein Bericht, erzeugt die Kommandos und schreibt ihre Antworten.
+     */
+    private abstract static class Export implements CommandListener {
+
+        /**
+         * Ziel der Zeilen.
+         */
+        private final ReportWriter writer;
+
+        /**
+         * Name der Kommandos.
+         */
+        private final String name;
+
+        /**
+         * Erster Fehler beim Schreiben.
+         */
+        private IOException failure;
+
+        /**
+         * Anzahl der abgelehnten Kommandos.
+         */
+        private int failed;
+
+        /**
+         * Konstruktor der Klasse Export.
+         */
+        Export(final ReportWriter reportWriter, final String commandName) {
+            this.writer = reportWriter;
+            this.name = commandName;
+        }
+
+        /**
+         * Schreibt die Zeilen einer Antwortzeile.
+         */
+        abstract void row(String mailbox, String line) throws IOException;
+
+        /**
+         * Erzeugt das Kommando einer Mailbox.
+         */
+        private Command command(final String mailbox) {
+            Command command = new Command(name) {
+                @Override
+                protected void writeArguments(final CommandEncoder encoder)
+                        throws IOException {
+                    encoder.mailbox(mailbox);
+                }
+
+                @Override
+                protected void untagged(final String line) {
+                    if (failure != null) {
+                        return;
+                    }
+                    try {
+                        row(mailbox, line);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            };
+            command.setListener(this);
+            return command;
+        }
+
+        @Override
+        public void completed(final Command command) {
+            if (!command.isOk()) {
+                failed++;
+            }
+        }
+    }// Ende class Export
+
+}// Ende class
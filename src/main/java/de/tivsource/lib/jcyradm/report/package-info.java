@@ -0,0 +1,9 @@
+/**
+ * In diesem Paket befinden sich die Klassen die Berichte über Quota und
+ * Rechte vieler Mailboxen direkt beim Lesen der Antworten als CSV oder JSONL
+ * schreiben, optional komprimiert und auf mehrere Dateien verteilt.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.report;
@@ -0,0 +1,350 @@
+package de.tivsource.lib.jcyradm.stream;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.CommandListener;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse CommandPublisher schickt für jeden Schlüssel (i.e. eine
+ * Mailbox) ein Kommando über eine Pipeline und liefert die ungetaggten
+ * Antwortzeilen als Elemente.
+ * <p>
+ * Gesendet und gelesen wird nur im Aufruf von request(), im Thread des
+ * Subscribers. Offen sind höchstens so viele Kommandos wie Elemente
+ * angefordert und die Pipeline-Tiefe erlaubt, eine Antwortzeile wird erst
+ * gelesen wenn ein Element angefordert ist. Ist der Subscriber langsam,
+ * bleiben die Antworten im Socket und der Server wartet, der Speicher
+ * wächst nicht mit der Menge der Ergebnisse.
+ * </p>
+ * <p>
+ * Abgelehnte Kommandos (i.e. eine Mailbox ohne Quota) beenden den Strom
+ * nicht, sie werden nur gezählt. Eine unterbrochene Verbindung endet mit
+ * onError(). Nach cancel() werden die noch offenen Antworten gelesen und
+ * verworfen, die Verbindung bleibt also benutzbar.
+ * </p>
+ *
+ * @param <T> - Typ der Elemente.
+ * @author Marc Michele
+ *
+ */
+public abstract class CommandPublisher<T> implements Publisher<T> {
+
+    /**
+     * Statischer Logger der Klasse CommandPublisher.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(CommandPublisher.class);
+
+    /**
+     * Pipeline einer angemeldeten Verbindung, gehört für die Dauer des
+     * Stroms allein diesem Publisher.
+     */
+    private final Pipeline pipeline;
+
+    /**
+     * Schlüssel für die noch kein Kommando gesendet wurde.
+     */
+    private final Iterator<String> keys;
+
+    /**
+     * Name des Kommandos (i.e. "GETQUOTA").
+     */
+    private final String name;
+
+    /**
+     * Gelesene aber noch nicht ausgelieferte Elemente, höchstens eins je
+     * gelesener Zeile.
+     */
+    private final ArrayDeque<T> buffer = new ArrayDeque<T>();
+
+    /**
+     * Angeforderte aber noch nicht ausgelieferte Elemente.
+     */
+    private final AtomicLong demand = new AtomicLong();
+
+    /**
+     * Anzahl der Aufrufe von drain() die noch abzuarbeiten sind, nur der
+     * erste arbeitet.
+     */
+    private final AtomicInteger work = new AtomicInteger();
+
+    /**
+     * Gesetzt sobald ein Subscriber angemeldet ist.
+     */
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Gesetzt nach cancel().
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Fehler einer ungültigen Anforderung, wird mit dem Abbruch gemeldet.
+     */
+    private volatile IllegalArgumentException rejected;
+
+    /**
+     * Gesetzt nach onComplete() oder onError().
+     */
+    private boolean done;
+
+    /**
+     * Der angemeldete Subscriber.
+     */
+    private Subscriber<? super T> subscriber;
+
+    /**
+     * Anzahl der offenen Kommandos dieses Publishers.
+     */
+    private int inflight;
+
+    /**
+     * Anzahl der abgelehnten Kommandos.
+     */
+    private volatile int failed;
+
+    /**
+     * Zählt die abgeschlossenen Kommandos.
+     */
+    private final CommandListener completion = new CommandListener() {
+        @Override
+        public void completed(final Command command) {
+            inflight--;
+            if (!command.isOk()) {
+                failed++;
+            }
+        }
+    };
+
+    /**
+     * Konstruktor der Klasse CommandPublisher.
+     *
+     * @param commandPipeline - Pipeline einer angemeldeten Verbindung, darf
+     *            während des Stroms nicht anders benutzt werden.
+     * @param commandKeys - Schlüssel, wird erst beim Senden weitergelesen.
+     * @param commandName - Name des Kommandos (i.e. "GETQUOTA").
+     */
+    protected CommandPublisher(final Pipeline commandPipeline,
+            final Iterator<String> commandKeys, final String commandName) {
+        super();
+        this.pipeline = commandPipeline;
+        this.keys = commandKeys;
+        this.name = commandName;
+    }// Ende CommandPublisher(Pipeline, Iterator<String>, String)
+
+    /**
+     * Schreibt die Argumente des Kommandos für einen Schlüssel.
+     *
+     * @param key - Der Schlüssel.
+     * @param encoder - Encoder der Verbindung.
+     * @throws IOException - Wenn der volle Puffer nicht geleert werden
+     *             konnte.
+     */
+    protected abstract void writeArguments(String key,
+            CommandEncoder encoder) throws IOException;
+
+    /**
+     * Wandelt eine ungetaggte Antwortzeile in ein Element.
+     *
+     * @param key - Schlüssel des Kommandos.
+     * @param line - Die Antwortzeile.
+     * @return T - Das Element oder null wenn die Zeile keines liefert.
+     */
+    protected abstract T map(String key, String line);
+
+    @Override
+    public final void subscribe(final Subscriber<? super T> newSubscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            newSubscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long n) {
+                    // Nichts zu liefern
+                }
+
+                @Override
+                public void cancel() {
+                    // Nichts abzubrechen
+                }
+            });
+            newSubscriber.onError(new IllegalStateException(
+                    "only one subscriber allowed"));
+            return;
+        }
+        this.subscriber = newSubscriber;
+        newSubscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(final long n) {
+                if (n <= 0) {
+                    rejected = new IllegalArgumentException(
+                            "non-positive request " + n);
+                    cancelled = true;
+                } else {
+                    add(n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+    }// Ende subscribe(Subscriber)
+
+    /**
+     * Liefert die Anzahl der abgelehnten Kommandos.
+     *
+     * @return int - Kommandos mit NO oder BAD.
+     */
+    public final int getFailed() {
+        return failed;
+    }// Ende getFailed()
+
+    /**
+     * Hilfs-Methode die die Anforderung erhöht, ohne Überlauf.
+     */
+    private void add(final long n) {
+        while (true) {
+            long current = demand.get();
+            long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            if (demand.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }// Ende add(long)
+
+    /**
+     * Hilfs-Methode die Elemente ausliefert, Kommandos sendet und Antworten
+     * liest solange Elemente angefordert sind. Ruft der Subscriber in
+     * onNext() wieder request() auf, wird nur die Anforderung erhöht und
+     * hier weitergearbeitet.
+     */
+    private void drain() {
+        if (work.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            try {
+                step();
+            } catch (IOException e) {
+                buffer.clear();
+                fail(e);
+            }
+            missed = work.addAndGet(-missed);
+        } while (missed != 0);
+    }// Ende drain()
+
+    /**
+     * Hilfs-Methode die einen Durchlauf von drain() ausführt.
+     */
+    private void step() throws IOException {
+        while (true) {
+            if (cancelled) {
+                buffer.clear();
+                if (inflight > 0) {
+                    pipeline.sync();
+                }
+                if (rejected != null) {
+                    fail(rejected);
+                }
+                done = true;
+                return;
+            }
+            if (done) {
+                return;
+            }
+            if (!buffer.isEmpty() && demand.get() > 0) {
+                demand.decrementAndGet();
+                deliver(buffer.poll());
+            } else if (!buffer.isEmpty()) {
+                return;
+            } else if (keys.hasNext() && demand.get() > inflight
+                    && inflight < pipeline.getDepth()) {
+                Request request = new Request(keys.next());
+                request.setListener(completion);
+                inflight++;
+                pipeline.submit(request);
+            } else if (inflight > 0 && demand.get() > 0) {
+                pipeline.poll();
+            } else if (inflight == 0 && !keys.hasNext()) {
+                done = true;
+                subscriber.onComplete();
+                return;
+            } else {
+                return;
+            }
+        }
+    }// Ende step()
+
+    /**
+     * Hilfs-Methode die ein Element ausliefert, wirft der Subscriber eine
+     * Ausnahme wird der Strom abgebrochen.
+     */
+    private void deliver(final T item) {
+        try {
+            subscriber.onNext(item);
+        } catch (RuntimeException e) {
+            LOGGER.error("Subscriber hat eine Ausnahme geworfen", e);
+            cancelled = true;
+        }
+    }// Ende deliver(T)
+
+    /**
+     * Hilfs-Methode die den Strom mit einem Fehler beendet.
+     */
+    private void fail(final Throwable throwable) {
+        if (!done) {
+            done = true;
+            subscriber.onError(throwable);
+        }
+    }// Ende fail(Throwable)
+
+    /**
+     * Das Kommando für einen Schlüssel.
+     */
+    private final class Request extends Command {
+
+        /**
+         * Schlüssel des Kommandos.
+         */
+        private final String key;
+
+        /**
+         * Konstruktor der Klasse Request.
+         */
+        private Request(final String commandKey) {
+            super(name);
+            this.key = commandKey;
+        }
+
+        @Override
+        protected void writeArguments(final CommandEncoder encoder)
+                throws IOException {
+            CommandPublisher.this.writeArguments(key, encoder);
+        }
+
+        @Override
+        protected void untagged(final String line) {
+            if (cancelled) {
+                return;
+            }
+            T item = map(key, line);
+            if (item != null) {
+                buffer.add(item);
+            }
+        }
+    }// Ende class Request
+
+}// Ende class
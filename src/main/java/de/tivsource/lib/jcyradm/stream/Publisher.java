@@ -0,0 +1,20 @@
+package de.tivsource.lib.jcyradm.stream;
+
+/**
+ * Das Interface Publisher liefert Elemente an einen Subscriber, nie mehr als
+ * dieser über seine Subscription angefordert hat.
+ *
+ * @param <T> - Typ der Elemente.
+ * @author Marc Michele
+ *
+ */
+public interface Publisher<T> {
+
+    /**
+     * Meldet einen Subscriber an, dieser bekommt zuerst onSubscribe().
+     *
+     * @param subscriber - Der Subscriber.
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+
+}// Ende interface
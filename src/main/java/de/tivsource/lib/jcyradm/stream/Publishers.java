@@ -0,0 +1,89 @@
+package de.tivsource.lib.jcyradm.stream;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+
+import de.tivsource.lib.jcyradm.mailbox.MailboxTree;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse Publishers erzeugt die Publisher der Massen-Abfragen. Alle
+ * Mailbox-Namen werden vollständig und in Unicode übergeben und geliefert
+ * (i.e. "user.mailboxname").
+ *
+ * @author Marc Michele
+ *
+ */
+public final class Publishers {
+
+    /**
+     * Präfix einer QUOTA Antwort.
+     */
+    private static final String QUOTA_RESPONSE = "* QUOTA ";
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private Publishers() {
+        super();
+    }// Ende Publishers()
+
+    /**
+     * Liefert die Namen aller Mailboxen auf die das Muster passt, mit einem
+     * einzigen LIST Kommando. Die Antwort wird nur so schnell gelesen wie
+     * der Subscriber Namen anfordert.
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param pattern - Muster (i.e. "user.*").
+     * @return CommandPublisher - Publisher der Namen.
+     */
+    public static CommandPublisher<String> list(final Pipeline pipeline,
+            final String pattern) {
+        Iterator<String> keys = Collections.singletonList(pattern).iterator();
+        return new CommandPublisher<String>(pipeline, keys, "LIST") {
+            @Override
+            protected void writeArguments(final String key,
+                    final CommandEncoder encoder) throws IOException {
+                encoder.mailbox("").mailbox(key);
+            }
+
+            @Override
+            protected String map(final String key, final String line) {
+                return MailboxTree.parseListLine(line);
+            }
+        };
+    }// Ende list(Pipeline, String)
+
+    /**
+     * Liefert die Quota vieler Mailboxen, ein GETQUOTA je Mailbox. Die
+     * Namen werden erst gelesen wenn ihr Kommando gesendet wird, können also
+     * selbst aus einem Strom kommen (i.e. einem BulkReader).
+     *
+     * @param pipeline - Pipeline einer angemeldeten Verbindung.
+     * @param mailboxes - Vollständige Namen der Mailboxen.
+     * @return CommandPublisher - Publisher der Quota, Mailboxen ohne Quota
+     *         fehlen und werden in getFailed() gezählt.
+     */
+    public static CommandPublisher<Quota> quota(final Pipeline pipeline,
+            final Iterator<String> mailboxes) {
+        return new CommandPublisher<Quota>(pipeline, mailboxes, "GETQUOTA") {
+            @Override
+            protected void writeArguments(final String key,
+                    final CommandEncoder encoder) throws IOException {
+                encoder.mailbox(key);
+            }
+
+            @Override
+            protected Quota map(final String key, final String line) {
+                if (!line.startsWith(QUOTA_RESPONSE)) {
+                    return null;
+                }
+                return Quota.parse(key, line);
+            }
+        };
+    }// Ende quota(Pipeline, Iterator<String>)
+
+}// Ende class
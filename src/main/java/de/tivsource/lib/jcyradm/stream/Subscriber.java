@@ -0,0 +1,40 @@
+package de.tivsource.lib.jcyradm.stream;
+
+/**
+ * Das Interface Subscriber empfängt die Elemente eines Publishers. Nach
+ * onError() oder onComplete() kommen keine weiteren Aufrufe.
+ *
+ * @param <T> - Typ der Elemente.
+ * @author Marc Michele
+ *
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Wird als erstes aufgerufen, vor dem ersten request() kommen keine
+     * Elemente.
+     *
+     * @param subscription - Die Subscription zum Anfordern und Abbrechen.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Liefert das nächste Element.
+     *
+     * @param item - Das Element.
+     */
+    void onNext(T item);
+
+    /**
+     * Meldet den Abbruch des Stroms durch einen Fehler.
+     *
+     * @param throwable - Der Fehler.
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Meldet das Ende des Stroms.
+     */
+    void onComplete();
+
+}// Ende interface
@@ -0,0 +1,24 @@
+package de.tivsource.lib.jcyradm.stream;
+
+/**
+ * Das Interface Subscription verbindet einen Subscriber mit einem
+ * Publisher.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface Subscription {
+
+    /**
+     * Fordert weitere Elemente an, die Anforderungen summieren sich.
+     *
+     * @param n - Anzahl der Elemente, größer 0.
+     */
+    void request(long n);
+
+    /**
+     * Bricht den Strom ab, danach kommen keine Elemente mehr.
+     */
+    void cancel();
+
+}// Ende interface
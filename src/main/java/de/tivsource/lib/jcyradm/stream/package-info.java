@@ -0,0 +1,10 @@
+/**
+ * In diesem Paket befinden sich die Klassen die Ergebnisse von
+ * Massen-Abfragen als Datenstrom mit Gegendruck liefern. Die Interfaces
+ * entsprechen java.util.concurrent.Flow, das es unter Java 7 noch nicht
+ * gibt, ein Adapter besteht also nur aus Weiterleitungen.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.stream;
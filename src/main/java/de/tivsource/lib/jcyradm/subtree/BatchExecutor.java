@@ -0,0 +1,25 @@
+package de.tivsource.lib.jcyradm.subtree;
+
+import java.util.List;
+
+import de.tivsource.lib.jcyradm.protocol.Command;
+
+/**
+ * Schnittstelle für die Ausführung mehrerer Kommandos über eine Verbindung.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface BatchExecutor {
+
+    /**
+     * Sendet die Kommandos in dieser Reihenfolge und wartet bis alle
+     * abgeschlossen sind, das Ergebnis steht danach in den Kommandos.
+     *
+     * @param commands - Die Kommandos.
+     * @throws Exception - Wenn keine Verbindung verfügbar ist oder sie
+     *             unterbrochen wurde.
+     */
+    void run(List<Command> commands) throws Exception;
+
+}// Ende interface
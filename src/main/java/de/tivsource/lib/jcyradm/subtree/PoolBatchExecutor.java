@@ -0,0 +1,52 @@
+package de.tivsource.lib.jcyradm.subtree;
+
+import java.util.List;
+
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.pool.Operation;
+import de.tivsource.lib.jcyradm.pool.Priority;
+import de.tivsource.lib.jcyradm.pool.SessionPool;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * Die Klasse PoolBatchExecutor führt die Kommandos mit einer Sitzung aus
+ * dem SessionPool als Massen-Operation aus, alle Kommandos laufen über die
+ * Pipeline dieser Sitzung.
+ *
+ * @author Marc Michele
+ *
+ */
+public class PoolBatchExecutor implements BatchExecutor {
+
+    /**
+     * Pool aus dem die Sitzungen kommen.
+     */
+    private final SessionPool pool;
+
+    /**
+     * Konstruktor der Klasse PoolBatchExecutor.
+     *
+     * @param sessionPool - Pool aus dem die Sitzungen kommen.
+     */
+    public PoolBatchExecutor(final SessionPool sessionPool) {
+        super();
+        this.pool = sessionPool;
+    }// Ende PoolBatchExecutor(SessionPool)
+
+    @Override
+    public final void run(final List<Command> commands) throws Exception {
+        pool.execute(Priority.BULK, new Operation<Void>() {
+            @Override
+            public Void run(final JCyrAdm session) throws Exception {
+                Pipeline pipeline = session.pipeline();
+                for (Command command : commands) {
+                    pipeline.submit(command);
+                }
+                pipeline.sync();
+                return null;
+            }
+        });
+    }// Ende run(List<Command>)
+
+}// Ende class
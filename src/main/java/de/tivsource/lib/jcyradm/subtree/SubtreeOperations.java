@@ -0,0 +1,529 @@
+package de.tivsource.lib.jcyradm.subtree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.log4j.Logger;
+
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.mailbox.MailboxTree;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+
+/**
+ * Die Klasse SubtreeOperations führt Operationen auf einer ganzen
+ * Mailbox-Hierarchie aus: rekursives Löschen, rekursives Setzen von Rechten
+ * und den Quota-Bericht.
+ *
+ * <p>
+ * Die Hierarchie wird mit LIST gelesen und als Fork/Join-Aufgaben
+ * abgearbeitet: jede Mailbox mit Unter-Mailboxen ist eine Aufgabe, ihre
+ * Blätter werden in Stapeln zusammengefasst, deren Kommandos gemeinsam über
+ * eine Verbindung laufen. Unabhängige Zweige laufen parallel, freie Threads
+ * stehlen dabei wartende Aufgaben anderer Zweige. Eine Mailbox wird erst
+ * bearbeitet wenn alle ihre Unter-Mailboxen fertig sind, so wie Cyrus es
+ * beim Löschen verlangt. Schlägt beim Löschen eine Unter-Mailbox fehl,
+ * werden ihre Eltern übersprungen.
+ * </p>
+ *
+ * <p>
+ * Die Threads blockieren während der Kommandos, die Parallelität sollte
+ * daher der Anzahl der Sitzungen des Pools entsprechen.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class SubtreeOperations {
+
+    /**
+     * Statischer Logger der Klasse SubtreeOperations.
+     */
+    private static final Logger LOGGER =
+            Logger.getLogger(SubtreeOperations.class);
+
+    /**
+     * Standard Parallelität.
+     */
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * Standard Anzahl der Blätter je Stapel.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Rechte die der Administrator vor dem Löschen erhält.
+     */
+    private static final String DELETE_RIGHTS = "lrswipkxtecda";
+
+    /**
+     * Führt die Stapel aus.
+     */
+    private final BatchExecutor executor;
+
+    /**
+     * Namensregeln des Servers.
+     */
+    private final MailboxNameValidator validator;
+
+    /**
+     * Anzahl der Threads.
+     */
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    /**
+     * Anzahl der Blätter je Stapel.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Konstruktor der Klasse SubtreeOperations.
+     *
+     * @param batchExecutor - Führt die Stapel aus, i.e. ein
+     *            PoolBatchExecutor.
+     * @param mailboxNameValidator - Namensregeln des Servers.
+     */
+    public SubtreeOperations(final BatchExecutor batchExecutor,
+            final MailboxNameValidator mailboxNameValidator) {
+        super();
+        this.executor = batchExecutor;
+        this.validator = mailboxNameValidator;
+    }// Ende SubtreeOperations(BatchExecutor, MailboxNameValidator)
+
+    /**
+     * Löscht eine Mailbox mit allen Unter-Mailboxen, die Blätter zuerst.
+     * Vor jeder Löschung erhält der Administrator alle Rechte.
+     *
+     * @param root - Vollständiger Name der Mailbox (i.e. "user.max").
+     * @param administrator - Name des Administrators.
+     * @return SubtreeResult - Ergebnis je Mailbox.
+     * @throws Exception - Wenn die Hierarchie nicht gelesen werden konnte.
+     */
+    public final SubtreeResult deleteTree(final String root,
+            final String administrator) throws Exception {
+        return run(root, true, new Action() {
+            @Override
+            public List<Command> commands(final String mailbox) {
+                return Arrays.asList(Commands.setAcl(mailbox, administrator,
+                        DELETE_RIGHTS), Commands.delete(mailbox));
+            }
+
+            @Override
+            public boolean completed(final String mailbox,
+                    final List<Command> commands, final SubtreeResult result) {
+                return check(mailbox, commands.get(1), result);
+            }
+        });
+    }// Ende deleteTree(String, String)
+
+    /**
+     * Setzt die Rechte eines Benutzers auf einer Mailbox und allen
+     * Unter-Mailboxen.
+     *
+     * @param root - Vollständiger Name der Mailbox.
+     * @param identifier - Benutzer oder Gruppe.
+     * @param rights - Rechte (i.e. "lrs").
+     * @return SubtreeResult - Ergebnis je Mailbox.
+     * @throws Exception - Wenn die Hierarchie nicht gelesen werden konnte.
+     */
+    public final SubtreeResult setAclTree(final String root,
+            final String identifier, final String rights) throws Exception {
+        return run(root, false, new Action() {
+            @Override
+            public List<Command> commands(final String mailbox) {
+                return Arrays.asList(Commands.setAcl(mailbox, identifier,
+                        rights));
+            }
+
+            @Override
+            public boolean completed(final String mailbox,
+                    final List<Command> commands, final SubtreeResult result) {
+                return check(mailbox, commands.get(0), result);
+            }
+        });
+    }// Ende setAclTree(String, String, String)
+
+    /**
+     * Liest die Quota aller Quota-Roots einer Mailbox-Hierarchie. Mailboxen
+     * ohne eigene Quota zählen als erfolgreich, erscheinen aber nicht im
+     * Bericht.
+     *
+     * @param root - Vollständiger Name der Mailbox.
+     * @return SubtreeResult - Ergebnis mit der Quota je Quota-Root.
+     * @throws Exception - Wenn die Hierarchie nicht gelesen werden konnte.
+     */
+    public final SubtreeResult quotaTree(final String root) throws Exception {
+        return run(root, false, new Action() {
+            @Override
+            public List<Command> commands(final String mailbox) {
+                return Arrays.asList(Commands.getQuota(mailbox));
+            }
+
+            @Override
+            public boolean completed(final String mailbox,
+                    final List<Command> commands, final SubtreeResult result) {
+                Command command = commands.get(0);
+                if (command.isOk()) {
+                    for (String line : command.getUntagged()) {
+                        Quota quota = Quota.parse(mailbox, line);
+                        if (quota != null) {
+                            result.quota(quota);
+                        }
+                    }
+                }
+                result.succeeded();
+                return true;
+            }
+        });
+    }// Ende quotaTree(String)
+
+    /**
+     * Liest eine Mailbox und alle Unter-Mailboxen mit LIST.
+     *
+     * @param root - Vollständiger Name der Mailbox.
+     * @return List<String> - Vollständige Namen, sortiert, die Mailbox selbst
+     *         nur wenn sie existiert.
+     * @throws Exception - Wenn LIST fehlgeschlagen ist.
+     */
+    public final List<String> list(final String root) throws Exception {
+        List<Command> commands = Arrays.asList(Commands.list("", root),
+                Commands.list("", pattern(root)));
+        executor.run(commands);
+        TreeSet<String> names = new TreeSet<String>();
+        for (Command command : commands) {
+            if (!command.isOk()) {
+                throw new IOException("LIST failed: "
+                        + command.getStatus() + " " + command.getText());
+            }
+            for (String line : command.getUntagged()) {
+                String name = MailboxTree.parseListLine(line);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+        }
+        return new ArrayList<String>(names);
+    }// Ende list(String)
+
+    /**
+     * Setzt die Anzahl der Threads.
+     *
+     * @param threads - Threads, i.e. die Anzahl der Sitzungen des Pools.
+     */
+    public final void setParallelism(final int threads) {
+        this.parallelism = Math.max(1, threads);
+    }// Ende setParallelism(int)
+
+    /**
+     * Setzt die Anzahl der Blätter deren Kommandos gemeinsam über eine
+     * Verbindung laufen.
+     *
+     * @param size - Blätter je Stapel.
+     */
+    public final void setBatchSize(final int size) {
+        this.batchSize = Math.max(1, size);
+    }// Ende setBatchSize(int)
+
+    /**
+     * Hilfs-Methode die eine Operation auf der Hierarchie ausführt.
+     */
+    private SubtreeResult run(final String root, final boolean ordered,
+            final Action action) throws Exception {
+        Node tree = build(root, list(root));
+        SubtreeResult result = new SubtreeResult();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new NodeTask(tree, ordered, action, result));
+        } finally {
+            pool.shutdown();
+        }
+        result.finish();
+        LOGGER.info(root + ": " + result);
+        return result;
+    }// Ende run(String, boolean, Action)
+
+    /**
+     * Hilfs-Methode die das LIST Muster für alle Unter-Mailboxen liefert,
+     * mit virtdomains steht die Domain am Ende.
+     */
+    private String pattern(final String root) {
+        int at = validator.isVirtDomains() ? root.lastIndexOf('@') : -1;
+        if (at < 0) {
+            return root + validator.getSeparator() + "*";
+        }
+        return root.substring(0, at) + validator.getSeparator() + "*"
+                + root.substring(at);
+    }// Ende pattern(String)
+
+    /**
+     * Hilfs-Methode die den Namen der übergeordneten Ebene liefert, null
+     * auf der obersten Ebene.
+     */
+    private String parent(final String name) {
+        int at = validator.isVirtDomains() ? name.lastIndexOf('@') : -1;
+        String local = at < 0 ? name : name.substring(0, at);
+        int separator = local.lastIndexOf(validator.getSeparator());
+        if (separator < 0) {
+            return null;
+        }
+        return local.substring(0, separator)
+                + (at < 0 ? "" : name.substring(at));
+    }// Ende parent(String)
+
+    /**
+     * Hilfs-Methode die aus den gelesenen Namen den Baum aufbaut. Fehlende
+     * Zwischenebenen werden als nicht existierende Knoten eingefügt.
+     */
+    private Node build(final String root, final Collection<String> names) {
+        Map<String, Node> nodes = new HashMap<String, Node>();
+        Node tree = new Node(root);
+        nodes.put(root, tree);
+        for (String name : names) {
+            Node node = nodes.get(name);
+            if (node == null) {
+                node = new Node(name);
+                nodes.put(name, node);
+                attach(node, nodes);
+            }
+            node.exists = true;
+        }
+        return tree;
+    }// Ende build(String, Collection<String>)
+
+    /**
+     * Hilfs-Methode die einen Knoten unter seine übergeordnete Ebene hängt
+     * und fehlende Ebenen bis zur Wurzel anlegt.
+     */
+    private void attach(final Node node, final Map<String, Node> nodes) {
+        Node child = node;
+        String name = parent(child.name);
+        while (name != null) {
+            Node parentNode = nodes.get(name);
+            if (parentNode != null) {
+                parentNode.children.add(child);
+                return;
+            }
+            parentNode = new Node(name);
+            nodes.put(name, parentNode);
+            parentNode.children.add(child);
+            child = parentNode;
+            name = parent(name);
+        }
+    }// Ende attach(Node, Map<String, Node>)
+
+    /**
+     * Hilfs-Methode die das Ergebnis eines Kommandos zählt.
+     */
+    private static boolean check(final String mailbox, final Command command,
+            final SubtreeResult result) {
+        if (command.isOk()) {
+            result.succeeded();
+            return true;
+        }
+        result.failed(mailbox, command.getStatus() + " " + command.getText());
+        return false;
+    }// Ende check(String, Command, SubtreeResult)
+
+    /**
+     * Die Kommandos einer Operation je Mailbox.
+     */
+    private interface Action {
+
+        /**
+         * Erzeugt die Kommandos für eine Mailbox.
+         */
+        List<Command> commands(String mailbox);
+
+        /**
+         * Wertet die Kommandos einer Mailbox aus und liefert ob sie
+         * erfolgreich war.
+         */
+        boolean completed(String mailbox, List<Command> commands,
+                SubtreeResult result);
+
+    }// Ende interface Action
+
+    /**
+     * Ein Knoten der Hierarchie.
+     */
+    private static final class Node {
+
+        /**
+         * Vollständiger Name.
+         */
+        private final String name;
+
+        /**
+         * Die direkten Unter-Mailboxen.
+         */
+        private final List<Node> children = new ArrayList<Node>();
+
+        /**
+         * Wird gesetzt wenn die Mailbox existiert und nicht nur eine
+         * Zwischenebene ist.
+         */
+        private boolean exists;
+
+        /**
+         * Konstruktor der Klasse Node.
+         */
+        private Node(final String nodeName) {
+            this.name = nodeName;
+        }// Ende Node(String)
+
+    }// Ende class Node
+
+    /**
+     * Bearbeitet einen Knoten: erst alle Unter-Mailboxen parallel, dann den
+     * Knoten selbst.
+     */
+    private final class NodeTask extends RecursiveTask<Boolean> {
+
+        /**
+         * SerialVersionUID der Klasse NodeTask.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Der Knoten.
+         */
+        private final Node node;
+
+        /**
+         * Wird gesetzt wenn Eltern erst nach ihren Unter-Mailboxen und nur
+         * bei deren Erfolg bearbeitet werden.
+         */
+        private final boolean ordered;
+
+        /**
+         * Die Operation.
+         */
+        private final Action action;
+
+        /**
+         * Das Ergebnis.
+         */
+        private final SubtreeResult result;
+
+        /**
+         * Konstruktor der Klasse NodeTask.
+         */
+        private NodeTask(final Node treeNode, final boolean leavesFirst,
+                final Action nodeAction, final SubtreeResult subtreeResult) {
+            this.node = treeNode;
+            this.ordered = leavesFirst;
+            this.action = nodeAction;
+            this.result = subtreeResult;
+        }// Ende NodeTask(Node, boolean, Action, SubtreeResult)
+
+        @Override
+        protected Boolean compute() {
+            List<ForkJoinTask<Boolean>> tasks =
+                    new ArrayList<ForkJoinTask<Boolean>>();
+            List<String> leaves = new ArrayList<String>();
+            for (Node child : node.children) {
+                if (child.children.isEmpty()) {
+                    leaves.add(child.name);
+                } else {
+                    tasks.add(new NodeTask(child, ordered, action, result));
+                }
+            }
+            for (int i = 0; i < leaves.size(); i += batchSize) {
+                tasks.add(new BatchTask(leaves.subList(i,
+                        Math.min(leaves.size(), i + batchSize)), action,
+                        result));
+            }
+            boolean ok = true;
+            for (ForkJoinTask<Boolean> task : invokeAll(tasks)) {
+                ok &= task.join().booleanValue();
+            }
+            if (!node.exists) {
+                return ok;
+            }
+            if (ordered && !ok) {
+                result.skipped();
+                return false;
+            }
+            return new BatchTask(Collections.singletonList(node.name),
+                    action, result).compute() && ok;
+        }// Ende compute()
+
+    }// Ende class NodeTask
+
+    /**
+     * Bearbeitet mehrere Mailboxen ohne Unter-Mailboxen mit einer
+     * Verbindung.
+     */
+    private final class BatchTask extends RecursiveTask<Boolean> {
+
+        /**
+         * SerialVersionUID der Klasse BatchTask.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Die Mailboxen.
+         */
+        private final List<String> mailboxes;
+
+        /**
+         * Die Operation.
+         */
+        private final Action action;
+
+        /**
+         * Das Ergebnis.
+         */
+        private final SubtreeResult result;
+
+        /**
+         * Konstruktor der Klasse BatchTask.
+         */
+        private BatchTask(final List<String> names, final Action nodeAction,
+                final SubtreeResult subtreeResult) {
+            this.mailboxes = names;
+            this.action = nodeAction;
+            this.result = subtreeResult;
+        }// Ende BatchTask(List<String>, Action, SubtreeResult)
+
+        @Override
+        protected Boolean compute() {
+            List<List<Command>> perMailbox = new ArrayList<List<Command>>();
+            List<Command> commands = new ArrayList<Command>();
+            for (String mailbox : mailboxes) {
+                List<Command> own = action.commands(mailbox);
+                perMailbox.add(own);
+                commands.addAll(own);
+            }
+            try {
+                executor.run(commands);
+            } catch (Exception e) {
+                LOGGER.warn("Stapel fehlgeschlagen: " + e.getMessage());
+                for (String mailbox : mailboxes) {
+                    result.failed(mailbox, e.getMessage());
+                }
+                return false;
+            }
+            boolean ok = true;
+            for (int i = 0; i < mailboxes.size(); i++) {
+                ok &= action.completed(mailboxes.get(i), perMailbox.get(i),
+                        result);
+            }
+            return ok;
+        }// Ende compute()
+
+    }// Ende class BatchTask
+
+}// Ende class
@@ -0,0 +1,149 @@
+package de.tivsource.lib.jcyradm.subtree;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+
+/**
+ * Die Klasse SubtreeResult zählt die Ergebnisse einer Operation auf einer
+ * Mailbox-Hierarchie und sammelt die Fehler und Quotas. Sie wird von
+ * mehreren Threads gleichzeitig gefüllt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class SubtreeResult {
+
+    /**
+     * Erfolgreich bearbeitete Mailboxen.
+     */
+    private final AtomicLong succeeded = new AtomicLong();
+
+    /**
+     * Übersprungene Mailboxen, i.e. Eltern fehlgeschlagener Löschungen.
+     */
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Fehlermeldung je fehlgeschlagener Mailbox.
+     */
+    private final ConcurrentSkipListMap<String, String> failures =
+            new ConcurrentSkipListMap<String, String>();
+
+    /**
+     * Quota je Quota-Root beim Quota-Bericht.
+     */
+    private final ConcurrentSkipListMap<String, Quota> quotas =
+            new ConcurrentSkipListMap<String, Quota>();
+
+    /**
+     * Beginn der Operation in Nanosekunden.
+     */
+    private final long start = System.nanoTime();
+
+    /**
+     * Dauer der Operation in Nanosekunden.
+     */
+    private volatile long elapsed;
+
+    /**
+     * Liefert die Anzahl der erfolgreich bearbeiteten Mailboxen.
+     *
+     * @return long - Erfolgreiche Mailboxen.
+     */
+    public final long getSucceeded() {
+        return succeeded.get();
+    }// Ende getSucceeded()
+
+    /**
+     * Liefert die Anzahl der fehlgeschlagenen Mailboxen.
+     *
+     * @return long - Fehlgeschlagene Mailboxen.
+     */
+    public final long getFailed() {
+        return failures.size();
+    }// Ende getFailed()
+
+    /**
+     * Liefert die Anzahl der übersprungenen Mailboxen.
+     *
+     * @return long - Übersprungene Mailboxen.
+     */
+    public final long getSkipped() {
+        return skipped.get();
+    }// Ende getSkipped()
+
+    /**
+     * Liefert die Fehlermeldungen.
+     *
+     * @return SortedMap<String, String> - Fehlermeldung je Mailbox, nach
+     *         Namen sortiert.
+     */
+    public final SortedMap<String, String> getFailures() {
+        return Collections.unmodifiableSortedMap(failures);
+    }// Ende getFailures()
+
+    /**
+     * Liefert die Quotas des Quota-Berichts.
+     *
+     * @return Map<String, Quota> - Quota je Quota-Root, nach Namen sortiert.
+     */
+    public final Map<String, Quota> getQuotas() {
+        return Collections.unmodifiableMap(quotas);
+    }// Ende getQuotas()
+
+    /**
+     * Liefert die Dauer der Operation.
+     *
+     * @return long - Dauer in Nanosekunden.
+     */
+    public final long getElapsedNanos() {
+        return elapsed;
+    }// Ende getElapsedNanos()
+
+    @Override
+    public final String toString() {
+        return succeeded.get() + " ok, " + failures.size() + " failed, "
+                + skipped.get() + " skipped, " + elapsed / 1000000L + " ms";
+    }// Ende toString()
+
+    /**
+     * Hilfs-Methode die eine erfolgreiche Mailbox zählt.
+     */
+    final void succeeded() {
+        succeeded.incrementAndGet();
+    }// Ende succeeded()
+
+    /**
+     * Hilfs-Methode die eine fehlgeschlagene Mailbox vermerkt.
+     */
+    final void failed(final String mailbox, final String message) {
+        failures.put(mailbox, message == null ? "" : message);
+    }// Ende failed(String, String)
+
+    /**
+     * Hilfs-Methode die eine übersprungene Mailbox zählt.
+     */
+    final void skipped() {
+        skipped.incrementAndGet();
+    }// Ende skipped()
+
+    /**
+     * Hilfs-Methode die die Quota eines Quota-Roots vermerkt.
+     */
+    final void quota(final Quota quota) {
+        quotas.put(quota.getMailbox(), quota);
+    }// Ende quota(Quota)
+
+    /**
+     * Hilfs-Methode die das Ende der Operation vermerkt.
+     */
+    final void finish() {
+        elapsed = System.nanoTime() - start;
+    }// Ende finish()
+
+}// Ende class
@@ -0,0 +1,9 @@
+/**
+ * In diesem Paket befinden sich die Klassen für Operationen auf ganzen
+ * Mailbox-Hierarchien, i.e. rekursives Löschen, rekursives Setzen von
+ * Rechten und der Quota-Bericht einer Hierarchie.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.subtree;
@@ -0,0 +1,97 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Die Klasse ChannelLink ist eine Leitung über einen blockierenden
+ * SocketChannel. Der CommandEncoder schreibt seinen direkten Puffer ohne
+ * Umweg über einen OutputStream in den Kanal.
+ *
+ * @author Marc Michele
+ *
+ */
+class ChannelLink implements Link {
+
+    /**
+     * Der Kanal der Verbindung.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Adresse des Servers.
+     */
+    private final SocketAddress address;
+
+    /**
+     * True bei TCP, dann kann über den Socket des Kanals mit Timeout
+     * verbunden und gelesen werden.
+     */
+    private final boolean tcp;
+
+    /**
+     * Konstruktor der Klasse ChannelLink.
+     */
+    ChannelLink(final SocketChannel socketChannel,
+            final SocketAddress socketAddress, final boolean isTcp) {
+        this.channel = socketChannel;
+        this.address = socketAddress;
+        this.tcp = isTcp;
+    }// Ende ChannelLink(SocketChannel, SocketAddress, boolean)
+
+    @Override
+    public final void connect(final int timeoutMillis) throws IOException {
+        if (tcp) {
+            channel.socket().connect(address, timeoutMillis);
+        } else {
+            channel.connect(address);
+        }
+    }// Ende connect(int)
+
+    /**
+     * Setzt den Timeout beim Lesen, bei Unix Domain Sockets hat der Kanal
+     * keinen Socket und der Timeout wird ignoriert.
+     *
+     * @param timeoutMillis - Timeout in Millisekunden, 0 für unbegrenzt.
+     * @throws IOException - Wenn der Timeout nicht gesetzt werden konnte.
+     */
+    @Override
+    public final void setReadTimeout(final int timeoutMillis)
+            throws IOException {
+        if (tcp) {
+            channel.socket().setSoTimeout(timeoutMillis);
+        }
+    }// Ende setReadTimeout(int)
+
+    @Override
+    public final InputStream getInputStream() throws IOException {
+        if (!channel.isConnected()) {
+            throw new IOException("Link not connected");
+        }
+        return tcp ? channel.socket().getInputStream()
+                : Channels.newInputStream(channel);
+    }// Ende getInputStream()
+
+    @Override
+    public final WritableByteChannel getChannel() throws IOException {
+        if (!channel.isConnected()) {
+            throw new IOException("Link not connected");
+        }
+        return channel;
+    }// Ende getChannel()
+
+    @Override
+    public final void close() throws IOException {
+        channel.close();
+    }// Ende close()
+
+    @Override
+    public final String toString() {
+        return String.valueOf(address);
+    }// Ende toString()
+
+}// Ende class
@@ -0,0 +1,58 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Das Interface Link ist eine Leitung zum Server die von einem Transport
+ * erzeugt wurde. Gelesen wird über einen Stream, geschrieben über einen
+ * Kanal, in den der CommandEncoder seinen Puffer direkt schreibt.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface Link extends Closeable {
+
+    /**
+     * Baut die Verbindung auf.
+     *
+     * @param timeoutMillis - Timeout in Millisekunden, 0 für unbegrenzt.
+     * @throws IOException - Wenn die Verbindung nicht aufgebaut werden
+     *             konnte oder die Leitung schon geschlossen ist.
+     */
+    void connect(int timeoutMillis) throws IOException;
+
+    /**
+     * Setzt den Timeout beim Lesen.
+     *
+     * @param timeoutMillis - Timeout in Millisekunden, 0 für unbegrenzt.
+     * @throws IOException - Wenn der Timeout nicht gesetzt werden konnte.
+     */
+    void setReadTimeout(int timeoutMillis) throws IOException;
+
+    /**
+     * Liefert den Stream mit dem vom Server gelesen wird.
+     *
+     * @return InputStream - Stream der Verbindung.
+     * @throws IOException - Wenn die Leitung nicht verbunden ist.
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * Liefert den Kanal mit dem zum Server geschrieben wird.
+     *
+     * @return WritableByteChannel - Kanal der Verbindung.
+     * @throws IOException - Wenn die Leitung nicht verbunden ist.
+     */
+    WritableByteChannel getChannel() throws IOException;
+
+    /**
+     * Schließt die Leitung, auch während connect(int) läuft.
+     *
+     * @throws IOException - Wenn die Leitung nicht geschlossen werden konnte.
+     */
+    void close() throws IOException;
+
+}// Ende interface
@@ -0,0 +1,32 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Die Klasse NioTransport baut ungesicherte TCP-Verbindungen über einen
+ * blockierenden SocketChannel auf. Die Kommandos gehen aus dem direkten
+ * Puffer des CommandEncoders ohne Kopie in ein Byte-Array an das System,
+ * die Optionen werden wie beim TcpTransport gesetzt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class NioTransport extends TcpTransport {
+
+    @Override
+    public final Link createLink(final String host, final int port)
+            throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            configure(channel.socket());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ChannelLink(channel, new InetSocketAddress(host, port),
+                true);
+    }// Ende createLink(String, int)
+
+}// Ende class
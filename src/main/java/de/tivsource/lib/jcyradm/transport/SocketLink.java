@@ -0,0 +1,119 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Die Klasse SocketLink ist eine Leitung über einen Socket, die Schicht
+ * über der TCP-Verbindung (i.e. TLS) liefert der TcpTransport.
+ *
+ * @author Marc Michele
+ *
+ */
+class SocketLink implements Link {
+
+    /**
+     * Transport der die Schicht über der Verbindung aufbaut.
+     */
+    private final TcpTransport transport;
+
+    /**
+     * Der darunter liegende TCP-Socket.
+     */
+    private final Socket plain;
+
+    /**
+     * Host des Servers.
+     */
+    private final String host;
+
+    /**
+     * Port des Servers.
+     */
+    private final int port;
+
+    /**
+     * Socket über den gesprochen wird, nach dem Verbindungsaufbau.
+     */
+    private volatile Socket socket;
+
+    /**
+     * Kanal zum Schreiben, wird beim ersten Aufruf erzeugt.
+     */
+    private WritableByteChannel channel;
+
+    /**
+     * Konstruktor der Klasse SocketLink.
+     */
+    SocketLink(final TcpTransport tcpTransport, final Socket sock,
+            final String hostname, final int portNumber) {
+        this.transport = tcpTransport;
+        this.plain = sock;
+        this.host = hostname;
+        this.port = portNumber;
+    }// Ende SocketLink(TcpTransport, Socket, String, int)
+
+    @Override
+    public final void connect(final int timeoutMillis) throws IOException {
+        plain.connect(new InetSocketAddress(host, port), timeoutMillis);
+        Socket layered = transport.layer(plain, host, port, timeoutMillis);
+        socket = layered;
+        /*
+         * Ein close() während layer() hat nur den TCP-Socket geschlossen.
+         */
+        if (plain.isClosed()) {
+            layered.close();
+            throw new IOException("Link closed while connecting");
+        }
+    }// Ende connect(int)
+
+    @Override
+    public final void setReadTimeout(final int timeoutMillis)
+            throws IOException {
+        connected().setSoTimeout(timeoutMillis);
+    }// Ende setReadTimeout(int)
+
+    @Override
+    public final InputStream getInputStream() throws IOException {
+        return connected().getInputStream();
+    }// Ende getInputStream()
+
+    @Override
+    public final synchronized WritableByteChannel getChannel()
+            throws IOException {
+        if (channel == null) {
+            channel = Channels.newChannel(connected().getOutputStream());
+        }
+        return channel;
+    }// Ende getChannel()
+
+    @Override
+    public final void close() throws IOException {
+        Socket layered = socket;
+        if (layered != null && layered != plain) {
+            layered.close();
+        }
+        plain.close();
+    }// Ende close()
+
+    @Override
+    public final String toString() {
+        return host + ":" + port;
+    }// Ende toString()
+
+    /**
+     * Hilfs-Methode die den verbundenen Socket liefert.
+     */
+    private Socket connected() throws IOException {
+        Socket layered = socket;
+        if (layered == null) {
+            throw new IOException("Link not connected");
+        }
+        return layered;
+    }// Ende connected()
+
+}// Ende class
@@ -0,0 +1,118 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Die Klasse TcpTransport baut ungesicherte TCP-Verbindungen über einen
+ * Socket auf. TCP_NODELAY ist standardmäßig gesetzt: der CommandEncoder
+ * schreibt jedes Kommando am Stück, der Nagle-Algorithmus würde kleine
+ * Kommandos nur bis zum ACK der vorherigen zurückhalten.
+ *
+ * @author Marc Michele
+ *
+ */
+public class TcpTransport implements Transport {
+
+    /**
+     * TCP_NODELAY der Sockets.
+     */
+    private boolean tcpNoDelay = true;
+
+    /**
+     * SO_KEEPALIVE der Sockets.
+     */
+    private boolean keepAlive;
+
+    /**
+     * SO_SNDBUF in Bytes, 0 für den Standard des Systems.
+     */
+    private int sendBufferSize;
+
+    /**
+     * SO_RCVBUF in Bytes, 0 für den Standard des Systems.
+     */
+    private int receiveBufferSize;
+
+    @Override
+    public Link createLink(final String host, final int port)
+            throws IOException {
+        Socket socket = new Socket();
+        configure(socket);
+        return new SocketLink(this, socket, host, port);
+    }// Ende createLink(String, int)
+
+    /**
+     * Setzt TCP_NODELAY, standardmäßig true.
+     *
+     * @param noDelay - False wenn der Nagle-Algorithmus benutzt werden soll.
+     */
+    public final void setTcpNoDelay(final boolean noDelay) {
+        this.tcpNoDelay = noDelay;
+    }// Ende setTcpNoDelay(boolean)
+
+    /**
+     * Setzt SO_KEEPALIVE, standardmäßig false.
+     *
+     * @param on - True wenn das System tote Verbindungen erkennen soll.
+     */
+    public final void setKeepAlive(final boolean on) {
+        this.keepAlive = on;
+    }// Ende setKeepAlive(boolean)
+
+    /**
+     * Setzt die Größe des Sendepuffers.
+     *
+     * @param bytes - Größe in Bytes, 0 für den Standard des Systems.
+     */
+    public final void setSendBufferSize(final int bytes) {
+        this.sendBufferSize = Math.max(0, bytes);
+    }// Ende setSendBufferSize(int)
+
+    /**
+     * Setzt die Größe des Empfangspuffers, sie wird vor dem
+     * Verbindungsaufbau gesetzt damit das TCP-Fenster passt.
+     *
+     * @param bytes - Größe in Bytes, 0 für den Standard des Systems.
+     */
+    public final void setReceiveBufferSize(final int bytes) {
+        this.receiveBufferSize = Math.max(0, bytes);
+    }// Ende setReceiveBufferSize(int)
+
+    /**
+     * Setzt die Optionen an einem noch nicht verbundenen Socket.
+     *
+     * @param socket - Der Socket.
+     * @throws SocketException - Wenn eine Option nicht gesetzt werden kann.
+     */
+    protected final void configure(final Socket socket)
+            throws SocketException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        socket.setKeepAlive(keepAlive);
+        if (sendBufferSize > 0) {
+            socket.setSendBufferSize(sendBufferSize);
+        }
+        if (receiveBufferSize > 0) {
+            socket.setReceiveBufferSize(receiveBufferSize);
+        }
+    }// Ende configure(Socket)
+
+    /**
+     * Wird nach dem Verbindungsaufbau aufgerufen und liefert den Socket
+     * über den gesprochen wird, i.e. einen SSLSocket über dem verbundenen
+     * Socket.
+     *
+     * @param socket - Der verbundene Socket.
+     * @param host - Host des Servers.
+     * @param port - Port des Servers.
+     * @param timeoutMillis - Timeout in Millisekunden.
+     * @return Socket - Der übergebene Socket.
+     * @throws IOException - Wenn die Schicht nicht aufgebaut werden konnte.
+     */
+    protected Socket layer(final Socket socket, final String host,
+            final int port, final int timeoutMillis) throws IOException {
+        return socket;
+    }// Ende layer(Socket, String, int, int)
+
+}// Ende class
@@ -0,0 +1,58 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Die Klasse TlsTransport baut TLS-Verbindungen (imaps) auf. Der TLS
+ * Handshake läuft direkt nach dem Verbindungsaufbau innerhalb des Timeouts,
+ * die Optionen des TCP-Sockets werden wie beim TcpTransport gesetzt.
+ *
+ * @author Marc Michele
+ *
+ */
+public class TlsTransport extends TcpTransport {
+
+    /**
+     * Erzeugt die SSLSockets.
+     */
+    private final SSLSocketFactory factory;
+
+    /**
+     * Konstruktor der Klasse TlsTransport mit der Standard
+     * SSLSocketFactory des Systems.
+     */
+    public TlsTransport() {
+        this((SSLSocketFactory) SSLSocketFactory.getDefault());
+    }// Ende TlsTransport()
+
+    /**
+     * Konstruktor der Klasse TlsTransport.
+     *
+     * @param socketFactory - Erzeugt die SSLSockets, i.e. mit eigenem
+     *            TrustStore.
+     */
+    public TlsTransport(final SSLSocketFactory socketFactory) {
+        super();
+        this.factory = socketFactory;
+    }// Ende TlsTransport(SSLSocketFactory)
+
+    @Override
+    protected final Socket layer(final Socket socket, final String host,
+            final int port, final int timeoutMillis) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host,
+                port, true);
+        try {
+            sslSocket.setSoTimeout(timeoutMillis);
+            sslSocket.startHandshake();
+        } catch (IOException e) {
+            sslSocket.close();
+            throw e;
+        }
+        return sslSocket;
+    }// Ende layer(Socket, String, int, int)
+
+}// Ende class
@@ -0,0 +1,27 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+
+/**
+ * Das Interface Transport erzeugt die Leitungen über die JCyrAdm mit dem
+ * Server spricht. Eigene Transporte (i.e. über einen Tunnel) können über
+ * JCyrAdm.setTransport(Transport) gesetzt werden.
+ *
+ * @author Marc Michele
+ *
+ */
+public interface Transport {
+
+    /**
+     * Erzeugt eine noch nicht verbundene Leitung. Die Leitung wird vor dem
+     * Verbindungsaufbau erzeugt, damit ein aufgegebener Versuch sie auch
+     * während connect(int) schließen kann.
+     *
+     * @param host - Host des Servers.
+     * @param port - Port auf dem der Server lauscht.
+     * @return Link - Die neue Leitung.
+     * @throws IOException - Wenn die Leitung nicht erzeugt werden konnte.
+     */
+    Link createLink(String host, int port) throws IOException;
+
+}// Ende interface
@@ -0,0 +1,130 @@
+package de.tivsource.lib.jcyradm.transport;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Die Klasse UnixTransport verbindet über einen Unix Domain Socket mit einem
+ * Cyrus auf dem selben Host (i.e. "/var/run/cyrus/socket/imap" aus der
+ * cyrus.conf), ohne TCP-Stack und ohne TLS. Host und Port der Verbindung
+ * werden dabei ignoriert, sie dienen nur noch als Name für die HostHealth
+ * und den CircuitBreaker.
+ * <p>
+ * Unix Domain Sockets gibt es im SocketChannel erst ab Java 16, die Klassen
+ * werden deshalb über Reflection geladen. Der Kanal hat keinen Socket, ein
+ * Timeout beim Lesen wird also nicht unterstützt.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class UnixTransport implements Transport {
+
+    /**
+     * UnixDomainSocketAddress.of(String), null wenn nicht vorhanden.
+     */
+    private static final Method ADDRESS_OF;
+
+    /**
+     * SocketChannel.open(ProtocolFamily), null wenn nicht vorhanden.
+     */
+    private static final Method OPEN;
+
+    /**
+     * StandardProtocolFamily.UNIX, null wenn nicht vorhanden.
+     */
+    private static final ProtocolFamily UNIX;
+
+    static {
+        Method addressOf;
+        Method open;
+        ProtocolFamily unix;
+        try {
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", String.class);
+            open = SocketChannel.class.getMethod("open",
+                    ProtocolFamily.class);
+            unix = StandardProtocolFamily.valueOf("UNIX");
+        } catch (ReflectiveOperationException e) {
+            addressOf = null;
+            open = null;
+            unix = null;
+        } catch (IllegalArgumentException e) {
+            addressOf = null;
+            open = null;
+            unix = null;
+        }
+        ADDRESS_OF = addressOf;
+        OPEN = open;
+        UNIX = unix;
+    }
+
+    /**
+     * Pfad des Sockets.
+     */
+    private final String path;
+
+    /**
+     * Konstruktor der Klasse UnixTransport.
+     *
+     * @param socketPath - Pfad des Sockets auf dem Cyrus lauscht.
+     */
+    public UnixTransport(final String socketPath) {
+        super();
+        this.path = socketPath;
+    }// Ende UnixTransport(String)
+
+    /**
+     * Prüft ob die laufende Java Version Unix Domain Sockets unterstützt.
+     *
+     * @return boolean - True ab Java 16.
+     */
+    public static boolean isSupported() {
+        return ADDRESS_OF != null;
+    }// Ende isSupported()
+
+    @Override
+    public final Link createLink(final String host, final int port)
+            throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unix domain sockets need Java 16 or newer");
+        }
+        SocketAddress address = (SocketAddress) invoke(ADDRESS_OF, path);
+        SocketChannel channel = (SocketChannel) invoke(OPEN, UNIX);
+        return new ChannelLink(channel, address, false);
+    }// Ende createLink(String, int)
+
+    /**
+     * Liefert den Pfad des Sockets.
+     *
+     * @return String - Pfad des Sockets.
+     */
+    public final String getPath() {
+        return path;
+    }// Ende getPath()
+
+    /**
+     * Hilfs-Methode die eine statische Methode aufruft und ihre Ausnahmen
+     * als IOException weiterreicht.
+     */
+    private static Object invoke(final Method method, final Object argument)
+            throws IOException {
+        try {
+            return method.invoke(null, argument);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }// Ende invoke(Method, Object)
+
+}// Ende class
@@ -0,0 +1,8 @@
+/**
+ * In diesem Paket befinden sich die Transporte über die eine Verbindung zum
+ * Cyrus Server aufgebaut wird (TCP, TLS, NIO und Unix Domain Sockets).
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.transport;
@@ -0,0 +1,181 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import de.tivsource.lib.jcyradm.transport.Link;
+
+/**
+ * Die Klasse RecordingLink gibt alle Aufrufe an eine andere Leitung weiter
+ * und zeichnet dabei die gelesenen Bytes und die geschriebenen Kommandos
+ * auf. Ein Kommando wird erst aufgezeichnet wenn es vollständig ist, damit
+ * das Passwort von LOGIN ersetzt werden kann.
+ *
+ * @author Marc Michele
+ *
+ */
+class RecordingLink implements Link {
+
+    /**
+     * Die eigentliche Leitung.
+     */
+    private final Link delegate;
+
+    /**
+     * Ziel der Aufzeichnung.
+     */
+    private final WireRecorder recorder;
+
+    /**
+     * Host des Servers.
+     */
+    private final String host;
+
+    /**
+     * Port des Servers.
+     */
+    private final int port;
+
+    /**
+     * Zerlegt die geschriebenen Bytes in Kommandos.
+     */
+    private final WireLines commands = new WireLines();
+
+    /**
+     * Nummer der Verbindung in der Aufzeichnung, -1 vor connect().
+     */
+    private volatile int session = -1;
+
+    /**
+     * Aufzeichnender Stream, wird beim ersten Aufruf erzeugt.
+     */
+    private InputStream input;
+
+    /**
+     * Aufzeichnender Kanal, wird beim ersten Aufruf erzeugt.
+     */
+    private WritableByteChannel channel;
+
+    /**
+     * Konstruktor der Klasse RecordingLink.
+     */
+    RecordingLink(final Link link, final WireRecorder wireRecorder,
+            final String hostname, final int portNumber) {
+        this.delegate = link;
+        this.recorder = wireRecorder;
+        this.host = hostname;
+        this.port = portNumber;
+    }// Ende RecordingLink(Link, WireRecorder, String, int)
+
+    @Override
+    public final void connect(final int timeoutMillis) throws IOException {
+        delegate.connect(timeoutMillis);
+        synchronized (this) {
+            session = recorder.open(host, port);
+        }
+    }// Ende connect(int)
+
+    @Override
+    public final void setReadTimeout(final int timeoutMillis)
+            throws IOException {
+        delegate.setReadTimeout(timeoutMillis);
+    }// Ende setReadTimeout(int)
+
+    @Override
+    public final synchronized InputStream getInputStream()
+            throws IOException {
+        if (input == null) {
+            input = new FilterInputStream(delegate.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        received(new byte[] {(byte) b}, 0, 1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(final byte[] bytes, final int offset,
+                        final int count) throws IOException {
+                    int read = super.read(bytes, offset, count);
+                    if (read > 0) {
+                        received(bytes, offset, read);
+                    }
+                    return read;
+                }
+            };
+        }
+        return input;
+    }// Ende getInputStream()
+
+    @Override
+    public final synchronized WritableByteChannel getChannel()
+            throws IOException {
+        if (channel == null) {
+            final WritableByteChannel target = delegate.getChannel();
+            channel = new WritableByteChannel() {
+                @Override
+                public int write(final ByteBuffer source) throws IOException {
+                    ByteBuffer written = source.duplicate();
+                    int count = target.write(source);
+                    written.limit(written.position() + count);
+                    sent(written);
+                    return count;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return target.isOpen();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    RecordingLink.this.close();
+                }
+            };
+        }
+        return channel;
+    }// Ende getChannel()
+
+    @Override
+    public final void close() throws IOException {
+        synchronized (this) {
+            if (session >= 0) {
+                recorder.close(session);
+                session = -1;
+            }
+        }
+        delegate.close();
+    }// Ende close()
+
+    /**
+     * Hilfs-Methode die gelesene Bytes aufzeichnet.
+     */
+    private void received(final byte[] bytes, final int offset,
+            final int count) {
+        int current = session;
+        if (current >= 0) {
+            recorder.data(current, WireFormat.SERVER, bytes, offset, count);
+        }
+    }// Ende received(byte[], int, int)
+
+    /**
+     * Hilfs-Methode die die vollständigen Kommandos aufzeichnet.
+     */
+    private synchronized void sent(final ByteBuffer written) {
+        commands.append(written);
+        byte[] command;
+        while ((command = commands.next()) != null) {
+            if (session >= 0) {
+                byte[] redacted = WireLines.redact(command);
+                recorder.data(session, WireFormat.CLIENT, redacted, 0,
+                        redacted.length);
+            }
+        }
+    }// Ende sent(ByteBuffer)
+
+}// Ende class
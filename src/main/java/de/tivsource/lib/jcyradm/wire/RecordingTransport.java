@@ -0,0 +1,47 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.IOException;
+
+import de.tivsource.lib.jcyradm.transport.Link;
+import de.tivsource.lib.jcyradm.transport.Transport;
+
+/**
+ * Die Klasse RecordingTransport zeichnet den Datenverkehr der Leitungen
+ * eines anderen Transports mit einem WireRecorder auf.
+ *
+ * @author Marc Michele
+ *
+ */
+public class RecordingTransport implements Transport {
+
+    /**
+     * Transport der die eigentlichen Leitungen erzeugt.
+     */
+    private final Transport delegate;
+
+    /**
+     * Ziel der Aufzeichnung.
+     */
+    private final WireRecorder recorder;
+
+    /**
+     * Konstruktor der Klasse RecordingTransport.
+     *
+     * @param transport - Transport der die Leitungen erzeugt.
+     * @param wireRecorder - Ziel der Aufzeichnung.
+     */
+    public RecordingTransport(final Transport transport,
+            final WireRecorder wireRecorder) {
+        super();
+        this.delegate = transport;
+        this.recorder = wireRecorder;
+    }// Ende RecordingTransport(Transport, WireRecorder)
+
+    @Override
+    public final Link createLink(final String host, final int port)
+            throws IOException {
+        return new RecordingLink(delegate.createLink(host, port), recorder,
+                host, port);
+    }// Ende createLink(String, int)
+
+}// Ende class
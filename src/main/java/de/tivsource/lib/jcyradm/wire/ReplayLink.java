@@ -0,0 +1,289 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import de.tivsource.lib.jcyradm.transport.Link;
+
+/**
+ * Die Klasse ReplayLink ist eine Leitung die eine aufgezeichnete Verbindung
+ * abspielt. Geschriebene Kommandos werden nur nach ihrem Tag ausgewertet,
+ * gelesen werden die aufgezeichneten Antworten.
+ *
+ * @author Marc Michele
+ *
+ */
+class ReplayLink implements Link {
+
+    /**
+     * Die aufgezeichnete Verbindung.
+     */
+    private final WireReplay.Session session;
+
+    /**
+     * Faktor um den schneller als aufgezeichnet geantwortet wird.
+     */
+    private final double speed;
+
+    /**
+     * Zerlegt die geschriebenen Bytes in Kommandos.
+     */
+    private final WireLines commands = new WireLines();
+
+    /**
+     * Zeitpunkte der gesendeten Kommandos je Tag.
+     */
+    private final Map<String, ArrayDeque<Long>> sent =
+            new HashMap<String, ArrayDeque<Long>>();
+
+    /**
+     * Stream der Antworten.
+     */
+    private final InputStream input;
+
+    /**
+     * Kanal der Kommandos.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Timeout beim Warten auf ein Kommando in Millisekunden.
+     */
+    private volatile int timeout;
+
+    /**
+     * Wird von connect() gesetzt.
+     */
+    private boolean connected;
+
+    /**
+     * Wird von close() gesetzt.
+     */
+    private boolean closed;
+
+    /**
+     * Konstruktor der Klasse ReplayLink.
+     */
+    ReplayLink(final WireReplay.Session recorded, final double factor) {
+        this.session = recorded;
+        this.speed = factor;
+        this.input = new Responses();
+        this.channel = new Commands();
+    }// Ende ReplayLink(WireReplay.Session, double)
+
+    @Override
+    public final synchronized void connect(final int timeoutMillis)
+            throws IOException {
+        if (closed) {
+            throw new IOException("Link closed");
+        }
+        connected = true;
+    }// Ende connect(int)
+
+    @Override
+    public final void setReadTimeout(final int timeoutMillis) {
+        this.timeout = timeoutMillis;
+    }// Ende setReadTimeout(int)
+
+    @Override
+    public final synchronized InputStream getInputStream()
+            throws IOException {
+        checkConnected();
+        return input;
+    }// Ende getInputStream()
+
+    @Override
+    public final synchronized WritableByteChannel getChannel()
+            throws IOException {
+        checkConnected();
+        return channel;
+    }// Ende getChannel()
+
+    @Override
+    public final synchronized void close() {
+        closed = true;
+        notifyAll();
+    }// Ende close()
+
+    /**
+     * Hilfs-Methode die prüft ob die Leitung verbunden ist.
+     */
+    private void checkConnected() throws IOException {
+        if (!connected || closed) {
+            throw new IOException("Link not connected");
+        }
+    }// Ende checkConnected()
+
+    /**
+     * Hilfs-Methode die die Tags der vollständigen Kommandos merkt.
+     */
+    private synchronized void sent(final ByteBuffer written) {
+        long now = System.nanoTime();
+        commands.append(written);
+        byte[] command;
+        while ((command = commands.next()) != null) {
+            String tag = WireLines.tag(command);
+            ArrayDeque<Long> times = sent.get(tag);
+            if (times == null) {
+                times = new ArrayDeque<Long>();
+                sent.put(tag, times);
+            }
+            times.add(now);
+        }
+        notifyAll();
+    }// Ende sent(ByteBuffer)
+
+    /**
+     * Hilfs-Methode die auf das Kommando mit dem Tag wartet und den
+     * Zeitpunkt liefert an dem es gesendet wurde.
+     */
+    private synchronized long await(final String tag) throws IOException {
+        long limit = timeout;
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(limit);
+        while (true) {
+            if (closed) {
+                throw new IOException("Link closed");
+            }
+            ArrayDeque<Long> times = sent.get(tag);
+            if (times != null && !times.isEmpty()) {
+                return times.poll();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (limit > 0 && remaining <= 0) {
+                throw new SocketTimeoutException("No command with tag "
+                        + tag + " sent");
+            }
+            try {
+                if (limit > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } else {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted in replay");
+            }
+        }
+    }// Ende await(String)
+
+    /**
+     * Liefert die Antworten, jede erst nach ihrem Kommando und der
+     * aufgezeichneten Antwortzeit.
+     */
+    private final class Responses extends InputStream {
+
+        /**
+         * Die aktuell gelesenen Bytes.
+         */
+        private byte[] current = session.getGreeting();
+
+        /**
+         * Position in current.
+         */
+        private int position;
+
+        /**
+         * Index der nächsten Antwort.
+         */
+        private int next;
+
+        /**
+         * Wird gesetzt wenn die Bytes nach der letzten Antwort geliefert
+         * wurden.
+         */
+        private boolean finished;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset,
+                final int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            while (position == current.length) {
+                if (!advance()) {
+                    return -1;
+                }
+            }
+            int read = Math.min(count, current.length - position);
+            System.arraycopy(current, position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+
+        /**
+         * Wechselt zur nächsten Antwort.
+         */
+        private boolean advance() throws IOException {
+            List<WireReplay.Response> responses = session.getResponses();
+            if (next < responses.size()) {
+                WireReplay.Response response = responses.get(next++);
+                long due = await(response.getTag())
+                        + (long) (response.getLatency() / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException(
+                                "Interrupted in replay");
+                    }
+                }
+                current = response.getData();
+            } else if (!finished) {
+                finished = true;
+                current = session.getTrailing();
+            } else {
+                return false;
+            }
+            position = 0;
+            return true;
+        }
+    }// Ende class Responses
+
+    /**
+     * Nimmt die Kommandos entgegen.
+     */
+    private final class Commands implements WritableByteChannel {
+
+        @Override
+        public int write(final ByteBuffer source) throws IOException {
+            if (!isOpen()) {
+                throw new IOException("Link closed");
+            }
+            int count = source.remaining();
+            sent(source);
+            source.position(source.limit());
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            synchronized (ReplayLink.this) {
+                return !closed;
+            }
+        }
+
+        @Override
+        public void close() {
+            ReplayLink.this.close();
+        }
+    }// Ende class Commands
+
+}// Ende class
@@ -0,0 +1,76 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.tivsource.lib.jcyradm.transport.Link;
+import de.tivsource.lib.jcyradm.transport.Transport;
+
+/**
+ * Die Klasse ReplayTransport spielt eine Aufzeichnung ohne Server ab. Jede
+ * neue Leitung bekommt die nächste aufgezeichnete Verbindung, die Antworten
+ * kommen erst wenn das Kommando mit dem selben Tag gesendet wurde und dann
+ * nach der aufgezeichneten Antwortzeit geteilt durch die Geschwindigkeit.
+ * Geänderte Parser, Pipeline-Tiefen oder Pool-Größen lassen sich so mit dem
+ * Verkehr aus der Produktion messen.
+ * <p>
+ * Es sollte nur ein Host gesetzt sein, sonst verbrauchen parallele
+ * Verbindungsversuche Verbindungen der Aufzeichnung.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class ReplayTransport implements Transport {
+
+    /**
+     * Die Aufzeichnung.
+     */
+    private final WireReplay replay;
+
+    /**
+     * Faktor um den schneller als aufgezeichnet geantwortet wird.
+     */
+    private final double speed;
+
+    /**
+     * Nummer der nächsten Verbindung.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Konstruktor der Klasse ReplayTransport.
+     *
+     * @param wireReplay - Die Aufzeichnung.
+     * @param factor - 1 für die aufgezeichneten Antwortzeiten, 10 für ein
+     *            Zehntel, Double.POSITIVE_INFINITY für sofort.
+     */
+    public ReplayTransport(final WireReplay wireReplay, final double factor) {
+        super();
+        if (!(factor > 0)) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        this.replay = wireReplay;
+        this.speed = factor;
+    }// Ende ReplayTransport(WireReplay, double)
+
+    @Override
+    public final Link createLink(final String host, final int port)
+            throws IOException {
+        int index = next.getAndIncrement();
+        if (index >= replay.getSessionCount()) {
+            throw new IOException("No recorded session left for " + host);
+        }
+        return new ReplayLink(replay.getSession(index), speed);
+    }// Ende createLink(String, int)
+
+    /**
+     * Liefert die Anzahl der bereits abgespielten Verbindungen.
+     *
+     * @return int - Anzahl der erzeugten Leitungen.
+     */
+    public final int getLinks() {
+        return Math.min(next.get(), replay.getSessionCount());
+    }// Ende getLinks()
+
+}// Ende class
@@ -0,0 +1,87 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Die Klasse WireFormat enthält die Konstanten und Hilfs-Methoden des
+ * Aufzeichnungs-Formats.
+ * <p>
+ * Nach dem Kopf (Kennung, Version, Beginn in Millisekunden seit 1970)
+ * folgen die Einträge: Typ als Byte, Nummer der Verbindung und Abstand zum
+ * vorherigen Eintrag in Mikrosekunden als Varint. OPEN enthält danach Host
+ * und Port, CLIENT und SERVER die Länge als Varint und die Bytes.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+final class WireFormat {
+
+    /**
+     * Kennung am Anfang einer Aufzeichnung ("JCYW").
+     */
+    static final int MAGIC = 0x4A435957;
+
+    /**
+     * Version des Formats.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Eine Verbindung wurde aufgebaut.
+     */
+    static final int OPEN = 1;
+
+    /**
+     * Bytes vom Client zum Server.
+     */
+    static final int CLIENT = 2;
+
+    /**
+     * Bytes vom Server zum Client.
+     */
+    static final int SERVER = 3;
+
+    /**
+     * Eine Verbindung wurde geschlossen.
+     */
+    static final int CLOSE = 4;
+
+    /**
+     * Privater Konstruktor, es gibt nur statische Methoden.
+     */
+    private WireFormat() {
+        super();
+    }// Ende WireFormat()
+
+    /**
+     * Schreibt einen Varint.
+     */
+    static void writeVarint(final DataOutput out, final long value)
+            throws IOException {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            out.write((int) (rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        out.write((int) rest);
+    }// Ende writeVarint(DataOutput, long)
+
+    /**
+     * Liest einen Varint.
+     */
+    static long readVarint(final DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }// Ende readVarint(DataInput)
+
+}// Ende class
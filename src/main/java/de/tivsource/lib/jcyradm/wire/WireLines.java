@@ -0,0 +1,243 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Die Klasse WireLines zerlegt einen Byte-Strom in IMAP Zeilen. Literale
+ * ("{5}" oder "{5+}" am Ende einer Zeile) gehören samt ihrer Bytes zur
+ * Zeile, eine Zeile ist also immer ein ganzes Kommando oder eine ganze
+ * Antwort.
+ *
+ * @author Marc Michele
+ *
+ */
+final class WireLines {
+
+    /**
+     * Zeichensatz der Tags.
+     */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Ersatz für das Passwort in LOGIN.
+     */
+    private static final byte[] REDACTED = " \"***\"\r\n".getBytes(ASCII);
+
+    /**
+     * Puffer der noch nicht vollständigen Zeile.
+     */
+    private byte[] buffer = new byte[256];
+
+    /**
+     * Anzahl der Bytes im Puffer.
+     */
+    private int length;
+
+    /**
+     * Anzahl der bereits untersuchten Bytes.
+     */
+    private int scanned;
+
+    /**
+     * Noch zu überspringende Bytes eines Literals.
+     */
+    private long literal;
+
+    /**
+     * Hängt Bytes an.
+     */
+    void append(final byte[] bytes, final int offset, final int count) {
+        ensure(count);
+        System.arraycopy(bytes, offset, buffer, length, count);
+        length += count;
+    }// Ende append(byte[], int, int)
+
+    /**
+     * Hängt die Bytes zwischen position und limit an, ohne die Position des
+     * Puffers zu verändern.
+     */
+    void append(final ByteBuffer bytes) {
+        ByteBuffer source = bytes.duplicate();
+        ensure(source.remaining());
+        int count = source.remaining();
+        source.get(buffer, length, count);
+        length += count;
+    }// Ende append(ByteBuffer)
+
+    /**
+     * Liefert die nächste vollständige Zeile samt CRLF.
+     *
+     * @return byte[] - Die Zeile, null wenn noch keine vollständig ist.
+     */
+    byte[] next() {
+        while (scanned < length) {
+            if (literal > 0) {
+                int skip = (int) Math.min(literal, length - scanned);
+                scanned += skip;
+                literal -= skip;
+                continue;
+            }
+            if (buffer[scanned++] != '\n') {
+                continue;
+            }
+            long size = literalSize(buffer, scanned - 1);
+            if (size >= 0) {
+                literal = size;
+                continue;
+            }
+            byte[] line = Arrays.copyOf(buffer, scanned);
+            System.arraycopy(buffer, scanned, buffer, 0, length - scanned);
+            length -= scanned;
+            scanned = 0;
+            return line;
+        }
+        return null;
+    }// Ende next()
+
+    /**
+     * Liefert die Bytes einer unvollständigen Zeile und leert den Puffer.
+     *
+     * @return byte[] - Die restlichen Bytes, leer wenn keine.
+     */
+    byte[] rest() {
+        byte[] rest = Arrays.copyOf(buffer, length);
+        length = 0;
+        scanned = 0;
+        literal = 0;
+        return rest;
+    }// Ende rest()
+
+    /**
+     * Liefert das Tag einer Zeile.
+     *
+     * @param line - Kommando oder Antwort.
+     * @return String - Das Tag, null bei "*" und "+".
+     */
+    static String tag(final byte[] line) {
+        int end = 0;
+        while (end < line.length && line[end] != ' ' && line[end] != '\r') {
+            end++;
+        }
+        if (end == 0 || (end == 1 && (line[0] == '*' || line[0] == '+'))) {
+            return null;
+        }
+        return new String(line, 0, end, ASCII);
+    }// Ende tag(byte[])
+
+    /**
+     * Ersetzt das Passwort eines LOGIN Kommandos durch "***", alle
+     * anderen Kommandos bleiben unverändert.
+     *
+     * @param command - Vollständiges Kommando samt CRLF.
+     * @return byte[] - Das Kommando ohne Passwort.
+     */
+    static byte[] redact(final byte[] command) {
+        int position = word(command, 0);
+        int end = word(command, position);
+        if (!"LOGIN".equalsIgnoreCase(new String(command, position,
+                Math.max(0, end - position - 1), ASCII))) {
+            return command;
+        }
+        // Der Benutzer bleibt stehen, alles danach wird ersetzt
+        int user = astring(command, end);
+        if (user < 0) {
+            user = end;
+        }
+        while (user > 0 && command[user - 1] == ' ') {
+            user--;
+        }
+        byte[] redacted = Arrays.copyOf(command, user + REDACTED.length);
+        System.arraycopy(REDACTED, 0, redacted, user, REDACTED.length);
+        return redacted;
+    }// Ende redact(byte[])
+
+    /**
+     * Hilfs-Methode die den Anfang des nächsten Wortes nach position
+     * liefert.
+     */
+    private static int word(final byte[] line, final int position) {
+        int index = position;
+        while (index < line.length && line[index] != ' '
+                && line[index] != '\r') {
+            index++;
+        }
+        return Math.min(index + 1, line.length);
+    }// Ende word(byte[], int)
+
+    /**
+     * Hilfs-Methode die das Ende eines Atoms, Quoted Strings oder Literals
+     * liefert, -1 wenn es unvollständig ist.
+     */
+    private static int astring(final byte[] line, final int position) {
+        if (position >= line.length) {
+            return -1;
+        }
+        if (line[position] == '"') {
+            for (int index = position + 1; index < line.length; index++) {
+                if (line[index] == '\\') {
+                    index++;
+                } else if (line[index] == '"') {
+                    return index + 1;
+                }
+            }
+            return -1;
+        }
+        if (line[position] == '{') {
+            int index = position + 1;
+            long size = 0;
+            while (index < line.length && line[index] >= '0'
+                    && line[index] <= '9') {
+                size = size * 10 + line[index++] - '0';
+            }
+            while (index < line.length && line[index] != '\n') {
+                index++;
+            }
+            long end = index + 1 + size;
+            return end > line.length ? -1 : (int) end;
+        }
+        return word(line, position) - 1;
+    }// Ende astring(byte[], int)
+
+    /**
+     * Hilfs-Methode die die Länge eines Literals am Ende der Zeile liefert,
+     * -1 wenn die Zeile nicht mit einem Literal endet.
+     */
+    private static long literalSize(final byte[] line, final int lineFeed) {
+        int end = lineFeed;
+        if (end > 0 && line[end - 1] == '\r') {
+            end--;
+        }
+        if (end < 3 || line[end - 1] != '}') {
+            return -1;
+        }
+        int index = end - 2;
+        if (line[index] == '+') {
+            index--;
+        }
+        int last = index;
+        while (index >= 0 && line[index] >= '0' && line[index] <= '9') {
+            index--;
+        }
+        if (index < 0 || index == last || line[index] != '{') {
+            return -1;
+        }
+        long size = 0;
+        for (int digit = index + 1; digit <= last; digit++) {
+            size = size * 10 + line[digit] - '0';
+        }
+        return size;
+    }// Ende literalSize(byte[], int)
+
+    /**
+     * Hilfs-Methode die den Puffer vergrößert.
+     */
+    private void ensure(final int count) {
+        if (length + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2,
+                    length + count));
+        }
+    }// Ende ensure(int)
+
+}// Ende class
@@ -0,0 +1,211 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Die Klasse WireRecorder schreibt den Datenverkehr aller Verbindungen eines
+ * RecordingTransport mit Zeitstempeln in eine kompakte Binär-Datei (siehe
+ * WireFormat). Die Kommandos werden vollständig geschrieben, bei LOGIN ohne
+ * Passwort.
+ * <p>
+ * Die Aufzeichnung darf den Betrieb nicht stören: ein Fehler beim Schreiben
+ * wird einmal protokolliert und beendet die Aufzeichnung, die Verbindungen
+ * laufen weiter. Alle Methoden sind synchronisiert.
+ * </p>
+ *
+ * @author Marc Michele
+ *
+ */
+public class WireRecorder implements Closeable {
+
+    /**
+     * Statischer Logger der Klasse WireRecorder.
+     */
+    private static final Logger LOGGER = Logger.getLogger(WireRecorder.class);
+
+    /**
+     * Größe des Schreib-Puffers in Bytes.
+     */
+    private static final int WRITE_BUFFER = 64 * 1024;
+
+    /**
+     * Ziel der Aufzeichnung.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Beginn der Aufzeichnung in Nanosekunden.
+     */
+    private final long start;
+
+    /**
+     * Zeitpunkt des letzten Eintrags in Mikrosekunden seit Beginn.
+     */
+    private long lastMicros;
+
+    /**
+     * Anzahl der aufgezeichneten Verbindungen.
+     */
+    private int sessions;
+
+    /**
+     * Anzahl der geschriebenen Einträge.
+     */
+    private long records;
+
+    /**
+     * Erster Fehler beim Schreiben, danach wird nichts mehr aufgezeichnet.
+     */
+    private IOException failure;
+
+    /**
+     * Wird von close() gesetzt.
+     */
+    private boolean closed;
+
+    /**
+     * Konstruktor der Klasse WireRecorder.
+     *
+     * @param file - Datei der Aufzeichnung, wird überschrieben.
+     * @throws IOException - Wenn die Datei nicht angelegt werden konnte.
+     */
+    public WireRecorder(final File file) throws IOException {
+        this(new FileOutputStream(file));
+    }// Ende WireRecorder(File)
+
+    /**
+     * Konstruktor der Klasse WireRecorder.
+     *
+     * @param stream - Ziel der Aufzeichnung, wird von close() geschlossen.
+     * @throws IOException - Wenn der Kopf nicht geschrieben werden konnte.
+     */
+    public WireRecorder(final OutputStream stream) throws IOException {
+        super();
+        this.out = new DataOutputStream(new BufferedOutputStream(stream,
+                WRITE_BUFFER));
+        out.writeInt(WireFormat.MAGIC);
+        out.writeInt(WireFormat.VERSION);
+        out.writeLong(System.currentTimeMillis());
+        this.start = System.nanoTime();
+    }// Ende WireRecorder(OutputStream)
+
+    /**
+     * Liefert die Anzahl der geschriebenen Einträge.
+     *
+     * @return long - Anzahl der Einträge.
+     */
+    public final synchronized long getRecords() {
+        return records;
+    }// Ende getRecords()
+
+    /**
+     * Liefert den Fehler der die Aufzeichnung beendet hat.
+     *
+     * @return IOException - Der Fehler, null wenn keiner auftrat.
+     */
+    public final synchronized IOException getFailure() {
+        return failure;
+    }// Ende getFailure()
+
+    /**
+     * Schreibt die gepufferten Einträge in die Datei.
+     */
+    public final synchronized void flush() {
+        if (!closed && failure == null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }// Ende flush()
+
+    @Override
+    public final synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+    }// Ende close()
+
+    /**
+     * Zeichnet eine neue Verbindung auf.
+     *
+     * @return int - Nummer der Verbindung.
+     */
+    final synchronized int open(final String host, final int port) {
+        int session = sessions++;
+        if (header(WireFormat.OPEN, session)) {
+            try {
+                out.writeUTF(host);
+                WireFormat.writeVarint(out, port);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return session;
+    }// Ende open(String, int)
+
+    /**
+     * Zeichnet übertragene Bytes auf.
+     */
+    final synchronized void data(final int session, final int type,
+            final byte[] bytes, final int offset, final int count) {
+        if (header(type, session)) {
+            try {
+                WireFormat.writeVarint(out, count);
+                out.write(bytes, offset, count);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }// Ende data(int, int, byte[], int, int)
+
+    /**
+     * Zeichnet das Ende einer Verbindung auf.
+     */
+    final synchronized void close(final int session) {
+        header(WireFormat.CLOSE, session);
+    }// Ende close(int)
+
+    /**
+     * Hilfs-Methode die Typ, Verbindung und Zeitabstand eines Eintrags
+     * schreibt.
+     */
+    private boolean header(final int type, final int session) {
+        if (closed || failure != null) {
+            return false;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        try {
+            out.write(type);
+            WireFormat.writeVarint(out, session);
+            WireFormat.writeVarint(out, Math.max(0L, micros - lastMicros));
+            lastMicros = Math.max(lastMicros, micros);
+            records++;
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }// Ende header(int, int)
+
+    /**
+     * Hilfs-Methode die die Aufzeichnung nach einem Fehler beendet.
+     */
+    private void fail(final IOException e) {
+        LOGGER.warn("Aufzeichnung beendet: " + e.getMessage());
+        failure = e;
+    }// Ende fail(IOException)
+
+}// Ende class
@@ -0,0 +1,401 @@
+package de.tivsource.lib.jcyradm.wire;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Die Klasse WireReplay liest eine Aufzeichnung des WireRecorders und
+ * bereitet sie für den ReplayTransport auf. Die Antworten des Servers werden
+ * dabei in Gruppen zerlegt: alle ungetaggten Zeilen bis einschließlich der
+ * getaggten Abschluss-Zeile eines Kommandos. Zu jeder Gruppe wird die
+ * Antwortzeit gemerkt, i.e. der Abstand zwischen dem Senden des Kommandos
+ * mit dem Tag und dem Eintreffen der Abschluss-Zeile.
+ *
+ * @author Marc Michele
+ *
+ */
+public final class WireReplay {
+
+    /**
+     * Die Verbindungen in der Reihenfolge in der sie aufgebaut wurden.
+     */
+    private final List<Session> sessions;
+
+    /**
+     * Beginn der Aufzeichnung in Millisekunden seit 1970.
+     */
+    private final long started;
+
+    /**
+     * Privater Konstruktor, siehe load().
+     */
+    private WireReplay(final List<Session> recorded, final long start) {
+        super();
+        this.sessions = recorded;
+        this.started = start;
+    }// Ende WireReplay(List<Session>, long)
+
+    /**
+     * Liest eine Aufzeichnung aus einer Datei.
+     *
+     * @param file - Datei des WireRecorders.
+     * @return WireReplay - Die aufbereitete Aufzeichnung.
+     * @throws IOException - Wenn die Datei nicht gelesen werden konnte oder
+     *             keine Aufzeichnung ist.
+     */
+    public static WireReplay load(final File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+        try {
+            return load(stream);
+        } finally {
+            stream.close();
+        }
+    }// Ende load(File)
+
+    /**
+     * Liest eine Aufzeichnung aus einem Stream, der Stream bleibt offen.
+     *
+     * @param stream - Daten des WireRecorders.
+     * @return WireReplay - Die aufbereitete Aufzeichnung.
+     * @throws IOException - Wenn der Stream nicht gelesen werden konnte
+     *             oder keine Aufzeichnung enthält.
+     */
+    public static WireReplay load(final InputStream stream)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                stream));
+        if (in.readInt() != WireFormat.MAGIC) {
+            throw new IOException("Not a wire recording");
+        }
+        int version = in.readInt();
+        if (version != WireFormat.VERSION) {
+            throw new IOException("Unsupported recording version "
+                    + version);
+        }
+        long start = in.readLong();
+
+        List<Session> sessions = new ArrayList<Session>();
+        Map<Integer, Builder> open = new HashMap<Integer, Builder>();
+        long micros = 0;
+        int type;
+        while ((type = in.read()) >= 0) {
+            int number = (int) WireFormat.readVarint(in);
+            micros += WireFormat.readVarint(in);
+            long nanos = TimeUnit.MICROSECONDS.toNanos(micros);
+            Builder builder = open.get(number);
+            switch (type) {
+            case WireFormat.OPEN:
+                // Host und Port werden beim Abspielen nicht gebraucht
+                in.readUTF();
+                WireFormat.readVarint(in);
+                builder = new Builder(nanos);
+                open.put(number, builder);
+                break;
+            case WireFormat.CLIENT:
+            case WireFormat.SERVER:
+                byte[] bytes = new byte[(int) WireFormat.readVarint(in)];
+                in.readFully(bytes);
+                if (builder == null) {
+                    throw new IOException("Data for unknown session "
+                            + number);
+                }
+                if (type == WireFormat.CLIENT) {
+                    builder.client(bytes, nanos);
+                } else {
+                    builder.server(bytes, nanos);
+                }
+                break;
+            case WireFormat.CLOSE:
+                if (builder != null) {
+                    sessions.add(builder.build());
+                    open.remove(number);
+                }
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+            }
+        }
+        /*
+         * Verbindungen die bei Ende der Aufzeichnung noch offen waren.
+         */
+        List<Integer> numbers = new ArrayList<Integer>(open.keySet());
+        Collections.sort(numbers);
+        for (Integer number : numbers) {
+            sessions.add(open.get(number).build());
+        }
+        Collections.sort(sessions);
+        return new WireReplay(sessions, start);
+    }// Ende load(InputStream)
+
+    /**
+     * Liefert die Anzahl der aufgezeichneten Verbindungen.
+     *
+     * @return int - Anzahl der Verbindungen.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }// Ende getSessionCount()
+
+    /**
+     * Liefert die Anzahl der aufgezeichneten Antworten auf Kommandos.
+     *
+     * @return int - Anzahl der Antworten aller Verbindungen.
+     */
+    public int getResponseCount() {
+        int count = 0;
+        for (Session session : sessions) {
+            count += session.responses.size();
+        }
+        return count;
+    }// Ende getResponseCount()
+
+    /**
+     * Liefert den Beginn der Aufzeichnung.
+     *
+     * @return long - Millisekunden seit 1970.
+     */
+    public long getStarted() {
+        return started;
+    }// Ende getStarted()
+
+    /**
+     * Liefert eine Verbindung.
+     */
+    Session getSession(final int index) {
+        return sessions.get(index);
+    }// Ende getSession(int)
+
+    /**
+     * Eine aufgezeichnete Verbindung.
+     */
+    static final class Session implements Comparable<Session> {
+
+        /**
+         * Zeitpunkt des Verbindungsaufbaus in Nanosekunden.
+         */
+        private final long opened;
+
+        /**
+         * Willkommens-Nachricht und alles was vor dem ersten Kommando kam.
+         */
+        private final byte[] greeting;
+
+        /**
+         * Antworten auf die Kommandos.
+         */
+        private final List<Response> responses;
+
+        /**
+         * Bytes nach der letzten Antwort.
+         */
+        private final byte[] trailing;
+
+        /**
+         * Konstruktor der Klasse Session.
+         */
+        private Session(final long openedAt, final byte[] welcome,
+                final List<Response> answers, final byte[] rest) {
+            this.opened = openedAt;
+            this.greeting = welcome;
+            this.responses = answers;
+            this.trailing = rest;
+        }
+
+        /**
+         * Liefert die Willkommens-Nachricht.
+         */
+        byte[] getGreeting() {
+            return greeting;
+        }
+
+        /**
+         * Liefert die Antworten.
+         */
+        List<Response> getResponses() {
+            return responses;
+        }
+
+        /**
+         * Liefert die Bytes nach der letzten Antwort.
+         */
+        byte[] getTrailing() {
+            return trailing;
+        }
+
+        @Override
+        public int compareTo(final Session other) {
+            return opened < other.opened ? -1
+                    : (opened == other.opened ? 0 : 1);
+        }
+    }// Ende class Session
+
+    /**
+     * Die Antwort auf ein Kommando.
+     */
+    static final class Response {
+
+        /**
+         * Tag des Kommandos.
+         */
+        private final String tag;
+
+        /**
+         * Antwortzeit in Nanosekunden.
+         */
+        private final long latency;
+
+        /**
+         * Alle Zeilen der Antwort.
+         */
+        private final byte[] data;
+
+        /**
+         * Konstruktor der Klasse Response.
+         */
+        private Response(final String commandTag, final long nanos,
+                final byte[] lines) {
+            this.tag = commandTag;
+            this.latency = nanos;
+            this.data = lines;
+        }
+
+        /**
+         * Liefert das Tag des Kommandos.
+         */
+        String getTag() {
+            return tag;
+        }
+
+        /**
+         * Liefert die Antwortzeit in Nanosekunden.
+         */
+        long getLatency() {
+            return latency;
+        }
+
+        /**
+         * Liefert die Zeilen der Antwort.
+         */
+        byte[] getData() {
+            return data;
+        }
+    }// Ende class Response
+
+    /**
+     * Baut eine Verbindung beim Lesen der Aufzeichnung auf.
+     */
+    private static final class Builder {
+
+        /**
+         * Zeitpunkt des Verbindungsaufbaus in Nanosekunden.
+         */
+        private final long opened;
+
+        /**
+         * Zerlegt die Kommandos.
+         */
+        private final WireLines commands = new WireLines();
+
+        /**
+         * Zerlegt die Antworten.
+         */
+        private final WireLines answers = new WireLines();
+
+        /**
+         * Zeitpunkte der gesendeten Kommandos je Tag.
+         */
+        private final Map<String, ArrayDeque<Long>> sent =
+                new HashMap<String, ArrayDeque<Long>>();
+
+        /**
+         * Zeilen der aktuellen Antwort.
+         */
+        private final ByteArrayOutputStream pending =
+                new ByteArrayOutputStream();
+
+        /**
+         * Die fertigen Antworten.
+         */
+        private final List<Response> responses = new ArrayList<Response>();
+
+        /**
+         * Die Willkommens-Nachricht, null vor dem ersten Kommando.
+         */
+        private byte[] greeting;
+
+        /**
+         * Konstruktor der Klasse Builder.
+         */
+        private Builder(final long openedAt) {
+            this.opened = openedAt;
+        }
+
+        /**
+         * Verarbeitet gesendete Bytes.
+         */
+        private void client(final byte[] bytes, final long nanos) {
+            if (greeting == null) {
+                greeting = pending.toByteArray();
+                pending.reset();
+            }
+            commands.append(bytes, 0, bytes.length);
+            byte[] command;
+            while ((command = commands.next()) != null) {
+                String tag = WireLines.tag(command);
+                ArrayDeque<Long> times = sent.get(tag);
+                if (times == null) {
+                    times = new ArrayDeque<Long>();
+                    sent.put(tag, times);
+                }
+                times.add(nanos);
+            }
+        }
+
+        /**
+         * Verarbeitet empfangene Bytes.
+         */
+        private void server(final byte[] bytes, final long nanos) {
+            answers.append(bytes, 0, bytes.length);
+            byte[] line;
+            while ((line = answers.next()) != null) {
+                pending.write(line, 0, line.length);
+                String tag = WireLines.tag(line);
+                if (tag == null || greeting == null) {
+                    continue;
+                }
+                ArrayDeque<Long> times = sent.get(tag);
+                Long sentAt = times == null ? null : times.poll();
+                long latency = sentAt == null ? 0L : nanos - sentAt;
+                responses.add(new Response(tag, latency,
+                        pending.toByteArray()));
+                pending.reset();
+            }
+        }
+
+        /**
+         * Erzeugt die fertige Verbindung.
+         */
+        private Session build() {
+            byte[] rest = answers.rest();
+            pending.write(rest, 0, rest.length);
+            byte[] left = pending.toByteArray();
+            if (greeting == null) {
+                return new Session(opened, left, responses, new byte[0]);
+            }
+            return new Session(opened, greeting, responses, left);
+        }
+    }// Ende class Builder
+
+}// Ende class
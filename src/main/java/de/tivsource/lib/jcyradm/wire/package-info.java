@@ -0,0 +1,10 @@
+/**
+ * In diesem Paket befinden sich die Klassen die den Datenverkehr mit dem
+ * Cyrus Server aufzeichnen und später ohne Server wieder abspielen, i.e. um
+ * Änderungen am Parser, am Pipelining oder am Pool mit echtem Verkehr aus
+ * der Produktion zu messen.
+ *
+ * @author Marc Michele
+ *
+ */
+package de.tivsource.lib.jcyradm.wire;
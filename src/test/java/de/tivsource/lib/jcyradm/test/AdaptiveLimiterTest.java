@@ -0,0 +1,113 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.pool.AdaptiveLimiter;
+import de.tivsource.lib.jcyradm.pool.Priority;
+import de.tivsource.lib.jcyradm.pool.PriorityScheduler;
+import de.tivsource.lib.jcyradm.pool.TokenBucket;
+
+/**
+ * In diesem Test werden die Klassen AdaptiveLimiter, TokenBucket und
+ * PriorityScheduler getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class AdaptiveLimiterTest extends TestCase {
+
+    private static final long MILLI = 1000000L;
+
+    public void testIncreaseOnLowLatency() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 64);
+        for (int i = 0; i < 200; i++) {
+            limiter.sample(10 * MILLI, true);
+        }
+        assertTrue(limiter.getLimit() > 4);
+        assertTrue(limiter.getLimit() <= 64);
+    }
+
+    public void testDecreaseOnHighLatency() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(32, 1, 64);
+        limiter.sample(10 * MILLI, true);
+        int before = limiter.getLimit();
+        limiter.sample(100 * MILLI, true);
+        assertTrue(limiter.getLimit() < before);
+    }
+
+    public void testDecreaseOnFailure() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 5, 64);
+        for (int i = 0; i < 100; i++) {
+            limiter.sample(0, false);
+            limiter.sample(-1, false);
+        }
+        assertTrue(limiter.getLimit() >= 5);
+        assertTrue(limiter.getLimit() < 10);
+    }
+
+    public void testAcquire() throws InterruptedException {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 2);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.acquire(10, TimeUnit.MILLISECONDS));
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.acquire(10, TimeUnit.MILLISECONDS));
+        limiter.release(MILLI, true);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    public void testTokenBucket() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 2);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        long start = System.nanoTime();
+        bucket.acquire();
+        assertTrue(System.nanoTime() - start >= 5 * MILLI);
+    }
+
+    public void testReservedForInteractive() throws InterruptedException {
+        PriorityScheduler scheduler =
+                new PriorityScheduler(new AdaptiveLimiter(4, 4, 4));
+        scheduler.setReserved(2);
+        assertTrue(scheduler.acquire(Priority.BULK, 10, TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.acquire(Priority.BULK, 10, TimeUnit.MILLISECONDS));
+        assertFalse(scheduler.acquire(Priority.BULK, 10,
+                TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.acquire(Priority.INTERACTIVE, 10,
+                TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.acquire(Priority.INTERACTIVE, 10,
+                TimeUnit.MILLISECONDS));
+        assertFalse(scheduler.acquire(Priority.INTERACTIVE, 10,
+                TimeUnit.MILLISECONDS));
+        assertEquals(2, scheduler.getInFlight(Priority.BULK));
+        assertEquals(2, scheduler.getInFlight(Priority.INTERACTIVE));
+    }
+
+    public void testInteractiveOvertakesBulk() throws Exception {
+        final PriorityScheduler scheduler =
+                new PriorityScheduler(new AdaptiveLimiter(1, 1, 1));
+        scheduler.setReserved(0);
+        assertTrue(scheduler.acquire(Priority.BULK, 10, TimeUnit.MILLISECONDS));
+        Thread interactive = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.acquire(Priority.INTERACTIVE, 5,
+                            TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        };
+        interactive.start();
+        Thread.sleep(50);
+        scheduler.release(Priority.BULK, MILLI, true);
+        interactive.join(5000);
+        assertEquals(1, scheduler.getInFlight(Priority.INTERACTIVE));
+        assertFalse(scheduler.acquire(Priority.BULK, 10,
+                TimeUnit.MILLISECONDS));
+    }
+
+} // Ende class
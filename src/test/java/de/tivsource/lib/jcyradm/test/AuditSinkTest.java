@@ -0,0 +1,175 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.audit.AuditAction;
+import de.tivsource.lib.jcyradm.audit.AuditRecord;
+import de.tivsource.lib.jcyradm.audit.RingBufferAuditSink;
+import de.tivsource.lib.jcyradm.audit.RollingFileWriter;
+
+/**
+ * In diesem Test werden die Klassen RingBufferAuditSink und
+ * RollingFileWriter getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class AuditSinkTest extends TestCase {
+
+    private static final int THREADS = 4;
+
+    private static final int RECORDS = 2000;
+
+    private static final int BACKUPS = 20;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("jcyradm", ".audit");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        for (int i = 0; i <= BACKUPS; i++) {
+            new File(file.getPath() + (i == 0 ? "" : "." + i)).delete();
+        }
+    }
+
+    private static AuditRecord record(final String mailbox) {
+        return new AuditRecord(System.currentTimeMillis(), "cyrus", "imap1",
+                AuditAction.SETQUOTA, mailbox, "1024", "2048",
+                "OK Completed", 1500000L);
+    }
+
+    private static int countLines(final File logFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(logFile), "UTF-8"));
+        int lines = 0;
+        while (reader.readLine() != null) {
+            lines++;
+        }
+        reader.close();
+        return lines;
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final RingBufferAuditSink sink = new RingBufferAuditSink(file);
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < RECORDS; j++) {
+                        sink.record(record("box" + thread + "_" + j));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sink.close();
+        assertEquals(0, sink.getDropped());
+        assertEquals(THREADS * RECORDS, countLines(file));
+        assertFalse(sink.record(record("spät")));
+    }
+
+    public void testJson() {
+        StringBuilder json = new StringBuilder();
+        new AuditRecord(0, "cyrus", null, AuditAction.SETACL, "a\"b", null,
+                "anyone lrs", "NO Permission denied", 2000L).toJson(json,
+                "1970-01-01T00:00:00.000+0000");
+        assertEquals("{\"time\":\"1970-01-01T00:00:00.000+0000\","
+                + "\"admin\":\"cyrus\",\"host\":null,\"action\":\"setacl\","
+                + "\"mailbox\":\"a\\\"b\",\"before\":null,"
+                + "\"after\":\"anyone lrs\","
+                + "\"outcome\":\"NO Permission denied\",\"latencyMicros\":2}",
+                json.toString());
+    }
+
+    public void testRolling() throws Exception {
+        RingBufferAuditSink sink = new RingBufferAuditSink(file, 4, 1024, 2);
+        for (int i = 0; i < 100; i++) {
+            while (!sink.record(record("max" + i))) {
+                Thread.sleep(1);
+            }
+        }
+        sink.close();
+        assertTrue(new File(file.getPath() + ".1").exists());
+        assertTrue(new File(file.getPath() + ".2").exists());
+        assertFalse(new File(file.getPath() + ".3").exists());
+        assertTrue(file.length() <= 1024);
+    }
+
+    public void testRollingAtRecords() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append("{\"mailbox\":\"user.max").append(i)
+                    .append("\"}\n");
+        }
+        RollingFileWriter writer = new RollingFileWriter(file, 256, BACKUPS);
+        // Ein Puffer größer als mehrere Dateien
+        writer.write(ByteBuffer.wrap(text.toString().getBytes("UTF-8")));
+        writer.close();
+
+        int lines = 0;
+        for (int i = 0; i <= BACKUPS; i++) {
+            File part = new File(file.getPath() + (i == 0 ? "" : "." + i));
+            if (!part.exists()) {
+                continue;
+            }
+            assertTrue(part.length() <= 256);
+            lines += countLines(part);
+        }
+        assertEquals(50, lines);
+        assertTrue(new File(file.getPath() + ".4").exists());
+    }
+
+    public void testOversizedRecord() throws Exception {
+        RollingFileWriter writer = new RollingFileWriter(file, 16, 2);
+        writer.write(ByteBuffer.wrap("kurz\n".getBytes("UTF-8")));
+        writer.write(ByteBuffer.wrap(
+                "ein sehr langer Satz\nkurz\n".getBytes("UTF-8")));
+        writer.close();
+        // Der lange Satz bekommt eine Datei für sich
+        assertEquals(5, new File(file.getPath() + ".2").length());
+        assertEquals(21, new File(file.getPath() + ".1").length());
+        assertEquals(5, file.length());
+    }
+
+    public void testFailedRollKeepsWriting() throws Exception {
+        // Ein nicht leeres Verzeichnis lässt sich nicht ersetzen
+        File blocker = new File(file.getPath() + ".1");
+        File inside = new File(blocker, "x");
+        assertTrue(blocker.mkdir());
+        assertTrue(inside.createNewFile());
+        RollingFileWriter writer = new RollingFileWriter(file, 16, 1);
+        try {
+            writer.write(ByteBuffer.wrap("kurz\n".getBytes("UTF-8")));
+            try {
+                writer.write(ByteBuffer.wrap(
+                        "ein sehr langer Satz\n".getBytes("UTF-8")));
+                fail("IOException erwartet");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().startsWith("Cannot delete"));
+            }
+            writer.write(ByteBuffer.wrap("kurz\n".getBytes("UTF-8")));
+        } finally {
+            writer.close();
+            inside.delete();
+            blocker.delete();
+        }
+        assertEquals(10, file.length());
+    }
+
+} // Ende class
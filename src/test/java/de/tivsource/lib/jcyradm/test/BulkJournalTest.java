@@ -0,0 +1,123 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.bulk.BulkJournal;
+import de.tivsource.lib.jcyradm.exception.JournalMismatch;
+
+/**
+ * In diesem Test wird die Klasse BulkJournal getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkJournalTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("jcyradm", ".journal");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private static File input(final String content) throws IOException {
+        File input = File.createTempFile("jcyradm", ".csv");
+        input.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(input);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return input;
+    }
+
+    public void testMarkAndReopen() throws IOException {
+        BulkJournal journal = new BulkJournal(file);
+        journal.markDone(0);
+        journal.markDone(9);
+        journal.markDone(9);
+        assertTrue(journal.isDone(9));
+        assertFalse(journal.isDone(8));
+        assertEquals(2, journal.getDoneCount());
+        journal.close();
+
+        journal = new BulkJournal(file);
+        assertTrue(journal.isDone(0));
+        assertTrue(journal.isDone(9));
+        assertFalse(journal.isDone(1));
+        assertEquals(2, journal.getDoneCount());
+        journal.close();
+    }
+
+    public void testGrow() throws IOException {
+        BulkJournal journal = new BulkJournal(file);
+        long far = 20L * 1000 * 1000;
+        assertFalse(journal.isDone(far));
+        journal.markDone(far);
+        journal.markDone(3);
+        journal.close();
+
+        journal = new BulkJournal(file);
+        assertTrue(journal.isDone(far));
+        assertTrue(journal.isDone(3));
+        assertEquals(2, journal.getDoneCount());
+        journal.close();
+    }
+
+    public void testSameInput() throws IOException {
+        File input = input("create,max\ncreate,moritz\n");
+        BulkJournal journal = new BulkJournal(file, input);
+        journal.markDone(1);
+        journal.close();
+
+        journal = new BulkJournal(file, input);
+        assertTrue(journal.isDone(1));
+        journal.close();
+    }
+
+    public void testChangedInput() throws IOException {
+        File input = input("create,max\ncreate,moritz\n");
+        new BulkJournal(file, input).close();
+
+        // gleiche Größe, anderer Inhalt
+        File changed = input("create,max\ndelete,moritz\n");
+        try {
+            new BulkJournal(file, changed);
+            fail("JournalMismatch erwartet");
+        } catch (JournalMismatch e) {
+            assertTrue(e.getMessage().contains(file.getPath()));
+        }
+        try {
+            new BulkJournal(file);
+            fail("JournalMismatch erwartet");
+        } catch (JournalMismatch e) {
+            // stdin statt Datei
+        }
+        try {
+            new BulkJournal(file, input("create,max\n"));
+            fail("JournalMismatch erwartet");
+        } catch (JournalMismatch e) {
+            // kürzere Eingabe
+        }
+    }
+
+    public void testNoJournal() throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("create,max\n".getBytes("UTF-8"));
+        out.close();
+        try {
+            new BulkJournal(file);
+            fail("IOException erwartet");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Not a journal"));
+        }
+    }
+
+} // Ende class
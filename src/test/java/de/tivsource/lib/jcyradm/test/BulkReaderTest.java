@@ -0,0 +1,108 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.bulk.BulkOperation;
+import de.tivsource.lib.jcyradm.bulk.BulkReader;
+import de.tivsource.lib.jcyradm.bulk.InputFormat;
+import de.tivsource.lib.jcyradm.bulk.OperationType;
+import de.tivsource.lib.jcyradm.exception.NoValidOperation;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+
+/**
+ * In diesem Test wird die Klasse BulkReader getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkReaderTest extends TestCase {
+
+    private static BulkReader reader(final String input,
+            final InputFormat format) {
+        return new BulkReader(new BufferedReader(new StringReader(input)),
+                format);
+    }
+
+    public void testCsv() throws Exception {
+        BulkReader reader = reader("op,mailbox,arg\n"
+                + "create,max\n"
+                + "\n"
+                + "# Kommentar\n"
+                + "setquota,max,1024\n"
+                + "setacl,\"max,test\",anyone,lrs\n", InputFormat.CSV);
+
+        BulkOperation create = reader.next();
+        assertEquals(OperationType.CREATE, create.getType());
+        assertEquals("max", create.getMailbox());
+        assertEquals(1, create.getIndex());
+
+        BulkOperation quota = reader.next();
+        assertEquals(OperationType.SETQUOTA, quota.getType());
+        assertEquals(1024, quota.getQuota());
+        assertEquals(4, quota.getIndex());
+
+        BulkOperation acl = reader.next();
+        assertEquals("max,test", acl.getMailbox());
+        assertEquals("anyone", acl.getIdentifier());
+        assertEquals("lrs", acl.getRights());
+
+        assertNull(reader.next());
+    }
+
+    public void testJsonl() throws Exception {
+        BulkReader reader = reader(
+                "{\"op\":\"setquota\", \"mailbox\":\"m\\u00fcller\", "
+                        + "\"quota\": 2048}\n"
+                        + "{\"op\":\"getquota\",\"mailbox\":\"max\"}\n",
+                InputFormat.JSONL);
+        BulkOperation quota = reader.next();
+        assertEquals(OperationType.SETQUOTA, quota.getType());
+        assertEquals("müller", quota.getMailbox());
+        assertEquals(2048, quota.getQuota());
+        assertEquals(OperationType.GETQUOTA, reader.next().getType());
+        assertNull(reader.next());
+    }
+
+    public void testInvalidLineContinues() throws Exception {
+        BulkReader reader = reader("rename,max\nsetquota,max,abc\n"
+                + "delete,max\n", InputFormat.CSV);
+        try {
+            reader.next();
+            fail("NoValidOperation erwartet");
+        } catch (NoValidOperation e) {
+            assertTrue(e.getMessage().contains("line 1"));
+        }
+        try {
+            reader.next();
+            fail("NoValidOperation erwartet");
+        } catch (NoValidOperation e) {
+            assertTrue(e.getMessage().contains("line 2"));
+        }
+        assertEquals(OperationType.DELETE, reader.next().getType());
+    }
+
+    public void testCommand() throws Exception {
+        BulkOperation operation = reader("setquota,max,10\n",
+                InputFormat.CSV).next();
+        assertEquals("SETQUOTA", operation.toCommand("user.").getName());
+        assertEquals("setquota max", operation.toString());
+    }
+
+    public void testQuotaParse() {
+        Quota quota = Quota.parse("max", "* QUOTA user.max (STORAGE 10 1024)");
+        assertEquals(10, quota.getUsed());
+        assertEquals(1024, quota.getLimit());
+        assertNull(Quota.parse("max", "* QUOTA user.max ()"));
+    }
+
+    public void testHeader() {
+        assertTrue(BulkReader.isHeader("op,mailbox,arg", InputFormat.CSV));
+        assertTrue(BulkReader.isHeader("operation,mailbox",
+                InputFormat.CSV));
+        assertFalse(BulkReader.isHeader("create,max", InputFormat.CSV));
+        assertFalse(BulkReader.isHeader("op,mailbox", InputFormat.JSONL));
+    }
+
+} // Ende class
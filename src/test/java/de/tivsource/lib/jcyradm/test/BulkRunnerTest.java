@@ -0,0 +1,108 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.bulk.BulkListener;
+import de.tivsource.lib.jcyradm.bulk.BulkProgress;
+import de.tivsource.lib.jcyradm.bulk.BulkReader;
+import de.tivsource.lib.jcyradm.bulk.BulkResult;
+import de.tivsource.lib.jcyradm.bulk.BulkRunner;
+import de.tivsource.lib.jcyradm.bulk.InputFormat;
+import de.tivsource.lib.jcyradm.pool.SessionFactory;
+
+/**
+ * In diesem Test wird die Klasse BulkRunner mit einem Test-Server getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class BulkRunnerTest extends TestCase {
+
+    /**
+     * Erzeugt verbundene Sitzungen ohne Anmeldung.
+     */
+    private static class TestFactory implements SessionFactory {
+
+        private final int port;
+
+        TestFactory(final int serverPort) {
+            this.port = serverPort;
+        }
+
+        public JCyrAdm create() throws Exception {
+            JCyrAdm session = new JCyrAdm();
+            session.setHost("127.0.0.1");
+            session.setPort(port);
+            session.connect(false);
+            return session;
+        }
+
+        public void destroy(final JCyrAdm session) {
+            try {
+                session.disconnect();
+            } catch (IOException e) {
+                // ignorieren
+            }
+        }
+    }
+
+    private FakeCyrusServer server;
+
+    protected void setUp() throws IOException {
+        server = new FakeCyrusServer();
+    }
+
+    protected void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    private static BulkReader reader(final int count) {
+        StringBuilder input = new StringBuilder("op,mailbox,arg\n");
+        for (int i = 0; i < count; i++) {
+            input.append("setquota,user").append(i).append(",1024\n");
+        }
+        return new BulkReader(new BufferedReader(
+                new StringReader(input.toString())), InputFormat.CSV);
+    }
+
+    public void testRun() throws Exception {
+        BulkRunner runner = new BulkRunner(new TestFactory(server.getPort()),
+                2, 4);
+        BulkProgress progress = new BulkProgress();
+        runner.run(reader(50), progress);
+        assertEquals(50, progress.getSucceeded());
+        assertEquals(0, progress.getFailed());
+    }
+
+    public void testNegativeQuotaFails() throws Exception {
+        BulkRunner runner = new BulkRunner(new TestFactory(server.getPort()),
+                1, 1);
+        BulkProgress progress = new BulkProgress();
+        runner.run(new BulkReader(new BufferedReader(new StringReader(
+                "setquota,max,-1\nsetquota,moritz,10\n")), InputFormat.CSV),
+                progress);
+        assertEquals(1, progress.getSucceeded());
+        assertEquals(1, progress.getFailed());
+    }
+
+    public void testStoppedWorkersDoNotBlock() throws Exception {
+        BulkRunner runner = new BulkRunner(new TestFactory(server.getPort()),
+                1, 1);
+        runner.setListener(new BulkListener() {
+            public void completed(final BulkResult result) {
+                throw new IllegalStateException("listener failed");
+            }
+        });
+        try {
+            runner.run(reader(50), new BulkProgress());
+            fail("IOException erwartet");
+        } catch (IOException e) {
+            assertEquals("All bulk workers stopped", e.getMessage());
+        }
+    }
+
+} // Ende class
@@ -0,0 +1,153 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.IOException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.exception.CircuitOpen;
+import de.tivsource.lib.jcyradm.net.CircuitBreaker;
+import de.tivsource.lib.jcyradm.net.CircuitState;
+import de.tivsource.lib.jcyradm.net.Connection;
+import de.tivsource.lib.jcyradm.net.HostHealth;
+import de.tivsource.lib.jcyradm.net.MultiHostConnector;
+import de.tivsource.lib.jcyradm.transport.Link;
+import de.tivsource.lib.jcyradm.transport.Transport;
+
+/**
+ * In diesem Test wird die Klasse CircuitBreaker getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class CircuitBreakerTest extends TestCase {
+
+    public void testStates() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(3, 50);
+        breaker.failure("dead");
+        breaker.failure("dead");
+        assertEquals(CircuitState.CLOSED, breaker.getState("dead"));
+        breaker.failure("dead");
+        assertEquals(CircuitState.OPEN, breaker.getState("dead"));
+        assertFalse(breaker.isAvailable("dead"));
+        try {
+            breaker.acquire("dead");
+            fail("open circuit let a call through");
+        } catch (CircuitOpen e) {
+            assertEquals("dead", e.getHost());
+            assertTrue(e.getRetryAfter() > 0);
+        }
+        // Andere Hosts sind nicht betroffen
+        assertTrue(breaker.isAvailable("alive"));
+
+        Thread.sleep(60);
+        assertTrue(breaker.isAvailable("dead"));
+        assertTrue(isProbe(breaker, "dead"));
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState("dead"));
+        // Nur ein Probe-Versuch gleichzeitig
+        try {
+            breaker.acquire("dead");
+            fail("second probe let through");
+        } catch (CircuitOpen e) {
+            assertEquals(0, e.getRetryAfter());
+        }
+        breaker.failure("dead");
+        assertEquals(CircuitState.OPEN, breaker.getState("dead"));
+
+        Thread.sleep(60);
+        assertTrue(isProbe(breaker, "dead"));
+        breaker.success("dead");
+        assertEquals(CircuitState.CLOSED, breaker.getState("dead"));
+        assertFalse(isProbe(breaker, "dead"));
+        // Der Zähler beginnt von vorne
+        breaker.failure("dead");
+        breaker.failure("dead");
+        assertEquals(CircuitState.CLOSED, breaker.getState("dead"));
+    }
+
+    private static boolean isProbe(final CircuitBreaker breaker,
+            final String host) {
+        try {
+            return breaker.acquire(host);
+        } catch (CircuitOpen e) {
+            fail(e.getMessage());
+            return false;
+        }
+    }
+
+    public void testConnector() throws Exception {
+        FakeCyrusServer server = new FakeCyrusServer();
+        server.setBroken(true);
+        try {
+            CircuitBreaker breaker = new CircuitBreaker(2, 200);
+            MultiHostConnector connector = new MultiHostConnector();
+            connector.setHealth(new HostHealth(1000));
+            connector.setCircuitBreaker(breaker);
+            connector.setConnectTimeout(2000);
+            List<String> hosts = Arrays.asList("127.0.0.1");
+            int port = server.getPort();
+
+            for (int i = 0; i < 2; i++) {
+                try {
+                    connector.connect(hosts, port, false);
+                    fail("broken server accepted");
+                } catch (CircuitOpen e) {
+                    fail("tripped too early");
+                } catch (IOException e) {
+                    // erwartet
+                }
+            }
+            assertEquals(CircuitState.OPEN, breaker.getState("127.0.0.1"));
+            long start = System.nanoTime();
+            try {
+                connector.connect(hosts, port, false);
+                fail("open circuit connected");
+            } catch (CircuitOpen e) {
+                assertEquals("127.0.0.1", e.getHost());
+            }
+            assertTrue((System.nanoTime() - start) / 1000000L < 100);
+
+            server.setBroken(false);
+            Thread.sleep(250);
+            Connection connection = connector.connect(hosts, port, false);
+            connection.close();
+            assertEquals(CircuitState.CLOSED, breaker.getState("127.0.0.1"));
+            assertEquals("A1 NOOP", server.getReceived().get(0));
+
+            // Ohne Sperre kein Probe-Versuch
+            connection = connector.connect(hosts, port, false);
+            connection.close();
+            assertEquals(1, server.getReceived().size());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    public void testProbeReleasedOnRuntimeException() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        MultiHostConnector connector = new MultiHostConnector();
+        connector.setHealth(new HostHealth(1000));
+        connector.setCircuitBreaker(breaker);
+        Transport unresolved = new Transport() {
+            @Override
+            public Link createLink(final String host, final int port) {
+                throw new UnresolvedAddressException();
+            }
+        };
+        String host = "nowhere.invalid";
+        breaker.failure(host);
+        Thread.sleep(60);
+        try {
+            connector.connect(Arrays.asList(host), 143, unresolved);
+            fail("unresolved host connected");
+        } catch (UnresolvedAddressException e) {
+            // erwartet
+        }
+        // Der Probe-Platz ist wieder frei, der Host nicht für immer gesperrt
+        assertEquals(CircuitState.OPEN, breaker.getState(host));
+        Thread.sleep(60);
+        assertTrue(breaker.isAvailable(host));
+    }
+
+} // Ende class
@@ -0,0 +1,211 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.pool.AdaptiveLimiter;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.protocol.ResponseStatus;
+
+/**
+ * In diesem Test werden die Klassen CommandEncoder und Pipeline ohne Server
+ * getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class CommandEncoderTest extends TestCase {
+
+    private ByteArrayOutputStream written;
+    private int writes;
+    private CommandEncoder encoder;
+
+    protected void setUp() {
+        written = new ByteArrayOutputStream();
+        writes = 0;
+        encoder = new CommandEncoder(new WritableByteChannel() {
+            public int write(ByteBuffer src) {
+                writes++;
+                int count = src.remaining();
+                while (src.hasRemaining()) {
+                    written.write(src.get());
+                }
+                return count;
+            }
+            public boolean isOpen() {
+                return true;
+            }
+            public void close() {
+            }
+        }, 64);
+    }
+
+    public void testAtomsAndQuoting() throws IOException {
+        encoder.tag(".").atom("setacl").string("user.", "max")
+                .astring("cyrus").astring("lrs").end();
+        encoder.tag(".").atom("login").astring("admin")
+                .astring("pa\"ss\\word").end();
+        encoder.flush();
+        assertEquals(". setacl \"user.max\" cyrus lrs\r\n"
+                + ". login admin \"pa\\\"ss\\\\word\"\r\n",
+                written.toString("UTF-8"));
+    }
+
+    public void testLiteral() throws IOException {
+        encoder.tag(".").atom("login").astring("admin").astring("pässwort")
+                .end();
+        encoder.flush();
+        assertEquals(". login admin {9+}\r\npässwort\r\n",
+                written.toString("UTF-8"));
+    }
+
+    public void testListAndNumber() throws IOException {
+        encoder.tag('A', 1234567890123L).atom("SETQUOTA").string("user.max")
+                .openList().atom("STORAGE").number(0).closeList().end();
+        encoder.flush();
+        assertEquals("A1234567890123 SETQUOTA \"user.max\" (STORAGE 0)\r\n",
+                written.toString("UTF-8"));
+    }
+
+    public void testSingleWrite() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            encoder.tag('A', i).atom("NOOP").end();
+        }
+        assertEquals(3, encoder.getQueued());
+        encoder.flush();
+        assertEquals(1, writes);
+        assertEquals(0, encoder.getQueued());
+    }
+
+    public void testOverflow() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            name.append('x');
+        }
+        encoder.tag(".").atom("create").string("user.", name).end();
+        encoder.flush();
+        assertEquals(". create \"user." + name + "\"\r\n",
+                written.toString("UTF-8"));
+    }
+
+    public void testPipeline() throws IOException {
+        BufferedReader in = new BufferedReader(new StringReader(
+                "* QUOTA user.a (STORAGE 10 100)\r\n"
+                + "A1 OK Completed\r\n"
+                + "A2 NO Mailbox already exists\r\n"
+                + "* LIST (\\HasNoChildren) \".\" {6}\r\n"
+                + "user.b\r\n"
+                + "A3 OK Completed\r\n"));
+        Pipeline pipeline = new Pipeline(encoder, in);
+        Command quota = Commands.getQuota("user.a");
+        Command create = Commands.create("user.a");
+        Command list = Commands.list("", "user.b");
+        pipeline.submit(quota);
+        pipeline.submit(create);
+        pipeline.submit(list);
+        pipeline.sync();
+        assertEquals(1, writes);
+        assertTrue(quota.isOk());
+        assertEquals("* QUOTA user.a (STORAGE 10 100)",
+                quota.getUntagged().get(0));
+        assertEquals(ResponseStatus.NO, create.getStatus());
+        assertEquals("Mailbox already exists", create.getText());
+        assertEquals("* LIST (\\HasNoChildren) \".\" \"user.b\"",
+                list.getUntagged().get(0));
+    }
+
+    public void testMultibyteLiteral() throws IOException {
+        // {7} zählt die Bytes von "müller" in UTF-8
+        byte[] wire = ("* METADATA user.a (/shared/comment {7}\r\n"
+                + "m\u00fcller)\r\n"
+                + "A1 OK Completed\r\n"
+                + "* LIST (\\HasNoChildren) \".\" \"user.\u00e4\"\r\n"
+                + "A2 OK Completed\r\n"
+                + "A3 NO Mailbox does not exist\r\n").getBytes("UTF-8");
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(wire), Pipeline.WIRE_CHARSET));
+        Pipeline pipeline = new Pipeline(encoder, in);
+        Command metadata = Commands.noop();
+        Command list = Commands.list("", "user.%");
+        Command delete = Commands.delete("user.b");
+        pipeline.submit(metadata);
+        pipeline.submit(list);
+        pipeline.submit(delete);
+        pipeline.sync();
+        assertTrue(metadata.isOk());
+        assertEquals("* METADATA user.a (/shared/comment \"m\u00fcller\")",
+                metadata.getUntagged().get(0));
+        assertTrue(list.isOk());
+        assertEquals("* LIST (\\HasNoChildren) \".\" \"user.\u00e4\"",
+                list.getUntagged().get(0));
+        assertEquals(ResponseStatus.NO, delete.getStatus());
+        assertEquals("Mailbox does not exist", delete.getText());
+    }
+
+    public void testInvalidArgumentLeavesNoBytes() throws IOException {
+        encoder.tag(".").atom("noop").end();
+        try {
+            encoder.tag(".").atom("setquota").string("user.", "max")
+                    .openList().atom("STORAGE").number(-1);
+            fail("IllegalArgumentException erwartet");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("-1"));
+        }
+        encoder.tag(".").atom("logout").end();
+        encoder.flush();
+        assertEquals(". noop\r\n. logout\r\n", written.toString("UTF-8"));
+    }
+
+    public void testPipelineRejectsCommand() throws IOException {
+        BufferedReader in = new BufferedReader(new StringReader(
+                "A2 OK Completed\r\n"));
+        Pipeline pipeline = new Pipeline(encoder, in);
+        try {
+            pipeline.submit(Commands.setQuota("user.max", -1));
+            fail("IllegalArgumentException erwartet");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, pipeline.getInFlight());
+        }
+        Command noop = Commands.noop();
+        pipeline.submit(noop);
+        pipeline.sync();
+        assertTrue(noop.isOk());
+        assertEquals("A2 NOOP\r\n", written.toString("UTF-8"));
+    }
+
+    public void testDiscardAfterPartialWrite() throws IOException {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            name.append('x');
+        }
+        encoder.tag(".").atom("create").string("user.", name);
+        try {
+            encoder.discard();
+            fail("IOException erwartet");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("already sent"));
+        }
+    }
+
+    public void testDepthLimiter() throws IOException {
+        BufferedReader in = new BufferedReader(new StringReader(
+                "A1 BAD Overloaded\r\n"));
+        Pipeline pipeline = new Pipeline(encoder, in);
+        pipeline.setDepthLimiter(new AdaptiveLimiter(4, 1, 4));
+        assertEquals(4, pipeline.getDepth());
+        pipeline.submit(Commands.noop());
+        pipeline.sync();
+        assertEquals(3, pipeline.getDepth());
+    }
+
+} // Ende class
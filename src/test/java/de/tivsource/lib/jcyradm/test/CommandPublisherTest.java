@@ -0,0 +1,193 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.stream.CommandPublisher;
+import de.tivsource.lib.jcyradm.stream.Publishers;
+import de.tivsource.lib.jcyradm.stream.Subscriber;
+import de.tivsource.lib.jcyradm.stream.Subscription;
+
+/**
+ * In diesem Test wird die Klasse CommandPublisher ohne Server getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class CommandPublisherTest extends TestCase {
+
+    /**
+     * Subscriber der alle Signale sammelt.
+     */
+    private static class Collector<T> implements Subscriber<T> {
+
+        private final List<T> items = new ArrayList<T>();
+
+        private Subscription subscription;
+
+        private Throwable error;
+
+        private boolean complete;
+
+        @Override
+        public void onSubscribe(final Subscription newSubscription) {
+            this.subscription = newSubscription;
+        }
+
+        @Override
+        public void onNext(final T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            this.error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            this.complete = true;
+        }
+    }
+
+    private ByteArrayOutputStream written;
+    private CommandEncoder encoder;
+    private int linesRead;
+
+    protected void setUp() {
+        written = new ByteArrayOutputStream();
+        linesRead = 0;
+        encoder = new CommandEncoder(new WritableByteChannel() {
+            public int write(ByteBuffer src) {
+                int count = src.remaining();
+                while (src.hasRemaining()) {
+                    written.write(src.get());
+                }
+                return count;
+            }
+            public boolean isOpen() {
+                return true;
+            }
+            public void close() {
+            }
+        }, 4096);
+    }
+
+    private BufferedReader reader(final String responses) {
+        return new BufferedReader(new StringReader(responses)) {
+            @Override
+            public String readLine() throws IOException {
+                String line = super.readLine();
+                if (line != null) {
+                    linesRead++;
+                }
+                return line;
+            }
+        };
+    }
+
+    private int commandsWritten() throws IOException {
+        String text = written.toString("UTF-8");
+        return text.isEmpty() ? 0 : text.split("\r\n").length;
+    }
+
+    public void testQuotaBackpressure() throws IOException {
+        StringBuilder responses = new StringBuilder();
+        List<String> mailboxes = new ArrayList<String>();
+        for (int i = 1; i <= 10; i++) {
+            mailboxes.add("user.m" + i);
+            if (i == 5) {
+                responses.append("A5 NO Quota root does not exist\r\n");
+            } else {
+                responses.append("* QUOTA user.m" + i + " (STORAGE " + i
+                        + " 100)\r\nA" + i + " OK Completed\r\n");
+            }
+        }
+        Pipeline pipeline = new Pipeline(encoder,
+                reader(responses.toString()));
+        CommandPublisher<Quota> publisher =
+                Publishers.quota(pipeline, mailboxes.iterator());
+        Collector<Quota> collector = new Collector<Quota>();
+        publisher.subscribe(collector);
+
+        // Ohne Anforderung wird nichts gesendet und nichts gelesen
+        assertEquals(0, commandsWritten());
+        assertEquals(0, linesRead);
+
+        collector.subscription.request(2);
+        assertEquals(2, collector.items.size());
+        assertEquals(2, commandsWritten());
+        assertEquals(3, linesRead);
+        assertEquals(new Quota("user.m2", 2, 100), collector.items.get(1));
+        assertFalse(collector.complete);
+
+        collector.subscription.request(Long.MAX_VALUE);
+        assertEquals(9, collector.items.size());
+        assertEquals(10, commandsWritten());
+        assertTrue(collector.complete);
+        assertNull(collector.error);
+        assertEquals(1, publisher.getFailed());
+        assertEquals(0, pipeline.getInFlight());
+    }
+
+    public void testListCancel() throws IOException {
+        StringBuilder responses = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            responses.append("* LIST (\\HasNoChildren) \".\" \"user.u" + i
+                    + "\"\r\n");
+        }
+        responses.append("A1 OK Completed\r\n");
+        Pipeline pipeline = new Pipeline(encoder,
+                reader(responses.toString()));
+        final List<String> names = new ArrayList<String>();
+        Collector<String> collector = new Collector<String>() {
+            @Override
+            public void onNext(final String item) {
+                names.add(item);
+                // Anforderung aus onNext heraus, ohne Rekursion
+                if (names.size() == 3) {
+                    super.subscription.cancel();
+                } else {
+                    super.subscription.request(1);
+                }
+            }
+        };
+        Publishers.list(pipeline, "user.*").subscribe(collector);
+        collector.subscription.request(1);
+
+        assertEquals(3, names.size());
+        assertEquals("user.u2", names.get(2));
+        assertFalse(collector.complete);
+        // Der Rest der Antwort wurde gelesen und verworfen
+        assertEquals(6, linesRead);
+        assertEquals(0, pipeline.getInFlight());
+        assertEquals("A1 LIST \"\" \"user.*\"\r\n",
+                written.toString("UTF-8"));
+    }
+
+    public void testInvalidUse() {
+        Pipeline pipeline = new Pipeline(encoder, reader(""));
+        CommandPublisher<String> publisher =
+                Publishers.list(pipeline, "user.*");
+        Collector<String> first = new Collector<String>();
+        Collector<String> second = new Collector<String>();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+
+        first.subscription.request(0);
+        assertTrue(first.error instanceof IllegalArgumentException);
+        assertFalse(first.complete);
+    }
+
+} // Ende class
@@ -0,0 +1,194 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server für die Tests der die Verbindung wie Cyrus grüßt und jedes Kommando
+ * mit "tag OK Completed" beantwortet. Jede Verbindung hat einen eigenen
+ * Thread, ein stummer Server nimmt Verbindungen an ohne zu grüßen, ein
+ * kaputter schließt sie sofort. Eine Verbindung kann beim nächsten NOOP
+ * ohne Antwort getrennt werden.
+ *
+ * @author Marc Michele
+ *
+ */
+class FakeCyrusServer extends Thread {
+
+    private final ServerSocket server;
+
+    private final List<String> received =
+            Collections.synchronizedList(new ArrayList<String>());
+
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    private final AtomicInteger hangups = new AtomicInteger();
+
+    private final AtomicInteger noops = new AtomicInteger();
+
+    private volatile boolean silent;
+
+    private volatile boolean broken;
+
+    private volatile boolean dropNext;
+
+    /**
+     * Startet einen Server auf einem freien Port aller Adressen.
+     */
+    FakeCyrusServer() throws IOException {
+        this(new ServerSocket(0));
+    }
+
+    /**
+     * Startet einen Server auf einer Adresse, Port 0 für einen freien.
+     */
+    FakeCyrusServer(final String address, final int port)
+            throws IOException {
+        this(new ServerSocket(port, 0, InetAddress.getByName(address)));
+    }
+
+    private FakeCyrusServer(final ServerSocket socket) {
+        server = socket;
+        setDaemon(true);
+        start();
+    }
+
+    @Override
+    public void run() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                accepted.incrementAndGet();
+                Thread client = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException e) {
+                            // Client weg
+                        } finally {
+                            hangups.incrementAndGet();
+                            close(socket);
+                        }
+                    }
+                };
+                client.setDaemon(true);
+                client.start();
+            } catch (IOException e) {
+                // Server geschlossen
+            }
+        }
+    }
+
+    /**
+     * Beantwortet die Kommandos einer Verbindung.
+     */
+    private void serve(final Socket socket) throws IOException {
+        if (broken) {
+            return;
+        }
+        InputStream input = socket.getInputStream();
+        if (silent) {
+            while (input.read() >= 0) {
+                // nichts sagen
+            }
+            return;
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write("* OK test ready\r\n".getBytes("US-ASCII"));
+        out.flush();
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                input, "US-ASCII"));
+        String line;
+        while ((line = in.readLine()) != null) {
+            received.add(line);
+            String tag = line.substring(0, line.indexOf(' '));
+            if (line.endsWith("NOOP")) {
+                noops.incrementAndGet();
+                if (dropNext) {
+                    dropNext = false;
+                    return;
+                }
+            }
+            out.write((tag + " OK Completed\r\n").getBytes("US-ASCII"));
+            out.flush();
+        }
+    }
+
+    private static void close(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignorieren
+        }
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Neue Verbindungen werden angenommen aber nicht gegrüßt.
+     */
+    void setSilent(final boolean quiet) {
+        silent = quiet;
+    }
+
+    /**
+     * Neue Verbindungen werden sofort geschlossen.
+     */
+    void setBroken(final boolean closeAtOnce) {
+        broken = closeAtOnce;
+    }
+
+    /**
+     * Das nächste NOOP wird gezählt und die Verbindung ohne Antwort
+     * getrennt.
+     */
+    void dropNextNoop() {
+        dropNext = true;
+    }
+
+    /**
+     * Liefert die Anzahl der empfangenen NOOP Kommandos.
+     */
+    int getNoops() {
+        return noops.get();
+    }
+
+    /**
+     * Liefert die empfangenen Zeilen aller Verbindungen.
+     */
+    List<String> getReceived() {
+        return received;
+    }
+
+    /**
+     * Liefert die Anzahl der angenommenen Verbindungen.
+     */
+    int getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * Liefert die Anzahl der Verbindungen die der Client beendet hat.
+     */
+    int getHangups() {
+        return hangups.get();
+    }
+
+    void shutdown() throws IOException {
+        server.close();
+    }
+
+} // Ende class
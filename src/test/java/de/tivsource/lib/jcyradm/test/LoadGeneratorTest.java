@@ -0,0 +1,187 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.load.LatencyHistogram;
+import de.tivsource.lib.jcyradm.load.LoadGenerator;
+import de.tivsource.lib.jcyradm.load.LoadListener;
+import de.tivsource.lib.jcyradm.load.LoadOperation;
+import de.tivsource.lib.jcyradm.load.LoadResult;
+import de.tivsource.lib.jcyradm.load.LoadSample;
+import de.tivsource.lib.jcyradm.load.OperationMix;
+import de.tivsource.lib.jcyradm.load.StandInServer;
+import de.tivsource.lib.jcyradm.pool.DefaultSessionFactory;
+
+/**
+ * In diesem Test wird die Klasse LoadGenerator mit dem StandInServer
+ * getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class LoadGeneratorTest extends TestCase {
+
+    private StandInServer server;
+
+    private DefaultSessionFactory factory;
+
+    protected void setUp() throws Exception {
+        server = new StandInServer();
+        server.start();
+        factory = new DefaultSessionFactory(Arrays.asList("127.0.0.1"),
+                server.getPort(), false, "cyrus", "secret");
+    }
+
+    protected void tearDown() {
+        server.close();
+    }
+
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(50));
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000L, histogram.getMax());
+        assertNear(5000000L, histogram.percentile(50));
+        assertNear(9900000L, histogram.percentile(99));
+        assertEquals(histogram.getMax(), histogram.percentile(100));
+        // Kleine Werte sind exakt
+        LatencyHistogram small = new LatencyHistogram();
+        small.record(7000L);
+        assertEquals(7000L, small.percentile(50));
+
+        LatencyHistogram target = new LatencyHistogram();
+        histogram.drainTo(target);
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(10000, target.getCount());
+        target.add(small);
+        assertEquals(10001, target.getCount());
+        assertEquals(10000000L, target.getMax());
+    }
+
+    private static void assertNear(final long expected, final long actual) {
+        assertTrue(actual + " not near " + expected,
+                Math.abs(actual - expected) <= expected / 32);
+    }
+
+    public void testMix() {
+        OperationMix mix = OperationMix.parse("getquota=3, SETACL=1,delete");
+        assertEquals(3, mix.getWeight(LoadOperation.GETQUOTA));
+        assertEquals(1, mix.getWeight(LoadOperation.SETACL));
+        assertEquals(1, mix.getWeight(LoadOperation.DELETE));
+        assertEquals(0, mix.getWeight(LoadOperation.CREATE));
+        assertEquals("delete=1,getquota=3,setacl=1", mix.toString());
+        Random random = new Random(1);
+        int getQuota = 0;
+        for (int i = 0; i < 5000; i++) {
+            LoadOperation operation = mix.choose(random);
+            assertTrue(mix.getWeight(operation) > 0);
+            if (operation == LoadOperation.GETQUOTA) {
+                getQuota++;
+            }
+        }
+        assertTrue(getQuota > 2700 && getQuota < 3300);
+        for (String invalid : new String[] {"rename=1", "create=0",
+                "create=-1", "create=x"}) {
+            try {
+                OperationMix.parse(invalid);
+                fail("accepted " + invalid);
+            } catch (IllegalArgumentException e) {
+                // erwartet
+            }
+        }
+    }
+
+    public void testRun() throws Exception {
+        final List<LoadSample> seen =
+                Collections.synchronizedList(new ArrayList<LoadSample>());
+        LoadGenerator generator = new LoadGenerator(factory, OperationMix
+                .parse("getquota=3,setquota=1,getacl=1,setacl=1,create=1,"
+                        + "delete=1"));
+        generator.setSessions(3);
+        generator.setDuration(600);
+        generator.setInterval(200);
+        generator.setMailboxes("user.load", 10);
+        generator.setListener(new LoadListener() {
+            @Override
+            public void interval(final LoadSample sample) {
+                seen.add(sample);
+            }
+        });
+        LoadResult result = generator.run();
+
+        LoadSample total = result.getTotal();
+        assertTrue(total.getOperations() > 0);
+        assertEquals(0, total.getErrors());
+        assertEquals(0, total.getAborted());
+        assertEquals(3, total.getConnects());
+        assertEquals(0, total.getDisconnects());
+        assertTrue(total.getThroughput() > 0);
+        assertTrue(total.getP50() <= total.getP99());
+        assertTrue(result.getIntervals().size() >= 3);
+        assertEquals(result.getIntervals(), seen);
+        long operations = 0;
+        for (LoadSample sample : result.getIntervals()) {
+            operations += sample.getOperations();
+        }
+        assertEquals(total.getOperations(), operations);
+        assertEquals(6, result.getOperations().size());
+        assertTrue(result.getOperations().get(LoadOperation.GETQUOTA)
+                .getOperations() > 0);
+        // Arbeitsmenge und angelegte Mailboxen sind wieder gelöscht
+        assertEquals(0, server.getMailboxCount());
+    }
+
+    public void testChurn() throws Exception {
+        server.setDropEvery(40);
+        LoadGenerator generator = new LoadGenerator(factory,
+                OperationMix.parse("create=1,delete=1"));
+        generator.setSessions(2);
+        generator.setDuration(500);
+        generator.setInterval(100);
+        generator.setPrepare(false);
+        generator.setCleanup(false);
+        LoadSample total = generator.run().getTotal();
+        assertTrue(total.getDisconnects() > 0);
+        assertTrue(total.getAborted() > 0);
+        assertTrue(total.getConnects() > 2);
+        assertTrue(total.getOperations() > 0);
+    }
+
+    public void testStop() throws Exception {
+        server.addMailbox("user.load0");
+        final LoadGenerator generator = new LoadGenerator(factory,
+                OperationMix.parse("getacl"));
+        generator.setSessions(1);
+        generator.setDuration(0);
+        generator.setMailboxes("user.load", 1);
+        generator.setPrepare(false);
+        Thread stopper = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                generator.stop();
+            }
+        };
+        long start = System.currentTimeMillis();
+        stopper.start();
+        LoadResult result = generator.run();
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1, result.getIntervals().size());
+        assertTrue(result.getTotal().getOperations() > 0);
+        assertTrue(server.hasMailbox("user.load0"));
+    }
+
+} // Ende class
@@ -0,0 +1,74 @@
+package de.tivsource.lib.jcyradm.test;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.protocol.ModifiedUtf7;
+
+/**
+ * In diesem Test werden die Klassen ModifiedUtf7 und MailboxNameValidator
+ * getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MailboxNameTest extends TestCase {
+
+    public void testEncode() {
+        assertEquals("~peter/mail/&U,BTFw-/&ZeVnLIqe-",
+                ModifiedUtf7.encode("~peter/mail/台北/日本語"));
+        assertEquals("M&AOQ-rz", ModifiedUtf7.encode("März"));
+        assertEquals("Tom &- Jerry", ModifiedUtf7.encode("Tom & Jerry"));
+        assertEquals("max", ModifiedUtf7.encode("max"));
+    }
+
+    public void testDecode() {
+        assertEquals("~peter/mail/台北/日本語",
+                ModifiedUtf7.decode("~peter/mail/&U,BTFw-/&ZeVnLIqe-"));
+        assertEquals("März", ModifiedUtf7.decode("M&AOQ-rz"));
+        assertEquals("Tom & Jerry", ModifiedUtf7.decode("Tom &- Jerry"));
+        try {
+            ModifiedUtf7.decode("M&AOQrz");
+            fail("Nicht abgeschlossene Kodierung wurde akzeptiert.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(true);
+        }
+    }
+
+    public void testEncodedLength() {
+        String name = "Übersicht.台北 &";
+        assertEquals(ModifiedUtf7.encode(name).length(),
+                ModifiedUtf7.encodedLength(name));
+    }
+
+    public void testValidator() {
+        MailboxNameValidator validator = new MailboxNameValidator();
+        assertTrue(validator.isValid("max_mustermann"));
+        assertTrue(validator.isValid("max.Sent"));
+        assertTrue(validator.isValid("müller2"));
+        assertFalse(validator.isValid(""));
+        assertFalse(validator.isValid(".max"));
+        assertFalse(validator.isValid("max..Sent"));
+        assertFalse(validator.isValid("max."));
+        assertFalse(validator.isValid("max*"));
+        assertFalse(validator.isValid("max\""));
+        assertEquals(3, validator.check("max%"));
+    }
+
+    public void testUnixHierarchySep() {
+        MailboxNameValidator validator = new MailboxNameValidator(true, false);
+        assertEquals('/', validator.getSeparator());
+        assertTrue(validator.isValid("max.mustermann"));
+        assertTrue(validator.isValid("max.mustermann/Sent"));
+        assertFalse(validator.isValid("max//Sent"));
+    }
+
+    public void testVirtDomains() {
+        MailboxNameValidator validator = new MailboxNameValidator(true, true);
+        assertTrue(validator.isValid("max.mustermann@example.com"));
+        assertFalse(validator.isValid("max@"));
+        assertFalse(validator.isValid("max@example..com"));
+        assertFalse(validator.isValid("max@-example.com"));
+        assertFalse(validator.isValid("@example.com"));
+    }
+
+} // Ende class
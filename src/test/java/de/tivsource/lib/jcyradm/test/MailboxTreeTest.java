@@ -0,0 +1,98 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.mailbox.MailboxTree;
+
+/**
+ * In diesem Test wird die Klasse MailboxTree getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MailboxTreeTest extends TestCase {
+
+    public void testLookups() {
+        MailboxTree tree = new MailboxTree(new MailboxNameValidator());
+        tree.load(Arrays.asList("user.moritz", "user.max", "user.max.Sent",
+                "user.max.Archiv.2014", "user.max.Archiv", "user.maxi",
+                "user.max"));
+        assertEquals(6, tree.size());
+        assertTrue(tree.contains("user.max"));
+        assertTrue(tree.contains("user.max.Archiv.2014"));
+        assertFalse(tree.contains("user.ma"));
+        assertEquals(Arrays.asList("user.max.Archiv", "user.max.Sent"),
+                tree.children("user.max"));
+        assertEquals(Arrays.asList("user.max.Archiv", "user.max.Archiv.2014",
+                "user.max.Sent"), tree.descendants("user.max"));
+        assertEquals(Arrays.asList("user.max", "user.maxi", "user.moritz"),
+                tree.children("user"));
+    }
+
+    public void testUpdates() {
+        MailboxTree tree = new MailboxTree(new MailboxNameValidator());
+        tree.load(Arrays.asList("user.max", "user.max.Sent",
+                "user.max.Trash", "user.moritz", "shared.news",
+                "shared.news.intern"));
+
+        tree.add("user.max.Drafts");
+        tree.add("user.max");
+        assertEquals(7, tree.size());
+        assertEquals(Arrays.asList("user.max.Drafts", "user.max.Sent",
+                "user.max.Trash"), tree.children("user.max"));
+
+        assertTrue(tree.remove("user.max.Trash"));
+        assertFalse(tree.remove("user.max.Trash"));
+        assertEquals(Arrays.asList("user.max.Drafts", "user.max.Sent"),
+                tree.children("user.max"));
+
+        // Benutzer-Mailbox nimmt die Unter-Mailboxen mit
+        assertEquals(3, tree.deleted("user.max"));
+        assertFalse(tree.contains("user.max.Sent"));
+        assertTrue(tree.contains("user.moritz"));
+        // sonst nur die Mailbox selbst
+        assertEquals(1, tree.deleted("shared.news"));
+        assertTrue(tree.contains("shared.news.intern"));
+        assertEquals(2, tree.size());
+
+        for (int i = 0; i < 10000; i++) {
+            tree.add("user.u" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            tree.remove("user.u" + (i * 2));
+        }
+        assertEquals(5002, tree.size());
+        assertTrue(tree.contains("user.u9999"));
+        assertFalse(tree.contains("user.u9998"));
+        assertEquals(5001, tree.children("user").size());
+    }
+
+    public void testVirtDomains() {
+        MailboxTree tree = new MailboxTree(new MailboxNameValidator(true,
+                true));
+        tree.load(Arrays.asList("user/max@example.org",
+                "user/max/Sent@example.org", "user/max/Sent@example.com",
+                "user/max@example.com"));
+        List<String> children = tree.children("user/max@example.org");
+        assertEquals(Arrays.asList("user/max/Sent@example.org"), children);
+        assertEquals(2, tree.deleted("user/max@example.org"));
+        assertEquals(2, tree.size());
+        assertTrue(tree.contains("user/max/Sent@example.com"));
+    }
+
+    public void testParseListLine() {
+        assertEquals("user.max", MailboxTree.parseListLine(
+                "* LIST (\\HasNoChildren) \".\" \"user.max\""));
+        assertEquals("user.max.Sent", MailboxTree.parseListLine(
+                "* LIST (\\HasChildren \\Marked) \".\" user.max.Sent"));
+        assertEquals("user.max.Entwürfe", MailboxTree.parseListLine(
+                "* LIST () NIL \"user.max.Entw&APw-rfe\""));
+        assertEquals("user.max.a \"b\"", MailboxTree.parseListLine(
+                "* LIST () \".\" \"user.max.a \\\"b\\\"\""));
+        assertNull(MailboxTree.parseListLine("* QUOTA user.max (STORAGE 1 2)"));
+    }
+
+} // Ende class
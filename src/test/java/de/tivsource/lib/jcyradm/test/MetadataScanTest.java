@@ -0,0 +1,130 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.metadata.MailboxMetadata;
+import de.tivsource.lib.jcyradm.metadata.MetadataListener;
+import de.tivsource.lib.jcyradm.metadata.MetadataScan;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+
+/**
+ * In diesem Test wird die Klasse MetadataScan ohne Server getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MetadataScanTest extends TestCase {
+
+    private static final String COMMENT = "/shared/comment";
+
+    private static final String EXPIRE =
+            "/shared/vendor/cmu/cyrus-imapd/expire";
+
+    private ByteArrayOutputStream written;
+    private CommandEncoder encoder;
+
+    protected void setUp() {
+        written = new ByteArrayOutputStream();
+        encoder = new CommandEncoder(new WritableByteChannel() {
+            public int write(ByteBuffer src) {
+                int count = src.remaining();
+                while (src.hasRemaining()) {
+                    written.write(src.get());
+                }
+                return count;
+            }
+            public boolean isOpen() {
+                return true;
+            }
+            public void close() {
+            }
+        }, 4096);
+    }
+
+    private Pipeline pipeline(final String responses) {
+        return new Pipeline(encoder, new BufferedReader(new StringReader(
+                responses)));
+    }
+
+    public void testScan() throws IOException {
+        Pipeline pipeline = pipeline(
+                "* METADATA \"user.a\" (/shared/comment \"Hallo \\\"Welt\\\"\""
+                + " /shared/vendor/cmu/cyrus-imapd/expire NIL)\r\n"
+                + "* METADATA user.b (/shared/comment {4}\r\nab)c)\r\n"
+                + "* METADATA user.b (/SHARED/vendor/cmu/cyrus-imapd/expire"
+                + " \"30\")\r\n"
+                + "A1 OK Completed\r\n"
+                + "A2 NO Mailbox does not exist\r\n"
+                + "* METADATA user.c (/shared/comment NIL)\r\n"
+                + "A3 OK Completed\r\n"
+                + "A4 NO Mailbox does not exist\r\n");
+        final List<MailboxMetadata> results =
+                new ArrayList<MailboxMetadata>();
+        int failed = MetadataScan.scan(pipeline, Arrays.asList("user.a",
+                "user.b", "user.c", "user.d"), new String[] {COMMENT, EXPIRE},
+                2, new MetadataListener() {
+                    @Override
+                    public void metadata(final MailboxMetadata metadata) {
+                        results.add(metadata);
+                    }
+                });
+
+        assertEquals(1, failed);
+        assertEquals(3, results.size());
+        MailboxMetadata a = results.get(0);
+        assertEquals("user.a", a.getMailbox());
+        assertEquals("Hallo \"Welt\"", a.get(COMMENT));
+        assertNull(a.get(EXPIRE));
+        assertEquals(1, a.toMap().size());
+        // Zwei Antwortzeilen ergeben eine Mailbox, Literal mit Klammer
+        MailboxMetadata b = results.get(1);
+        assertEquals("ab)c", b.get(COMMENT));
+        assertEquals("30", b.get(EXPIRE));
+        // Einzeln wiederholt nach Ablehnung der Liste
+        MailboxMetadata c = results.get(2);
+        assertEquals("user.c", c.getMailbox());
+        assertTrue(c.isEmpty());
+
+        String[] lines = written.toString("UTF-8").split("\r\n");
+        assertEquals(4, lines.length);
+        assertEquals("A1 GETMETADATA (\"user.a\" \"user.b\") (" + COMMENT
+                + " " + EXPIRE + ")", lines[0]);
+        assertTrue(lines[1].startsWith("A2 GETMETADATA (\"user.c\""));
+        assertTrue(lines[2].startsWith("A3 GETMETADATA \"user.c\" ("));
+        assertTrue(lines[3].startsWith("A4 GETMETADATA \"user.d\" ("));
+    }
+
+    public void testUpdate() throws IOException {
+        Pipeline pipeline = pipeline("A1 OK Completed\r\n"
+                + "A2 NO [PERMISSIONDENIED] Permission denied\r\n");
+        Map<String, Map<String, String>> changes =
+                new LinkedHashMap<String, Map<String, String>>();
+        Map<String, String> first = new LinkedHashMap<String, String>();
+        first.put(EXPIRE, "30");
+        first.put(COMMENT, null);
+        changes.put("user.a", first);
+        changes.put("user.b", first);
+        changes.put("user.c", new LinkedHashMap<String, String>());
+        Map<String, String> failures = MetadataScan.update(pipeline, changes);
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get("user.b").contains("PERMISSIONDENIED"));
+        assertEquals("A1 SETMETADATA \"user.a\" (" + EXPIRE + " \"30\" "
+                + COMMENT + " NIL)\r\n"
+                + "A2 SETMETADATA \"user.b\" (" + EXPIRE + " \"30\" "
+                + COMMENT + " NIL)\r\n", written.toString("UTF-8"));
+    }
+
+} // Ende class
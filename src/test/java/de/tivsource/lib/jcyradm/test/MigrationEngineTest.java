@@ -0,0 +1,228 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.bulk.BulkProgress;
+import de.tivsource.lib.jcyradm.exception.MigrationRefused;
+import de.tivsource.lib.jcyradm.migration.MigrationEngine;
+import de.tivsource.lib.jcyradm.migration.MigrationListener;
+import de.tivsource.lib.jcyradm.migration.MigrationState;
+import de.tivsource.lib.jcyradm.migration.MigrationTask;
+import de.tivsource.lib.jcyradm.migration.Migrator;
+
+/**
+ * In diesem Test wird die Klasse MigrationEngine getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MigrationEngineTest extends TestCase {
+
+    /**
+     * Migrator der nur zählt wie viele Migrationen gleichzeitig je Backend
+     * laufen.
+     */
+    private static class CountingMigrator implements Migrator {
+
+        private final Map<String, Integer> current =
+                new HashMap<String, Integer>();
+
+        private final Map<String, Integer> max =
+                new HashMap<String, Integer>();
+
+        private final Map<String, Integer> failures =
+                new HashMap<String, Integer>();
+
+        private final List<String> moved = new ArrayList<String>();
+
+        private int checks;
+
+        @Override
+        public void migrate(final MigrationTask task) throws Exception {
+            enter("s:" + task.getSource());
+            enter("t:" + task.getTarget());
+            try {
+                Thread.sleep(5);
+                synchronized (this) {
+                    Integer left = failures.get(task.getMailbox());
+                    if (left != null && left.intValue() > 0) {
+                        failures.put(task.getMailbox(), left - 1);
+                        throw new IOException("connection reset");
+                    }
+                }
+                if (task.getMailbox().startsWith("denied")) {
+                    throw new MigrationRefused("NO Permission denied");
+                }
+                if (task.getMailbox().startsWith("busy")) {
+                    throw new MigrationRefused("NO [INUSE] Mailbox busy");
+                }
+                synchronized (this) {
+                    if (moved.contains(task.getMailbox())) {
+                        throw new MigrationRefused(
+                                "NO Mailbox does not exist");
+                    }
+                    moved.add(task.getMailbox());
+                }
+                if (task.getMailbox().startsWith("lost")) {
+                    // Verschoben, aber die Antwort ging verloren
+                    throw new IOException("connection reset");
+                }
+            } finally {
+                leave("s:" + task.getSource());
+                leave("t:" + task.getTarget());
+            }
+        }
+
+        @Override
+        public synchronized boolean isMigrated(final MigrationTask task) {
+            checks++;
+            return moved.contains(task.getMailbox());
+        }
+
+        private synchronized void enter(final String key) {
+            Integer now = current.containsKey(key) ? current.get(key) + 1 : 1;
+            current.put(key, now);
+            Integer old = max.get(key);
+            if (old == null || old.intValue() < now.intValue()) {
+                max.put(key, now);
+            }
+        }
+
+        private synchronized void leave(final String key) {
+            current.put(key, current.get(key) - 1);
+        }
+
+        private synchronized int getMax(final String key) {
+            Integer value = max.get(key);
+            return value == null ? 0 : value.intValue();
+        }
+    }
+
+    public void testLimits() throws InterruptedException {
+        CountingMigrator migrator = new CountingMigrator();
+        MigrationEngine engine = new MigrationEngine(migrator);
+        engine.setSourceLimit(3);
+        engine.setTargetLimit(2);
+        engine.setLimits("b1", 1, 1);
+        String[] backends = {"b1", "b2", "b3", "b4"};
+        int tasks = 0;
+        for (int i = 0; i < 40; i++) {
+            engine.add(new MigrationTask("u" + i, backends[i % 4],
+                    backends[(i + 1 + i / 4 % 3) % 4], null, i));
+            tasks++;
+        }
+        BulkProgress progress = new BulkProgress();
+        engine.run(progress);
+
+        assertEquals(tasks, progress.getCompleted());
+        assertEquals(0, progress.getFailed());
+        assertEquals(0, engine.getRunning());
+        long expected = 0;
+        for (int i = 0; i < 40; i++) {
+            expected += i;
+        }
+        assertEquals(expected, engine.getMovedKb());
+
+        assertEquals(1, migrator.getMax("s:b1"));
+        assertEquals(1, migrator.getMax("t:b1"));
+        for (int i = 1; i < backends.length; i++) {
+            assertTrue(migrator.getMax("s:" + backends[i]) <= 3);
+            assertTrue(migrator.getMax("t:" + backends[i]) <= 2);
+        }
+        // Ohne Grenzen nach oben liefen mehrere gleichzeitig
+        assertTrue(migrator.getMax("s:b2") > 1);
+    }
+
+    public void testRetries() throws InterruptedException {
+        CountingMigrator migrator = new CountingMigrator();
+        migrator.failures.put("flaky", 2);
+        migrator.failures.put("broken", 10);
+        MigrationEngine engine = new MigrationEngine(migrator);
+        engine.setRetryDelay(1);
+        engine.setMaxAttempts(3);
+        final List<MigrationTask> finished =
+                Collections.synchronizedList(new ArrayList<MigrationTask>());
+        engine.setListener(new MigrationListener() {
+            @Override
+            public void finished(final MigrationTask task) {
+                finished.add(task);
+            }
+        });
+        MigrationTask flaky = new MigrationTask("flaky", "a", "b", null, 10);
+        MigrationTask broken = new MigrationTask("broken", "a", "b", null, 10);
+        MigrationTask denied = new MigrationTask("denied", "a", "b", null, 10);
+        MigrationTask busy = new MigrationTask("busy", "a", "a", "p2", 10);
+        engine.add(flaky);
+        engine.add(broken);
+        engine.add(denied);
+        engine.add(busy);
+        BulkProgress progress = new BulkProgress();
+        engine.run(progress);
+
+        assertEquals(4, finished.size());
+        assertEquals(MigrationState.DONE, flaky.getState());
+        assertEquals(3, flaky.getAttempts());
+        // Nach dem letzten Verbindungsfehler ist der Ausgang unbekannt
+        assertEquals(MigrationState.UNKNOWN, broken.getState());
+        assertEquals(3, broken.getAttempts());
+        assertEquals("connection reset", broken.getError());
+        // Endgültige Ablehnung wird nicht wiederholt
+        assertEquals(MigrationState.FAILED, denied.getState());
+        assertEquals(1, denied.getAttempts());
+        // Vorübergehende Ablehnung schon
+        assertEquals(MigrationState.FAILED, busy.getState());
+        assertEquals(3, busy.getAttempts());
+        assertTrue(busy.isRename());
+
+        assertEquals(3, progress.getFailed());
+        assertEquals(6, engine.getRetries());
+        assertEquals(10, engine.getMovedKb());
+    }
+
+    public void testBandwidth() throws InterruptedException {
+        MigrationEngine engine = new MigrationEngine(new CountingMigrator());
+        engine.setSourceLimit(10);
+        engine.setTargetLimit(10);
+        // 1000 KB je Sekunde, die ersten 1000 KB sind angespart
+        engine.setBandwidth("slow", 1000);
+        for (int i = 0; i < 3; i++) {
+            engine.add(new MigrationTask("m" + i, "slow", "fast", null, 1000));
+        }
+        long start = System.nanoTime();
+        engine.run(new BulkProgress());
+        long millis = (System.nanoTime() - start) / 1000000L;
+        assertTrue("took " + millis, millis >= 900);
+        assertEquals(3000, engine.getMovedKb());
+    }
+
+    public void testLostResponse() throws InterruptedException {
+        CountingMigrator migrator = new CountingMigrator();
+        migrator.failures.put("renamed", 1);
+        MigrationEngine engine = new MigrationEngine(migrator);
+        engine.setRetryDelay(1);
+        MigrationTask lost = new MigrationTask("lost", "a", "b", null, 10);
+        MigrationTask renamed = new MigrationTask("renamed", "a", "a", "p2",
+                10);
+        engine.add(lost);
+        engine.add(renamed);
+        BulkProgress progress = new BulkProgress();
+        engine.run(progress);
+
+        // Die Wiederholung findet die Mailbox auf dem Ziel
+        assertEquals(MigrationState.DONE, lost.getState());
+        assertEquals(2, lost.getAttempts());
+        assertEquals(1, migrator.checks);
+        // Ein RENAME lässt sich nicht prüfen und wird nicht wiederholt
+        assertEquals(MigrationState.UNKNOWN, renamed.getState());
+        assertEquals(1, renamed.getAttempts());
+        assertEquals(1, progress.getFailed());
+        assertEquals(10, engine.getMovedKb());
+    }
+
+} // Ende class
@@ -0,0 +1,102 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.net.CircuitBreaker;
+import de.tivsource.lib.jcyradm.net.Connection;
+import de.tivsource.lib.jcyradm.net.HostHealth;
+import de.tivsource.lib.jcyradm.net.MultiHostConnector;
+
+/**
+ * In diesem Test wird die Klasse MultiHostConnector getestet. Die Hosts
+ * sind zwei Loopback-Adressen mit demselben Port.
+ *
+ * @author Marc Michele
+ *
+ */
+public class MultiHostConnectorTest extends TestCase {
+
+    private static final String FIRST = "127.0.0.1";
+
+    private static final String SECOND = "127.0.0.2";
+
+    private static final List<String> HOSTS = Arrays.asList(FIRST, SECOND);
+
+    private HostHealth health;
+
+    private MultiHostConnector connector;
+
+    protected void setUp() {
+        health = new HostHealth(60000);
+        connector = new MultiHostConnector();
+        connector.setHealth(health);
+        connector.setCircuitBreaker(new CircuitBreaker(5, 1000));
+        connector.setConnectTimeout(5000);
+    }
+
+    public void testDeadHostFailsOver() throws Exception {
+        FakeCyrusServer live = new FakeCyrusServer(SECOND, 0);
+        try {
+            connector.setStaggerDelay(2000);
+            long start = System.nanoTime();
+            Connection connection = connector.connect(HOSTS,
+                    live.getPort(), false);
+            // Ein abgelehnter Versuch startet den nächsten sofort
+            assertTrue(millisSince(start) < 1000);
+            assertEquals(SECOND, connection.getHost());
+            assertEquals("* OK test ready", connection.getWelcomeMsg());
+            connection.close();
+            assertFalse(health.isHealthy(FIRST));
+            assertTrue(health.isHealthy(SECOND));
+            assertEquals(Arrays.asList(SECOND, FIRST), health.order(HOSTS));
+        } finally {
+            live.shutdown();
+        }
+    }
+
+    public void testStaggeredAttempt() throws Exception {
+        FakeCyrusServer silent = new FakeCyrusServer(FIRST, 0);
+        silent.setSilent(true);
+        FakeCyrusServer live = new FakeCyrusServer(SECOND, silent.getPort());
+        try {
+            connector.setStaggerDelay(200);
+            long start = System.nanoTime();
+            Connection connection = connector.connect(HOSTS,
+                    live.getPort(), false);
+            long elapsed = millisSince(start);
+            // Der zweite Host wird erst nach der Wartezeit versucht
+            assertTrue("too early: " + elapsed, elapsed >= 190);
+            assertTrue("too late: " + elapsed, elapsed < 2000);
+            assertEquals(SECOND, connection.getHost());
+
+            // Der verlorene Versuch wird geschlossen
+            long end = System.currentTimeMillis() + 2000;
+            while (silent.getHangups() == 0
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, silent.getHangups());
+            connection.close();
+
+            // Ohne Gruß hinten angestellt, der zweite Host kommt sofort
+            assertFalse(health.isHealthy(FIRST));
+            start = System.nanoTime();
+            connection = connector.connect(HOSTS, live.getPort(), false);
+            assertTrue(millisSince(start) < 200);
+            assertEquals(SECOND, connection.getHost());
+            connection.close();
+            assertEquals(1, silent.getAccepted());
+            assertEquals(2, live.getAccepted());
+        } finally {
+            silent.shutdown();
+            live.shutdown();
+        }
+    }
+
+    private static long millisSince(final long start) {
+        return (System.nanoTime() - start) / 1000000L;
+    }
+
+} // Ende class
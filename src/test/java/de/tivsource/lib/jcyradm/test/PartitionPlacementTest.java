@@ -0,0 +1,158 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.placement.FileUsageSource;
+import de.tivsource.lib.jcyradm.placement.LeastUsedPolicy;
+import de.tivsource.lib.jcyradm.placement.PartitionPlacement;
+import de.tivsource.lib.jcyradm.placement.PartitionUsage;
+import de.tivsource.lib.jcyradm.placement.RoundRobinPolicy;
+import de.tivsource.lib.jcyradm.placement.UsageSource;
+import de.tivsource.lib.jcyradm.placement.WeightedFreePolicy;
+
+/**
+ * In diesem Test wird die Klasse PartitionPlacement mit den Strategien
+ * getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class PartitionPlacementTest extends TestCase {
+
+    /**
+     * Quelle die feste Messungen liefert und zählt wie oft gemessen wurde.
+     */
+    private static class FixedSource implements UsageSource {
+
+        private List<PartitionUsage> usages;
+
+        private int samples;
+
+        private FixedSource(final PartitionUsage... partitions) {
+            this.usages = Arrays.asList(partitions);
+        }
+
+        @Override
+        public List<PartitionUsage> sample() throws Exception {
+            samples++;
+            if (usages == null) {
+                throw new IOException("df failed");
+            }
+            return usages;
+        }
+    }
+
+    public void testLeastUsedSpreadsBetweenSamples() {
+        FixedSource source = new FixedSource(
+                new PartitionUsage(null, "default", 500, 1000),
+                new PartitionUsage(null, "p2", 100, 1000),
+                new PartitionUsage(null, "p3", 300, 1000));
+        PartitionPlacement placement = new PartitionPlacement(source,
+                new LeastUsedPolicy());
+        placement.setExpectedKb(100);
+
+        assertEquals("p2", placement.choose());
+        assertEquals("p2", placement.choose());
+        // p2 steht jetzt bei 300 wie p3, p2 hat nicht mehr freien Speicher
+        assertEquals("p2", placement.choose());
+        assertEquals("p3", placement.choose());
+        assertEquals(1, source.samples);
+
+        // Neue Messung verwirft die aufgeschlagenen Größen
+        placement.invalidate();
+        assertEquals("p2", placement.choose());
+        assertEquals(2, source.samples);
+    }
+
+    public void testReserveAndFailures() {
+        FixedSource source = new FixedSource(
+                new PartitionUsage("imap1", "default", 950, 1000),
+                new PartitionUsage("imap2", "default", 800, 1000));
+        PartitionPlacement placement = new PartitionPlacement(source,
+                new RoundRobinPolicy());
+        placement.setReserveKb(100);
+        placement.setExpectedKb(50);
+        placement.setInterval(0);
+
+        assertEquals("imap2!default", placement.choose());
+        assertEquals("imap2!default", placement.choose());
+
+        // Fehlgeschlagene Messung behält die letzte
+        source.usages = null;
+        assertEquals("imap2!default", placement.choose());
+        assertEquals(2, placement.getUsages().size());
+
+        source.usages = Arrays.asList(
+                new PartitionUsage("imap1", "default", 990, 1000));
+        assertNull(placement.choose());
+    }
+
+    public void testPolicies() {
+        List<PartitionUsage> candidates = Arrays.asList(
+                new PartitionUsage(null, "a", 900, 1000),
+                new PartitionUsage(null, "b", 0, 3000),
+                new PartitionUsage(null, "c", 1000, 1000));
+        RoundRobinPolicy roundRobin = new RoundRobinPolicy();
+        List<String> order = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            order.add(roundRobin.choose(candidates).getTarget());
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "a"), order);
+
+        // b hat 3000 KB frei, a 100 KB, c nichts
+        WeightedFreePolicy weighted = new WeightedFreePolicy(new Random(1));
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 3100; i++) {
+            String target = weighted.choose(candidates).getTarget();
+            Integer count = counts.get(target);
+            counts.put(target, count == null ? 1 : count + 1);
+        }
+        assertNull(counts.get("c"));
+        assertTrue(counts.get("a") > 50 && counts.get("a") < 200);
+        assertEquals("b", new LeastUsedPolicy().choose(candidates)
+                .getTarget());
+    }
+
+    public void testFileUsageSource() throws Exception {
+        File file = File.createTempFile("jcyradm", ".usage");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                    "UTF-8");
+            writer.write("# backend partition used size\n\n"
+                    + "imap1 default 81234567 104857600\n"
+                    + "-  spool2\t1234567 104857600\n");
+            writer.close();
+            List<PartitionUsage> usages = new FileUsageSource(file).sample();
+            assertEquals(2, usages.size());
+            assertEquals("imap1!default", usages.get(0).getTarget());
+            assertEquals(81234567, usages.get(0).getUsedKb());
+            assertEquals("spool2", usages.get(1).getTarget());
+            assertEquals(104857600 - 1234567, usages.get(1).getFreeKb());
+
+            writer = new OutputStreamWriter(new FileOutputStream(file),
+                    "UTF-8");
+            writer.write("imap1 default 12\n");
+            writer.close();
+            try {
+                new FileUsageSource(file).sample();
+                fail("expected IOException");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains(":1:"));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+} // Ende class
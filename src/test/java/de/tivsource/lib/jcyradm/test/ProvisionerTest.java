@@ -0,0 +1,235 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.exception.NoValidMailboxName;
+import de.tivsource.lib.jcyradm.exception.ProvisionIncomplete;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.provision.ProvisionRequest;
+import de.tivsource.lib.jcyradm.provision.ProvisionResult;
+import de.tivsource.lib.jcyradm.provision.Provisioner;
+import de.tivsource.lib.jcyradm.provision.StepOutcome;
+
+/**
+ * In diesem Test wird die Klasse Provisioner ohne Server getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class ProvisionerTest extends TestCase {
+
+    private ByteArrayOutputStream written;
+    private int writes;
+    private CommandEncoder encoder;
+
+    protected void setUp() {
+        written = new ByteArrayOutputStream();
+        writes = 0;
+        encoder = new CommandEncoder(new WritableByteChannel() {
+            public int write(ByteBuffer src) {
+                writes++;
+                int count = src.remaining();
+                while (src.hasRemaining()) {
+                    written.write(src.get());
+                }
+                return count;
+            }
+            public boolean isOpen() {
+                return true;
+            }
+            public void close() {
+            }
+        }, 4096);
+    }
+
+    public void testSingleRoundTrip() throws Exception {
+        Pipeline pipeline = new Pipeline(encoder, new BufferedReader(
+                new StringReader("A1 NO Mailbox does not exist\r\n"
+                        + "A2 NO Mailbox does not exist\r\n"
+                        + "A3 OK Completed\r\n"
+                        + "A4 OK Completed\r\n"
+                        + "A5 OK Completed\r\n"
+                        + "A6 OK Completed\r\n"
+                        + "A7 OK Completed\r\n"
+                        + "A8 OK Completed\r\n")));
+        ProvisionRequest request = new ProvisionRequest("max");
+        request.setQuota(1024);
+        request.setAcl("anyone", "p");
+        request.setPartition("spool2");
+
+        Provisioner provisioner = new Provisioner(new MailboxNameValidator());
+        provisioner.setCreateFirst(false);
+        ProvisionResult result = provisioner.provision(pipeline, request);
+        assertEquals(1, writes);
+        assertTrue(result.isOk());
+        assertEquals(1, result.getRoundTrips());
+        assertEquals(6, result.getSteps().size());
+        assertEquals(Arrays.asList("user.max", "user.max.Sent",
+                "user.max.Trash", "user.max.Drafts"), result.getCreated());
+        String sent = written.toString("UTF-8");
+        assertTrue(sent, sent.contains("A3 CREATE \"user.max\" spool2\r\n"));
+        assertTrue(sent, sent.indexOf("SETACL") < sent.indexOf("Sent"));
+    }
+
+    public void testRollbackOfExistingMailbox() throws Exception {
+        Pipeline pipeline = new Pipeline(encoder, new BufferedReader(
+                new StringReader("* QUOTA user.max (STORAGE 10 500 "
+                        + "MESSAGE 3 1000)\r\n"
+                        + "A1 OK Completed\r\n"
+                        + "* ACL user.max max lrswipkxtecda\r\n"
+                        + "A2 OK Completed\r\n"
+                        + "A3 NO Mailbox already exists\r\n"
+                        + "A4 OK Completed\r\n"
+                        + "A5 OK Completed\r\n"
+                        + "A6 OK Completed\r\n"
+                        + "A7 NO Mailbox already exists\r\n"
+                        + "A8 OK Completed\r\n"
+                        // Zweiter Durchlauf
+                        + "A9 OK Completed\r\n"
+                        + "A10 OK Completed\r\n"
+                        + "A11 OK Completed\r\n"
+                        + "A12 NO Permission denied\r\n")));
+        ProvisionRequest request = new ProvisionRequest("max");
+        request.setQuota(1024);
+        request.setAcl("anyone", "p");
+        request.setAcl("max", "lrs");
+        request.setFolders("Sent", "Trash");
+
+        Provisioner provisioner = new Provisioner(new MailboxNameValidator());
+        provisioner.setCreateFirst(false);
+        ProvisionResult result = provisioner.provision(pipeline, request);
+        assertFalse(result.isOk());
+        assertFalse(result.isCreated());
+        assertEquals(2, result.getRoundTrips());
+        assertEquals(2, writes);
+        List<StepOutcome> outcomes = Arrays.asList(StepOutcome.FAILED,
+                StepOutcome.ROLLED_BACK, StepOutcome.ROLLED_BACK,
+                StepOutcome.ROLLED_BACK, StepOutcome.SKIPPED,
+                StepOutcome.FAILED);
+        for (int i = 0; i < outcomes.size(); i++) {
+            assertEquals(result.getSteps().get(i).getDescription(),
+                    outcomes.get(i), result.getSteps().get(i).getOutcome());
+        }
+        assertEquals("Mailbox already exists",
+                result.getSteps().get(0).getText());
+        assertTrue(result.getCreated().isEmpty());
+
+        String sent = written.toString("UTF-8");
+        String rollback = sent.substring(sent.indexOf("A9 "));
+        assertEquals("A9 SETQUOTA \"user.max\" (STORAGE 500 MESSAGE 1000)\r\n"
+                + "A10 DELETEACL \"user.max\" anyone\r\n"
+                + "A11 SETACL \"user.max\" max lrswipkxtecda\r\n"
+                + "A12 DELETE \"user.max.Trash\"\r\n", rollback);
+    }
+
+    public void testConnectionLostDuringRollback() throws Exception {
+        Pipeline pipeline = new Pipeline(encoder, new BufferedReader(
+                new StringReader("A1 OK Completed\r\n"
+                        + "A2 OK Completed\r\n"
+                        + "A3 NO Mailbox already exists\r\n"
+                        + "A4 OK Completed\r\n"
+                        + "A5 OK Completed\r\n"
+                        + "A6 OK Completed\r\n"
+                        // Zweiter Durchlauf bricht nach A7 ab
+                        + "A7 OK Completed\r\n")));
+        ProvisionRequest request = new ProvisionRequest("max");
+        request.setQuota(1024);
+        request.setAcl("anyone", "p");
+        request.setFolders("Sent");
+        Provisioner provisioner = new Provisioner(new MailboxNameValidator());
+        provisioner.setCreateFirst(false);
+        try {
+            provisioner.provision(pipeline, request);
+            fail("expected ProvisionIncomplete");
+        } catch (ProvisionIncomplete e) {
+            assertEquals(Arrays.asList("user.max: setacl anyone p",
+                    "user.max: create user.max.Sent"), e.getApplied());
+            assertNotNull(e.getCause());
+        }
+    }
+
+    public void testCreateFirst() throws Exception {
+        Pipeline pipeline = new Pipeline(encoder, new BufferedReader(
+                new StringReader("A1 NO Mailbox already exists\r\n"
+                        + "A2 OK Completed\r\n"
+                        + "A3 OK Completed\r\n"
+                        + "A4 OK Completed\r\n")));
+        ProvisionRequest existing = new ProvisionRequest("max");
+        existing.setQuota(1024);
+        existing.setFolders("Sent");
+        ProvisionRequest fresh = new ProvisionRequest("moritz");
+        fresh.setQuota(2048);
+        fresh.setFolders("Sent");
+
+        // Standard, ohne setCreateFirst(true)
+        Provisioner provisioner = new Provisioner(new MailboxNameValidator());
+        List<ProvisionResult> results = provisioner.provisionAll(pipeline,
+                Arrays.asList(existing, fresh));
+        assertEquals(2, writes);
+        String sent = written.toString("UTF-8");
+        // Keine Abfragen, an der bestehenden Mailbox wird nichts geändert
+        assertEquals("A1 CREATE \"user.max\"\r\n"
+                + "A2 CREATE \"user.moritz\"\r\n"
+                + "A3 SETQUOTA \"user.moritz\" (STORAGE 2048)\r\n"
+                + "A4 CREATE \"user.moritz.Sent\"\r\n", sent);
+
+        ProvisionResult max = results.get(0);
+        assertFalse(max.isOk());
+        assertEquals(1, max.getRoundTrips());
+        assertEquals(StepOutcome.SKIPPED, max.getSteps().get(1).getOutcome());
+        assertEquals(StepOutcome.SKIPPED, max.getSteps().get(2).getOutcome());
+        ProvisionResult moritz = results.get(1);
+        assertTrue(moritz.isOk());
+        assertEquals(2, moritz.getRoundTrips());
+        assertEquals(Arrays.asList("user.moritz", "user.moritz.Sent"),
+                moritz.getCreated());
+    }
+
+    public void testNamesAndAcl() throws IOException {
+        Provisioner provisioner = new Provisioner(new MailboxNameValidator(
+                true, true));
+        assertEquals("user/max/Sent@example.org",
+                provisioner.folderName("max@example.org", "Sent"));
+        assertEquals("user/max.mustermann/Trash",
+                provisioner.folderName("max.mustermann", "Trash"));
+
+        Map<String, String> acls = Provisioner.parseAcl(
+                "* ACL \"user.max mustermann\" anyone lrs \"group:a b\" lr");
+        assertEquals(2, acls.size());
+        assertEquals("lrs", acls.get("anyone"));
+        assertEquals("lr", acls.get("group:a b"));
+        assertNull(Provisioner.parseAcl("* QUOTA user.max (STORAGE 1 2)"));
+
+        Map<String, Long> limits = Provisioner.parseQuota(
+                "* QUOTA user.max (STORAGE 10 500 MESSAGE 3 1000)");
+        assertEquals(Arrays.asList("STORAGE", "MESSAGE"),
+                Arrays.asList(limits.keySet().toArray()));
+        assertEquals(Long.valueOf(1000), limits.get("MESSAGE"));
+        assertTrue(Provisioner.parseQuota("* QUOTA user.max ()").isEmpty());
+        assertNull(Provisioner.parseQuota("* ACL user.max anyone lrs"));
+
+        ProvisionRequest request = new ProvisionRequest("max");
+        request.setFolders("a..b");
+        Pipeline pipeline = new Pipeline(encoder, new BufferedReader(
+                new StringReader("")));
+        try {
+            new Provisioner(new MailboxNameValidator()).provision(pipeline,
+                    request);
+            fail("expected NoValidMailboxName");
+        } catch (NoValidMailboxName e) {
+            assertEquals(0, written.size());
+        }
+    }
+
+} // Ende class
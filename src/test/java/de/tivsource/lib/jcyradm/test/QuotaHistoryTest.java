@@ -0,0 +1,211 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.quota.DomainUsage;
+import de.tivsource.lib.jcyradm.quota.QuotaHistory;
+import de.tivsource.lib.jcyradm.quota.QuotaSeries;
+
+/**
+ * In diesem Test wird die Klasse QuotaHistory getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaHistoryTest extends TestCase {
+
+    private static final long START = 1400000000L;
+
+    private static final long HOUR = 3600L;
+
+    private File directory;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = File.createTempFile("jcyradm", ".history");
+        directory.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    public void testSeriesAcrossSegments() throws IOException {
+        QuotaHistory history = new QuotaHistory(directory);
+        for (int i = 0; i < 48; i++) {
+            history.append("max@example.org", START + i * HOUR, 1000 + i * 10,
+                    -5);
+            if (i == 23) {
+                history.flush();
+            }
+        }
+        // Unregelmäßige Abstände und sinkender Speicher
+        history.append("max@example.org", START + 48 * HOUR + 17, 3, 7);
+
+        QuotaSeries series = history.series("max@example.org", 0,
+                Long.MAX_VALUE);
+        assertEquals(49, series.size());
+        assertEquals(START, series.getTime(0));
+        assertEquals(1230, series.getUsed(23));
+        assertEquals(START + 24 * HOUR, series.getTime(24));
+        assertEquals(-5, series.getLimit(47));
+        assertEquals(START + 48 * HOUR + 17, series.getTime(48));
+        assertEquals(3, series.getUsed(48));
+        assertEquals(7, series.getLimit(48));
+
+        series = history.series("max@example.org", START + 10 * HOUR,
+                START + 30 * HOUR);
+        assertEquals(21, series.size());
+        assertEquals(0, history.series("moritz", 0, Long.MAX_VALUE).size());
+        history.close();
+
+        history = new QuotaHistory(directory);
+        assertEquals(2, history.getSegmentCount());
+        assertEquals(49, history.series("max@example.org", 0,
+                Long.MAX_VALUE).size());
+        history.close();
+    }
+
+    public void testCompaction() throws IOException {
+        QuotaHistory history = new QuotaHistory(directory);
+        for (int hour = 0; hour < 17; hour++) {
+            for (int i = 0; i < 10; i++) {
+                history.append("user" + i, START + hour * HOUR, hour, 100);
+            }
+            history.flush();
+        }
+        // 16 Segmente der Stufe 0 ergeben eines der Stufe 2
+        assertEquals(2, history.getSegmentCount());
+        assertEquals(2, directory.list().length);
+        QuotaSeries series = history.series("user3", 0, Long.MAX_VALUE);
+        assertEquals(17, series.size());
+        for (int hour = 0; hour < 17; hour++) {
+            assertEquals(START + hour * HOUR, series.getTime(hour));
+            assertEquals(hour, series.getUsed(hour));
+        }
+        history.close();
+
+        history = new QuotaHistory(directory);
+        assertEquals(2, history.getSegmentCount());
+        assertEquals(17, history.series("user9", 0, Long.MAX_VALUE).size());
+        history.close();
+    }
+
+    public void testMergedLeftovers() throws IOException {
+        QuotaHistory history = new QuotaHistory(directory);
+        for (int hour = 0; hour < 3; hour++) {
+            history.append("max", START + hour * HOUR, hour, 100);
+            history.flush();
+        }
+        File[] sources = directory.listFiles();
+        byte[][] contents = new byte[sources.length][];
+        for (int i = 0; i < sources.length; i++) {
+            contents[i] = read(sources[i]);
+        }
+        history.append("max", START + 3 * HOUR, 3, 100);
+        history.flush();
+        assertEquals(1, history.getSegmentCount());
+        history.close();
+
+        // Absturz nach dem Zusammenfassen, vor dem Löschen der Quellen
+        for (int i = 0; i < sources.length; i++) {
+            OutputStream out = new FileOutputStream(sources[i]);
+            out.write(contents[i]);
+            out.close();
+        }
+        history = new QuotaHistory(directory);
+        assertEquals(1, history.getSegmentCount());
+        assertEquals(1, directory.list().length);
+        assertEquals(4, history.series("max", 0, Long.MAX_VALUE).size());
+        history.close();
+    }
+
+    public void testHeapSizeRollsSegment() throws IOException {
+        QuotaHistory history = new QuotaHistory(directory);
+        history.setSegmentSize(100000);
+        // Kodiert nur wenige KB, aber jede Mailbox kostet Objekte im Heap
+        for (int i = 0; i < 1000; i++) {
+            history.append("user" + i + "@example.org", START, 1, 100);
+        }
+        assertTrue(history.getSegmentCount() > 0);
+        history.close();
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        int offset = 0;
+        while (offset < content.length) {
+            offset += in.read(content, offset, content.length - offset);
+        }
+        in.close();
+        return content;
+    }
+
+    public void testGrowthAndForecast() throws IOException {
+        QuotaHistory history = new QuotaHistory(directory);
+        for (int day = 0; day < 10; day++) {
+            // 1000 KB je Tag, Grenze 20000 KB
+            history.append("max", START + day * 24 * HOUR, 5000 + day * 1000,
+                    20000);
+            history.append("full", START + day * 24 * HOUR, 20000, 20000);
+            history.append("flat", START + day * 24 * HOUR, 100, 20000);
+        }
+        history.flush();
+
+        assertEquals(1000.0, history.growthRate("max", 0, Long.MAX_VALUE),
+                1e-6);
+        long last = START + 9 * 24 * HOUR;
+        assertEquals(last + 6 * 24 * HOUR,
+                history.forecastFull("max", 0, Long.MAX_VALUE));
+        assertEquals(last, history.forecastFull("full", 0, Long.MAX_VALUE));
+        assertEquals(-1L, history.forecastFull("flat", 0, Long.MAX_VALUE));
+        assertTrue(Double.isNaN(history.growthRate("max", START, START)));
+        history.close();
+    }
+
+    public void testDomainUsageAndSize() throws IOException {
+        QuotaHistory history = new QuotaHistory(directory);
+        history.setSegmentSize(1024 * 1024);
+        int mailboxes = 2000;
+        int hours = 100;
+        for (int hour = 0; hour < hours; hour++) {
+            for (int i = 0; i < mailboxes; i++) {
+                String domain = i % 2 == 0 ? "example.org" : "example.com";
+                history.append("user" + i + "@" + domain,
+                        START + hour * HOUR, 1000 + hour * (i % 5), 1000000);
+            }
+        }
+        history.flush();
+        assertTrue(history.getSegmentCount() > 1);
+        // Namen plus etwa drei Bytes je Messung
+        long perSample = history.diskUsage() / (mailboxes * hours);
+        assertTrue("bytes per sample " + perSample, perSample <= 5);
+
+        Map<String, DomainUsage> usage = history.domainUsage(0,
+                Long.MAX_VALUE);
+        assertEquals(2, usage.size());
+        DomainUsage org = usage.get("example.org");
+        assertEquals(1000, org.getMailboxes());
+        // i % 5 ist bei geraden i 0, 2, 4, 1, 3 - im Mittel 2 KB je Stunde
+        assertEquals(1000 * (1000 + 99 * 2), org.getUsed());
+        assertEquals(1000L * 1000000, org.getLimit());
+        assertEquals(1000 * 2 * 24.0, org.getGrowthPerDay(), 1e-3);
+        history.close();
+    }
+
+} // Ende class
@@ -0,0 +1,89 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.quota.QuotaSnapshot;
+
+/**
+ * In diesem Test wird die Klasse QuotaSnapshot getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaSnapshotTest extends TestCase {
+
+    public void testAddAndOverwrite() {
+        QuotaSnapshot snapshot = new QuotaSnapshot();
+        assertEquals(0, snapshot.add("user.max", 10, 100));
+        assertEquals(1, snapshot.add("user.müller@example.org", 50, 100));
+        assertEquals(0, snapshot.add("user.max", 20, 100));
+        assertEquals(2, snapshot.size());
+        assertEquals(20, snapshot.getUsed(0));
+        assertEquals("user.müller@example.org", snapshot.getName(1));
+        assertEquals("example.org", snapshot.getDomain(1));
+        assertEquals("", snapshot.getDomain(0));
+        assertEquals(-1, snapshot.find("user.moritz"));
+    }
+
+    public void testQuotaLine() {
+        QuotaSnapshot snapshot = new QuotaSnapshot(true);
+        int row = snapshot.addQuotaLine("* QUOTA user.max (STORAGE 10 1024)");
+        assertEquals(10, snapshot.getUsed(row));
+        assertEquals(1024, snapshot.getLimit(row));
+        row = snapshot.addQuotaLine(
+                "* QUOTA \"user.m&APw-ller hans\" (STORAGE 5 10)");
+        assertEquals("user.müller hans", snapshot.getName(row));
+        assertEquals(50.0, snapshot.getLoad(row), 0.001);
+        assertEquals(-1, snapshot.addQuotaLine("* QUOTA user.x ()"));
+        assertEquals(-1, snapshot.addQuotaLine("* OK"));
+    }
+
+    public void testQueries() {
+        QuotaSnapshot snapshot = new QuotaSnapshot();
+        Random random = new Random(7);
+        int rows = 100000;
+        double[] loads = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            long used = random.nextInt(1000);
+            snapshot.add("user.u" + i + "@d" + (i % 3) + ".org", used, 1000);
+            loads[i] = used / 10.0;
+        }
+        double[] sorted = loads.clone();
+        Arrays.sort(sorted);
+
+        int[] top = snapshot.topByLoad(100);
+        assertEquals(100, top.length);
+        for (int i = 0; i < top.length; i++) {
+            assertEquals(sorted[rows - 1 - i], snapshot.getLoad(top[i]),
+                    0.0001);
+        }
+
+        int above = 0;
+        for (double load : loads) {
+            if (load >= 90.0) {
+                above++;
+            }
+        }
+        assertEquals(above, snapshot.atLeast(90.0).length);
+
+        assertEquals(sorted[rows / 2 - 1], snapshot.loadPercentile(0.5),
+                0.0001);
+        assertEquals(sorted[rows - 1], snapshot.loadPercentile(1.0), 0.0001);
+        assertEquals((long) (sorted[(int) Math.ceil(0.99 * rows) - 1] * 10),
+                snapshot.usedPercentile(0.99));
+
+        Map<String, long[]> histogram = snapshot.loadHistogramByDomain(10);
+        assertEquals(3, histogram.size());
+        long total = 0;
+        for (long[] buckets : histogram.values()) {
+            for (long count : buckets) {
+                total += count;
+            }
+        }
+        assertEquals(rows, total);
+    }
+
+} // Ende class
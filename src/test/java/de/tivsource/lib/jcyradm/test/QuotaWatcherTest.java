@@ -0,0 +1,186 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.quota.QuotaListener;
+import de.tivsource.lib.jcyradm.quota.QuotaSource;
+import de.tivsource.lib.jcyradm.quota.QuotaWatcher;
+
+/**
+ * In diesem Test wird die Klasse QuotaWatcher getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class QuotaWatcherTest extends TestCase {
+
+    private static final long CYCLE = 80000L;
+
+    public void testInterval() {
+        QuotaWatcher watcher = new QuotaWatcher(null, CYCLE, 10.0);
+        watcher.setMinInterval(1000L);
+
+        assertEquals(CYCLE, watcher.interval(new Quota("a", 10, 100), 0.0));
+        assertEquals(CYCLE / 8,
+                watcher.interval(new Quota("b", 95, 100), 0.0));
+        // 200 KB frei bei 2 KB/s, nach einem Viertel wieder abfragen
+        assertEquals(25000L, watcher.interval(new Quota("c", 800, 1000), 2.0));
+        assertEquals(1000L, watcher.interval(new Quota("d", 999, 1000), 1.0));
+        assertEquals(CYCLE, watcher.interval(new Quota("e", 10, 0), 1.0));
+    }
+
+    public void testThresholdCrossing() throws Exception {
+        final Map<String, Long> used = new ConcurrentHashMap<String, Long>();
+        used.put("max", 50L);
+        used.put("moritz", 10L);
+        QuotaSource source = new QuotaSource() {
+            @Override
+            public Quota fetch(final String mailbox) {
+                return new Quota(mailbox, used.get(mailbox), 100);
+            }
+        };
+        final List<String> events =
+                Collections.synchronizedList(new ArrayList<String>());
+        QuotaWatcher watcher = new QuotaWatcher(source, 100L, 1000.0);
+        watcher.setMinInterval(10L);
+        watcher.addListener(new QuotaListener() {
+            @Override
+            public void thresholdCrossed(final Quota quota,
+                    final double threshold, final boolean rising) {
+                events.add(quota.getMailbox() + " " + (int) threshold + " "
+                        + rising);
+            }
+        });
+        watcher.watch("max");
+        watcher.watch("moritz");
+        watcher.start();
+        try {
+            waitForPolls(watcher, 4);
+            used.put("max", 92L);
+            waitForEvents(events, 2);
+            assertEquals("max 80 true", events.get(0));
+            assertEquals("max 90 true", events.get(1));
+
+            used.put("max", 85L);
+            waitForEvents(events, 3);
+            assertEquals("max 90 false", events.get(2));
+            assertEquals(85L, watcher.getQuota("max").getUsed());
+        } finally {
+            watcher.stop();
+        }
+        assertEquals(0L, watcher.getFailures());
+    }
+
+    public void testFirstSampleCrosses() throws Exception {
+        QuotaSource source = new QuotaSource() {
+            @Override
+            public Quota fetch(final String mailbox) {
+                return new Quota(mailbox, 92, 100);
+            }
+        };
+        final List<String> events =
+                Collections.synchronizedList(new ArrayList<String>());
+        QuotaWatcher watcher = new QuotaWatcher(source, 100L, 1000.0);
+        watcher.addListener(new QuotaListener() {
+            @Override
+            public void thresholdCrossed(final Quota quota,
+                    final double threshold, final boolean rising) {
+                events.add(quota.getMailbox() + " " + (int) threshold + " "
+                        + rising);
+            }
+        });
+        watcher.watch("max");
+        watcher.start();
+        try {
+            // Schon beim Start voll, gemeldet als Anstieg von 0
+            waitForEvents(events, 2);
+            assertEquals("max 80 true", events.get(0));
+            assertEquals("max 90 true", events.get(1));
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    public void testStopKeepsWatches() throws Exception {
+        final Set<String> fetched =
+                Collections.synchronizedSet(new HashSet<String>());
+        QuotaSource source = new QuotaSource() {
+            @Override
+            public Quota fetch(final String mailbox) {
+                fetched.add(mailbox);
+                return new Quota(mailbox, 10, 100);
+            }
+        };
+        QuotaWatcher watcher = new QuotaWatcher(source, 10L, 1.0);
+        watcher.watch("max");
+        watcher.watch("moritz");
+        watcher.start();
+        // Die zweite Mailbox wartet auf die Rate und wird unterbrochen
+        waitForPolls(watcher, 1);
+        Thread.sleep(100);
+        watcher.stop();
+        assertEquals(1L, watcher.getPolls());
+
+        watcher.setRate(1000.0);
+        fetched.clear();
+        watcher.start();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (fetched.size() < 2
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(fetched.contains("max"));
+            assertTrue(fetched.contains("moritz"));
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    public void testRateIsBounded() throws Exception {
+        QuotaSource source = new QuotaSource() {
+            @Override
+            public Quota fetch(final String mailbox) {
+                return new Quota(mailbox, 99, 100);
+            }
+        };
+        QuotaWatcher watcher = new QuotaWatcher(source, 10L, 50.0);
+        for (int i = 0; i < 100; i++) {
+            watcher.watch("user" + i);
+        }
+        watcher.start();
+        Thread.sleep(500);
+        watcher.stop();
+        // Eine Marke zu Beginn plus 50 je Sekunde
+        assertTrue(watcher.getPolls() <= 30);
+        assertTrue(watcher.getPolls() >= 10);
+    }
+
+    private static void waitForPolls(final QuotaWatcher watcher,
+            final long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watcher.getPolls() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void waitForEvents(final List<String> events,
+            final int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events.size() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, events.size());
+    }
+
+} // Ende class
@@ -0,0 +1,168 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.report.ReportFormat;
+import de.tivsource.lib.jcyradm.report.ReportWriter;
+import de.tivsource.lib.jcyradm.report.Reports;
+
+/**
+ * In diesem Test werden die Klassen ReportWriter und Reports getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class ReportWriterTest extends TestCase {
+
+    private File directory;
+
+    protected void setUp() throws IOException {
+        directory = File.createTempFile("report", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    protected void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    public void testFormats() throws IOException {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        ReportWriter writer = new ReportWriter(Channels.newChannel(csv),
+                ReportFormat.CSV, false, "mailbox", "used");
+        writer.field("user.max");
+        writer.field(-12);
+        writer.endRow();
+        writer.field("a,\"b\"");
+        writer.field(Long.MIN_VALUE);
+        writer.endRow();
+        writer.field((String) null);
+        writer.field(0);
+        writer.endRow();
+        writer.close();
+        assertEquals("mailbox,used\nuser.max,-12\n\"a,\"\"b\"\"\","
+                + Long.MIN_VALUE + "\n,0\n", csv.toString("UTF-8"));
+        assertEquals(3, writer.getRows());
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        writer = new ReportWriter(Channels.newChannel(json),
+                ReportFormat.JSONL, false, "mailbox", "used");
+        writer.field("user.m\u00fcller\"\n");
+        writer.field(7);
+        writer.endRow();
+        writer.flush();
+        assertEquals("{\"mailbox\":\"user.m\u00fcller\\\"\\u000a\","
+                + "\"used\":7}\n", json.toString("UTF-8"));
+        try {
+            writer.field("x");
+            writer.endRow();
+            fail("short row accepted");
+        } catch (IllegalStateException e) {
+            // erwartet
+        }
+    }
+
+    public void testGzipRotation() throws IOException {
+        File file = new File(directory, "quota.csv.gz");
+        ReportWriter writer = new ReportWriter(file, ReportFormat.CSV, true,
+                16 * 1024, Reports.quotaColumns());
+        int rows = 200000;
+        for (int i = 0; i < rows; i++) {
+            writer.field("user.mailbox" + i);
+            writer.field(i);
+            writer.field(1024L * 1024);
+            writer.endRow();
+        }
+        writer.close();
+        assertTrue(writer.getParts() > 1);
+        assertEquals(writer.getParts(), directory.listFiles().length);
+
+        int read = 0;
+        for (int part = 0; part < writer.getParts(); part++) {
+            File partFile = ReportWriter.partFile(file, part);
+            assertTrue(partFile.getName().startsWith("quota."));
+            assertTrue(partFile.getName().endsWith(".csv.gz"));
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(partFile)),
+                    "UTF-8"));
+            try {
+                assertEquals("mailbox,used,limit", in.readLine());
+                String line;
+                while ((line = in.readLine()) != null) {
+                    assertEquals("user.mailbox" + read + "," + read
+                            + ",1048576", line);
+                    read++;
+                }
+            } finally {
+                in.close();
+            }
+        }
+        assertEquals(rows, read);
+    }
+
+    public void testAclAndQuotaReports() throws IOException {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        CommandEncoder encoder = new CommandEncoder(
+                new WritableByteChannel() {
+                    public int write(ByteBuffer src) {
+                        int count = src.remaining();
+                        while (src.hasRemaining()) {
+                            written.write(src.get());
+                        }
+                        return count;
+                    }
+                    public boolean isOpen() {
+                        return true;
+                    }
+                    public void close() {
+                    }
+                }, 4096);
+        Pipeline pipeline = new Pipeline(encoder, new BufferedReader(
+                new StringReader("* ACL user.a cyrus lrswipkxtecda"
+                        + " \"group:it staff\" lrs\r\n"
+                        + "A1 OK Completed\r\n"
+                        + "A2 NO Mailbox does not exist\r\n"
+                        + "* QUOTA user.a (STORAGE 10 100)\r\n"
+                        + "A3 OK Completed\r\n"
+                        + "A4 NO Quota root does not exist\r\n")));
+
+        ByteArrayOutputStream acl = new ByteArrayOutputStream();
+        ReportWriter writer = new ReportWriter(Channels.newChannel(acl),
+                ReportFormat.CSV, false, Reports.aclColumns());
+        assertEquals(1, Reports.acl(pipeline,
+                Arrays.asList("user.a", "user.b").iterator(), writer));
+        writer.close();
+        assertEquals("mailbox,identifier,rights\n"
+                + "user.a,cyrus,lrswipkxtecda\n"
+                + "user.a,group:it staff,lrs\n", acl.toString("UTF-8"));
+
+        ByteArrayOutputStream quota = new ByteArrayOutputStream();
+        writer = new ReportWriter(Channels.newChannel(quota),
+                ReportFormat.JSONL, false, Reports.quotaColumns());
+        assertEquals(1, Reports.quota(pipeline,
+                Arrays.asList("user.a", "user.b").iterator(), writer));
+        writer.close();
+        assertEquals("{\"mailbox\":\"user.a\",\"used\":10,\"limit\":100}\n",
+                quota.toString("UTF-8"));
+        assertTrue(written.toString("UTF-8").startsWith(
+                "A1 GETACL \"user.a\"\r\n"));
+    }
+
+} // Ende class
@@ -0,0 +1,159 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.pool.AdaptiveLimiter;
+import de.tivsource.lib.jcyradm.pool.Operation;
+import de.tivsource.lib.jcyradm.pool.SessionFactory;
+import de.tivsource.lib.jcyradm.pool.SessionPool;
+
+/**
+ * In diesem Test wird die Pflege der freien Sitzungen der Klasse
+ * SessionPool getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class SessionPoolKeepAliveTest extends TestCase {
+
+    /**
+     * Erzeugt verbundene Sitzungen ohne Anmeldung.
+     */
+    private static class TestFactory implements SessionFactory {
+
+        private final int port;
+
+        private final AtomicInteger created = new AtomicInteger();
+
+        TestFactory(final int serverPort) {
+            this.port = serverPort;
+        }
+
+        public JCyrAdm create() throws Exception {
+            JCyrAdm session = new JCyrAdm();
+            session.setHost("127.0.0.1");
+            session.setPort(port);
+            session.connect(false);
+            created.incrementAndGet();
+            return session;
+        }
+
+        public void destroy(final JCyrAdm session) {
+            try {
+                session.disconnect();
+            } catch (IOException e) {
+                // ignorieren
+            }
+        }
+    }
+
+    private FakeCyrusServer server;
+
+    private TestFactory factory;
+
+    protected void setUp() throws IOException {
+        server = new FakeCyrusServer();
+        factory = new TestFactory(server.getPort());
+    }
+
+    protected void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    public void testWarmUp() throws InterruptedException {
+        SessionPool pool = new SessionPool(factory,
+                new AdaptiveLimiter(4, 1, 4), null);
+        pool.setMinIdle(3);
+        assertEquals(3, pool.warmUp());
+        assertEquals(3, pool.getOpenSessions());
+        assertEquals(3, pool.getIdleSessions());
+        // Schon warm
+        assertEquals(0, pool.warmUp());
+        pool.close();
+    }
+
+    public void testKeepAlive() throws Exception {
+        SessionPool pool = new SessionPool(factory,
+                new AdaptiveLimiter(4, 1, 4), null);
+        pool.setMinIdle(2);
+        pool.setKeepAlive(60000);
+        pool.warmUp();
+        // Noch nicht fällig
+        pool.maintain();
+        assertEquals(0, pool.getKeepAlives());
+
+        pool.setKeepAlive(1);
+        Thread.sleep(5);
+        pool.maintain();
+        assertEquals(2, pool.getKeepAlives());
+        assertEquals(2, server.getNoops());
+        assertEquals(0, pool.getEvicted());
+
+        // Tote Sitzung wird verworfen und ersetzt
+        server.dropNextNoop();
+        Thread.sleep(5);
+        pool.maintain();
+        assertEquals(1, pool.getEvicted());
+        assertEquals(2, pool.getOpenSessions());
+        assertEquals(2, pool.getIdleSessions());
+        assertEquals(3, factory.created.get());
+        pool.close();
+    }
+
+    public void testMaintenanceThread() throws Exception {
+        SessionPool pool = new SessionPool(factory,
+                new AdaptiveLimiter(4, 1, 4), null);
+        pool.setMinIdle(1);
+        pool.setKeepAlive(20);
+        pool.startMaintenance();
+        long end = System.currentTimeMillis() + 5000;
+        while (pool.getKeepAlives() < 2
+                && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        pool.close();
+        assertTrue(pool.getKeepAlives() >= 2);
+        assertEquals(1, factory.created.get());
+    }
+
+    public void testFailedOperationDiscardsSession() throws Exception {
+        SessionPool pool = new SessionPool(factory,
+                new AdaptiveLimiter(4, 1, 4), null);
+        try {
+            pool.execute(new Operation<Void>() {
+                public Void run(final JCyrAdm session) {
+                    throw new IllegalStateException("half read");
+                }
+            });
+            fail("IllegalStateException erwartet");
+        } catch (IllegalStateException e) {
+            assertEquals(0, pool.getOpenSessions());
+            assertEquals(0, pool.getIdleSessions());
+        }
+        pool.close();
+    }
+
+    public void testBrokenSessionEvicted() throws Exception {
+        // Nicht verbundene Sitzungen, NOOP wirft eine RuntimeException
+        SessionPool pool = new SessionPool(new SessionFactory() {
+            public JCyrAdm create() throws Exception {
+                return new JCyrAdm();
+            }
+            public void destroy(final JCyrAdm session) {
+            }
+        }, new AdaptiveLimiter(4, 1, 4), null);
+        pool.setMinIdle(1);
+        pool.setKeepAlive(1);
+        assertEquals(1, pool.warmUp());
+        Thread.sleep(10);
+        pool.maintain();
+        assertEquals(1, pool.getEvicted());
+        assertEquals(1, pool.getOpenSessions());
+        assertEquals(1, pool.getIdleSessions());
+        pool.close();
+    }
+
+} // Ende class
@@ -0,0 +1,101 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.exception.MailboxExists;
+import de.tivsource.lib.jcyradm.mailbox.Quota;
+import de.tivsource.lib.jcyradm.pool.SingleFlight;
+
+/**
+ * In diesem Test wird die Klasse SingleFlight getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class SingleFlightTest extends TestCase {
+
+    private static final int THREADS = 8;
+
+    public void testConcurrentCallsShareResult() throws Exception {
+        final SingleFlight<String, Quota> flight =
+                new SingleFlight<String, Quota>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Quota[] results = new Quota[THREADS];
+        final Callable<Quota> call = new Callable<Quota>() {
+            @Override
+            public Quota call() throws Exception {
+                calls.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                return new Quota("max", 10, 100);
+            }
+        };
+
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        results[index] = flight.execute("host max", call);
+                    } catch (Exception e) {
+                        return;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        while (flight.getCoalesced() < THREADS - 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(1, calls.get());
+        for (Quota quota : results) {
+            assertSame(results[0], quota);
+        }
+        assertEquals(0, flight.getInFlight());
+        assertEquals(10.0, results[0].getLoad(), 0.001);
+    }
+
+    public void testNextCallRunsAgain() throws Exception {
+        SingleFlight<String, Integer> flight =
+                new SingleFlight<String, Integer>();
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Integer> call = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return calls.incrementAndGet();
+            }
+        };
+        assertEquals(Integer.valueOf(1), flight.execute("a", call));
+        assertEquals(Integer.valueOf(2), flight.execute("a", call));
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    public void testExceptionIsShared() {
+        SingleFlight<String, Void> flight = new SingleFlight<String, Void>();
+        try {
+            flight.execute("create max", new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    throw new MailboxExists();
+                }
+            });
+            fail("MailboxExists erwartet");
+        } catch (MailboxExists e) {
+            assertEquals(0, flight.getInFlight());
+        } catch (Exception e) {
+            fail(e.toString());
+        }
+    }
+
+} // Ende class
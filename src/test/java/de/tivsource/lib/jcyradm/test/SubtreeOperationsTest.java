@@ -0,0 +1,241 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.mailbox.MailboxNameValidator;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.subtree.BatchExecutor;
+import de.tivsource.lib.jcyradm.subtree.SubtreeOperations;
+import de.tivsource.lib.jcyradm.subtree.SubtreeResult;
+
+/**
+ * In diesem Test wird die Klasse SubtreeOperations mit einem simulierten
+ * Server getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class SubtreeOperationsTest extends TestCase {
+
+    /**
+     * Simulierter Server, jeder Stapel läuft über eine eigene Pipeline.
+     */
+    private static class FakeServer implements BatchExecutor {
+
+        private final TreeSet<String> mailboxes = new TreeSet<String>();
+
+        private final Map<String, String> acls =
+                new HashMap<String, String>();
+
+        private final Map<String, String> quotas =
+                new HashMap<String, String>();
+
+        private final List<String> violations = new ArrayList<String>();
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        private int batches;
+
+        @Override
+        public void run(final List<Command> commands) throws Exception {
+            int now = running.incrementAndGet();
+            synchronized (this) {
+                batches++;
+                maxRunning.set(Math.max(maxRunning.get(), now));
+            }
+            try {
+                final ByteArrayOutputStream written =
+                        new ByteArrayOutputStream();
+                CommandEncoder encoder = new CommandEncoder(
+                        new WritableByteChannel() {
+                            public int write(final ByteBuffer src) {
+                                int count = src.remaining();
+                                while (src.hasRemaining()) {
+                                    written.write(src.get());
+                                }
+                                return count;
+                            }
+                            public boolean isOpen() {
+                                return true;
+                            }
+                            public void close() {
+                            }
+                        }, 4096);
+                final LinkedList<String> responses = new LinkedList<String>();
+                BufferedReader in = new BufferedReader(new StringReader("")) {
+                    private int consumed;
+
+                    @Override
+                    public String readLine() {
+                        if (responses.isEmpty()) {
+                            String[] lines = written.toString().substring(
+                                    consumed).split("\r\n");
+                            consumed = written.size();
+                            for (String line : lines) {
+                                if (!line.isEmpty()) {
+                                    answer(line, responses);
+                                }
+                            }
+                        }
+                        return responses.poll();
+                    }
+                };
+                Pipeline pipeline = new Pipeline(encoder, in);
+                for (Command command : commands) {
+                    pipeline.submit(command);
+                }
+                Thread.sleep(2);
+                pipeline.sync();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        private synchronized void answer(final String line,
+                final List<String> responses) {
+            List<String> tokens = tokens(line);
+            String tag = tokens.get(0);
+            String command = tokens.get(1);
+            String mailbox = tokens.size() > 2 ? tokens.get(2) : null;
+            if (command.equals("LIST")) {
+                String pattern = tokens.get(3);
+                for (String name : mailboxes) {
+                    if (pattern.endsWith("*") ? name.startsWith(pattern
+                            .substring(0, pattern.length() - 1))
+                            : name.equals(pattern)) {
+                        responses.add("* LIST () \".\" \"" + name + "\"");
+                    }
+                }
+                responses.add(tag + " OK Completed");
+            } else if (!mailboxes.contains(mailbox)) {
+                responses.add(tag + " NO Mailbox does not exist");
+            } else if (command.equals("SETACL")) {
+                acls.put(mailbox + " " + tokens.get(3), tokens.get(4));
+                responses.add(tag + " OK Completed");
+            } else if (command.equals("DELETE")) {
+                if (!mailboxes.subSet(mailbox + ".", mailbox + "/")
+                        .isEmpty()) {
+                    violations.add(mailbox);
+                    responses.add(tag + " NO Mailbox has children");
+                } else if (mailbox.contains("locked")) {
+                    responses.add(tag + " NO Mailbox is locked");
+                } else {
+                    mailboxes.remove(mailbox);
+                    responses.add(tag + " OK Completed");
+                }
+            } else if (command.equals("GETQUOTA")) {
+                if (quotas.containsKey(mailbox)) {
+                    responses.add("* QUOTA " + mailbox + " (STORAGE "
+                            + quotas.get(mailbox) + ")");
+                    responses.add(tag + " OK Completed");
+                } else {
+                    responses.add(tag + " NO Quota root does not exist");
+                }
+            } else {
+                responses.add(tag + " BAD Unknown command");
+            }
+        }
+
+        private static List<String> tokens(final String line) {
+            List<String> tokens = new ArrayList<String>();
+            int i = 0;
+            while (i < line.length()) {
+                if (line.charAt(i) == ' ') {
+                    i++;
+                } else if (line.charAt(i) == '"') {
+                    int end = line.indexOf('"', i + 1);
+                    tokens.add(line.substring(i + 1, end));
+                    i = end + 1;
+                } else {
+                    int end = line.indexOf(' ', i);
+                    end = end < 0 ? line.length() : end;
+                    tokens.add(line.substring(i, end));
+                    i = end;
+                }
+            }
+            return tokens;
+        }
+    }
+
+    private FakeServer server;
+
+    private SubtreeOperations operations;
+
+    protected void setUp() {
+        server = new FakeServer();
+        for (int folder = 0; folder < 20; folder++) {
+            server.mailboxes.add("user.max.f" + folder);
+            for (int sub = 0; sub < 30; sub++) {
+                server.mailboxes.add("user.max.f" + folder + ".s" + sub);
+            }
+        }
+        server.mailboxes.add("user.max");
+        // Zwischenebene ohne eigene Mailbox
+        server.mailboxes.add("user.max.gap.x.y");
+        server.mailboxes.add("user.maxi");
+        operations = new SubtreeOperations(server, new MailboxNameValidator());
+        operations.setParallelism(4);
+        operations.setBatchSize(16);
+    }
+
+    public void testDeleteLeavesFirst() throws Exception {
+        assertEquals(20 * 31 + 2, operations.list("user.max").size());
+        SubtreeResult result = operations.deleteTree("user.max", "cyrus");
+        assertEquals(20 * 31 + 2, result.getSucceeded());
+        assertEquals(0, result.getFailed());
+        assertTrue(server.violations.toString(), server.violations.isEmpty());
+        assertEquals(1, server.mailboxes.size());
+        assertTrue(server.mailboxes.contains("user.maxi"));
+        assertEquals("lrswipkxtecda", server.acls.get("user.max.f3.s7 cyrus"));
+        // Stapel statt einzelner Kommandos, parallel
+        assertTrue(server.batches < 200);
+        assertTrue(server.maxRunning.get() > 1);
+    }
+
+    public void testFailedChildSkipsParents() throws Exception {
+        server.mailboxes.add("user.max.f2.s3.locked");
+        SubtreeResult result = operations.deleteTree("user.max", "cyrus");
+        assertEquals(1, result.getFailed());
+        assertEquals("NO Mailbox is locked",
+                result.getFailures().get("user.max.f2.s3.locked"));
+        // user.max.f2.s3, user.max.f2 und user.max bleiben
+        assertEquals(3, result.getSkipped());
+        assertTrue(server.violations.isEmpty());
+        assertTrue(server.mailboxes.contains("user.max.f2"));
+        assertFalse(server.mailboxes.contains("user.max.f2.s4"));
+        assertFalse(server.mailboxes.contains("user.max.f1"));
+    }
+
+    public void testSetAclAndQuota() throws Exception {
+        SubtreeResult result = operations.setAclTree("user.max", "anyone",
+                "p");
+        assertEquals(20 * 31 + 2, result.getSucceeded());
+        assertEquals("p", server.acls.get("user.max.gap.x.y anyone"));
+        assertEquals("p", server.acls.get("user.max anyone"));
+        assertNull(server.acls.get("user.maxi anyone"));
+
+        server.quotas.put("user.max", "10 100");
+        server.quotas.put("user.max.f4", "3 50");
+        result = operations.quotaTree("user.max");
+        assertEquals(2, result.getQuotas().size());
+        assertEquals(100, result.getQuotas().get("user.max").getLimit());
+        assertEquals(3, result.getQuotas().get("user.max.f4").getUsed());
+    }
+
+} // Ende class
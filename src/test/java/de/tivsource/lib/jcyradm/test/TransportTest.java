@@ -0,0 +1,211 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.net.CircuitBreaker;
+import de.tivsource.lib.jcyradm.net.Connection;
+import de.tivsource.lib.jcyradm.net.HostHealth;
+import de.tivsource.lib.jcyradm.net.MultiHostConnector;
+import de.tivsource.lib.jcyradm.protocol.Command;
+import de.tivsource.lib.jcyradm.protocol.CommandEncoder;
+import de.tivsource.lib.jcyradm.protocol.Commands;
+import de.tivsource.lib.jcyradm.protocol.Pipeline;
+import de.tivsource.lib.jcyradm.transport.Link;
+import de.tivsource.lib.jcyradm.transport.NioTransport;
+import de.tivsource.lib.jcyradm.transport.TcpTransport;
+import de.tivsource.lib.jcyradm.transport.Transport;
+import de.tivsource.lib.jcyradm.transport.UnixTransport;
+
+/**
+ * In diesem Test werden die Transporte TcpTransport, NioTransport und
+ * UnixTransport getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class TransportTest extends TestCase {
+
+    /**
+     * Beantwortet die Kommandos einer Verbindung wie Cyrus.
+     */
+    private static void serve(final InputStream input,
+            final OutputStream out) {
+        try {
+            out.write("* OK test ready\r\n".getBytes("US-ASCII"));
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    input, "US-ASCII"));
+            String line;
+            while ((line = in.readLine()) != null) {
+                String tag = line.substring(0, line.indexOf(' '));
+                out.write((tag + " OK Completed\r\n").getBytes("US-ASCII"));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client weg
+        }
+    }
+
+    /**
+     * Startet einen Thread der die Kommandos einer Verbindung beantwortet.
+     */
+    private static void start(final Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void testTcpAndNio() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        start(new Runnable() {
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        start(new Runnable() {
+                            public void run() {
+                                try {
+                                    serve(socket.getInputStream(),
+                                            socket.getOutputStream());
+                                    socket.close();
+                                } catch (IOException e) {
+                                    // Client weg
+                                }
+                            }
+                        });
+                    } catch (IOException e) {
+                        // Server geschlossen
+                    }
+                }
+            }
+        });
+        try {
+            TcpTransport tuned = new TcpTransport();
+            tuned.setSendBufferSize(256 * 1024);
+            tuned.setReceiveBufferSize(256 * 1024);
+            tuned.setKeepAlive(true);
+            NioTransport nio = new NioTransport();
+            nio.setTcpNoDelay(false);
+            List<Transport> transports = Arrays.<Transport>asList(
+                    new TcpTransport(), tuned, nio);
+            MultiHostConnector connector = new MultiHostConnector();
+            connector.setHealth(new HostHealth(1000));
+            connector.setCircuitBreaker(new CircuitBreaker(5, 1000));
+            for (Transport transport : transports) {
+                Connection connection = connector.connect(
+                        Arrays.asList("127.0.0.1"), server.getLocalPort(),
+                        transport);
+                assertEquals("* OK test ready", connection.getWelcomeMsg());
+                assertNoop(connection.getLink(), connection.getReader());
+                connection.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testClosedLink() throws IOException {
+        ServerSocket server = new ServerSocket(0);
+        try {
+            for (Transport transport : Arrays.asList(new TcpTransport(),
+                    new NioTransport())) {
+                Link link = transport.createLink("127.0.0.1",
+                        server.getLocalPort());
+                try {
+                    link.getChannel();
+                    fail("unconnected link returned a channel");
+                } catch (IOException e) {
+                    // erwartet
+                }
+                link.close();
+                try {
+                    link.connect(1000);
+                    fail("closed link connected");
+                } catch (IOException e) {
+                    // erwartet
+                }
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testUnixDomainSocket() throws Exception {
+        if (!UnixTransport.isSupported()) {
+            return;
+        }
+        File file = File.createTempFile("cyrus", ".sock");
+        file.delete();
+        final ServerSocketChannel server = unixServer(file.getPath());
+        start(new Runnable() {
+            public void run() {
+                while (server.isOpen()) {
+                    try {
+                        SocketChannel channel = server.accept();
+                        serve(Channels.newInputStream(channel),
+                                Channels.newOutputStream(channel));
+                        channel.close();
+                    } catch (IOException e) {
+                        // Server geschlossen
+                    }
+                }
+            }
+        });
+        try {
+            JCyrAdm admin = new JCyrAdm();
+            admin.setHost("localhost");
+            admin.setHostHealth(new HostHealth(1000));
+            admin.setCircuitBreaker(new CircuitBreaker(5, 1000));
+            admin.setTransport(new UnixTransport(file.getPath()));
+            admin.connect(false);
+            assertEquals("* OK test ready", admin.getWelcomeMsg());
+            assertEquals("localhost", admin.getConnectedHost());
+            admin.noop();
+            admin.disconnect();
+        } finally {
+            server.close();
+            file.delete();
+        }
+    }
+
+    private static void assertNoop(final Link link,
+            final BufferedReader reader) throws IOException {
+        Pipeline pipeline = new Pipeline(new CommandEncoder(
+                link.getChannel()), reader);
+        Command noop = Commands.noop();
+        pipeline.submit(noop);
+        pipeline.sync();
+        assertTrue(noop.isOk());
+    }
+
+    private static ServerSocketChannel unixServer(final String path)
+            throws Exception {
+        Method open = ServerSocketChannel.class.getMethod("open",
+                ProtocolFamily.class);
+        ServerSocketChannel server = (ServerSocketChannel) open.invoke(null,
+                StandardProtocolFamily.valueOf("UNIX"));
+        Method of = Class.forName("java.net.UnixDomainSocketAddress")
+                .getMethod("of", String.class);
+        server.bind((SocketAddress) of.invoke(null, path));
+        return server;
+    }
+
+} // Ende class
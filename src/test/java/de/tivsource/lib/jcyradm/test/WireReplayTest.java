@@ -0,0 +1,179 @@
+package de.tivsource.lib.jcyradm.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import junit.framework.TestCase;
+import de.tivsource.lib.jcyradm.JCyrAdm;
+import de.tivsource.lib.jcyradm.net.CircuitBreaker;
+import de.tivsource.lib.jcyradm.net.HostHealth;
+import de.tivsource.lib.jcyradm.transport.Link;
+import de.tivsource.lib.jcyradm.transport.Transport;
+import de.tivsource.lib.jcyradm.wire.ReplayTransport;
+import de.tivsource.lib.jcyradm.wire.WireRecorder;
+import de.tivsource.lib.jcyradm.wire.WireReplay;
+
+/**
+ * In diesem Test werden die Klassen WireRecorder, WireReplay und
+ * ReplayTransport getestet.
+ *
+ * @author Marc Michele
+ *
+ */
+public class WireReplayTest extends TestCase {
+
+    private static final long DELAY = 40;
+
+    private static final String[] RESPONSES = {
+        ". OK [CAPABILITY IMAP4rev1] User logged in\r\n",
+        "A1 OK Completed\r\n",
+        "* BYE LOGOUT received\r\n. OK Completed\r\n"};
+
+    /**
+     * Leitung ohne Server die jedes Kommando nach DELAY Millisekunden
+     * beantwortet.
+     */
+    private static class FakeLink extends InputStream implements Link,
+            WritableByteChannel {
+
+        private final BlockingQueue<Integer> commands =
+                new LinkedBlockingQueue<Integer>();
+
+        private byte[] current = "* OK fake ready\r\n".getBytes();
+
+        private int position;
+
+        private int next;
+
+        public void connect(final int timeoutMillis) {
+        }
+
+        public void setReadTimeout(final int timeoutMillis) {
+        }
+
+        public InputStream getInputStream() {
+            return this;
+        }
+
+        public WritableByteChannel getChannel() {
+            return this;
+        }
+
+        public int write(final ByteBuffer source) {
+            int count = source.remaining();
+            while (source.hasRemaining()) {
+                if (source.get() == '\n') {
+                    commands.add(count);
+                }
+            }
+            return count;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0];
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset,
+                final int count) throws IOException {
+            if (position == current.length) {
+                if (next == RESPONSES.length) {
+                    return -1;
+                }
+                try {
+                    commands.take();
+                    Thread.sleep(DELAY);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                current = RESPONSES[next++].getBytes();
+                position = 0;
+            }
+            int read = Math.min(count, current.length - position);
+            System.arraycopy(current, position, bytes, offset, read);
+            position += read;
+            return read;
+        }
+    }
+
+    private static JCyrAdm admin(final Transport transport,
+            final String password) throws Exception {
+        JCyrAdm admin = new JCyrAdm();
+        admin.setHost("cyrus.example.com");
+        admin.setPort(143);
+        admin.setHostHealth(new HostHealth(1000));
+        admin.setCircuitBreaker(new CircuitBreaker(5, 1000));
+        admin.setTransport(transport);
+        admin.setAdministrator("cyrus");
+        admin.setPassword(password);
+        return admin;
+    }
+
+    private static long session(final JCyrAdm admin) throws Exception {
+        admin.connect(false);
+        assertEquals("* OK fake ready", admin.getWelcomeMsg());
+        admin.login();
+        long start = System.nanoTime();
+        admin.noop();
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        admin.logout();
+        return elapsed;
+    }
+
+    public void testRecordAndReplay() throws Exception {
+        Transport fake = new Transport() {
+            public Link createLink(final String host, final int port) {
+                return new FakeLink();
+            }
+        };
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        WireRecorder recorder = new WireRecorder(file);
+        // Quoted String und Literal
+        for (String password : new String[] {"geheim pw", "gäheim"}) {
+            JCyrAdm admin = admin(fake, password);
+            admin.setWireRecorder(recorder);
+            assertTrue(session(admin) >= DELAY);
+        }
+        recorder.close();
+        assertNull(recorder.getFailure());
+
+        String recorded = file.toString("ISO-8859-1");
+        assertTrue(recorded.contains(". login cyrus \"***\"\r\n"));
+        assertTrue(recorded.contains("A1 NOOP\r\n"));
+        assertFalse(recorded.contains("heim"));
+
+        WireReplay replay = WireReplay.load(new ByteArrayInputStream(
+                file.toByteArray()));
+        assertEquals(2, replay.getSessionCount());
+        assertEquals(6, replay.getResponseCount());
+
+        ReplayTransport original = new ReplayTransport(replay, 1.0);
+        assertTrue(session(admin(original, "x")) >= DELAY - 5);
+        ReplayTransport fast = new ReplayTransport(replay,
+                Double.POSITIVE_INFINITY);
+        fast.createLink("skip", 143);
+        assertTrue(session(admin(fast, "x")) < DELAY);
+        try {
+            admin(fast, "x").connect(false);
+            fail("replayed more sessions than recorded");
+        } catch (IOException e) {
+            // erwartet
+        }
+    }
+
+} // Ende class